@@ -0,0 +1,43 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with JMH command line options, the {@link GCProfiler} (<code>-prof gc</code>) is always
+ * added to report allocation rates per operation.
+ */
+public final class BenchmarkRunner
+{
+	private BenchmarkRunner()
+	{
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+		if (commandLineOptions.shouldHelp())
+		{
+			commandLineOptions.showHelp();
+			return;
+		}
+		else if (commandLineOptions.shouldList())
+		{
+			new Runner(commandLineOptions).list();
+			return;
+		}
+
+		boolean gcProfiler = commandLineOptions.getProfilers().stream()
+				.anyMatch(p -> GCProfiler.class.getName().equals(p.getKlass()) || "gc".equals(p.getKlass()));
+
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLineOptions);
+		if (!gcProfiler)
+			options.addProfiler(GCProfiler.class);
+
+		new Runner(options.build()).run();
+	}
+}
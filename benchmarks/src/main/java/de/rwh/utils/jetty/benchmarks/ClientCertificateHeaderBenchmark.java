@@ -0,0 +1,118 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import java.security.cert.CertificateException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.server.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.rwh.utils.jetty.ClientCertificateCache;
+import de.rwh.utils.jetty.ClientCertificateHeaderDecoder;
+import de.rwh.utils.jetty.ForwardedSecureRequestCustomizer;
+
+/**
+ * Client certificate header parsing: {@link ClientCertificateHeaderDecoder} and {@link ForwardedSecureRequestCustomizer}
+ * with and without {@link ClientCertificateCache}, for both header encodings and invalid header values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientCertificateHeaderBenchmark
+{
+	public enum Encoding
+	{
+		SPACE_SEPARATED, URL_ENCODED, BAD_PREFIX, BAD_SUFFIX, INVALID_BASE64, TRUNCATED
+	}
+
+	private static final String HEADER_NAME = "X-ClientCert";
+	private static final String ATTRIBUTE_CERTIFICATE = "javax.servlet.request.X509Certificate";
+
+	@Param
+	public Encoding encoding;
+
+	@Param({ "false", "true" })
+	public boolean cached;
+
+	private String headerValue;
+	private ForwardedSecureRequestCustomizer customizer;
+	private Request request;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		headerValue = headerValue(encoding, TestCertificates.create());
+		customizer = new ForwardedSecureRequestCustomizer(HEADER_NAME,
+				cached ? new ClientCertificateCache(1000, 1, TimeUnit.HOURS) : null);
+
+		HttpFields fields = new HttpFields();
+		fields.put(HEADER_NAME, headerValue);
+
+		request = new Request(null, null);
+		request.setMetaData(
+				new MetaData.Request("GET", new HttpURI("http://localhost/benchmark"), HttpVersion.HTTP_1_1, fields));
+	}
+
+	private static String headerValue(Encoding encoding, TestCertificates certificates) throws Exception
+	{
+		String spaceSeparated = TestCertificates.toSpaceSeparatedHeader(certificates.getClientCertificate());
+
+		switch (encoding)
+		{
+			case SPACE_SEPARATED:
+				return spaceSeparated;
+			case URL_ENCODED:
+				return TestCertificates.toUrlEncodedHeader(certificates.getClientCertificate());
+			case BAD_PREFIX:
+				return spaceSeparated.substring(1);
+			case BAD_SUFFIX:
+				return spaceSeparated.substring(0, spaceSeparated.length() - 1);
+			case INVALID_BASE64:
+				return spaceSeparated.replace('A', '!');
+			case TRUNCATED:
+				return ClientCertificateHeaderDecoder.CERT_BEGIN + spaceSeparated.substring(
+						spaceSeparated.length() / 2 + 1, spaceSeparated.length());
+			default:
+				throw new IllegalArgumentException(encoding.name());
+		}
+	}
+
+	@Benchmark
+	public Object decode()
+	{
+		try
+		{
+			return ClientCertificateHeaderDecoder.decode(headerValue);
+		}
+		catch (CertificateException e)
+		{
+			return e;
+		}
+	}
+
+	@Benchmark
+	public Object customize()
+	{
+		request.removeAttribute(ATTRIBUTE_CERTIFICATE);
+		customizer.customize(null, null, request);
+
+		return request.getAttribute(ATTRIBUTE_CERTIFICATE);
+	}
+}
@@ -0,0 +1,74 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.rwh.utils.jetty.JettyServer;
+
+/**
+ * {@link HttpConfiguration} and connector creation via {@link JettyServer}'s static factory methods, connectors are
+ * created but not started.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectorSetupBenchmark
+{
+	private Properties properties;
+	private TestCertificates certificates;
+	private Server server;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		properties = new Properties();
+		properties.setProperty("jetty.http.outputbuffersize", "32768");
+		properties.setProperty("jetty.http.requestheadersize", "16384");
+		properties.setProperty("jetty.connector.idletimeout", "30000");
+		properties.setProperty("jetty.http2.enabled", "true");
+
+		certificates = TestCertificates.create();
+		server = new Server();
+	}
+
+	@Benchmark
+	public HttpConfiguration httpConfiguration()
+	{
+		return JettyServer.httpConfiguration(properties, null);
+	}
+
+	@Benchmark
+	public ServerConnector httpConnector()
+	{
+		return JettyServer.httpConnector(JettyServer.httpConfiguration(properties, null), "localhost", 0,
+				JettyServer.http2Configuration(properties), JettyServer.connectorConfiguration(properties))
+				.apply(server);
+	}
+
+	@Benchmark
+	public ServerConnector httpsConnector()
+	{
+		return JettyServer.httpsConnector(JettyServer.httpConfiguration(properties, null), "localhost", 0,
+				certificates.getTrustStore(), certificates.getServerKeyStore(), certificates.getPassword(), true,
+				JettyServer.http2Configuration(properties), JettyServer.tlsConfiguration(properties),
+				JettyServer.connectorConfiguration(properties)).apply(server);
+	}
+}
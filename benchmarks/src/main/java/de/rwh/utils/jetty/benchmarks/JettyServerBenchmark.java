@@ -0,0 +1,164 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.rwh.utils.jetty.ConnectorConfiguration;
+import de.rwh.utils.jetty.Http2Configuration;
+import de.rwh.utils.jetty.JettyServer;
+
+/**
+ * End-to-end request throughput through an in-process {@link JettyServer} over HTTP, HTTPS and mutual TLS, using a
+ * keep-alive {@link HttpClient} per benchmark thread. Run with <code>-t</code> to set the number of client threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JettyServerBenchmark
+{
+	public enum Transport
+	{
+		HTTP, HTTPS, MTLS
+	}
+
+	public static final class HelloServlet extends HttpServlet
+	{
+		private static final long serialVersionUID = 1L;
+
+		private static final byte[] BODY = "Hello".getBytes(StandardCharsets.UTF_8);
+
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+		{
+			resp.setContentType("text/plain");
+			resp.setContentLength(BODY.length);
+			resp.getOutputStream().write(BODY);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Client
+	{
+		private HttpClient client;
+		private HttpRequest request;
+
+		@Setup(Level.Trial)
+		public void setup(JettyServerBenchmark benchmark) throws Exception
+		{
+			HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1);
+			if (benchmark.certificates != null)
+				builder.sslContext(benchmark.certificates.newClientSslContext(Transport.MTLS.equals(benchmark.transport)));
+
+			client = builder.build();
+			request = HttpRequest.newBuilder(benchmark.uri).GET().build();
+		}
+	}
+
+	@Param
+	public Transport transport;
+
+	private TestCertificates certificates;
+	private JettyServer server;
+	private URI uri;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		certificates = Transport.HTTP.equals(transport) ? null : TestCertificates.create();
+		server = startServer(transport, certificates);
+
+		int port = ((NetworkConnector) server.getConnectors()[0]).getLocalPort();
+		uri = URI.create((Transport.HTTP.equals(transport) ? "http" : "https") + "://localhost:" + port + "/hello");
+	}
+
+	static JettyServer startServer(Transport transport, TestCertificates certificates) throws Exception
+	{
+		return startServer(transport, certificates, new Properties());
+	}
+
+	/**
+	 * @param transport
+	 *            not <code>null</code>
+	 * @param certificates
+	 *            not <code>null</code> for {@link Transport#HTTPS} and {@link Transport#MTLS}
+	 * @param properties
+	 *            not <code>null</code>, thread pool, http, HTTP/2, TLS and connector settings as supported by the
+	 *            {@link JettyServer} factory methods taking {@link Properties}
+	 * @return started server with a single connector on an ephemeral <code>localhost</code> port, serving
+	 *         {@link HelloServlet} at <code>/hello</code>
+	 * @throws Exception
+	 *             if the server could not be started
+	 */
+	static JettyServer startServer(Transport transport, TestCertificates certificates, Properties properties)
+			throws Exception
+	{
+		HttpConfiguration httpConfiguration = JettyServer.httpConfiguration(properties, null);
+		Http2Configuration http2Configuration = JettyServer.http2Configuration(properties);
+		ConnectorConfiguration connectorConfiguration = JettyServer.connectorConfiguration(properties);
+
+		Function<Server, ServerConnector> connector;
+		if (Transport.HTTP.equals(transport))
+			connector = JettyServer.httpConnector(httpConfiguration, "localhost", 0, http2Configuration,
+					connectorConfiguration);
+		else
+			connector = JettyServer.httpsConnector(httpConfiguration, "localhost", 0, certificates.getTrustStore(),
+					certificates.getServerKeyStore(), certificates.getPassword(), Transport.MTLS.equals(transport),
+					http2Configuration, JettyServer.tlsConfiguration(properties), connectorConfiguration);
+
+		JettyServer server = new JettyServer(JettyServer.threadPool(properties), connector,
+				JettyServer.statusCodeOnlyErrorHandler(), "/", Collections.emptyList(), null, Stream.empty(),
+				Stream.empty());
+		server.getWebAppContext().addServlet(new ServletHolder(new HelloServlet()), "/hello");
+		server.start();
+
+		return server;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception
+	{
+		server.stop();
+	}
+
+	@Benchmark
+	public int request(Client client) throws Exception
+	{
+		HttpResponse<byte[]> response = client.client.send(client.request, HttpResponse.BodyHandlers.ofByteArray());
+		return response.statusCode() + response.body().length;
+	}
+}
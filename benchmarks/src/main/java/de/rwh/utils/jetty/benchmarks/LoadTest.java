@@ -0,0 +1,317 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+import de.rwh.utils.jetty.JettyServer;
+import de.rwh.utils.jetty.LatencyHistogram;
+import de.rwh.utils.jetty.benchmarks.JettyServerBenchmark.Transport;
+
+/**
+ * Open model load test against an in-process {@link JettyServer} on an ephemeral <code>localhost</code> port.
+ * <p>
+ * Requests are sent at a constant arrival rate independent of response times. Latency is measured from the request's
+ * intended send time, not from the time it was actually sent, so stalls of the server or the load generator show up in
+ * the results instead of being hidden by a delayed send (coordinated omission). Requests that would exceed
+ * <code>maxinflight</code> outstanding requests are not sent and counted as rejected. Requests are sent via HTTP/1.1
+ * using a Jetty {@link HttpClient} with a bounded number of connections, requests waiting for a connection are queued
+ * and the time spent waiting is part of the measured latency.
+ * <p>
+ * Arguments are <code>key=value</code> pairs:
+ * <ul>
+ * <li><code>transport</code>: <code>HTTP</code>, <code>HTTPS</code> or <code>MTLS</code>, default <code>HTTP</code></li>
+ * <li><code>rate</code>: requests per second, default 1000</li>
+ * <li><code>warmup</code>: seconds, not recorded, default 5</li>
+ * <li><code>duration</code>: seconds, recorded, default 30</li>
+ * <li><code>maxinflight</code>: maximum number of outstanding requests, default 10000</li>
+ * <li><code>timeout</code>: request timeout in seconds, default 10</li>
+ * <li><code>connections</code>: maximum number of client connections, default 64</li>
+ * <li><code>server</code>: properties file with <code>jetty.threadpool.*</code>, <code>jetty.http.*</code>,
+ * <code>jetty.http2.*</code>, <code>jetty.tls.*</code> and <code>jetty.connector.*</code> server settings, optional</li>
+ * <li><code>output</code>: file for the JSON result, optional, the result is always written to stdout</li>
+ * </ul>
+ * Latencies are recorded with a {@link LatencyHistogram}, reported percentiles are bucket upper limits with a relative
+ * error of at most 1/16.
+ */
+public final class LoadTest
+{
+	private static final String PATH = "/hello";
+
+	private final Transport transport;
+	private final double rate;
+	private final long warmupNanos;
+	private final long durationNanos;
+	private final int maxInFlight;
+	private final Duration timeout;
+	private final int connections;
+	private final Properties serverProperties;
+
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private volatile long lastCompletedNanos;
+
+	public LoadTest(Transport transport, double rate, long warmup, long duration, TimeUnit unit, int maxInFlight,
+			Duration timeout, int connections, Properties serverProperties)
+	{
+		if (rate <= 0)
+			throw new IllegalArgumentException("rate <= 0");
+		if (duration <= 0)
+			throw new IllegalArgumentException("duration <= 0");
+		if (maxInFlight <= 0)
+			throw new IllegalArgumentException("maxInFlight <= 0");
+		if (connections <= 0)
+			throw new IllegalArgumentException("connections <= 0");
+
+		this.transport = transport;
+		this.rate = rate;
+		this.warmupNanos = unit.toNanos(Math.max(0, warmup));
+		this.durationNanos = unit.toNanos(duration);
+		this.maxInFlight = maxInFlight;
+		this.timeout = timeout;
+		this.connections = connections;
+		this.serverProperties = serverProperties;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, String> arguments = new TreeMap<>();
+		for (String arg : args)
+		{
+			int separator = arg.indexOf('=');
+			if (separator <= 0)
+				throw new IllegalArgumentException("Argument '" + arg + "' not of form key=value");
+
+			arguments.put(arg.substring(0, separator).trim().toLowerCase(Locale.ROOT),
+					arg.substring(separator + 1).trim());
+		}
+
+		Properties serverProperties = new Properties();
+		if (arguments.containsKey("server"))
+		{
+			try (InputStream in = Files.newInputStream(Paths.get(arguments.get("server"))))
+			{
+				serverProperties.load(in);
+			}
+		}
+
+		LoadTest loadTest = new LoadTest(
+				Transport.valueOf(arguments.getOrDefault("transport", Transport.HTTP.name()).toUpperCase(Locale.ROOT)),
+				Double.parseDouble(arguments.getOrDefault("rate", "1000")),
+				Long.parseLong(arguments.getOrDefault("warmup", "5")),
+				Long.parseLong(arguments.getOrDefault("duration", "30")), TimeUnit.SECONDS,
+				Integer.parseInt(arguments.getOrDefault("maxinflight", "10000")),
+				Duration.ofSeconds(Long.parseLong(arguments.getOrDefault("timeout", "10"))),
+				Integer.parseInt(arguments.getOrDefault("connections", "64")), serverProperties);
+
+		String result = loadTest.run();
+
+		System.out.println(result);
+		if (arguments.containsKey("output"))
+		{
+			Path output = Paths.get(arguments.get("output"));
+			try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8))
+			{
+				writer.write(result);
+				writer.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * @return result as JSON
+	 * @throws Exception
+	 *             if the server could not be started or stopped, or the client could not be created
+	 */
+	public String run() throws Exception
+	{
+		TestCertificates certificates = Transport.HTTP.equals(transport) ? null : TestCertificates.create();
+		JettyServer server = JettyServerBenchmark.startServer(transport, certificates, serverProperties);
+
+		SslContextFactory.Client sslContextFactory = new SslContextFactory.Client();
+		if (certificates != null)
+			sslContextFactory.setSslContext(certificates.newClientSslContext(Transport.MTLS.equals(transport)));
+
+		HttpClient client = new HttpClient(sslContextFactory);
+		client.setMaxConnectionsPerDestination(connections);
+		client.setMaxRequestsQueuedPerDestination(maxInFlight);
+		client.setFollowRedirects(false);
+
+		try
+		{
+			client.start();
+
+			int port = ((NetworkConnector) server.getConnectors()[0]).getLocalPort();
+			String uri = (Transport.HTTP.equals(transport) ? "http" : "https") + "://localhost:" + port + PATH;
+
+			long start = System.nanoTime();
+			long measurementStart = start + warmupNanos;
+			long sent = drive(client, uri, start, measurementStart, measurementStart + durationNanos);
+
+			awaitOutstanding(timeout.toNanos() * 2);
+
+			return toJson(sent, Math.max(lastCompletedNanos, measurementStart + durationNanos) - measurementStart);
+		}
+		finally
+		{
+			client.stop();
+			server.stop();
+		}
+	}
+
+	/**
+	 * @return number of requests scheduled within the measurement interval, including rejected requests
+	 */
+	private long drive(HttpClient client, String uri, long start, long measurementStart, long end)
+	{
+		double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		long scheduled = 0;
+
+		for (long i = 0;; i++)
+		{
+			long intended = start + (long) (i * intervalNanos);
+			if (intended >= end)
+				return scheduled;
+
+			long wait;
+			while ((wait = intended - System.nanoTime()) > 0)
+				LockSupport.parkNanos(wait);
+
+			boolean recorded = intended >= measurementStart;
+			if (recorded)
+				scheduled++;
+
+			if (inFlight.incrementAndGet() > maxInFlight)
+			{
+				inFlight.decrementAndGet();
+				if (recorded)
+					rejected.increment();
+
+				continue;
+			}
+
+			Request request = client.newRequest(uri).timeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			request.send(result ->
+			{
+				long now = System.nanoTime();
+				inFlight.decrementAndGet();
+
+				if (!recorded)
+					return;
+
+				if (result.isFailed() || result.getResponse().getStatus() != 200)
+					errors.increment();
+				else
+				{
+					long micros = TimeUnit.NANOSECONDS.toMicros(now - intended);
+					histogram.record(micros, TimeUnit.MICROSECONDS);
+					maxMicros.accumulate(micros);
+				}
+
+				lastCompletedNanos = now;
+			});
+		}
+	}
+
+	private void awaitOutstanding(long timeoutNanos)
+	{
+		long deadline = System.nanoTime() + timeoutNanos;
+		while (inFlight.get() > 0 && System.nanoTime() < deadline)
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+	}
+
+	private String toJson(long sent, long elapsedNanos)
+	{
+		long completed = histogram.getCount();
+		double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+		StringBuilder json = new StringBuilder(512).append('{');
+		field(json, "transport", '"' + transport.name() + '"').append(',');
+		field(json, "targetRate", format(rate)).append(',');
+		field(json, "durationSeconds", format(durationNanos / (double) TimeUnit.SECONDS.toNanos(1))).append(',');
+		field(json, "requests", String.valueOf(sent)).append(',');
+		field(json, "completed", String.valueOf(completed)).append(',');
+		field(json, "errors", String.valueOf(errors.sum())).append(',');
+		field(json, "rejected", String.valueOf(rejected.sum())).append(',');
+		field(json, "outstanding", String.valueOf(Math.max(0, sent - completed - errors.sum() - rejected.sum())))
+				.append(',');
+		field(json, "throughput", format(completed / elapsedSeconds)).append(',');
+
+		json.append("\"latencyMillis\":{");
+		field(json, "mean", format(completed == 0 ? 0 : histogram.getSumSeconds() * 1000 / completed)).append(',');
+		field(json, "p50", millis(histogram.getValueAtQuantile(0.5))).append(',');
+		field(json, "p90", millis(histogram.getValueAtQuantile(0.9))).append(',');
+		field(json, "p99", millis(histogram.getValueAtQuantile(0.99))).append(',');
+		field(json, "p999", millis(histogram.getValueAtQuantile(0.999))).append(',');
+		field(json, "max", millis(maxMicros.get()));
+		json.append("},");
+
+		json.append("\"server\":{");
+		boolean first = true;
+		for (String key : new TreeSet<>(serverProperties.stringPropertyNames()))
+		{
+			if (!first)
+				json.append(',');
+
+			field(json, key, '"' + escape(serverProperties.getProperty(key)) + '"');
+			first = false;
+		}
+
+		return json.append("}}").toString();
+	}
+
+	private static StringBuilder field(StringBuilder json, String name, String value)
+	{
+		return json.append('"').append(escape(name)).append("\":").append(value);
+	}
+
+	private static String millis(long micros)
+	{
+		return format(micros / 1000d);
+	}
+
+	private static String format(double value)
+	{
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	private static String escape(String value)
+	{
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				escaped.append('\\').append(c);
+			else if (c < 0x20)
+				escaped.append(String.format("\\u%04x", (int) c));
+			else
+				escaped.append(c);
+		}
+
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,110 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.rwh.utils.jetty.LoggingFilter;
+
+/**
+ * {@link LoggingFilter} overhead compared to calling the filter chain directly, with debug logging on and off, for
+ * different request and response body sizes. Log output is discarded by the benchmark's log4j configuration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingFilterBenchmark
+{
+	@Param({ "false", "true" })
+	public boolean debug;
+
+	@Param({ "0", "1024", "65536" })
+	public int bodySize;
+
+	@Param({ "true", "false" })
+	public boolean async;
+
+	private byte[] body;
+	private LoggingFilter filter;
+
+	@Setup
+	public void setup() throws ServletException
+	{
+		Configurator.setLevel(LoggingFilter.class.getName(), debug ? Level.DEBUG : Level.INFO);
+
+		body = new byte[bodySize];
+		ThreadLocalRandom.current().nextBytes(body);
+
+		Properties initParameters = new Properties();
+		initParameters.setProperty(LoggingFilter.INIT_PARAMETER_ASYNC, String.valueOf(async));
+
+		filter = new LoggingFilter();
+		filter.init(ServletStubs.filterConfig(initParameters));
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		filter.destroy();
+	}
+
+	private static FilterChain echo(Blackhole blackhole)
+	{
+		return (request, response) ->
+		{
+			byte[] buffer = new byte[8192];
+			InputStream in = request.getInputStream();
+			OutputStream out = response.getOutputStream();
+
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				out.write(buffer, 0, read);
+
+			blackhole.consume(buffer);
+		};
+	}
+
+	@Benchmark
+	public void baseline(Blackhole blackhole) throws Exception
+	{
+		HttpServletRequest request = ServletStubs.request(body);
+		HttpServletResponse response = ServletStubs.response(OutputStream.nullOutputStream());
+
+		echo(blackhole).doFilter(request, response);
+	}
+
+	@Benchmark
+	public void loggingFilter(Blackhole blackhole) throws Exception
+	{
+		HttpServletRequest request = ServletStubs.request(body);
+		HttpServletResponse response = ServletStubs.response(OutputStream.nullOutputStream());
+
+		filter.doFilter(request, response, echo(blackhole));
+	}
+}
@@ -0,0 +1,219 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterConfig;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Minimal servlet API stubs for benchmarking filters outside of a server. Methods not needed by the benchmarked
+ * filters return <code>null</code>, <code>false</code> or <code>0</code>.
+ */
+final class ServletStubs
+{
+	private static final List<String> HEADER_NAMES = Arrays.asList("Host", "Accept", "Content-Type", "User-Agent");
+
+	private ServletStubs()
+	{
+	}
+
+	static FilterConfig filterConfig(Properties initParameters)
+	{
+		return (FilterConfig) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+				new Class<?>[] { FilterConfig.class }, (proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "getInitParameter":
+							return initParameters.getProperty((String) args[0]);
+						case "getInitParameterNames":
+							return Collections.enumeration(initParameters.stringPropertyNames());
+						case "getFilterName":
+							return "benchmark";
+						default:
+							return defaultValue(method.getReturnType());
+					}
+				});
+	}
+
+	static HttpServletRequest request(byte[] body)
+	{
+		Map<String, Object> attributes = new HashMap<>();
+		ServletInputStream in = inputStream(body);
+
+		return (HttpServletRequest) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "getRequestURI":
+							return "/benchmark";
+						case "getContextPath":
+							return "";
+						case "getMethod":
+							return "POST";
+						case "getInputStream":
+							return in;
+						case "getContentLength":
+							return body.length;
+						case "getParameterMap":
+							return Collections.emptyMap();
+						case "getHeaderNames":
+							return Collections.enumeration(HEADER_NAMES);
+						case "getHeaders":
+							return Collections.enumeration(Collections.singletonList(header((String) args[0])));
+						case "getHeader":
+							return header((String) args[0]);
+						case "getAttribute":
+							return attributes.get(args[0]);
+						case "setAttribute":
+							attributes.put((String) args[0], args[1]);
+							return null;
+						case "removeAttribute":
+							attributes.remove(args[0]);
+							return null;
+						case "getDispatcherType":
+							return DispatcherType.REQUEST;
+						case "getServletContext":
+							return (ServletContext) null;
+						default:
+							return defaultValue(method.getReturnType());
+					}
+				});
+	}
+
+	private static String header(String name)
+	{
+		switch (name)
+		{
+			case "Host":
+				return "localhost";
+			case "Accept":
+				return "*/*";
+			case "Content-Type":
+				return "application/octet-stream";
+			case "User-Agent":
+				return "benchmark";
+			default:
+				return null;
+		}
+	}
+
+	static HttpServletResponse response(OutputStream sink)
+	{
+		ServletOutputStream out = outputStream(sink);
+
+		return (HttpServletResponse) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+				new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "getOutputStream":
+							return out;
+						case "getStatus":
+							return HttpServletResponse.SC_OK;
+						case "getHeaderNames":
+						case "getHeaders":
+							return Collections.emptyList();
+						default:
+							return defaultValue(method.getReturnType());
+					}
+				});
+	}
+
+	private static ServletInputStream inputStream(byte[] body)
+	{
+		ByteArrayInputStream in = new ByteArrayInputStream(body);
+
+		return new ServletInputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				return in.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				return in.read(b, off, len);
+			}
+
+			@Override
+			public boolean isFinished()
+			{
+				return in.available() == 0;
+			}
+
+			@Override
+			public boolean isReady()
+			{
+				return true;
+			}
+
+			@Override
+			public void setReadListener(ReadListener readListener)
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static ServletOutputStream outputStream(OutputStream sink)
+	{
+		return new ServletOutputStream()
+		{
+			@Override
+			public void write(int b) throws IOException
+			{
+				sink.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException
+			{
+				sink.write(b, off, len);
+			}
+
+			@Override
+			public boolean isReady()
+			{
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener)
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static Object defaultValue(Class<?> type)
+	{
+		if (type == boolean.class)
+			return false;
+		else if (type == int.class)
+			return 0;
+		else if (type == long.class)
+			return 0L;
+		else
+			return null;
+	}
+}
@@ -0,0 +1,136 @@
+package de.rwh.utils.jetty.benchmarks;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+
+import javax.net.ssl.SSLContext;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequest;
+
+import de.rwh.utils.crypto.CertificateAuthority;
+import de.rwh.utils.crypto.CertificateAuthority.CertificateAuthorityBuilder;
+import de.rwh.utils.crypto.CertificateHelper;
+import de.rwh.utils.crypto.CertificationRequestBuilder;
+import de.rwh.utils.crypto.context.SSLContextFactory;
+
+/**
+ * Generated test CA with a server certificate for <code>localhost</code> and a client certificate, all key stores use
+ * the same password.
+ */
+public final class TestCertificates
+{
+	private static final int KEY_SIZE = 2048;
+
+	private final char[] password;
+	private final KeyStore trustStore;
+	private final KeyStore serverKeyStore;
+	private final KeyStore clientKeyStore;
+	private final X509Certificate clientCertificate;
+
+	private TestCertificates(char[] password, KeyStore trustStore, KeyStore serverKeyStore, KeyStore clientKeyStore,
+			X509Certificate clientCertificate)
+	{
+		this.password = password;
+		this.trustStore = trustStore;
+		this.serverKeyStore = serverKeyStore;
+		this.clientKeyStore = clientKeyStore;
+		this.clientCertificate = clientCertificate;
+	}
+
+	public static TestCertificates create() throws Exception
+	{
+		CertificateAuthority.registerBouncyCastleProvider();
+
+		CertificateAuthority ca = CertificateAuthorityBuilder
+				.create("DE", null, "Heilbronn", "jetty-utils", "benchmarks", "Test CA").initialize();
+
+		char[] password = "password".toCharArray();
+
+		KeyPair serverKeyPair = CertificateHelper.createKeyPair(CertificateHelper.DEFAULT_KEY_ALGORITHM, KEY_SIZE);
+		X500Name serverSubject = CertificationRequestBuilder.createSubject("DE", null, "Heilbronn", "jetty-utils",
+				"benchmarks", "localhost");
+		JcaPKCS10CertificationRequest serverRequest = CertificationRequestBuilder
+				.createServerCertificationRequest(serverSubject, serverKeyPair, null, "localhost");
+		X509Certificate serverCertificate = ca.signWebServerCertificate(serverRequest);
+
+		KeyPair clientKeyPair = CertificateHelper.createKeyPair(CertificateHelper.DEFAULT_KEY_ALGORITHM, KEY_SIZE);
+		X500Name clientSubject = CertificationRequestBuilder.createSubject("DE", null, "Heilbronn", "jetty-utils",
+				"benchmarks", "client");
+		JcaPKCS10CertificationRequest clientRequest = CertificationRequestBuilder
+				.createClientCertificationRequest(clientSubject, clientKeyPair);
+		X509Certificate clientCertificate = ca.signWebClientCertificate(clientRequest);
+
+		KeyStore trustStore = CertificateHelper.toCertificateStore("ca", ca.getCertificate());
+		KeyStore serverKeyStore = CertificateHelper.toPkcs12KeyStore(serverKeyPair.getPrivate(),
+				new Certificate[] { serverCertificate, ca.getCertificate() }, "server", password);
+		KeyStore clientKeyStore = CertificateHelper.toPkcs12KeyStore(clientKeyPair.getPrivate(),
+				new Certificate[] { clientCertificate, ca.getCertificate() }, "client", password);
+
+		return new TestCertificates(password, trustStore, serverKeyStore, clientKeyStore, clientCertificate);
+	}
+
+	public char[] getPassword()
+	{
+		return password.clone();
+	}
+
+	public KeyStore getTrustStore()
+	{
+		return trustStore;
+	}
+
+	public KeyStore getServerKeyStore()
+	{
+		return serverKeyStore;
+	}
+
+	public KeyStore getClientKeyStore()
+	{
+		return clientKeyStore;
+	}
+
+	public X509Certificate getClientCertificate()
+	{
+		return clientCertificate;
+	}
+
+	/**
+	 * @param withClientCertificate
+	 *            <code>true</code> to authenticate with the client certificate
+	 * @return client context trusting the test CA
+	 */
+	public SSLContext newClientSslContext(boolean withClientCertificate) throws Exception
+	{
+		return withClientCertificate ? new SSLContextFactory().createSSLContext(trustStore, clientKeyStore, password)
+				: new SSLContextFactory().createSSLContext(trustStore);
+	}
+
+	public static String toPem(X509Certificate certificate) throws Exception
+	{
+		return "-----BEGIN CERTIFICATE-----\n"
+				+ Base64.getMimeEncoder(64, new byte[] { '\n' }).encodeToString(certificate.getEncoded())
+				+ "\n-----END CERTIFICATE-----\n";
+	}
+
+	/**
+	 * @return PEM with line breaks replaced by spaces, as forwarded by Apache httpd
+	 */
+	public static String toSpaceSeparatedHeader(X509Certificate certificate) throws Exception
+	{
+		return toPem(certificate).trim().replace('\n', ' ');
+	}
+
+	/**
+	 * @return URL encoded PEM, as forwarded by nginx (<code>$ssl_client_escaped_cert</code>)
+	 */
+	public static String toUrlEncodedHeader(X509Certificate certificate) throws Exception
+	{
+		return URLEncoder.encode(toPem(certificate), StandardCharsets.UTF_8).replace("+", "%20");
+	}
+}
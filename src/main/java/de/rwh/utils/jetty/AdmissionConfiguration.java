@@ -0,0 +1,171 @@
+package de.rwh.utils.jetty;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admission control settings: concurrent request limits per context and per route (path prefix within the context),
+ * bounded wait queue, <code>Retry-After</code> value for rejected requests and optional low resources monitoring.
+ */
+public class AdmissionConfiguration
+{
+	public static final int DEFAULT_MAX_QUEUED_REQUESTS = 100;
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 1000;
+	public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+	public static final int DEFAULT_LOW_RESOURCES_PERIOD_MILLIS = 1000;
+
+	private final int maxConcurrentRequests;
+	private final Map<String, Integer> routeLimits;
+	private final int maxQueuedRequests;
+	private final long maxWaitMillis;
+	private final int retryAfterSeconds;
+
+	private final int lowResourcesIdleTimeoutMillis;
+	private final int lowResourcesMaxTimeMillis;
+	private final int lowResourcesPeriodMillis;
+	private final long lowResourcesMaxMemory;
+
+	/**
+	 * Limits concurrent requests to the context, without low resources monitoring.
+	 *
+	 * @param maxConcurrentRequests
+	 *            &gt; 0
+	 */
+	public AdmissionConfiguration(int maxConcurrentRequests)
+	{
+		this(maxConcurrentRequests, null, DEFAULT_MAX_QUEUED_REQUESTS, DEFAULT_MAX_WAIT_MILLIS,
+				DEFAULT_RETRY_AFTER_SECONDS, -1, 0, DEFAULT_LOW_RESOURCES_PERIOD_MILLIS, 0);
+	}
+
+	/**
+	 * @param maxConcurrentRequests
+	 *            maximum number of requests handled concurrently by the context, &lt;= 0 for no limit
+	 * @param routeLimits
+	 *            may be <code>null</code>, maximum number of concurrent requests by path prefix within the context,
+	 *            the longest prefix matching on a path segment boundary applies in addition to the context limit
+	 * @param maxQueuedRequests
+	 *            maximum number of requests waiting per context or route, 0 to reject requests immediately if the limit
+	 *            is reached
+	 * @param maxWaitMillis
+	 *            maximum time a request waits for admission before it is rejected
+	 * @param retryAfterSeconds
+	 *            value of the <code>Retry-After</code> header of rejected requests, &lt; 0 for no header
+	 * @param lowResourcesIdleTimeoutMillis
+	 *            connection idle timeout while low on resources, &lt; 0 to disable low resources monitoring
+	 * @param lowResourcesMaxTimeMillis
+	 *            time after which connections are closed while low on resources, 0 for no limit
+	 * @param lowResourcesPeriodMillis
+	 *            low resources monitoring period
+	 * @param lowResourcesMaxMemory
+	 *            used memory in bytes considered low on resources, 0 to only monitor the thread pool
+	 */
+	public AdmissionConfiguration(int maxConcurrentRequests, Map<String, Integer> routeLimits, int maxQueuedRequests,
+			long maxWaitMillis, int retryAfterSeconds, int lowResourcesIdleTimeoutMillis, int lowResourcesMaxTimeMillis,
+			int lowResourcesPeriodMillis, long lowResourcesMaxMemory)
+	{
+		if (maxQueuedRequests < 0)
+			throw new IllegalArgumentException("maxQueuedRequests < 0");
+		if (maxWaitMillis < 0)
+			throw new IllegalArgumentException("maxWaitMillis < 0");
+		if (lowResourcesPeriodMillis <= 0)
+			throw new IllegalArgumentException("lowResourcesPeriodMillis <= 0");
+
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.routeLimits = routeLimits == null ? Collections.emptyMap()
+				: Collections.unmodifiableMap(new LinkedHashMap<>(routeLimits));
+		this.maxQueuedRequests = maxQueuedRequests;
+		this.maxWaitMillis = maxWaitMillis;
+		this.retryAfterSeconds = retryAfterSeconds;
+		this.lowResourcesIdleTimeoutMillis = lowResourcesIdleTimeoutMillis;
+		this.lowResourcesMaxTimeMillis = lowResourcesMaxTimeMillis;
+		this.lowResourcesPeriodMillis = lowResourcesPeriodMillis;
+		this.lowResourcesMaxMemory = lowResourcesMaxMemory;
+	}
+
+	/**
+	 * @param routes
+	 *            comma separated <code>prefix=limit</code> pairs, may be <code>null</code>
+	 * @return route limits by path prefix, in configured order
+	 * @throws IllegalArgumentException
+	 *             if a pair is not in <code>prefix=limit</code> format
+	 */
+	public static Map<String, Integer> parseRouteLimits(String routes)
+	{
+		Map<String, Integer> limits = new LinkedHashMap<>();
+		if (routes == null || routes.isBlank())
+			return limits;
+
+		for (String route : routes.split(","))
+		{
+			if (route.isBlank())
+				continue;
+
+			int separator = route.lastIndexOf('=');
+			if (separator <= 0)
+				throw new IllegalArgumentException("Route limit '" + route.trim() + "' not in prefix=limit format");
+
+			try
+			{
+				limits.put(route.substring(0, separator).trim(),
+						Integer.valueOf(route.substring(separator + 1).trim()));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Route limit '" + route.trim() + "' not a number", e);
+			}
+		}
+
+		return limits;
+	}
+
+	public int getMaxConcurrentRequests()
+	{
+		return maxConcurrentRequests;
+	}
+
+	public Map<String, Integer> getRouteLimits()
+	{
+		return routeLimits;
+	}
+
+	public int getMaxQueuedRequests()
+	{
+		return maxQueuedRequests;
+	}
+
+	public long getMaxWaitMillis()
+	{
+		return maxWaitMillis;
+	}
+
+	public int getRetryAfterSeconds()
+	{
+		return retryAfterSeconds;
+	}
+
+	public boolean hasLowResourceMonitor()
+	{
+		return lowResourcesIdleTimeoutMillis >= 0;
+	}
+
+	public int getLowResourcesIdleTimeoutMillis()
+	{
+		return lowResourcesIdleTimeoutMillis;
+	}
+
+	public int getLowResourcesMaxTimeMillis()
+	{
+		return lowResourcesMaxTimeMillis;
+	}
+
+	public int getLowResourcesPeriodMillis()
+	{
+		return lowResourcesPeriodMillis;
+	}
+
+	public long getLowResourcesMaxMemory()
+	{
+		return lowResourcesMaxMemory;
+	}
+}
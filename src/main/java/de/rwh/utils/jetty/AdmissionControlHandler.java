@@ -0,0 +1,512 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of requests handled concurrently by the wrapped context and by routes (path prefixes within the
+ * context). Requests exceeding a limit wait in a bounded queue without occupying a thread, requests that can not be
+ * queued or are not admitted within the maximum wait time are rejected with status 503 and a <code>Retry-After</code>
+ * header, the response body is rendered by the server's error handler. Error dispatches are not limited.
+ * <p>
+ * Route prefixes match on path segment boundaries, i.e. <code>/api</code> matches <code>/api</code> and
+ * <code>/api/x</code> but not <code>/apix</code>. The route permit is acquired before the context permit, requests
+ * waiting for a congested route do not hold a context permit and do not block requests to other routes.
+ */
+@ManagedObject("Admission control")
+public class AdmissionControlHandler extends HandlerWrapper
+{
+	private static final Logger logger = LoggerFactory.getLogger(AdmissionControlHandler.class);
+
+	public static final String LIMITER_CONTEXT = "context";
+
+	private static final String ATTRIBUTE_ADMISSION = AdmissionControlHandler.class.getName() + ".admission";
+
+	/**
+	 * Concurrency limit with a bounded wait queue, permits of completed requests are handed to waiting requests in
+	 * arrival order.
+	 */
+	public static final class Limiter
+	{
+		private final String name;
+		private final int maxConcurrent;
+		private final int maxQueued;
+		private final long maxWaitMillis;
+
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger queued = new AtomicInteger();
+		private final Queue<Waiter> waiting = new ConcurrentLinkedQueue<>();
+
+		private final LongAdder admitted = new LongAdder();
+		private final LongAdder queuedTotal = new LongAdder();
+		private final LongAdder rejected = new LongAdder();
+		private final LongAdder timedOut = new LongAdder();
+
+		private Limiter(String name, int maxConcurrent, int maxQueued, long maxWaitMillis)
+		{
+			this.name = name;
+			this.maxConcurrent = maxConcurrent;
+			this.maxQueued = maxQueued;
+			this.maxWaitMillis = maxWaitMillis;
+		}
+
+		private boolean tryAcquire()
+		{
+			for (int current = active.get(); current < maxConcurrent; current = active.get())
+			{
+				if (active.compareAndSet(current, current + 1))
+					return true;
+			}
+
+			return false;
+		}
+
+		private boolean tryReserveQueueSlot()
+		{
+			if (maxQueued <= 0 || maxWaitMillis <= 0)
+				return false;
+
+			if (queued.incrementAndGet() > maxQueued)
+			{
+				queued.decrementAndGet();
+				return false;
+			}
+
+			return true;
+		}
+
+		private void enqueue(Waiter waiter)
+		{
+			waiting.add(waiter);
+			queuedTotal.increment();
+
+			// a permit may have been released between the failed acquire and adding the waiter
+			dispatchWaiting();
+		}
+
+		private void remove(Waiter waiter)
+		{
+			if (waiting.remove(waiter))
+				queued.decrementAndGet();
+		}
+
+		private void release()
+		{
+			active.decrementAndGet();
+			dispatchWaiting();
+		}
+
+		private void dispatchWaiting()
+		{
+			while (!waiting.isEmpty() && tryAcquire())
+			{
+				boolean handedOver = false;
+				Waiter waiter;
+				while (!handedOver && (waiter = waiting.poll()) != null)
+				{
+					queued.decrementAndGet();
+					handedOver = waiter.resume();
+				}
+
+				if (!handedOver)
+					active.decrementAndGet();
+			}
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public int getMaxConcurrent()
+		{
+			return maxConcurrent;
+		}
+
+		public int getActive()
+		{
+			return active.get();
+		}
+
+		public int getQueued()
+		{
+			return queued.get();
+		}
+
+		public long getAdmitted()
+		{
+			return admitted.sum();
+		}
+
+		public long getQueuedTotal()
+		{
+			return queuedTotal.sum();
+		}
+
+		public long getRejected()
+		{
+			return rejected.sum();
+		}
+
+		public long getTimedOut()
+		{
+			return timedOut.sum();
+		}
+	}
+
+	/**
+	 * Per request admission state, releases acquired permits once the request completes.
+	 */
+	private static final class Admission extends CompletionListener
+	{
+		private final List<Limiter> limiters;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private volatile int acquired;
+		private volatile boolean admitted;
+		private boolean listening;
+
+		Admission(List<Limiter> limiters)
+		{
+			this.limiters = limiters;
+		}
+
+		void release()
+		{
+			if (released.compareAndSet(false, true))
+			{
+				for (int i = acquired - 1; i >= 0; i--)
+					limiters.get(i).release();
+			}
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException
+		{
+			release();
+		}
+	}
+
+	/**
+	 * Request waiting for a permit of a {@link Limiter}, either resumed with a permit or timed out.
+	 */
+	private final class Waiter implements AsyncListener
+	{
+		private final Limiter limiter;
+		private final Admission admission;
+		private final AsyncContext asyncContext;
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		Waiter(Limiter limiter, Admission admission, AsyncContext asyncContext)
+		{
+			this.limiter = limiter;
+			this.admission = admission;
+			this.asyncContext = asyncContext;
+		}
+
+		/**
+		 * @return <code>false</code> if the request already timed out, the permit was not taken
+		 */
+		boolean resume()
+		{
+			if (!done.compareAndSet(false, true))
+				return false;
+
+			limiter.admitted.increment();
+			admission.acquired++;
+			asyncContext.dispatch();
+			return true;
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException
+		{
+			if (!done.compareAndSet(false, true))
+				return;
+
+			limiter.remove(this);
+			limiter.timedOut.increment();
+			admission.release();
+
+			reject((HttpServletResponse) event.getSuppliedResponse());
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) throws IOException
+		{
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException
+		{
+		}
+
+		@Override
+		public void onError(AsyncEvent event) throws IOException
+		{
+			if (done.compareAndSet(false, true))
+			{
+				limiter.remove(this);
+				admission.release();
+			}
+		}
+	}
+
+	private final AdmissionConfiguration configuration;
+	private final Limiter contextLimiter;
+	private final String[] routePrefixes;
+	private final Limiter[] routeLimiters;
+
+	private String contextPath = "/";
+
+	/**
+	 * @param configuration
+	 *            not <code>null</code>
+	 */
+	public AdmissionControlHandler(AdmissionConfiguration configuration)
+	{
+		this.configuration = Objects.requireNonNull(configuration, "configuration");
+
+		contextLimiter = configuration.getMaxConcurrentRequests() > 0 ? newLimiter(LIMITER_CONTEXT,
+				configuration.getMaxConcurrentRequests()) : null;
+
+		Map<String, Integer> routes = configuration.getRouteLimits();
+		routePrefixes = routes.keySet().stream().filter(prefix -> routes.get(prefix) > 0)
+				.sorted(Comparator.comparingInt(String::length).reversed()).toArray(String[]::new);
+		routeLimiters = new Limiter[routePrefixes.length];
+		for (int i = 0; i < routePrefixes.length; i++)
+			routeLimiters[i] = newLimiter(routePrefixes[i], routes.get(routePrefixes[i]));
+	}
+
+	private Limiter newLimiter(String name, int maxConcurrent)
+	{
+		return new Limiter(name, maxConcurrent, configuration.getMaxQueuedRequests(),
+				configuration.getMaxWaitMillis());
+	}
+
+	/**
+	 * @return context path of the wrapped context, <code>/</code> before the handler is started
+	 */
+	public String getContextPath()
+	{
+		return contextPath;
+	}
+
+	public AdmissionConfiguration getConfiguration()
+	{
+		return configuration;
+	}
+
+	/**
+	 * @return context limiter followed by route limiters, the context limiter is only included if the context's
+	 *         concurrent requests are limited
+	 */
+	public List<Limiter> getLimiters()
+	{
+		List<Limiter> limiters = new ArrayList<>(routeLimiters.length + 1);
+		if (contextLimiter != null)
+			limiters.add(contextLimiter);
+		limiters.addAll(Arrays.asList(routeLimiters));
+
+		return limiters;
+	}
+
+	@ManagedAttribute("Number of requests currently handled by the context")
+	public int getActive()
+	{
+		return contextLimiter == null ? -1 : contextLimiter.getActive();
+	}
+
+	@ManagedAttribute("Number of requests currently waiting for admission")
+	public int getQueued()
+	{
+		return getLimiters().stream().mapToInt(Limiter::getQueued).sum();
+	}
+
+	@ManagedAttribute("Number of requests rejected because the wait queue was full")
+	public long getRejected()
+	{
+		return getLimiters().stream().mapToLong(Limiter::getRejected).sum();
+	}
+
+	@ManagedAttribute("Number of requests rejected after waiting for the maximum wait time")
+	public long getTimedOut()
+	{
+		return getLimiters().stream().mapToLong(Limiter::getTimedOut).sum();
+	}
+
+	@Override
+	protected void doStart() throws Exception
+	{
+		ContextHandler contextHandler = getChildHandlerByClass(ContextHandler.class);
+		contextPath = contextHandler == null ? "/" : contextHandler.getContextPath();
+
+		logger.info("Admission control for context {}: max concurrent requests {}, route limits {}, max queued {}",
+				contextPath, configuration.getMaxConcurrentRequests(), configuration.getRouteLimits(),
+				configuration.getMaxQueuedRequests());
+
+		super.doStart();
+	}
+
+	@Override
+	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+			throws IOException, ServletException
+	{
+		if (DispatcherType.ERROR.equals(baseRequest.getDispatcherType()))
+		{
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+
+		Admission admission = (Admission) request.getAttribute(ATTRIBUTE_ADMISSION);
+		if (admission == null)
+		{
+			if (!baseRequest.getHttpChannelState().isInitial())
+			{
+				super.handle(target, baseRequest, request, response);
+				return;
+			}
+
+			admission = new Admission(limiters(target));
+			request.setAttribute(ATTRIBUTE_ADMISSION, admission);
+		}
+
+		if (!admission.admitted && !admit(admission, baseRequest, request, response))
+			return;
+
+		boolean thrown = true;
+		try
+		{
+			super.handle(target, baseRequest, request, response);
+			thrown = false;
+		}
+		finally
+		{
+			if (!thrown && request.isAsyncStarted())
+			{
+				if (!admission.listening)
+				{
+					baseRequest.getHttpChannelState().addListener(admission);
+					admission.listening = true;
+				}
+			}
+			else
+				admission.release();
+		}
+	}
+
+	/**
+	 * @return limiters in acquisition order, route limiter first
+	 */
+	List<Limiter> limiters(String target)
+	{
+		Limiter routeLimiter = routeLimiter(target);
+
+		if (contextLimiter == null)
+			return routeLimiter == null ? Collections.emptyList() : Collections.singletonList(routeLimiter);
+		else
+			return routeLimiter == null ? Collections.singletonList(contextLimiter)
+					: List.of(routeLimiter, contextLimiter);
+	}
+
+	private Limiter routeLimiter(String target)
+	{
+		if (routeLimiters.length == 0 || target == null)
+			return null;
+
+		String pathInContext = "/".equals(contextPath) || !target.startsWith(contextPath) ? target
+				: target.substring(contextPath.length());
+
+		// prefixes sorted by length, longest match first
+		for (int i = 0; i < routePrefixes.length; i++)
+		{
+			if (PathPrefixes.matches(pathInContext, routePrefixes[i]))
+				return routeLimiters[i];
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return <code>true</code> if all permits were acquired, <code>false</code> if the request was queued or rejected
+	 */
+	private boolean admit(Admission admission, Request baseRequest, HttpServletRequest request,
+			HttpServletResponse response) throws IOException
+	{
+		while (admission.acquired < admission.limiters.size())
+		{
+			Limiter limiter = admission.limiters.get(admission.acquired);
+
+			if (limiter.tryAcquire())
+			{
+				limiter.admitted.increment();
+				admission.acquired++;
+				continue;
+			}
+
+			if (!limiter.tryReserveQueueSlot())
+			{
+				limiter.rejected.increment();
+				admission.release();
+
+				logger.debug("Request {} rejected by limiter {}, {} active, {} queued", baseRequest.getRequestURI(),
+						limiter.getName(), limiter.getActive(), limiter.getQueued());
+
+				reject(response);
+				baseRequest.setHandled(true);
+				return false;
+			}
+
+			AsyncContext asyncContext = request.startAsync();
+			asyncContext.setTimeout(limiter.maxWaitMillis);
+
+			Waiter waiter = new Waiter(limiter, admission, asyncContext);
+			asyncContext.addListener(waiter);
+			limiter.enqueue(waiter);
+
+			return false;
+		}
+
+		admission.admitted = true;
+		return true;
+	}
+
+	private void reject(HttpServletResponse response) throws IOException
+	{
+		if (response.isCommitted())
+			return;
+
+		if (configuration.getRetryAfterSeconds() >= 0)
+			response.setHeader(HttpHeader.RETRY_AFTER.asString(), String.valueOf(configuration.getRetryAfterSeconds()));
+
+		response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+	}
+}
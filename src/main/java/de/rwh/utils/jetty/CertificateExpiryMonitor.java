@@ -0,0 +1,349 @@
+package de.rwh.utils.jetty;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.rwh.utils.crypto.CertificateChecker;
+
+/**
+ * Tracks server and trust certificates of all TLS connectors of a server and logs warnings to the
+ * {@link CertificateChecker#CERTIFICATE_WARNING_LOGGER_NAME certificate-warning-logger} once a certificate's remaining
+ * validity drops below one of the configured thresholds. All certificates are checked by a single daemon scheduler
+ * thread, started and stopped with the server.
+ * <p>
+ * Certificates are registered per source, e.g. a connector, registering a source again replaces its certificates.
+ */
+@ManagedObject("Certificate expiry monitor")
+public class CertificateExpiryMonitor extends ContainerLifeCycle
+{
+	private static final Logger logger = LoggerFactory.getLogger(CertificateExpiryMonitor.class);
+	private static final Logger warningLogger = LoggerFactory
+			.getLogger(CertificateChecker.CERTIFICATE_WARNING_LOGGER_NAME);
+
+	public static final List<Integer> DEFAULT_WARNING_DAYS = Collections.unmodifiableList(Arrays.asList(30, 7, 1));
+	public static final long DEFAULT_CHECK_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+	private static final double MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+	public enum Type
+	{
+		SERVER, TRUST
+	}
+
+	public static final class MonitoredCertificate
+	{
+		private final String source;
+		private final Type type;
+		private final String alias;
+		private final X509Certificate certificate;
+
+		private int warnedThresholds;
+
+		private MonitoredCertificate(String source, Type type, String alias, X509Certificate certificate)
+		{
+			this.source = source;
+			this.type = type;
+			this.alias = alias;
+			this.certificate = certificate;
+		}
+
+		public String getSource()
+		{
+			return source;
+		}
+
+		public Type getType()
+		{
+			return type;
+		}
+
+		public String getAlias()
+		{
+			return alias;
+		}
+
+		public X509Certificate getCertificate()
+		{
+			return certificate;
+		}
+
+		public String getSubject()
+		{
+			return certificate.getSubjectX500Principal().getName();
+		}
+
+		public String getSerialNumber()
+		{
+			return certificate.getSerialNumber().toString(16);
+		}
+
+		/**
+		 * @return remaining validity in days, negative if expired
+		 */
+		public double getDaysToExpiry()
+		{
+			return (certificate.getNotAfter().getTime() - System.currentTimeMillis()) / MILLIS_PER_DAY;
+		}
+
+		@Override
+		public String toString()
+		{
+			return source + " " + type + " '" + getSubject() + "' (serial " + getSerialNumber() + ", not after "
+					+ certificate.getNotAfter() + ")";
+		}
+	}
+
+	private final int[] warningDays;
+	private final long checkIntervalMillis;
+	private final Scheduler scheduler;
+	private final Map<String, List<MonitoredCertificate>> certificatesBySource = new ConcurrentHashMap<>();
+
+	private volatile Scheduler.Task task;
+
+	public CertificateExpiryMonitor()
+	{
+		this(DEFAULT_WARNING_DAYS, DEFAULT_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param warningDays
+	 *            not <code>null</code>, thresholds in days, a warning is logged once per certificate and threshold
+	 * @param checkInterval
+	 *            &gt; 0
+	 * @param unit
+	 *            not <code>null</code>
+	 */
+	public CertificateExpiryMonitor(List<Integer> warningDays, long checkInterval, TimeUnit unit)
+	{
+		if (checkInterval <= 0)
+			throw new IllegalArgumentException("checkInterval <= 0");
+
+		// descending, i.e. thresholds are crossed in index order
+		this.warningDays = Objects.requireNonNull(warningDays, "warningDays").stream().mapToInt(Integer::intValue)
+				.map(d -> -d).sorted().map(d -> -d).distinct().toArray();
+		this.checkIntervalMillis = unit.toMillis(checkInterval);
+
+		scheduler = new ScheduledExecutorScheduler("certificate-expiry-monitor", true);
+		addBean(scheduler);
+	}
+
+	@Override
+	protected void doStart() throws Exception
+	{
+		super.doStart();
+
+		scheduledCheck();
+	}
+
+	@Override
+	protected void doStop() throws Exception
+	{
+		Scheduler.Task t = task;
+		if (t != null)
+			t.cancel();
+
+		super.doStop();
+	}
+
+	/**
+	 * Registers key entry certificates from the key store and all certificates from the trust store, replacing
+	 * certificates previously registered for the same source. Server certificates are checked against the trust store,
+	 * untrusted certificates are logged as errors.
+	 *
+	 * @param source
+	 *            not <code>null</code>, e.g. connector host and port
+	 * @param trustStore
+	 *            may be <code>null</code>
+	 * @param keyStore
+	 *            may be <code>null</code>
+	 */
+	public void register(String source, KeyStore trustStore, KeyStore keyStore)
+	{
+		Objects.requireNonNull(source, "source");
+
+		List<MonitoredCertificate> certificates = new ArrayList<>();
+		try
+		{
+			if (keyStore != null)
+			{
+				for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements();)
+				{
+					String alias = aliases.nextElement();
+					Certificate certificate = keyStore.getCertificate(alias);
+					if (keyStore.isKeyEntry(alias) && certificate instanceof X509Certificate)
+					{
+						certificates.add(
+								new MonitoredCertificate(source, Type.SERVER, alias, (X509Certificate) certificate));
+
+						if (trustStore != null)
+							checkTrusted(trustStore, keyStore, alias, (X509Certificate) certificate);
+					}
+				}
+			}
+
+			if (trustStore != null)
+			{
+				for (Enumeration<String> aliases = trustStore.aliases(); aliases.hasMoreElements();)
+				{
+					String alias = aliases.nextElement();
+					Certificate certificate = trustStore.getCertificate(alias);
+					if (certificate instanceof X509Certificate)
+						certificates.add(
+								new MonitoredCertificate(source, Type.TRUST, alias, (X509Certificate) certificate));
+				}
+			}
+		}
+		catch (KeyStoreException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		certificatesBySource.put(source, Collections.unmodifiableList(certificates));
+		logger.debug("Monitoring certificates {}", certificates);
+
+		if (isStarted())
+			certificates.forEach(this::check);
+	}
+
+	private void checkTrusted(KeyStore trustStore, KeyStore keyStore, String alias, X509Certificate certificate)
+	{
+		try
+		{
+			TrustManagerFactory trustManagerFactory = TrustManagerFactory
+					.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			trustManagerFactory.init(trustStore);
+
+			Certificate[] chain = keyStore.getCertificateChain(alias);
+			X509Certificate[] x509Chain = chain == null ? new X509Certificate[] { certificate }
+					: Arrays.stream(chain).filter(c -> c instanceof X509Certificate).map(c -> (X509Certificate) c)
+							.toArray(X509Certificate[]::new);
+			String authType = "RSA".equals(certificate.getPublicKey().getAlgorithm()) ? "RSA" : "UNKNOWN";
+
+			for (TrustManager trustManager : trustManagerFactory.getTrustManagers())
+			{
+				if (trustManager instanceof X509TrustManager)
+					((X509TrustManager) trustManager).checkServerTrusted(x509Chain, authType);
+			}
+
+			logger.info("Certificate '{}' trusted, valid from {} until {}",
+					certificate.getSubjectX500Principal().getName(), certificate.getNotBefore(),
+					certificate.getNotAfter());
+		}
+		catch (GeneralSecurityException e)
+		{
+			logger.error("Certificate '{}' not trusted: {}", certificate.getSubjectX500Principal().getName(),
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * @param source
+	 *            not <code>null</code>
+	 */
+	public void unregister(String source)
+	{
+		certificatesBySource.remove(source);
+	}
+
+	/**
+	 * @return all monitored certificates, ordered by source
+	 */
+	public List<MonitoredCertificate> getCertificates()
+	{
+		return certificatesBySource.entrySet().stream().sorted(Map.Entry.comparingByKey())
+				.flatMap(e -> e.getValue().stream()).collect(Collectors.toList());
+	}
+
+	@ManagedAttribute("Remaining validity in days of the certificate expiring first, NaN if none")
+	public double getMinDaysToExpiry()
+	{
+		return getCertificates().stream().mapToDouble(MonitoredCertificate::getDaysToExpiry).min()
+				.orElse(Double.NaN);
+	}
+
+	@ManagedAttribute("Monitored certificates")
+	public List<String> getMonitoredCertificates()
+	{
+		return getCertificates().stream().map(MonitoredCertificate::toString).collect(Collectors.toList());
+	}
+
+	@ManagedOperation(value = "Checks all certificates and logs warnings for crossed thresholds", impact = "ACTION")
+	public void check()
+	{
+		getCertificates().forEach(this::check);
+	}
+
+	private void scheduledCheck()
+	{
+		try
+		{
+			check();
+		}
+		catch (RuntimeException e)
+		{
+			logger.error("Error while checking certificates", e);
+		}
+		finally
+		{
+			if (isStarting() || isStarted())
+				task = scheduler.schedule(this::scheduledCheck, checkIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void check(MonitoredCertificate certificate)
+	{
+		double days = certificate.getDaysToExpiry();
+
+		synchronized (certificate)
+		{
+			if (days < 0)
+			{
+				if (certificate.warnedThresholds <= warningDays.length)
+				{
+					warningLogger.error("Certificate {} expired", certificate);
+					certificate.warnedThresholds = warningDays.length + 1;
+				}
+
+				return;
+			}
+
+			int crossed = 0;
+			while (crossed < warningDays.length && days <= warningDays[crossed])
+				crossed++;
+
+			if (crossed > certificate.warnedThresholds)
+			{
+				long remaining = (long) Math.floor(days);
+				warningLogger.warn("Certificate {} will expire in {} day{}", certificate, remaining,
+						remaining == 1 ? "" : "s");
+				certificate.warnedThresholds = crossed;
+			}
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package de.rwh.utils.jetty;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable set of IPv4 and IPv6 networks in CIDR notation (e.g. <code>10.0.0.0/8</code>, <code>192.168.1.5</code>,
+ * <code>fd00::/8</code>), compiled into one binary prefix trie per address family. Lookups walk at most 32 (IPv4) or
+ * 128 (IPv6) nodes stored in flat arrays and do not allocate, except for copying the address bytes of
+ * {@link java.net.Inet6Address}es.
+ */
+public class CidrMatcher
+{
+	private static final class Trie
+	{
+		private final int bits;
+
+		// child node indices per node, 0 if no child: root is node 0 and never a child
+		private int[] zero = new int[16];
+		private int[] one = new int[16];
+		private boolean[] terminal = new boolean[16];
+		private int size = 1;
+
+		Trie(int bits)
+		{
+			this.bits = bits;
+		}
+
+		void add(byte[] address, int prefixLength)
+		{
+			int node = 0;
+			for (int i = 0; i < prefixLength; i++)
+			{
+				if (terminal[node])
+					return; // shorter prefix already covers this network
+
+				int child = (bit(address, i) ? one : zero)[node];
+				if (child == 0)
+				{
+					// newNode may replace the arrays
+					child = newNode();
+					(bit(address, i) ? one : zero)[node] = child;
+				}
+
+				node = child;
+			}
+
+			terminal[node] = true;
+		}
+
+		private int newNode()
+		{
+			if (size == terminal.length)
+			{
+				zero = Arrays.copyOf(zero, size * 2);
+				one = Arrays.copyOf(one, size * 2);
+				terminal = Arrays.copyOf(terminal, size * 2);
+			}
+
+			return size++;
+		}
+
+		void trim()
+		{
+			zero = Arrays.copyOf(zero, size);
+			one = Arrays.copyOf(one, size);
+			terminal = Arrays.copyOf(terminal, size);
+		}
+
+		boolean isEmpty()
+		{
+			return size == 1 && !terminal[0];
+		}
+
+		boolean contains(int ipv4Address)
+		{
+			int node = 0;
+			for (int i = 0; i < bits; i++)
+			{
+				if (terminal[node])
+					return true;
+
+				node = ((ipv4Address >>> (31 - i)) & 1) == 1 ? one[node] : zero[node];
+				if (node == 0)
+					return false;
+			}
+
+			return terminal[node];
+		}
+
+		boolean contains(byte[] address)
+		{
+			int node = 0;
+			for (int i = 0; i < bits; i++)
+			{
+				if (terminal[node])
+					return true;
+
+				node = bit(address, i) ? one[node] : zero[node];
+				if (node == 0)
+					return false;
+			}
+
+			return terminal[node];
+		}
+
+		private static boolean bit(byte[] address, int index)
+		{
+			return (address[index >>> 3] & (0x80 >>> (index & 7))) != 0;
+		}
+	}
+
+	private final List<String> networks;
+	private final Trie ipv4 = new Trie(32);
+	private final Trie ipv6 = new Trie(128);
+
+	/**
+	 * @param networks
+	 *            may be <code>null</code>, addresses in CIDR notation, a missing prefix length matches the single
+	 *            address
+	 * @throws IllegalArgumentException
+	 *             if a network is not a valid IPv4 or IPv6 address literal with optional prefix length
+	 */
+	public CidrMatcher(Collection<String> networks)
+	{
+		this.networks = networks == null ? Collections.emptyList()
+				: Collections.unmodifiableList(networks.stream().filter(Objects::nonNull).map(String::trim)
+						.filter(n -> !n.isEmpty()).collect(Collectors.toList()));
+
+		for (String network : this.networks)
+			add(network);
+
+		ipv4.trim();
+		ipv6.trim();
+	}
+
+	private void add(String network)
+	{
+		int slash = network.indexOf('/');
+		String address = slash < 0 ? network : network.substring(0, slash);
+
+		InetAddress inetAddress = parseLiteral(address);
+		if (inetAddress == null)
+			throw new IllegalArgumentException("Network '" + network + "' not an IPv4 or IPv6 address literal");
+
+		byte[] bytes = inetAddress.getAddress();
+		int maxPrefixLength = bytes.length * 8;
+		int prefixLength;
+		try
+		{
+			prefixLength = slash < 0 ? maxPrefixLength : Integer.parseInt(network.substring(slash + 1));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Network '" + network + "' prefix length not a number", e);
+		}
+
+		// IPv4-mapped IPv6 literals (::ffff:a.b.c.d) are parsed as IPv4 addresses
+		if (inetAddress instanceof Inet4Address && address.indexOf(':') >= 0 && slash >= 0)
+			prefixLength -= 96;
+
+		if (prefixLength < 0 || prefixLength > maxPrefixLength)
+			throw new IllegalArgumentException(
+					"Network '" + network + "' prefix length not between 0 and " + maxPrefixLength);
+
+		(bytes.length == 4 ? ipv4 : ipv6).add(bytes, prefixLength);
+	}
+
+	/**
+	 * @param address
+	 *            may be <code>null</code>
+	 * @return address if the given string is an IPv4 or IPv6 address literal (IPv6 without brackets), <code>null</code>
+	 *         otherwise; never triggers a DNS lookup
+	 */
+	static InetAddress parseLiteral(String address)
+	{
+		if (address == null || address.isEmpty())
+			return null;
+
+		try
+		{
+			if (address.indexOf(':') >= 0)
+				return InetAddress.getByName(address); // IPv6 literals are parsed without lookup
+			else
+			{
+				long ipv4 = parseIpv4(address, 0, address.length());
+				return ipv4 < 0 ? null : InetAddress.getByAddress(toBytes((int) ipv4));
+			}
+		}
+		catch (UnknownHostException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return address as unsigned int value, <code>-1</code> if the given range is not a dotted quad IPv4 literal
+	 */
+	static long parseIpv4(String s, int begin, int end)
+	{
+		long address = 0;
+		int octets = 0;
+		int value = -1;
+
+		for (int i = begin; i < end; i++)
+		{
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				value = value < 0 ? c - '0' : value * 10 + (c - '0');
+				if (value > 255)
+					return -1;
+			}
+			else if (c == '.' && value >= 0 && octets < 3)
+			{
+				address = (address << 8) | value;
+				octets++;
+				value = -1;
+			}
+			else
+				return -1;
+		}
+
+		if (value < 0 || octets != 3)
+			return -1;
+
+		return (address << 8) | value;
+	}
+
+	private static byte[] toBytes(int ipv4)
+	{
+		return new byte[] { (byte) (ipv4 >>> 24), (byte) (ipv4 >>> 16), (byte) (ipv4 >>> 8), (byte) ipv4 };
+	}
+
+	/**
+	 * @return configured networks
+	 */
+	public List<String> getNetworks()
+	{
+		return networks;
+	}
+
+	public boolean isEmpty()
+	{
+		return ipv4.isEmpty() && ipv6.isEmpty();
+	}
+
+	/**
+	 * @param address
+	 *            may be <code>null</code>
+	 * @return <code>true</code> if the address is part of one of the configured networks
+	 */
+	public boolean contains(InetAddress address)
+	{
+		if (address == null)
+			return false;
+		else if (address instanceof Inet4Address)
+			// Inet4Address#hashCode is the address as int, avoids copying the address bytes
+			return ipv4.contains(address.hashCode());
+		else
+			return ipv6.contains(address.getAddress());
+	}
+
+	/**
+	 * @param address
+	 *            may be <code>null</code>, IPv4 or IPv6 address literal, IPv6 without brackets
+	 * @return <code>true</code> if the address is part of one of the configured networks, <code>false</code> if not or
+	 *         not an address literal
+	 */
+	public boolean contains(String address)
+	{
+		if (address == null)
+			return false;
+
+		long ipv4Address = parseIpv4(address, 0, address.length());
+		if (ipv4Address >= 0)
+			return ipv4.contains((int) ipv4Address);
+		else if (address.indexOf(':') >= 0)
+			return contains(parseLiteral(address));
+		else
+			return false;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.join(", ", networks);
+	}
+}
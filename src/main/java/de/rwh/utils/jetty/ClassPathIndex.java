@@ -0,0 +1,622 @@
+package de.rwh.utils.jetty;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.servlet.ServletContainerInitializer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of classpath entries (jars and classes directories) recording per entry whether it contains a
+ * <code>META-INF/services/javax.servlet.ServletContainerInitializer</code> file and, per class, its super types and the
+ * runtime visible annotations on the class, its fields and methods. Entries are indexed once per JVM by reading the
+ * class file headers, without loading classes. Used to exclude entries from the annotation scan that can not
+ * contribute to it.
+ * <p>
+ * The index can be stored to and loaded from a file, e.g. next to the quickstart descriptor of the
+ * {@link QuickStartAnnotationConfiguration}. Stored entries are keyed by a hash over their path, size and modification
+ * time (for directories over all contained files) computed like the descriptor's classpath hash; only entries with an
+ * unchanged hash are restored, others are indexed again.
+ *
+ * @see IndexedAnnotationConfiguration
+ */
+public final class ClassPathIndex
+{
+	private static final Logger logger = LoggerFactory.getLogger(ClassPathIndex.class);
+
+	private static final String SERVICE_FILE = "META-INF/services/" + ServletContainerInitializer.class.getName();
+	private static final String CLASS_FILE_SUFFIX = ".class";
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+	private static final int FILE_FORMAT = 0x4a434931; // JCI1
+
+	private static final class Holder
+	{
+		static final ClassPathIndex INSTANCE = new ClassPathIndex(System.getProperty("java.class.path"));
+	}
+
+	/**
+	 * @return index of the <code>java.class.path</code> system property, created on first use
+	 */
+	public static ClassPathIndex get()
+	{
+		return Holder.INSTANCE;
+	}
+
+	private static final class Entry
+	{
+		final String hash;
+		final boolean servletContainerInitializer;
+		final Map<String, String[]> superTypes;
+		final Map<String, Set<String>> annotations;
+
+		/**
+		 * @param hash
+		 *            <code>null</code> if the entry should not be stored
+		 */
+		Entry(String hash, boolean servletContainerInitializer, Map<String, String[]> superTypes,
+				Map<String, Set<String>> annotations)
+		{
+			this.hash = hash;
+			this.servletContainerInitializer = servletContainerInitializer;
+			this.superTypes = superTypes;
+			this.annotations = annotations;
+		}
+	}
+
+	private static final Entry EMPTY = new Entry(null, false, Collections.emptyMap(), Collections.emptyMap());
+
+	private final List<String> entries;
+	private final Map<Path, Entry> index = new ConcurrentHashMap<>();
+
+	/**
+	 * @param classPath
+	 *            may be <code>null</code>, entries separated by {@link File#pathSeparator}
+	 */
+	public ClassPathIndex(String classPath)
+	{
+		entries = classPath == null || classPath.isEmpty() ? Collections.emptyList()
+				: Collections.unmodifiableList(Arrays.asList(classPath.split(File.pathSeparator)));
+	}
+
+	/**
+	 * @return classpath entries in classpath order
+	 */
+	public List<String> getEntries()
+	{
+		return entries;
+	}
+
+	/**
+	 * Indexes the given entries if not already indexed and returns the entries that need to be scanned: entries
+	 * containing a {@link ServletContainerInitializer} service file, a class annotated with one of the given annotation
+	 * types or a class extending or implementing one of the given super types, directly or via classes of other
+	 * entries.
+	 *
+	 * @param entries
+	 *            not <code>null</code>, jars and classes directories
+	 * @param annotationTypes
+	 *            not <code>null</code>, fully qualified class names
+	 * @param superTypes
+	 *            not <code>null</code>, fully qualified class names
+	 * @param pool
+	 *            not <code>null</code>, used to index entries in parallel
+	 * @return subset of the given entries
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for indexing to complete
+	 */
+	public Set<Path> getRelevantEntries(Collection<Path> entries, Set<String> annotationTypes, Set<String> superTypes,
+			ForkJoinPool pool) throws InterruptedException
+	{
+		Map<Path, Entry> indexed;
+		try
+		{
+			indexed = pool.submit(() -> entries.parallelStream().distinct()
+					.collect(Collectors.toMap(e -> e, e -> index.computeIfAbsent(e, ClassPathIndex::index)))).get();
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+
+		Map<String, Set<String>> subTypes = new HashMap<>();
+		Deque<String> queue = new ArrayDeque<>(superTypes);
+		Set<String> relevantClasses = new HashSet<>();
+
+		for (Entry entry : indexed.values())
+		{
+			entry.superTypes.forEach((className, supers) ->
+			{
+				for (String s : supers)
+					subTypes.computeIfAbsent(s, k -> new HashSet<>()).add(className);
+			});
+
+			entry.annotations.forEach((className, annotations) ->
+			{
+				if (!Collections.disjoint(annotations, annotationTypes) && relevantClasses.add(className))
+					queue.add(className);
+			});
+		}
+
+		while (!queue.isEmpty())
+		{
+			for (String subType : subTypes.getOrDefault(queue.poll(), Collections.emptySet()))
+			{
+				if (relevantClasses.add(subType))
+					queue.add(subType);
+			}
+		}
+
+		return indexed.entrySet().stream()
+				.filter(e -> e.getValue().servletContainerInitializer
+						|| e.getValue().superTypes.keySet().stream().anyMatch(relevantClasses::contains))
+				.map(Map.Entry::getKey).collect(Collectors.toSet());
+	}
+
+	private static Entry index(Path entry)
+	{
+		long start = System.nanoTime();
+
+		try
+		{
+			Entry indexed;
+			if (Files.isDirectory(entry))
+				indexed = indexDirectory(entry, hash(entry));
+			else if (Files.isRegularFile(entry))
+				indexed = indexJar(entry, hash(entry));
+			else
+				indexed = EMPTY;
+
+			logger.debug("Indexed {} with {} classes in {} ms", entry, indexed.superTypes.size(),
+					(System.nanoTime() - start) / 1_000_000);
+
+			return indexed;
+		}
+		catch (IOException e)
+		{
+			logger.warn("Error while indexing classpath entry {}, entry will be scanned: {}", entry, e.getMessage());
+
+			// unknown content, always relevant
+			return new Entry(null, true, Collections.emptyMap(), Collections.emptyMap());
+		}
+	}
+
+	/**
+	 * Restores entries from a file written by {@link #store(Path)}, skipping entries already indexed and entries whose
+	 * hash no longer matches the jar or classes directory.
+	 *
+	 * @param file
+	 *            not <code>null</code>
+	 * @return number of restored entries, 0 if the file does not exist or is not readable
+	 */
+	public int load(Path file)
+	{
+		if (!Files.isReadable(file))
+			return 0;
+
+		long start = System.nanoTime();
+		int restored = 0, stale = 0;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+		{
+			if (in.readInt() != FILE_FORMAT)
+				throw new IOException("Unknown file format");
+
+			for (int entries = in.readInt(); entries > 0; entries--)
+			{
+				Path path = Paths.get(in.readUTF());
+				Entry entry = readEntry(in);
+
+				if (index.containsKey(path))
+					continue;
+				else if (!entry.hash.equals(hash(path)))
+					stale++;
+				else if (index.putIfAbsent(path, entry) == null)
+					restored++;
+			}
+		}
+		catch (IOException e)
+		{
+			logger.warn("Error while reading classpath index {}: {}", file, e.getMessage());
+		}
+
+		logger.debug("Restored {} classpath entries from {}, {} changed, in {} ms", restored, file, stale,
+				(System.nanoTime() - start) / 1_000_000);
+
+		return restored;
+	}
+
+	/**
+	 * Stores all indexed jars and classes directories to the given file, replacing the file atomically.
+	 *
+	 * @param file
+	 *            not <code>null</code>
+	 * @throws IOException
+	 *             if the file could not be written
+	 */
+	public void store(Path file) throws IOException
+	{
+		Map<Path, Entry> entries = index.entrySet().stream().filter(e -> e.getValue().hash != null)
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null)
+			Files.createDirectories(parent);
+
+		Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+			{
+				out.writeInt(FILE_FORMAT);
+				out.writeInt(entries.size());
+				for (Map.Entry<Path, Entry> e : entries.entrySet())
+				{
+					out.writeUTF(e.getKey().toString());
+					writeEntry(out, e.getValue());
+				}
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(tmp);
+		}
+
+		logger.debug("Stored {} classpath entries to {}", entries.size(), file);
+	}
+
+	private static void writeEntry(DataOutputStream out, Entry entry) throws IOException
+	{
+		out.writeUTF(entry.hash);
+		out.writeBoolean(entry.servletContainerInitializer);
+
+		out.writeInt(entry.superTypes.size());
+		for (Map.Entry<String, String[]> e : entry.superTypes.entrySet())
+		{
+			out.writeUTF(e.getKey());
+			writeStrings(out, Arrays.asList(e.getValue()));
+		}
+
+		out.writeInt(entry.annotations.size());
+		for (Map.Entry<String, Set<String>> e : entry.annotations.entrySet())
+		{
+			out.writeUTF(e.getKey());
+			writeStrings(out, e.getValue());
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException
+	{
+		List<String> nonNull = values.stream().filter(v -> v != null).collect(Collectors.toList());
+		out.writeInt(nonNull.size());
+		for (String value : nonNull)
+			out.writeUTF(value);
+	}
+
+	private static Entry readEntry(DataInputStream in) throws IOException
+	{
+		String hash = in.readUTF();
+		boolean servletContainerInitializer = in.readBoolean();
+
+		Map<String, String[]> superTypes = new HashMap<>();
+		for (int classes = in.readInt(); classes > 0; classes--)
+			superTypes.put(in.readUTF(), readStrings(in).toArray(new String[0]));
+
+		Map<String, Set<String>> annotations = new HashMap<>();
+		for (int classes = in.readInt(); classes > 0; classes--)
+			annotations.put(in.readUTF(), new HashSet<>(readStrings(in)));
+
+		return new Entry(hash, servletContainerInitializer, superTypes, annotations);
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		String[] values = new String[count];
+		for (int i = 0; i < count; i++)
+			values[i] = in.readUTF();
+		return Arrays.asList(values);
+	}
+
+	/**
+	 * @return hex encoded SHA-256 hash over the entry's path, size and modification time, see
+	 *         {@link #updateHash(MessageDigest, Path)}
+	 */
+	private static String hash(Path entry) throws IOException
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			updateHash(digest, entry);
+			return toHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Updates the digest with the absolute path of the given jar or classes directory, for a jar its size and
+	 * modification time, for a directory path, size and modification time of all contained files in path order.
+	 */
+	static void updateHash(MessageDigest digest, Path entry) throws IOException
+	{
+		updateHashForFile(digest, entry);
+
+		if (Files.isDirectory(entry))
+		{
+			try (Stream<Path> files = Files.walk(entry))
+			{
+				for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList()))
+					updateHashForFile(digest, file);
+			}
+		}
+	}
+
+	private static void updateHashForFile(MessageDigest digest, Path file) throws IOException
+	{
+		updateHash(digest, file.toAbsolutePath().toString());
+
+		if (Files.isRegularFile(file))
+		{
+			updateHash(digest, String.valueOf(Files.size(file)));
+			updateHash(digest, String.valueOf(Files.getLastModifiedTime(file).toMillis()));
+		}
+	}
+
+	static void updateHash(MessageDigest digest, String value)
+	{
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) File.pathSeparatorChar);
+	}
+
+	static String toHex(byte[] bytes)
+	{
+		StringBuilder b = new StringBuilder(bytes.length * 2);
+		for (byte d : bytes)
+			b.append(String.format("%02x", d));
+		return b.toString();
+	}
+
+	private static Entry indexDirectory(Path directory, String hash) throws IOException
+	{
+		Map<String, String[]> superTypes = new HashMap<>();
+		Map<String, Set<String>> annotations = new HashMap<>();
+
+		try (Stream<Path> files = Files.walk(directory))
+		{
+			for (Path file : files.filter(f -> f.toString().endsWith(CLASS_FILE_SUFFIX))
+					.filter(Files::isRegularFile).collect(Collectors.toList()))
+			{
+				try (InputStream in = Files.newInputStream(file))
+				{
+					readClass(in, superTypes, annotations);
+				}
+			}
+		}
+
+		return new Entry(hash, Files.isRegularFile(directory.resolve(SERVICE_FILE)), superTypes, annotations);
+	}
+
+	private static Entry indexJar(Path jar, String hash) throws IOException
+	{
+		Map<String, String[]> superTypes = new HashMap<>();
+		Map<String, Set<String>> annotations = new HashMap<>();
+		boolean servletContainerInitializer = false;
+
+		try (ZipFile zip = new ZipFile(jar.toFile()))
+		{
+			for (Enumeration<? extends ZipEntry> zipEntries = zip.entries(); zipEntries.hasMoreElements();)
+			{
+				ZipEntry zipEntry = zipEntries.nextElement();
+				if (SERVICE_FILE.equals(zipEntry.getName()))
+					servletContainerInitializer = true;
+				else if (!zipEntry.isDirectory() && zipEntry.getName().endsWith(CLASS_FILE_SUFFIX))
+				{
+					try (InputStream in = zip.getInputStream(zipEntry))
+					{
+						readClass(in, superTypes, annotations);
+					}
+				}
+			}
+		}
+
+		return new Entry(hash, servletContainerInitializer, superTypes, annotations);
+	}
+
+	/**
+	 * Reads this class, super class, interfaces and runtime visible annotations of the class, its fields and methods
+	 * from a class file, see JVM specification chapter 4.
+	 */
+	private static void readClass(InputStream in, Map<String, String[]> superTypes,
+			Map<String, Set<String>> annotations) throws IOException
+	{
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+
+		if (data.readInt() != 0xCAFEBABE)
+			return;
+
+		skip(data, 4); // minor, major version
+
+		int constantPoolCount = data.readUnsignedShort();
+		String[] utf8 = new String[constantPoolCount];
+		int[] classNameIndex = new int[constantPoolCount];
+		for (int i = 1; i < constantPoolCount; i++)
+		{
+			int tag = data.readUnsignedByte();
+			switch (tag)
+			{
+				case 1: // Utf8
+					utf8[i] = data.readUTF();
+					break;
+				case 7: // Class
+					classNameIndex[i] = data.readUnsignedShort();
+					break;
+				case 8: // String
+				case 16: // MethodType
+				case 19: // Module
+				case 20: // Package
+					skip(data, 2);
+					break;
+				case 15: // MethodHandle
+					skip(data, 3);
+					break;
+				case 3: // Integer
+				case 4: // Float
+				case 9: // Fieldref
+				case 10: // Methodref
+				case 11: // InterfaceMethodref
+				case 12: // NameAndType
+				case 17: // Dynamic
+				case 18: // InvokeDynamic
+					skip(data, 4);
+					break;
+				case 5: // Long
+				case 6: // Double
+					skip(data, 8);
+					i++;
+					break;
+				default:
+					throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+
+		skip(data, 2); // access flags
+		String className = toClassName(utf8[classNameIndex[data.readUnsignedShort()]]);
+		if (className == null || "module-info".equals(className))
+			return;
+
+		int superClass = data.readUnsignedShort();
+		int interfacesCount = data.readUnsignedShort();
+		String[] supers = new String[interfacesCount + (superClass == 0 ? 0 : 1)];
+		for (int i = 0; i < interfacesCount; i++)
+			supers[i] = toClassName(utf8[classNameIndex[data.readUnsignedShort()]]);
+		if (superClass != 0)
+			supers[interfacesCount] = toClassName(utf8[classNameIndex[superClass]]);
+
+		superTypes.put(className, supers);
+
+		Set<String> classAnnotations = new HashSet<>();
+		for (int members = 0; members < 2; members++) // fields, methods
+		{
+			int count = data.readUnsignedShort();
+			for (int i = 0; i < count; i++)
+			{
+				skip(data, 6); // access flags, name, descriptor
+				readAttributes(data, utf8, classAnnotations);
+			}
+		}
+		readAttributes(data, utf8, classAnnotations);
+
+		if (!classAnnotations.isEmpty())
+			annotations.put(className, classAnnotations);
+	}
+
+	private static void readAttributes(DataInputStream data, String[] utf8, Set<String> annotations)
+			throws IOException
+	{
+		int count = data.readUnsignedShort();
+		for (int i = 0; i < count; i++)
+		{
+			String name = utf8[data.readUnsignedShort()];
+			int length = data.readInt();
+
+			if (RUNTIME_VISIBLE_ANNOTATIONS.equals(name))
+			{
+				int annotationsCount = data.readUnsignedShort();
+				for (int a = 0; a < annotationsCount; a++)
+					readAnnotation(data, utf8, annotations);
+			}
+			else
+				skip(data, length);
+		}
+	}
+
+	private static void readAnnotation(DataInputStream data, String[] utf8, Set<String> annotations)
+			throws IOException
+	{
+		String descriptor = utf8[data.readUnsignedShort()];
+		if (annotations != null && descriptor != null && descriptor.startsWith("L") && descriptor.endsWith(";"))
+			annotations.add(toClassName(descriptor.substring(1, descriptor.length() - 1)));
+
+		int pairs = data.readUnsignedShort();
+		for (int p = 0; p < pairs; p++)
+		{
+			skip(data, 2); // element name
+			skipElementValue(data, utf8);
+		}
+	}
+
+	private static void skipElementValue(DataInputStream data, String[] utf8) throws IOException
+	{
+		int tag = data.readUnsignedByte();
+		switch (tag)
+		{
+			case 'e': // enum: type name, const name
+				skip(data, 4);
+				break;
+			case '@':
+				readAnnotation(data, utf8, null);
+				break;
+			case '[':
+				int values = data.readUnsignedShort();
+				for (int v = 0; v < values; v++)
+					skipElementValue(data, utf8);
+				break;
+			default: // const value or class
+				skip(data, 2);
+		}
+	}
+
+	private static void skip(DataInputStream data, int bytes) throws IOException
+	{
+		int skipped = data.skipBytes(bytes);
+		for (; skipped < bytes; skipped++)
+			data.readByte();
+	}
+
+	private static String toClassName(String internalName)
+	{
+		return internalName == null ? null : internalName.replace('/', '.');
+	}
+
+	@Override
+	public String toString()
+	{
+		return ClassPathIndex.class.getSimpleName() + "[entries: " + entries.size() + ", indexed: " + index.size()
+				+ "]";
+	}
+}
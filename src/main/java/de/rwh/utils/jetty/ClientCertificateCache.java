@@ -0,0 +1,168 @@
+package de.rwh.utils.jetty;
+
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * Bounded cache of parsed client certificates keyed by the raw forwarded header value. Entries expire
+ * <i>timeToLive</i> after they have been parsed, if the cache is full the least recently used entry is evicted. Entries
+ * are kept in an access ordered {@link LinkedHashMap} guarded by a single lock, lookups and evictions take constant
+ * time, certificates are parsed outside of the lock.
+ */
+@ManagedObject("Cache of parsed forwarded client certificates")
+public class ClientCertificateCache
+{
+	private static final class CachedCertificate
+	{
+		final X509Certificate certificate;
+		final long created;
+
+		CachedCertificate(X509Certificate certificate, long now)
+		{
+			this.certificate = certificate;
+			this.created = now;
+		}
+	}
+
+	private final LinkedHashMap<String, CachedCertificate> entries;
+	private final int maxSize;
+	private final long timeToLiveNanos;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxSize
+	 *            &gt; 0
+	 * @param timeToLive
+	 *            &gt; 0
+	 * @param unit
+	 *            not <code>null</code>
+	 */
+	public ClientCertificateCache(int maxSize, long timeToLive, TimeUnit unit)
+	{
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize <= 0");
+		if (timeToLive <= 0)
+			throw new IllegalArgumentException("timeToLive <= 0");
+
+		this.maxSize = maxSize;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+
+		entries = new LinkedHashMap<>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedCertificate> eldest)
+			{
+				if (size() > ClientCertificateCache.this.maxSize)
+				{
+					evictions.increment();
+					return true;
+				}
+				else
+					return false;
+			}
+		};
+	}
+
+	/**
+	 * @param headerValue
+	 *            not <code>null</code>
+	 * @param parser
+	 *            not <code>null</code>, may return <code>null</code> if the header value could not be parsed, results
+	 *            of failed parse operations are not cached
+	 * @return cached or freshly parsed certificate, <code>null</code> if the parser returned <code>null</code>
+	 */
+	public X509Certificate get(String headerValue, Function<String, X509Certificate> parser)
+	{
+		long now = System.nanoTime();
+
+		synchronized (entries)
+		{
+			CachedCertificate entry = entries.get(headerValue);
+			if (entry != null)
+			{
+				if (now - entry.created < timeToLiveNanos)
+				{
+					hits.increment();
+					return entry.certificate;
+				}
+
+				entries.remove(headerValue);
+				evictions.increment();
+			}
+		}
+
+		misses.increment();
+
+		X509Certificate certificate = parser.apply(headerValue);
+		if (certificate != null)
+		{
+			synchronized (entries)
+			{
+				entries.put(headerValue, new CachedCertificate(certificate, now));
+			}
+		}
+
+		return certificate;
+	}
+
+	@ManagedOperation(value = "Removes all entries from the cache", impact = "ACTION")
+	public void clear()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+		}
+	}
+
+	@ManagedAttribute("Maximum number of cached certificates")
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	@ManagedAttribute("Time to live of cached certificates in milliseconds")
+	public long getTimeToLive()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(timeToLiveNanos);
+	}
+
+	@ManagedAttribute("Number of cached certificates")
+	public int getSize()
+	{
+		synchronized (entries)
+		{
+			return entries.size();
+		}
+	}
+
+	@ManagedAttribute("Number of cache hits")
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	@ManagedAttribute("Number of cache misses")
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	@ManagedAttribute("Number of evicted certificates")
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+}
@@ -0,0 +1,158 @@
+package de.rwh.utils.jetty;
+
+import java.io.ByteArrayInputStream;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Single pass decoder for PEM encoded certificates forwarded by a reverse proxy, supports the space separated and the
+ * URL encoded header format. The base64 body is decoded directly into DER bytes without building an intermediate PEM
+ * string.
+ */
+public final class ClientCertificateHeaderDecoder
+{
+	public static final String URL_ENCODED_CERT_BEGIN = "-----BEGIN%20CERTIFICATE-----%0A";
+	public static final String URL_ENCODED_CERT_END = "%0A-----END%20CERTIFICATE-----%0A";
+
+	public static final String CERT_BEGIN = "-----BEGIN CERTIFICATE-----";
+	public static final String CERT_END = "-----END CERTIFICATE-----";
+
+	private static final byte WHITESPACE = -2;
+	private static final byte INVALID = -1;
+
+	private static final byte[] BASE64 = new byte[128];
+	static
+	{
+		Arrays.fill(BASE64, INVALID);
+
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++)
+			BASE64[alphabet.charAt(i)] = (byte) i;
+
+		BASE64[' '] = WHITESPACE;
+		BASE64['\t'] = WHITESPACE;
+		BASE64['\r'] = WHITESPACE;
+		BASE64['\n'] = WHITESPACE;
+	}
+
+	private ClientCertificateHeaderDecoder()
+	{
+	}
+
+	public static boolean hasValidPrefix(String headerValue)
+	{
+		return headerValue.startsWith(CERT_BEGIN) || headerValue.startsWith(URL_ENCODED_CERT_BEGIN);
+	}
+
+	public static boolean hasValidSuffix(String headerValue)
+	{
+		return headerValue.endsWith(CERT_END) || headerValue.endsWith(URL_ENCODED_CERT_END);
+	}
+
+	/**
+	 * @param headerValue
+	 *            not <code>null</code>
+	 * @return decoded certificate
+	 * @throws CertificateException
+	 *             if the header value is not a valid space separated or URL encoded PEM certificate
+	 */
+	public static X509Certificate decode(String headerValue) throws CertificateException
+	{
+		boolean urlEncoded;
+		int begin;
+		if (headerValue.startsWith(CERT_BEGIN))
+		{
+			urlEncoded = false;
+			begin = CERT_BEGIN.length();
+		}
+		else if (headerValue.startsWith(URL_ENCODED_CERT_BEGIN))
+		{
+			urlEncoded = true;
+			begin = URL_ENCODED_CERT_BEGIN.length();
+		}
+		else
+			throw new CertificateParsingException("Header value does not start with " + CERT_BEGIN + " or "
+					+ URL_ENCODED_CERT_BEGIN);
+
+		int end;
+		if (headerValue.endsWith(CERT_END))
+			end = headerValue.length() - CERT_END.length();
+		else if (headerValue.endsWith(URL_ENCODED_CERT_END))
+			end = headerValue.length() - URL_ENCODED_CERT_END.length();
+		else
+			throw new CertificateParsingException(
+					"Header value does not end with " + CERT_END + " or " + URL_ENCODED_CERT_END);
+
+		if (end < begin)
+			throw new CertificateParsingException("Header value too short");
+
+		byte[] der = new byte[(end - begin) / 4 * 3 + 3];
+		int length = 0;
+
+		int accumulator = 0, sextets = 0, padding = 0;
+		for (int i = begin; i < end; i++)
+		{
+			int c = headerValue.charAt(i);
+
+			if (c == '%')
+			{
+				if (i + 2 >= end)
+					throw new CertificateParsingException("Incomplete URL escape sequence at index " + i);
+
+				int high = Character.digit(headerValue.charAt(i + 1), 16);
+				int low = Character.digit(headerValue.charAt(i + 2), 16);
+				if (high < 0 || low < 0)
+					throw new CertificateParsingException("Invalid URL escape sequence at index " + i);
+
+				c = (high << 4) | low;
+				i += 2;
+			}
+			else if (c == '+' && urlEncoded)
+				continue;
+
+			if (c == '=')
+			{
+				padding++;
+				continue;
+			}
+
+			int value = c < BASE64.length ? BASE64[c] : INVALID;
+			if (value == WHITESPACE)
+				continue;
+			if (value == INVALID || padding > 0)
+				throw new CertificateParsingException("Invalid base64 character at index " + i);
+
+			accumulator = (accumulator << 6) | value;
+			if (++sextets == 4)
+			{
+				der[length++] = (byte) (accumulator >> 16);
+				der[length++] = (byte) (accumulator >> 8);
+				der[length++] = (byte) accumulator;
+				accumulator = 0;
+				sextets = 0;
+			}
+		}
+
+		if (sextets == 1 || padding > 2)
+			throw new CertificateParsingException("Invalid base64 length");
+		else if (sextets == 2)
+			der[length++] = (byte) (accumulator >> 4);
+		else if (sextets == 3)
+		{
+			der[length++] = (byte) (accumulator >> 10);
+			der[length++] = (byte) (accumulator >> 2);
+		}
+
+		Certificate certificate = CertificateFactory.getInstance("X.509")
+				.generateCertificate(new ByteArrayInputStream(der, 0, length));
+
+		if (certificate instanceof X509Certificate)
+			return (X509Certificate) certificate;
+		else
+			throw new CertificateParsingException("Certificate not a X509Certificate");
+	}
+}
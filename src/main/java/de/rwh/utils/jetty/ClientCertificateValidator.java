@@ -0,0 +1,725 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.CertException;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.operator.ContentVerifierProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validates client certificates forwarded by a reverse proxy against the certificates of a trust store, optionally
+ * checking the revocation status of the client certificate via OCSP and / or CRLs fetched by a
+ * {@link RevocationFetcher}. Results are cached by SHA-256 certificate fingerprint for <i>timeToLive</i>, i.e. a
+ * certificate is validated and its revocation status fetched at most once per time to live. Concurrent requests for a
+ * certificate not yet cached wait for a single validation instead of validating in parallel. Results with unknown
+ * revocation status are cached for at most one minute, results for valid certificates not beyond the certificate's
+ * expiry. If the cache is full the least recently used entry is evicted.
+ * <p>
+ * The client certificate must be issued by a certificate of the trust store, intermediate CA certificates must be part
+ * of the trust store. OCSP is preferred over CRLs if both are enabled, CRLs are cached until their next update.
+ */
+@ManagedObject("Validator for forwarded client certificates")
+public class ClientCertificateValidator
+{
+	private static final Logger logger = LoggerFactory.getLogger(ClientCertificateValidator.class);
+
+	public enum Result
+	{
+		VALID, REVOKED, UNTRUSTED, REVOCATION_UNKNOWN
+	}
+
+	public enum RevocationCheck
+	{
+		OCSP, CRL
+	}
+
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+	public static final long DEFAULT_CACHE_TTL_SECONDS = 300;
+
+	private static final long REVOCATION_UNKNOWN_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+	private static final long CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private static final class Entry
+	{
+		final Result result;
+		final long expires;
+		volatile long lastAccess;
+
+		Entry(Result result, long expires, long now)
+		{
+			this.result = result;
+			this.expires = expires;
+			this.lastAccess = now;
+		}
+	}
+
+	private final Set<TrustAnchor> trustAnchors;
+	private final Map<X500Principal, List<X509Certificate>> issuersBySubject;
+	private final Set<RevocationCheck> revocationChecks;
+	private final RevocationFetcher fetcher;
+	private final boolean softFail;
+	private final int maxSize;
+	private final long timeToLiveNanos;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, CompletableFuture<Result>> validations = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<URI, X509CRL> crls = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder[] results = new LongAdder[Result.values().length];
+
+	/**
+	 * @param trustStore
+	 *            not <code>null</code>, at least one certificate
+	 * @param revocationChecks
+	 *            may be <code>null</code>, no revocation checking if <code>null</code> or empty
+	 * @param fetcher
+	 *            not <code>null</code> if revocation checks are configured
+	 * @param softFail
+	 *            <code>true</code> to accept certificates with unknown revocation status, e.g. if the OCSP responder is
+	 *            not reachable
+	 * @param maxSize
+	 *            &gt; 0
+	 * @param timeToLive
+	 *            &gt; 0
+	 * @param unit
+	 *            not <code>null</code>
+	 */
+	public ClientCertificateValidator(KeyStore trustStore, Collection<RevocationCheck> revocationChecks,
+			RevocationFetcher fetcher, boolean softFail, int maxSize, long timeToLive, TimeUnit unit)
+	{
+		Objects.requireNonNull(trustStore, "trustStore");
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize <= 0");
+		if (timeToLive <= 0)
+			throw new IllegalArgumentException("timeToLive <= 0");
+
+		this.revocationChecks = revocationChecks == null || revocationChecks.isEmpty()
+				? Collections.emptySet()
+				: Collections.unmodifiableSet(EnumSet.copyOf(revocationChecks));
+		this.fetcher = this.revocationChecks.isEmpty() ? fetcher : Objects.requireNonNull(fetcher, "fetcher");
+		this.softFail = softFail;
+		this.maxSize = maxSize;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+
+		Set<TrustAnchor> anchors = new HashSet<>();
+		Map<X500Principal, List<X509Certificate>> issuers = new HashMap<>();
+		try
+		{
+			for (Enumeration<String> aliases = trustStore.aliases(); aliases.hasMoreElements();)
+			{
+				Certificate certificate = trustStore.getCertificate(aliases.nextElement());
+				if (certificate instanceof X509Certificate)
+				{
+					X509Certificate x509 = (X509Certificate) certificate;
+					anchors.add(new TrustAnchor(x509, null));
+					issuers.computeIfAbsent(x509.getSubjectX500Principal(), s -> new ArrayList<>()).add(x509);
+				}
+			}
+		}
+		catch (KeyStoreException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		if (anchors.isEmpty())
+			throw new IllegalArgumentException("trustStore contains no certificates");
+
+		this.trustAnchors = Collections.unmodifiableSet(anchors);
+		this.issuersBySubject = issuers;
+
+		for (int i = 0; i < results.length; i++)
+			results[i] = new LongAdder();
+	}
+
+	/**
+	 * @param result
+	 *            not <code>null</code>
+	 * @return <code>true</code> if the result is {@link Result#VALID} or {@link Result#REVOCATION_UNKNOWN} with soft
+	 *         fail enabled
+	 */
+	public boolean isAccepted(Result result)
+	{
+		return Result.VALID.equals(result) || (softFail && Result.REVOCATION_UNKNOWN.equals(result));
+	}
+
+	/**
+	 * @param certificate
+	 *            not <code>null</code>
+	 * @return cached or freshly determined validation result
+	 */
+	public Result validate(X509Certificate certificate)
+	{
+		String fingerprint = fingerprint(certificate);
+		long now = System.nanoTime();
+
+		Entry entry = entries.get(fingerprint);
+		if (entry != null)
+		{
+			if (now - entry.expires < 0)
+			{
+				hits.increment();
+				entry.lastAccess = now;
+				return entry.result;
+			}
+			else if (entries.remove(fingerprint, entry))
+				evictions.increment();
+		}
+
+		CompletableFuture<Result> validation = new CompletableFuture<>();
+		CompletableFuture<Result> pending = validations.putIfAbsent(fingerprint, validation);
+		if (pending != null)
+		{
+			coalesced.increment();
+			return pending.join();
+		}
+
+		try
+		{
+			// a concurrent validation may have completed since the cache lookup above
+			Entry cached = entries.get(fingerprint);
+			if (cached != null && now - cached.expires < 0)
+			{
+				hits.increment();
+				validation.complete(cached.result);
+				return cached.result;
+			}
+
+			misses.increment();
+
+			Result result = doValidate(certificate);
+			results[result.ordinal()].increment();
+
+			long ttl = Result.REVOCATION_UNKNOWN.equals(result)
+					? Math.min(timeToLiveNanos, REVOCATION_UNKNOWN_TTL_NANOS)
+					: timeToLiveNanos;
+			if (Result.VALID.equals(result))
+				ttl = Math.min(ttl, TimeUnit.MILLISECONDS
+						.toNanos(certificate.getNotAfter().getTime() - System.currentTimeMillis()));
+
+			if (ttl > 0)
+			{
+				if (entries.size() >= maxSize)
+					evict(now);
+
+				entries.put(fingerprint, new Entry(result, now + ttl, now));
+			}
+
+			validation.complete(result);
+			return result;
+		}
+		catch (RuntimeException e)
+		{
+			validation.completeExceptionally(e);
+			throw e;
+		}
+		finally
+		{
+			// removed after caching the result, threads arriving in between find the cache entry
+			validations.remove(fingerprint, validation);
+		}
+	}
+
+	private Result doValidate(X509Certificate certificate)
+	{
+		try
+		{
+			CertPath path = CertificateFactory.getInstance("X.509")
+					.generateCertPath(Collections.singletonList(certificate));
+			PKIXParameters parameters = new PKIXParameters(trustAnchors);
+			parameters.setRevocationEnabled(false);
+
+			CertPathValidator.getInstance("PKIX").validate(path, parameters);
+		}
+		catch (CertPathValidatorException e)
+		{
+			logger.debug("Client certificate '{}' not trusted: {}", certificate.getSubjectX500Principal().getName(),
+					e.getMessage());
+			return Result.UNTRUSTED;
+		}
+		catch (InvalidAlgorithmParameterException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (GeneralSecurityException e)
+		{
+			logger.debug("Client certificate '{}' not trusted", certificate.getSubjectX500Principal().getName(), e);
+			return Result.UNTRUSTED;
+		}
+
+		if (revocationChecks.isEmpty())
+			return Result.VALID;
+
+		X509Certificate issuer = issuer(certificate);
+		if (issuer == null)
+			return Result.UNTRUSTED;
+
+		if (revocationChecks.contains(RevocationCheck.OCSP))
+		{
+			Result result = checkOcsp(certificate, issuer);
+			if (result != null)
+				return result;
+		}
+
+		if (revocationChecks.contains(RevocationCheck.CRL))
+		{
+			Result result = checkCrl(certificate, issuer);
+			if (result != null)
+				return result;
+		}
+
+		logger.warn("Revocation status of client certificate '{}' unknown",
+				certificate.getSubjectX500Principal().getName());
+		return Result.REVOCATION_UNKNOWN;
+	}
+
+	private X509Certificate issuer(X509Certificate certificate)
+	{
+		for (X509Certificate candidate : issuersBySubject.getOrDefault(certificate.getIssuerX500Principal(),
+				Collections.emptyList()))
+		{
+			try
+			{
+				certificate.verify(candidate.getPublicKey());
+				return candidate;
+			}
+			catch (GeneralSecurityException e)
+			{
+				// not signed by this candidate
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return <code>null</code> if the status could not be determined
+	 */
+	private Result checkOcsp(X509Certificate certificate, X509Certificate issuer)
+	{
+		for (URI responder : ocspResponders(certificate))
+		{
+			try
+			{
+				CertificateID id = new CertificateID(
+						new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+						new JcaX509CertificateHolder(issuer), certificate.getSerialNumber());
+				byte[] request = new OCSPReqBuilder().addRequest(id).build().getEncoded();
+
+				byte[] response = fetcher.fetchOcspResponse(responder, request);
+				if (response == null)
+					continue;
+
+				Result result = toResult(new OCSPResp(response), id, issuer);
+				if (result != null)
+					return result;
+			}
+			catch (IOException | GeneralSecurityException | OCSPException | OperatorCreationException e)
+			{
+				logger.warn("Unable to check revocation status via OCSP responder {}: {} - {}", responder,
+						e.getClass().getName(), e.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	private Result toResult(OCSPResp response, CertificateID id, X509Certificate issuer)
+			throws OCSPException, OperatorCreationException, GeneralSecurityException
+	{
+		if (response.getStatus() != OCSPResp.SUCCESSFUL || !(response.getResponseObject() instanceof BasicOCSPResp))
+		{
+			logger.warn("OCSP response status {}", response.getStatus());
+			return null;
+		}
+
+		BasicOCSPResp basic = (BasicOCSPResp) response.getResponseObject();
+		if (!isSignedByIssuerOrDelegate(basic, issuer))
+		{
+			logger.warn("OCSP response not signed by '{}' or a delegated responder",
+					issuer.getSubjectX500Principal().getName());
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+		for (SingleResp single : basic.getResponses())
+		{
+			if (!id.equals(single.getCertID()))
+				continue;
+
+			if (single.getThisUpdate().getTime() - CLOCK_SKEW_MILLIS > now
+					|| (single.getNextUpdate() != null && single.getNextUpdate().getTime() + CLOCK_SKEW_MILLIS < now))
+			{
+				logger.warn("OCSP response for serial {} not current", id.getSerialNumber().toString(16));
+				return null;
+			}
+
+			CertificateStatus status = single.getCertStatus();
+			if (status == CertificateStatus.GOOD)
+				return Result.VALID;
+			else if (status instanceof RevokedStatus)
+			{
+				logger.info("Client certificate with serial {} revoked at {} (OCSP)", id.getSerialNumber().toString(16),
+						((RevokedStatus) status).getRevocationTime());
+				return Result.REVOKED;
+			}
+			else
+				return null;
+		}
+
+		return null;
+	}
+
+	private static boolean isSignedByIssuerOrDelegate(BasicOCSPResp response, X509Certificate issuer)
+			throws OperatorCreationException, OCSPException, GeneralSecurityException
+	{
+		JcaContentVerifierProviderBuilder verifiers = new JcaContentVerifierProviderBuilder();
+		ContentVerifierProvider issuerVerifier = verifiers.build(issuer.getPublicKey());
+
+		if (response.isSignatureValid(issuerVerifier))
+			return true;
+
+		Date now = new Date();
+		for (X509CertificateHolder responder : response.getCerts())
+		{
+			try
+			{
+				ExtendedKeyUsage extendedKeyUsage = ExtendedKeyUsage.fromExtensions(responder.getExtensions());
+				if (extendedKeyUsage != null && extendedKeyUsage.hasKeyPurposeId(KeyPurposeId.id_kp_OCSPSigning)
+						&& responder.isValidOn(now) && responder.isSignatureValid(issuerVerifier)
+						&& response.isSignatureValid(verifiers.build(responder)))
+					return true;
+			}
+			catch (CertException e)
+			{
+				logger.debug("OCSP responder certificate not valid", e);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return <code>null</code> if the status could not be determined
+	 */
+	private Result checkCrl(X509Certificate certificate, X509Certificate issuer)
+	{
+		for (URI distributionPoint : crlDistributionPoints(certificate))
+		{
+			try
+			{
+				X509CRL crl = crl(distributionPoint, issuer);
+				if (crl == null)
+					continue;
+
+				if (crl.isRevoked(certificate))
+				{
+					logger.info("Client certificate with serial {} revoked at {} (CRL {})",
+							certificate.getSerialNumber().toString(16),
+							crl.getRevokedCertificate(certificate).getRevocationDate(), distributionPoint);
+					return Result.REVOKED;
+				}
+				else
+					return Result.VALID;
+			}
+			catch (IOException | GeneralSecurityException e)
+			{
+				logger.warn("Unable to check revocation status via CRL {}: {} - {}", distributionPoint,
+						e.getClass().getName(), e.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return cached or fetched CRL, <code>null</code> if not available or not current
+	 */
+	private X509CRL crl(URI distributionPoint, X509Certificate issuer) throws IOException, GeneralSecurityException
+	{
+		long now = System.currentTimeMillis();
+
+		X509CRL cached = crls.get(distributionPoint);
+		if (cached != null && isCurrent(cached, now))
+			return cached;
+
+		X509CRL crl = fetcher.fetchCrl(distributionPoint);
+		if (crl == null)
+			return null;
+
+		if (!crl.getIssuerX500Principal().equals(issuer.getSubjectX500Principal()))
+			throw new GeneralSecurityException("CRL issuer '" + crl.getIssuerX500Principal().getName()
+					+ "' not certificate issuer '" + issuer.getSubjectX500Principal().getName() + "'");
+
+		crl.verify(issuer.getPublicKey());
+
+		if (!isCurrent(crl, now))
+		{
+			logger.warn("CRL {} not current, next update {}", distributionPoint, crl.getNextUpdate());
+			return null;
+		}
+
+		crls.put(distributionPoint, crl);
+		return crl;
+	}
+
+	private static boolean isCurrent(X509CRL crl, long now)
+	{
+		return crl.getNextUpdate() == null || crl.getNextUpdate().getTime() + CLOCK_SKEW_MILLIS >= now;
+	}
+
+	private static List<URI> ocspResponders(X509Certificate certificate)
+	{
+		ASN1Primitive value = extensionValue(certificate, Extension.authorityInfoAccess);
+		if (value == null)
+			return Collections.emptyList();
+
+		List<URI> responders = new ArrayList<>();
+		for (AccessDescription description : AuthorityInformationAccess.getInstance(value).getAccessDescriptions())
+		{
+			if (AccessDescription.id_ad_ocsp.equals(description.getAccessMethod()))
+				addUri(responders, description.getAccessLocation());
+		}
+
+		return responders;
+	}
+
+	private static List<URI> crlDistributionPoints(X509Certificate certificate)
+	{
+		ASN1Primitive value = extensionValue(certificate, Extension.cRLDistributionPoints);
+		if (value == null)
+			return Collections.emptyList();
+
+		List<URI> distributionPoints = new ArrayList<>();
+		for (DistributionPoint distributionPoint : CRLDistPoint.getInstance(value).getDistributionPoints())
+		{
+			DistributionPointName name = distributionPoint.getDistributionPoint();
+			if (name != null && name.getType() == DistributionPointName.FULL_NAME)
+			{
+				for (GeneralName generalName : GeneralNames.getInstance(name.getName()).getNames())
+					addUri(distributionPoints, generalName);
+			}
+		}
+
+		return distributionPoints;
+	}
+
+	private static ASN1Primitive extensionValue(X509Certificate certificate,
+			ASN1ObjectIdentifier oid)
+	{
+		byte[] value = certificate.getExtensionValue(oid.getId());
+		if (value == null)
+			return null;
+
+		try
+		{
+			return JcaX509ExtensionUtils.parseExtensionValue(value);
+		}
+		catch (IOException e)
+		{
+			logger.warn("Unable to parse extension {} of client certificate '{}': {}", oid.getId(),
+					certificate.getSubjectX500Principal().getName(), e.getMessage());
+			return null;
+		}
+	}
+
+	private static void addUri(List<URI> uris, GeneralName name)
+	{
+		if (name.getTagNo() != GeneralName.uniformResourceIdentifier)
+			return;
+
+		try
+		{
+			uris.add(new URI(name.getName().toString()));
+		}
+		catch (URISyntaxException e)
+		{
+			logger.warn("Invalid URI '{}' in client certificate: {}", name.getName(), e.getMessage());
+		}
+	}
+
+	private static String fingerprint(X509Certificate certificate)
+	{
+		try
+		{
+			return Base64.getEncoder()
+					.encodeToString(MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded()));
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private synchronized void evict(long now)
+	{
+		if (entries.size() < maxSize)
+			return;
+
+		for (Map.Entry<String, Entry> e : entries.entrySet())
+		{
+			if (now - e.getValue().expires >= 0 && entries.remove(e.getKey(), e.getValue()))
+				evictions.increment();
+		}
+
+		while (entries.size() >= maxSize)
+		{
+			Map.Entry<String, Entry> eldest = null;
+			for (Map.Entry<String, Entry> e : entries.entrySet())
+			{
+				if (eldest == null || e.getValue().lastAccess < eldest.getValue().lastAccess)
+					eldest = e;
+			}
+
+			if (eldest == null)
+				return;
+			if (entries.remove(eldest.getKey(), eldest.getValue()))
+				evictions.increment();
+		}
+	}
+
+	@ManagedOperation(value = "Removes all cached validation results and CRLs", impact = "ACTION")
+	public void clear()
+	{
+		entries.clear();
+		crls.clear();
+	}
+
+	public Set<RevocationCheck> getRevocationChecks()
+	{
+		return revocationChecks;
+	}
+
+	@ManagedAttribute("True if certificates with unknown revocation status are accepted")
+	public boolean isSoftFail()
+	{
+		return softFail;
+	}
+
+	@ManagedAttribute("Number of cached validation results")
+	public int getSize()
+	{
+		return entries.size();
+	}
+
+	@ManagedAttribute("Number of cache hits")
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	@ManagedAttribute("Number of cache misses, i.e. validations")
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	@ManagedAttribute("Number of requests that waited for a concurrent validation of the same certificate")
+	public long getCoalesced()
+	{
+		return coalesced.sum();
+	}
+
+	@ManagedAttribute("Number of evicted validation results")
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	public long getResults(Result result)
+	{
+		return results[result.ordinal()].sum();
+	}
+
+	@ManagedAttribute("Number of validations with result valid")
+	public long getResultsValid()
+	{
+		return getResults(Result.VALID);
+	}
+
+	@ManagedAttribute("Number of validations with result revoked")
+	public long getResultsRevoked()
+	{
+		return getResults(Result.REVOKED);
+	}
+
+	@ManagedAttribute("Number of validations with result untrusted")
+	public long getResultsUntrusted()
+	{
+		return getResults(Result.UNTRUSTED);
+	}
+
+	@ManagedAttribute("Number of validations with unknown revocation status")
+	public long getResultsRevocationUnknown()
+	{
+		return getResults(Result.REVOCATION_UNKNOWN);
+	}
+}
@@ -0,0 +1,30 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+/**
+ * {@link AsyncListener} notified when a request completes, stays registered if async processing is started again after
+ * a dispatch. Timeouts and errors are ignored unless overridden.
+ */
+abstract class CompletionListener implements AsyncListener
+{
+	@Override
+	public final void onStartAsync(AsyncEvent event) throws IOException
+	{
+		// listeners are removed if async is started again after a dispatch
+		event.getAsyncContext().addListener(this);
+	}
+
+	@Override
+	public void onTimeout(AsyncEvent event) throws IOException
+	{
+	}
+
+	@Override
+	public void onError(AsyncEvent event) throws IOException
+	{
+	}
+}
@@ -0,0 +1,223 @@
+package de.rwh.utils.jetty;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+
+/**
+ * Connector tuning: acceptor and selector threads, accept queue, idle timeout, SO_REUSEADDR and the connector's
+ * {@link ByteBufferPool}. Values &lt; 0 select Jetty defaults. Connectors share the server's {@link ByteBufferPool}
+ * unless a buffer type other than {@link BufferType#DEFAULT} or pool settings are configured.
+ */
+public class ConnectorConfiguration
+{
+	public static enum BufferType
+	{
+		/**
+		 * Jetty's defaults: the server's shared buffer pool is used, TLS settings are not changed.
+		 */
+		DEFAULT,
+
+		/**
+		 * Dedicated buffer pool, TLS encryption and decryption also use direct (off-heap) buffers, Jetty's
+		 * {@link SslConnectionFactory} uses heap buffers by default.
+		 */
+		DIRECT,
+
+		/**
+		 * Dedicated buffer pool, all buffers including TLS buffers are allocated on the heap.
+		 */
+		HEAP
+	}
+
+	/**
+	 * {@link ArrayByteBufferPool} allocating heap buffers only.
+	 */
+	public static class HeapArrayByteBufferPool extends ArrayByteBufferPool
+	{
+		public HeapArrayByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength,
+				long maxHeapMemory)
+		{
+			super(minCapacity, factor, maxCapacity, maxQueueLength, maxHeapMemory, 0);
+		}
+
+		@Override
+		public ByteBuffer acquire(int size, boolean direct)
+		{
+			return super.acquire(size, false);
+		}
+
+		@Override
+		public ByteBuffer newByteBuffer(int capacity, boolean direct)
+		{
+			return super.newByteBuffer(capacity, false);
+		}
+	}
+
+	public static final long DEFAULT_IDLE_TIMEOUT = 30_000;
+
+	private final int acceptors;
+	private final int selectors;
+	private final int acceptQueueSize;
+	private final long idleTimeout;
+	private final boolean reuseAddress;
+
+	private final BufferType bufferType;
+	private final int bufferPoolMinCapacity;
+	private final int bufferPoolFactor;
+	private final int bufferPoolMaxCapacity;
+	private final int bufferPoolMaxBucketSize;
+	private final long bufferPoolMaxHeapMemory;
+	private final long bufferPoolMaxDirectMemory;
+
+	public ConnectorConfiguration()
+	{
+		this(-1, -1, 0, DEFAULT_IDLE_TIMEOUT, true, BufferType.DEFAULT, -1, -1, -1, -1, 0, 0);
+	}
+
+	/**
+	 * @param acceptors
+	 *            number of acceptor threads, &lt; 0 for Jetty default
+	 * @param selectors
+	 *            number of selector threads, &lt; 0 for Jetty default
+	 * @param acceptQueueSize
+	 *            accept queue (backlog) size, 0 for OS default
+	 * @param idleTimeout
+	 *            connection idle timeout in milliseconds
+	 * @param reuseAddress
+	 *            SO_REUSEADDR
+	 * @param bufferType
+	 *            may be <code>null</code>, {@link BufferType#DEFAULT} if <code>null</code>
+	 * @param bufferPoolMinCapacity
+	 *            minimum pooled buffer capacity in bytes, &lt; 0 for Jetty default
+	 * @param bufferPoolFactor
+	 *            capacity difference between buffer buckets in bytes, &lt; 0 for Jetty default
+	 * @param bufferPoolMaxCapacity
+	 *            maximum pooled buffer capacity in bytes, &lt; 0 for Jetty default
+	 * @param bufferPoolMaxBucketSize
+	 *            maximum number of buffers per bucket, &lt; 0 for unbounded
+	 * @param bufferPoolMaxHeapMemory
+	 *            maximum heap memory retained by the pool in bytes, 0 for Jetty heuristic, &lt; 0 for unlimited
+	 * @param bufferPoolMaxDirectMemory
+	 *            maximum direct memory retained by the pool in bytes, 0 for Jetty heuristic, &lt; 0 for unlimited
+	 */
+	public ConnectorConfiguration(int acceptors, int selectors, int acceptQueueSize, long idleTimeout,
+			boolean reuseAddress, BufferType bufferType, int bufferPoolMinCapacity, int bufferPoolFactor,
+			int bufferPoolMaxCapacity, int bufferPoolMaxBucketSize, long bufferPoolMaxHeapMemory,
+			long bufferPoolMaxDirectMemory)
+	{
+		this.acceptors = acceptors;
+		this.selectors = selectors;
+		this.acceptQueueSize = acceptQueueSize;
+		this.idleTimeout = idleTimeout;
+		this.reuseAddress = reuseAddress;
+		this.bufferType = bufferType == null ? BufferType.DEFAULT : bufferType;
+		this.bufferPoolMinCapacity = bufferPoolMinCapacity;
+		this.bufferPoolFactor = bufferPoolFactor;
+		this.bufferPoolMaxCapacity = bufferPoolMaxCapacity;
+		this.bufferPoolMaxBucketSize = bufferPoolMaxBucketSize;
+		this.bufferPoolMaxHeapMemory = bufferPoolMaxHeapMemory;
+		this.bufferPoolMaxDirectMemory = bufferPoolMaxDirectMemory;
+	}
+
+	public int getAcceptors()
+	{
+		return acceptors;
+	}
+
+	public int getSelectors()
+	{
+		return selectors;
+	}
+
+	public int getAcceptQueueSize()
+	{
+		return acceptQueueSize;
+	}
+
+	public long getIdleTimeout()
+	{
+		return idleTimeout;
+	}
+
+	public boolean isReuseAddress()
+	{
+		return reuseAddress;
+	}
+
+	public BufferType getBufferType()
+	{
+		return bufferType;
+	}
+
+	/**
+	 * @return <code>true</code> if the buffer type is not {@link BufferType#DEFAULT} or buffer pool settings deviate
+	 *         from Jetty's defaults
+	 */
+	public boolean isDedicatedByteBufferPool()
+	{
+		return !BufferType.DEFAULT.equals(bufferType) || bufferPoolMinCapacity >= 0 || bufferPoolFactor >= 0
+				|| bufferPoolMaxCapacity >= 0 || bufferPoolMaxBucketSize >= 0 || bufferPoolMaxHeapMemory != 0
+				|| bufferPoolMaxDirectMemory != 0;
+	}
+
+	/**
+	 * @return new pool for a single connector
+	 * @see #isDedicatedByteBufferPool()
+	 */
+	public ByteBufferPool newByteBufferPool()
+	{
+		switch (bufferType)
+		{
+			case HEAP:
+				return new HeapArrayByteBufferPool(bufferPoolMinCapacity, bufferPoolFactor, bufferPoolMaxCapacity,
+						bufferPoolMaxBucketSize, bufferPoolMaxHeapMemory);
+
+			case DIRECT:
+			case DEFAULT:
+			default:
+				return new ArrayByteBufferPool(bufferPoolMinCapacity, bufferPoolFactor, bufferPoolMaxCapacity,
+						bufferPoolMaxBucketSize, bufferPoolMaxHeapMemory, bufferPoolMaxDirectMemory);
+		}
+	}
+
+	public <C extends ServerConnector> C configure(C connector)
+	{
+		connector.setAcceptQueueSize(acceptQueueSize);
+		connector.setIdleTimeout(idleTimeout);
+		connector.setReuseAddress(reuseAddress);
+
+		return connector;
+	}
+
+	public UnixSocketConnector configure(UnixSocketConnector connector)
+	{
+		connector.setAcceptQueueSize(acceptQueueSize);
+		connector.setIdleTimeout(idleTimeout);
+		connector.setReuseAddress(reuseAddress);
+
+		return connector;
+	}
+
+	/**
+	 * @param sslConnectionFactory
+	 *            not <code>null</code>
+	 * @return the given factory, direct buffer settings only changed for {@link BufferType#DIRECT} and
+	 *         {@link BufferType#HEAP}
+	 */
+	public SslConnectionFactory configure(SslConnectionFactory sslConnectionFactory)
+	{
+		if (BufferType.DEFAULT.equals(bufferType))
+			return sslConnectionFactory;
+
+		boolean direct = BufferType.DIRECT.equals(bufferType);
+		sslConnectionFactory.setDirectBuffersForEncryption(direct);
+		sslConnectionFactory.setDirectBuffersForDecryption(direct);
+
+		return sslConnectionFactory;
+	}
+}
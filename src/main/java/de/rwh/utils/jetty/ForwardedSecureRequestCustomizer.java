@@ -1,91 +1,306 @@
 package de.rwh.utils.jetty;
 
-import java.io.IOException;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
+import static de.rwh.utils.jetty.ClientCertificateHeaderDecoder.CERT_BEGIN;
+import static de.rwh.utils.jetty.ClientCertificateHeaderDecoder.CERT_END;
+import static de.rwh.utils.jetty.ClientCertificateHeaderDecoder.URL_ENCODED_CERT_BEGIN;
+import static de.rwh.utils.jetty.ClientCertificateHeaderDecoder.URL_ENCODED_CERT_END;
+
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConfiguration.Customizer;
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.rwh.utils.crypto.io.PemIo;
-
+@ManagedObject("Sets the client certificate forwarded by a reverse proxy as request attribute")
 public class ForwardedSecureRequestCustomizer implements Customizer
 {
-	private static final String URL_ENCODED_CERT_BEGIN = "-----BEGIN%20CERTIFICATE-----%0A";
-	private static final String URL_ENCODED_CERT_END = "%0A-----END%20CERTIFICATE-----%0A";
+	public static enum Rejection
+	{
+		MISSING, EMPTY, BAD_PREFIX, BAD_SUFFIX, PARSE_FAILURE, UNTRUSTED, REVOKED
+	}
 
-	private static final String CERT_BEGIN = "-----BEGIN CERTIFICATE-----";
-	private static final String CERT_END = "-----END CERTIFICATE-----";
+	public static final long DEFAULT_SUMMARY_INTERVAL_SECONDS = 60;
 
 	private static final Logger logger = LoggerFactory.getLogger(ForwardedSecureRequestCustomizer.class);
 
 	private final String clientCertHeaderName;
+	private final ClientCertificateCache cache;
+	private final ClientCertificateValidator validator;
+	private final String[] skipPathPrefixes;
+	private final long summaryIntervalNanos;
+
+	private final LongAdder[] rejections = new LongAdder[Rejection.values().length];
+	private final long[] rejectionsAtLastSummary = new long[Rejection.values().length];
+	private final AtomicLong nextSummary;
 
 	public ForwardedSecureRequestCustomizer(String clientCertHeaderName)
+	{
+		this(clientCertHeaderName, null);
+	}
+
+	/**
+	 * @param clientCertHeaderName
+	 *            not <code>null</code>
+	 * @param cache
+	 *            may be <code>null</code>, client certificates are parsed on every request if <code>null</code>
+	 */
+	public ForwardedSecureRequestCustomizer(String clientCertHeaderName, ClientCertificateCache cache)
+	{
+		this(clientCertHeaderName, cache, Collections.emptyList(), DEFAULT_SUMMARY_INTERVAL_SECONDS,
+				TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param clientCertHeaderName
+	 *            not <code>null</code>
+	 * @param cache
+	 *            may be <code>null</code>, client certificates are parsed on every request if <code>null</code>
+	 * @param skipPathPrefixes
+	 *            may be <code>null</code>, requests with a request URI matching one of the given prefixes up to a path
+	 *            segment boundary are not checked for a client certificate header
+	 * @param summaryInterval
+	 *            minimum interval between two log messages summarizing rejected client certificate headers
+	 * @param summaryIntervalUnit
+	 *            not <code>null</code>
+	 */
+	public ForwardedSecureRequestCustomizer(String clientCertHeaderName, ClientCertificateCache cache,
+			List<String> skipPathPrefixes, long summaryInterval, TimeUnit summaryIntervalUnit)
+	{
+		this(clientCertHeaderName, cache, null, skipPathPrefixes, summaryInterval, summaryIntervalUnit);
+	}
+
+	/**
+	 * @param clientCertHeaderName
+	 *            not <code>null</code>
+	 * @param cache
+	 *            may be <code>null</code>, client certificates are parsed on every request if <code>null</code>
+	 * @param validator
+	 *            may be <code>null</code>, if not <code>null</code> only client certificates accepted by the validator
+	 *            are set as request attribute
+	 * @param skipPathPrefixes
+	 *            may be <code>null</code>, requests with a request URI matching one of the given prefixes up to a path
+	 *            segment boundary are not checked for a client certificate header
+	 * @param summaryInterval
+	 *            minimum interval between two log messages summarizing rejected client certificate headers
+	 * @param summaryIntervalUnit
+	 *            not <code>null</code>
+	 */
+	public ForwardedSecureRequestCustomizer(String clientCertHeaderName, ClientCertificateCache cache,
+			ClientCertificateValidator validator, List<String> skipPathPrefixes, long summaryInterval,
+			TimeUnit summaryIntervalUnit)
 	{
 		this.clientCertHeaderName = Objects.requireNonNull(clientCertHeaderName, "clientCertHeaderName");
+		this.cache = cache;
+		this.validator = validator;
+		this.skipPathPrefixes = skipPathPrefixes == null ? new String[0]
+				: skipPathPrefixes.stream().filter(p -> p != null && !p.isEmpty()).toArray(String[]::new);
+		this.summaryIntervalNanos = summaryIntervalUnit.toNanos(summaryInterval);
+
+		for (int i = 0; i < rejections.length; i++)
+			rejections[i] = new LongAdder();
+
+		nextSummary = new AtomicLong(System.nanoTime() + summaryIntervalNanos);
+	}
+
+	public String getClientCertHeaderName()
+	{
+		return clientCertHeaderName;
+	}
+
+	public ClientCertificateCache getCache()
+	{
+		return cache;
+	}
+
+	public ClientCertificateValidator getValidator()
+	{
+		return validator;
 	}
 
 	@Override
 	public void customize(Connector connector, HttpConfiguration channelConfig, Request request)
 	{
+		if (skip(request))
+			return;
+
 		X509Certificate clientCert = getClientCert(request);
 
 		if (clientCert != null)
 			request.setAttribute("javax.servlet.request.X509Certificate", new X509Certificate[] { clientCert });
 	}
 
+	private boolean skip(Request request)
+	{
+		if (skipPathPrefixes.length == 0)
+			return false;
+
+		String requestUri = request.getRequestURI();
+		if (requestUri == null)
+			return false;
+
+		return PathPrefixes.matchesAny(requestUri, skipPathPrefixes);
+	}
+
 	private X509Certificate getClientCert(Request request)
 	{
 		String clientCertString = request.getHeader(clientCertHeaderName);
 
 		if (clientCertString == null)
 		{
-			logger.warn("No {} header found", clientCertHeaderName);
-			return null;
+			logger.debug("No {} header found", clientCertHeaderName);
+			return reject(Rejection.MISSING);
 		}
 		if (clientCertString.isEmpty())
 		{
-			logger.warn("{} header empty", clientCertHeaderName);
-			return null;
+			logger.debug("{} header empty", clientCertHeaderName);
+			return reject(Rejection.EMPTY);
 		}
 
-		if (!clientCertString.startsWith(CERT_BEGIN) && !clientCertString.startsWith(URL_ENCODED_CERT_BEGIN))
+		if (!ClientCertificateHeaderDecoder.hasValidPrefix(clientCertString))
 		{
-			logger.warn("{} header does not start with {} or {}", clientCertHeaderName, CERT_BEGIN,
+			logger.debug("{} header does not start with {} or {}", clientCertHeaderName, CERT_BEGIN,
 					URL_ENCODED_CERT_BEGIN);
-			return null;
+			return reject(Rejection.BAD_PREFIX);
 		}
-		if (!clientCertString.endsWith(CERT_END) && !clientCertString.endsWith(URL_ENCODED_CERT_END))
+		if (!ClientCertificateHeaderDecoder.hasValidSuffix(clientCertString))
 		{
-			logger.warn("{} header does not end with {} or {}", clientCertHeaderName, CERT_END, URL_ENCODED_CERT_END);
-			return null;
+			logger.debug("{} header does not end with {} or {}", clientCertHeaderName, CERT_END,
+					URL_ENCODED_CERT_END);
+			return reject(Rejection.BAD_SUFFIX);
 		}
 
-		if (clientCertString.startsWith(CERT_BEGIN))
-		{
-			clientCertString = CERT_BEGIN
-					+ clientCertString.replace(CERT_BEGIN, "").replace(CERT_END, "").replaceAll(" ", "\n") + CERT_END;
-		}
-		else
+		X509Certificate clientCert = cache != null
+				? cache.get(clientCertString, ForwardedSecureRequestCustomizer::parseClientCert)
+				: parseClientCert(clientCertString);
+
+		if (clientCert == null)
+			return reject(Rejection.PARSE_FAILURE);
+
+		if (validator != null)
 		{
-			clientCertString = URLDecoder.decode(clientCertString, StandardCharsets.UTF_8).trim();
+			ClientCertificateValidator.Result result = validator.validate(clientCert);
+			if (!validator.isAccepted(result))
+			{
+				logger.debug("Client certificate '{}' not accepted: {}",
+						clientCert.getSubjectX500Principal().getName(), result);
+				return reject(ClientCertificateValidator.Result.REVOKED.equals(result) ? Rejection.REVOKED
+						: Rejection.UNTRUSTED);
+			}
 		}
 
+		return clientCert;
+	}
+
+	private static X509Certificate parseClientCert(String clientCertString)
+	{
 		try
 		{
-			return PemIo.readX509CertificateFromPem(clientCertString);
+			return ClientCertificateHeaderDecoder.decode(clientCertString);
 		}
-		catch (CertificateException | IOException e)
+		catch (CertificateException e)
 		{
+			logger.debug("Unable to parse client certificate header", e);
 			return null;
 		}
 	}
+
+	private X509Certificate reject(Rejection rejection)
+	{
+		rejections[rejection.ordinal()].increment();
+
+		long now = System.nanoTime();
+		long next = nextSummary.get();
+		if (now - next >= 0 && nextSummary.compareAndSet(next, now + summaryIntervalNanos))
+			logSummary();
+
+		return null;
+	}
+
+	private void logSummary()
+	{
+		if (!logger.isWarnEnabled())
+			return;
+
+		StringBuilder b = new StringBuilder();
+		long total = 0;
+		for (Rejection r : Rejection.values())
+		{
+			long count = rejections[r.ordinal()].sum();
+			long delta = count - rejectionsAtLastSummary[r.ordinal()];
+			rejectionsAtLastSummary[r.ordinal()] = count;
+
+			if (delta > 0)
+			{
+				if (total > 0)
+					b.append(", ");
+
+				b.append(r.name().toLowerCase(Locale.ENGLISH)).append(": ").append(delta);
+				total += delta;
+			}
+		}
+
+		if (total > 0)
+			logger.warn("{} request{} without valid {} header since last summary ({})", total, total > 1 ? "s" : "",
+					clientCertHeaderName, b);
+	}
+
+	public long getRejections(Rejection rejection)
+	{
+		return rejections[rejection.ordinal()].sum();
+	}
+
+	@ManagedAttribute("Number of requests without client certificate header")
+	public long getRejectionsMissing()
+	{
+		return getRejections(Rejection.MISSING);
+	}
+
+	@ManagedAttribute("Number of requests with empty client certificate header")
+	public long getRejectionsEmpty()
+	{
+		return getRejections(Rejection.EMPTY);
+	}
+
+	@ManagedAttribute("Number of requests with client certificate header not starting with BEGIN CERTIFICATE")
+	public long getRejectionsBadPrefix()
+	{
+		return getRejections(Rejection.BAD_PREFIX);
+	}
+
+	@ManagedAttribute("Number of requests with client certificate header not ending with END CERTIFICATE")
+	public long getRejectionsBadSuffix()
+	{
+		return getRejections(Rejection.BAD_SUFFIX);
+	}
+
+	@ManagedAttribute("Number of requests with client certificate header that could not be parsed")
+	public long getRejectionsParseFailure()
+	{
+		return getRejections(Rejection.PARSE_FAILURE);
+	}
+
+	@ManagedAttribute("Number of requests with untrusted client certificate or unknown revocation status")
+	public long getRejectionsUntrusted()
+	{
+		return getRejections(Rejection.UNTRUSTED);
+	}
+
+	@ManagedAttribute("Number of requests with revoked client certificate")
+	public long getRejectionsRevoked()
+	{
+		return getRejections(Rejection.REVOKED);
+	}
 }
@@ -0,0 +1,74 @@
+package de.rwh.utils.jetty;
+
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+
+/**
+ * HTTP/2 settings applied to h2 (TLS with ALPN) and h2c (cleartext) connection factories.
+ */
+public class Http2Configuration
+{
+	public static final int DEFAULT_MAX_CONCURRENT_STREAMS = 128;
+	public static final int DEFAULT_INITIAL_STREAM_RECV_WINDOW = 512 * 1024;
+	public static final int DEFAULT_INITIAL_SESSION_RECV_WINDOW = 1024 * 1024;
+	public static final long DEFAULT_STREAM_IDLE_TIMEOUT = 30_000;
+
+	private final int maxConcurrentStreams;
+	private final int initialStreamRecvWindow;
+	private final int initialSessionRecvWindow;
+	private final long streamIdleTimeout;
+
+	public Http2Configuration()
+	{
+		this(DEFAULT_MAX_CONCURRENT_STREAMS, DEFAULT_INITIAL_STREAM_RECV_WINDOW, DEFAULT_INITIAL_SESSION_RECV_WINDOW,
+				DEFAULT_STREAM_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * @param maxConcurrentStreams
+	 *            maximum number of concurrent streams per connection, &lt; 0 for unlimited
+	 * @param initialStreamRecvWindow
+	 *            initial flow control window size of a stream in bytes
+	 * @param initialSessionRecvWindow
+	 *            initial flow control window size of a connection in bytes
+	 * @param streamIdleTimeout
+	 *            stream idle timeout in milliseconds
+	 */
+	public Http2Configuration(int maxConcurrentStreams, int initialStreamRecvWindow, int initialSessionRecvWindow,
+			long streamIdleTimeout)
+	{
+		this.maxConcurrentStreams = maxConcurrentStreams;
+		this.initialStreamRecvWindow = initialStreamRecvWindow;
+		this.initialSessionRecvWindow = initialSessionRecvWindow;
+		this.streamIdleTimeout = streamIdleTimeout;
+	}
+
+	public int getMaxConcurrentStreams()
+	{
+		return maxConcurrentStreams;
+	}
+
+	public int getInitialStreamRecvWindow()
+	{
+		return initialStreamRecvWindow;
+	}
+
+	public int getInitialSessionRecvWindow()
+	{
+		return initialSessionRecvWindow;
+	}
+
+	public long getStreamIdleTimeout()
+	{
+		return streamIdleTimeout;
+	}
+
+	public <F extends AbstractHTTP2ServerConnectionFactory> F configure(F connectionFactory)
+	{
+		connectionFactory.setMaxConcurrentStreams(maxConcurrentStreams);
+		connectionFactory.setInitialStreamRecvWindow(initialStreamRecvWindow);
+		connectionFactory.setInitialSessionRecvWindow(initialSessionRecvWindow);
+		connectionFactory.setStreamIdleTimeout(streamIdleTimeout);
+
+		return connectionFactory;
+	}
+}
@@ -0,0 +1,206 @@
+package de.rwh.utils.jetty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.annotation.WebServlet;
+
+import org.eclipse.jetty.annotations.AnnotationConfiguration;
+import org.eclipse.jetty.annotations.AnnotationParser;
+import org.eclipse.jetty.plus.annotation.ContainerInitializer;
+import org.eclipse.jetty.util.JavaVersion;
+import org.eclipse.jetty.util.MultiException;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AnnotationConfiguration} excluding web inf jars and classes directories from the annotation scan that, based
+ * on a {@link ClassPathIndex}, neither contain a <code>ServletContainerInitializer</code> service file nor classes
+ * annotated with <code>@WebServlet</code>, <code>@WebFilter</code>, <code>@WebListener</code> or a
+ * <code>@HandlesTypes</code> annotation nor sub types of <code>@HandlesTypes</code> classes. The remaining entries are
+ * scanned in parallel on a {@link ForkJoinPool}, scan times are logged per entry.
+ */
+public class IndexedAnnotationConfiguration extends AnnotationConfiguration
+{
+	private static final Logger logger = LoggerFactory.getLogger(IndexedAnnotationConfiguration.class);
+
+	private static final int SLOWEST_ENTRIES_LOGGED = 5;
+
+	private final ClassPathIndex index;
+	private final int parallelism;
+
+	public IndexedAnnotationConfiguration()
+	{
+		this(ClassPathIndex.get(), 0);
+	}
+
+	/**
+	 * @param index
+	 *            may be <code>null</code>, all web inf jars and classes directories are scanned if <code>null</code>
+	 * @param parallelism
+	 *            number of scanner threads, &lt;= 0 for number of available processors
+	 */
+	public IndexedAnnotationConfiguration(ClassPathIndex index, int parallelism)
+	{
+		this.index = index;
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+	}
+
+	public ClassPathIndex getIndex()
+	{
+		return index;
+	}
+
+	public int getParallelism()
+	{
+		return parallelism;
+	}
+
+	@Override
+	protected void scanForAnnotations(WebAppContext context) throws Exception
+	{
+		Object target = context.getAttribute(JavaVersion.JAVA_TARGET_PLATFORM);
+		AnnotationParser parser = createAnnotationParser(target == null ? 0 : Integer.parseInt(target.toString()));
+
+		_parserTasks = new ArrayList<>();
+		parseContainerPath(context, parser);
+		parseWebInfClasses(context, parser);
+		parseWebInfLib(context, parser);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			List<ParserTask> tasks = index == null ? _parserTasks : relevantTasks(context, pool);
+			tasks.forEach(t -> t.setStatistic(new TimeStatistic()));
+
+			long start = System.nanoTime();
+			List<Future<Void>> results = pool.invokeAll(tasks, getMaxScanWait(context), TimeUnit.SECONDS);
+			long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+			MultiException exceptions = new MultiException();
+			for (Future<Void> result : results)
+			{
+				try
+				{
+					result.get();
+				}
+				catch (ExecutionException e)
+				{
+					exceptions.add(e.getCause());
+				}
+				catch (CancellationException e)
+				{
+					exceptions.add(new Exception("Timeout scanning annotations"));
+					break;
+				}
+			}
+
+			logTimings(tasks, elapsedMs);
+
+			exceptions.ifExceptionThrow();
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	private List<ParserTask> relevantTasks(WebAppContext context, ForkJoinPool pool) throws InterruptedException
+	{
+		long start = System.nanoTime();
+
+		Set<String> annotationTypes = new HashSet<>();
+		Set<String> superTypes = new HashSet<>();
+
+		if (!_discoverableAnnotationHandlers.isEmpty())
+		{
+			annotationTypes.add(WebServlet.class.getName());
+			annotationTypes.add(WebFilter.class.getName());
+			annotationTypes.add(WebListener.class.getName());
+		}
+
+		@SuppressWarnings("unchecked")
+		List<ContainerInitializer> initializers = (List<ContainerInitializer>) context
+				.getAttribute(CONTAINER_INITIALIZERS);
+		if (initializers != null)
+		{
+			for (ContainerInitializer initializer : initializers)
+			{
+				if (initializer.getInterestedTypes() == null)
+					continue;
+
+				for (Class<?> type : initializer.getInterestedTypes())
+					(type.isAnnotation() ? annotationTypes : superTypes).add(type.getName());
+			}
+		}
+
+		Map<ParserTask, Path> paths = _parserTasks.stream().filter(t -> toPath(t.getResource()) != null)
+				.collect(Collectors.toMap(t -> t, t -> toPath(t.getResource()), (a, b) -> a));
+		Set<Path> relevant = index.getRelevantEntries(paths.values(), annotationTypes, superTypes, pool);
+
+		List<ParserTask> tasks = _parserTasks.stream()
+				.filter(t -> !paths.containsKey(t) || relevant.contains(paths.get(t))).collect(Collectors.toList());
+
+		logger.info("Excluded {} of {} classpath entries from annotation scan, index check took {} ms",
+				_parserTasks.size() - tasks.size(), _parserTasks.size(), (System.nanoTime() - start) / 1_000_000);
+		if (logger.isDebugEnabled())
+		{
+			Set<ParserTask> included = new HashSet<>(tasks);
+			_parserTasks.stream().filter(t -> !included.contains(t))
+					.forEach(t -> logger.debug("Excluded {} from annotation scan", t.getResource()));
+		}
+
+		return tasks;
+	}
+
+	private static Path toPath(Resource resource)
+	{
+		try
+		{
+			File file = resource == null ? null : resource.getFile();
+			return file == null ? null : file.toPath();
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	private void logTimings(List<ParserTask> tasks, long elapsedMs)
+	{
+		logger.info("Scanned {} classpath entries for annotations in {} ms using {} threads", tasks.size(), elapsedMs,
+				parallelism);
+
+		List<ParserTask> byElapsed = tasks.stream()
+				.sorted(Comparator.comparingLong((ParserTask t) -> t.getStatistic().getElapsed()).reversed())
+				.collect(Collectors.toList());
+
+		for (int i = 0; i < byElapsed.size(); i++)
+		{
+			ParserTask task = byElapsed.get(i);
+			long taskMs = task.getStatistic().getElapsed() / 1_000_000;
+
+			if (i < SLOWEST_ENTRIES_LOGGED)
+				logger.info("Scanned {} in {} ms", task.getResource(), taskMs);
+			else
+				logger.debug("Scanned {} in {} ms", task.getResource(), taskMs);
+		}
+	}
+}
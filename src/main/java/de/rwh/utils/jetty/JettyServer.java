@@ -1,6 +1,5 @@
 package de.rwh.utils.jetty;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -10,19 +9,20 @@ import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
-import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.Enumeration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -30,26 +30,45 @@ import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 
 import org.eclipse.jetty.annotations.AnnotationConfiguration;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConfiguration.Customizer;
 import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.LowResourceMonitor;
 import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandler.Context;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.server.handler.ErrorHandler;
+import org.eclipse.jetty.server.handler.HandlerCollection;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.resource.PathResource;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.eclipse.jetty.webapp.Configuration;
 import org.eclipse.jetty.webapp.WebAppContext;
 import org.eclipse.jetty.webapp.WebInfConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.rwh.utils.crypto.CertificateChecker;
-import de.rwh.utils.crypto.CertificateCheckerImpl;
 import de.rwh.utils.crypto.CertificateHelper;
 import de.rwh.utils.crypto.io.CertificateReader;
 
@@ -61,16 +80,150 @@ public class JettyServer extends Server
 	private static final String PROPERTY_JETTY_PORT_HTTP_DEFAULT = "8080";
 	private static final String PROPERTY_JETTY_PORT_HTTPS_DEFAULT = "8443";
 
+	private static final String PROPERTY_JETTY_UNIXSOCKET_PATH = "jetty.unixsocket.path";
+
 	private static final String PROPERTY_JETTY_TRUSTSTORE_PEM = "jetty.truststore.pem";
 	private static final String PROPERTY_JETTY_KEYSTORE_P12 = "jetty.keystore.p12";
 	private static final String PROPERTY_JETTY_KEYSTORE_PASSWORD = "jetty.keystore.password";
+	private static final String PROPERTY_JETTY_KEYSTORE_RELOAD = "jetty.keystore.reload";
+	private static final String PROPERTY_JETTY_KEYSTORE_RELOAD_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_KEYSTORE_RELOAD_INTERVAL = "jetty.keystore.reload.interval";
+	private static final String PROPERTY_JETTY_KEYSTORE_RELOAD_INTERVAL_DEFAULT = "10";
+	private static final String PROPERTY_JETTY_CERTIFICATE_EXPIRY_WARNING_DAYS = "jetty.certificate.expiry.warningdays";
+	private static final String PROPERTY_JETTY_CERTIFICATE_EXPIRY_CHECK_INTERVAL = "jetty.certificate.expiry.checkinterval";
 	private static final String PROPERTY_JETTY_NEEDCLIENTAUTH = "jetty.needclientauth";
 	private static final String PROPERTY_JETTY_NEEDCLIENTAUTH_DEFAULT = "false";
 	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER = "jetty.clientcertheader";
 	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_DEFAULT = "X-ClientCert";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_SIZE = "jetty.clientcertheader.cache.size";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_SIZE_DEFAULT = "1000";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_TTL = "jetty.clientcertheader.cache.ttl";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_TTL_DEFAULT = "3600";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_SKIP_PATHS = "jetty.clientcertheader.skip.paths";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_SUMMARY_INTERVAL = "jetty.clientcertheader.summary.interval";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_SUMMARY_INTERVAL_DEFAULT = String
+			.valueOf(ForwardedSecureRequestCustomizer.DEFAULT_SUMMARY_INTERVAL_SECONDS);
+	private static final String PROPERTY_JETTY_TRUSTED_PROXIES = "jetty.trustedproxies";
+	private static final String PROPERTY_JETTY_TRUSTED_PROXIES_CLIENT_CERT_HEADER = "jetty.trustedproxies.clientcertheader";
+	private static final String PROPERTY_JETTY_TRUSTED_PROXIES_CLIENT_CERT_HEADER_DEFAULT = "true";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATE = "jetty.clientcertheader.validate";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATE_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATION_CACHE_SIZE = "jetty.clientcertheader.validation.cache.size";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATION_CACHE_TTL = "jetty.clientcertheader.validation.cache.ttl";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION = "jetty.clientcertheader.revocation";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION_SOFTFAIL = "jetty.clientcertheader.revocation.softfail";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION_SOFTFAIL_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION_TIMEOUT = "jetty.clientcertheader.revocation.timeout";
+
+	private static final String PROPERTY_JETTY_THREADPOOL_TYPE = "jetty.threadpool.type";
+	private static final String PROPERTY_JETTY_THREADPOOL_TYPE_QUEUED = "queued";
+	private static final String PROPERTY_JETTY_THREADPOOL_TYPE_VIRTUAL = "virtual";
+	private static final String PROPERTY_JETTY_THREADPOOL_MIN = "jetty.threadpool.min";
+	private static final String PROPERTY_JETTY_THREADPOOL_MIN_DEFAULT = "8";
+	private static final String PROPERTY_JETTY_THREADPOOL_MAX = "jetty.threadpool.max";
+	private static final String PROPERTY_JETTY_THREADPOOL_MAX_DEFAULT = "200";
+	private static final String PROPERTY_JETTY_THREADPOOL_IDLETIMEOUT = "jetty.threadpool.idletimeout";
+	private static final String PROPERTY_JETTY_THREADPOOL_IDLETIMEOUT_DEFAULT = "60000";
+
+	private static final String PROPERTY_JETTY_HTTP2_ENABLED = "jetty.http2.enabled";
+	private static final String PROPERTY_JETTY_HTTP2_ENABLED_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_HTTP2_MAX_CONCURRENT_STREAMS = "jetty.http2.maxconcurrentstreams";
+	private static final String PROPERTY_JETTY_HTTP2_INITIAL_STREAM_RECV_WINDOW = "jetty.http2.initialstreamrecvwindow";
+	private static final String PROPERTY_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW = "jetty.http2.initialsessionrecvwindow";
+	private static final String PROPERTY_JETTY_HTTP2_STREAM_IDLE_TIMEOUT = "jetty.http2.streamidletimeout";
+
+	private static final String PROPERTY_JETTY_TLS_SESSION_CACHE_SIZE = "jetty.tls.sessioncachesize";
+	private static final String PROPERTY_JETTY_TLS_SESSION_TIMEOUT = "jetty.tls.sessiontimeout";
+	private static final String PROPERTY_JETTY_TLS_SESSION_TICKETS = "jetty.tls.sessiontickets";
+	private static final String PROPERTY_JETTY_TLS_PROTOCOLS = "jetty.tls.protocols";
+	private static final String PROPERTY_JETTY_TLS_CIPHER_SUITES = "jetty.tls.ciphersuites";
+	private static final String PROPERTY_JETTY_TLS_NAMED_GROUPS = "jetty.tls.namedgroups";
+	private static final String PROPERTY_JETTY_TLS_PREFER_ECDSA = "jetty.tls.preferecdsa";
+	private static final String PROPERTY_JETTY_TLS_PREFER_ECDSA_DEFAULT = "false";
+
+	private static final String PROPERTY_JETTY_CONNECTOR_ACCEPTORS = "jetty.connector.acceptors";
+	private static final String PROPERTY_JETTY_CONNECTOR_SELECTORS = "jetty.connector.selectors";
+	private static final String PROPERTY_JETTY_CONNECTOR_ACCEPT_QUEUE_SIZE = "jetty.connector.acceptqueuesize";
+	private static final String PROPERTY_JETTY_CONNECTOR_IDLE_TIMEOUT = "jetty.connector.idletimeout";
+	private static final String PROPERTY_JETTY_CONNECTOR_REUSE_ADDRESS = "jetty.connector.reuseaddress";
+	private static final String PROPERTY_JETTY_CONNECTOR_BUFFER_TYPE = "jetty.connector.bytebufferpool.type";
+	private static final String PROPERTY_JETTY_CONNECTOR_BUFFER_MIN_CAPACITY = "jetty.connector.bytebufferpool.mincapacity";
+	private static final String PROPERTY_JETTY_CONNECTOR_BUFFER_FACTOR = "jetty.connector.bytebufferpool.factor";
+	private static final String PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_CAPACITY = "jetty.connector.bytebufferpool.maxcapacity";
+	private static final String PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_BUCKET_SIZE = "jetty.connector.bytebufferpool.maxbucketsize";
+	private static final String PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_HEAP_MEMORY = "jetty.connector.bytebufferpool.maxheapmemory";
+	private static final String PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_DIRECT_MEMORY = "jetty.connector.bytebufferpool.maxdirectmemory";
+
+	private static final String PROPERTY_JETTY_HTTP_OUTPUT_BUFFER_SIZE = "jetty.http.outputbuffersize";
+	private static final String PROPERTY_JETTY_HTTP_OUTPUT_AGGREGATION_SIZE = "jetty.http.outputaggregationsize";
+	private static final String PROPERTY_JETTY_HTTP_REQUEST_HEADER_SIZE = "jetty.http.requestheadersize";
+	private static final String PROPERTY_JETTY_HTTP_RESPONSE_HEADER_SIZE = "jetty.http.responseheadersize";
+	private static final String PROPERTY_JETTY_HTTP_HEADER_CACHE_SIZE = "jetty.http.headercachesize";
+
+	private static final String PROPERTY_JETTY_QUICKSTART_MODE = "jetty.quickstart.mode";
+	private static final String PROPERTY_JETTY_QUICKSTART_MODE_OFF = "off";
+	private static final String PROPERTY_JETTY_QUICKSTART_DESCRIPTOR = "jetty.quickstart.descriptor";
+	private static final String PROPERTY_JETTY_QUICKSTART_DESCRIPTOR_DEFAULT = "jetty-quickstart.properties";
+
+	private static final String PROPERTY_JETTY_ANNOTATIONS_SCAN_INDEXED = "jetty.annotations.scan.indexed";
+	private static final String PROPERTY_JETTY_ANNOTATIONS_SCAN_INDEXED_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_ANNOTATIONS_SCAN_FILTER = "jetty.annotations.scan.filter";
+	private static final String PROPERTY_JETTY_ANNOTATIONS_SCAN_FILTER_DEFAULT = "true";
+	private static final String PROPERTY_JETTY_ANNOTATIONS_SCAN_PARALLELISM = "jetty.annotations.scan.parallelism";
+	private static final String PROPERTY_JETTY_ANNOTATIONS_SCAN_PARALLELISM_DEFAULT = "0";
+
+	private static final String PROPERTY_JETTY_METRICS_ENABLED = "jetty.metrics.enabled";
+	private static final String PROPERTY_JETTY_METRICS_ENABLED_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_METRICS_PATH = "jetty.metrics.path";
+	private static final String PROPERTY_JETTY_METRICS_HOST = "jetty.metrics.host";
+	private static final String PROPERTY_JETTY_METRICS_PORT = "jetty.metrics.port";
+	private static final String PROPERTY_JETTY_METRICS_PUBLIC = "jetty.metrics.public";
+	private static final String PROPERTY_JETTY_METRICS_PUBLIC_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_METRICS_BUCKETS = "jetty.metrics.buckets";
+	private static final String PROPERTY_JETTY_METRICS_MAX_ROUTES = "jetty.metrics.maxroutes";
+
+	private static final String PROPERTY_JETTY_ADMISSION_ENABLED = "jetty.admission.enabled";
+	private static final String PROPERTY_JETTY_ADMISSION_ENABLED_DEFAULT = "false";
+	private static final String PROPERTY_JETTY_ADMISSION_MAX_REQUESTS = "jetty.admission.maxrequests";
+	private static final String PROPERTY_JETTY_ADMISSION_MAX_REQUESTS_DEFAULT = "0";
+	private static final String PROPERTY_JETTY_ADMISSION_ROUTES = "jetty.admission.routes";
+	private static final String PROPERTY_JETTY_ADMISSION_MAX_QUEUED = "jetty.admission.maxqueued";
+	private static final String PROPERTY_JETTY_ADMISSION_MAX_WAIT = "jetty.admission.maxwait";
+	private static final String PROPERTY_JETTY_ADMISSION_RETRY_AFTER = "jetty.admission.retryafter";
+
+	private static final String PROPERTY_JETTY_LOW_RESOURCES_IDLE_TIMEOUT = "jetty.lowresources.idletimeout";
+	private static final String PROPERTY_JETTY_LOW_RESOURCES_IDLE_TIMEOUT_DEFAULT = "-1";
+	private static final String PROPERTY_JETTY_LOW_RESOURCES_MAX_TIME = "jetty.lowresources.maxtime";
+	private static final String PROPERTY_JETTY_LOW_RESOURCES_MAX_TIME_DEFAULT = "0";
+	private static final String PROPERTY_JETTY_LOW_RESOURCES_PERIOD = "jetty.lowresources.period";
+	private static final String PROPERTY_JETTY_LOW_RESOURCES_MAX_MEMORY = "jetty.lowresources.maxmemory";
+	private static final String PROPERTY_JETTY_LOW_RESOURCES_MAX_MEMORY_DEFAULT = "0";
+	private static final String PROPERTY_JETTY_STATIC_PATH = "jetty.static.path";
+	private static final String PROPERTY_JETTY_STATIC_BASE = "jetty.static.base";
+	private static final String PROPERTY_JETTY_STATIC_CACHE_MAX_SIZE = "jetty.static.cache.maxsize";
+	private static final String PROPERTY_JETTY_STATIC_CACHE_MAX_FILE_SIZE = "jetty.static.cache.maxfilesize";
+	private static final String PROPERTY_JETTY_STATIC_CACHE_MAX_FILES = "jetty.static.cache.maxfiles";
+	private static final String PROPERTY_JETTY_STATIC_MMAP = "jetty.static.mmap";
+	private static final String PROPERTY_JETTY_STATIC_MMAP_DEFAULT = "true";
+	private static final String PROPERTY_JETTY_STATIC_PRECOMPRESSED = "jetty.static.precompressed";
+	private static final String PROPERTY_JETTY_STATIC_PRECOMPRESSED_DEFAULT = "true";
+	private static final String PROPERTY_JETTY_STATIC_CACHE_CONTROL = "jetty.static.cachecontrol";
 
 	private static final Logger logger = LoggerFactory.getLogger(JettyServer.class);
 
+	/**
+	 * @param httpConfiguration
+	 *            not <code>null</code>
+	 * @param properties
+	 *            not <code>null</code>, trust store and key store read from <code>jetty.truststore.pem</code> and
+	 *            <code>jetty.keystore.p12</code>; if <code>jetty.keystore.reload</code> is <code>true</code> both files
+	 *            are watched and reloaded on change by a {@link KeyStoreReloader}, polling every
+	 *            <code>jetty.keystore.reload.interval</code> seconds if file system events are not available;
+	 *            certificate expiry monitoring configured via {@link #certificateExpiryMonitor(Properties)}
+	 * @return connector factory
+	 * @see #httpsConnector(HttpConfiguration, String, int, KeyStore, KeyStore, char[], boolean, Http2Configuration,
+	 *      TlsConfiguration, ConnectorConfiguration)
+	 */
 	public static Function<Server, ServerConnector> httpsConnector(HttpConfiguration httpConfiguration,
 			Properties properties)
 	{
@@ -90,10 +243,35 @@ public class JettyServer extends Server
 			KeyStore trustStore = CertificateReader.allFromCer(trustStorePath);
 			KeyStore keyStore = CertificateReader.fromPkcs12(keyStorePath, keyStorePassword);
 
-			checkServerCert(trustStore, keyStore);
+			CertificateExpiryMonitor certificateExpiryMonitor = certificateExpiryMonitor(properties);
+			TlsConfiguration tlsConfiguration = tlsConfiguration(properties);
+			Function<Server, ServerConnector> tlsConnector = httpsConnector(httpConfiguration, httpsHost, httpsPort,
+					trustStore, keyStore, keyStorePassword, needClientAuth, http2Configuration(properties),
+					tlsConfiguration, connectorConfiguration(properties));
+			Function<Server, ServerConnector> connector = server ->
+			{
+				certificateExpiryMonitor(server, () -> certificateExpiryMonitor);
+				return tlsConnector.apply(server);
+			};
+
+			boolean reload = Boolean.parseBoolean(
+					properties.getProperty(PROPERTY_JETTY_KEYSTORE_RELOAD, PROPERTY_JETTY_KEYSTORE_RELOAD_DEFAULT));
+			if (!reload)
+				return connector;
+
+			long reloadIntervalSeconds = Long.parseLong(properties.getProperty(PROPERTY_JETTY_KEYSTORE_RELOAD_INTERVAL,
+					PROPERTY_JETTY_KEYSTORE_RELOAD_INTERVAL_DEFAULT));
 
-			return httpsConnector(httpConfiguration, httpsHost, httpsPort, trustStore, keyStore, keyStorePassword,
-					needClientAuth);
+			return connector.andThen(c ->
+			{
+				SslConnectionFactory sslConnectionFactory = c.getConnectionFactory(SslConnectionFactory.class);
+				sslConnectionFactory.addBean(
+						new KeyStoreReloader((SslContextFactory.Server) sslConnectionFactory.getSslContextFactory(),
+								trustStorePath, keyStorePath, keyStorePassword, tlsConfiguration,
+								reloadIntervalSeconds, TimeUnit.SECONDS, certificateExpiryMonitor,
+								certificateSource(httpsHost, httpsPort)));
+				return c;
+			});
 		}
 		catch (NumberFormatException | NoSuchAlgorithmException | CertificateException | KeyStoreException
 				| IOException e)
@@ -107,20 +285,58 @@ public class JettyServer extends Server
 		return password == null ? null : password.toCharArray();
 	}
 
-	private static void checkServerCert(KeyStore trustStore, KeyStore keyStore) throws KeyStoreException
+	private static List<String> toList(String commaSeparatedValues)
+	{
+		if (commaSeparatedValues == null)
+			return Collections.emptyList();
+
+		return Arrays.stream(commaSeparatedValues.split(",")).map(String::trim).filter(v -> !v.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return certificate expiry monitor with warning thresholds (comma separated days) from property
+	 *         <code>jetty.certificate.expiry.warningdays</code>, default <code>30,7,1</code>, and check interval
+	 *         (seconds) from property <code>jetty.certificate.expiry.checkinterval</code>, default <code>3600</code>
+	 */
+	public static CertificateExpiryMonitor certificateExpiryMonitor(Properties properties)
 	{
-		CertificateChecker cc = new CertificateCheckerImpl(
-				Executors.newScheduledThreadPool(1, r -> new Thread(r, "LoggerScheduledExecutorServiceJetty")));
+		List<String> warningDaysValues = toList(properties.getProperty(PROPERTY_JETTY_CERTIFICATE_EXPIRY_WARNING_DAYS));
+		List<Integer> warningDays = warningDaysValues.isEmpty() ? CertificateExpiryMonitor.DEFAULT_WARNING_DAYS
+				: warningDaysValues.stream().map(Integer::valueOf).collect(Collectors.toList());
+		long checkIntervalSeconds = Long.parseLong(properties.getProperty(
+				PROPERTY_JETTY_CERTIFICATE_EXPIRY_CHECK_INTERVAL,
+				String.valueOf(CertificateExpiryMonitor.DEFAULT_CHECK_INTERVAL_SECONDS)));
+
+		return new CertificateExpiryMonitor(warningDays, checkIntervalSeconds, TimeUnit.SECONDS);
+	}
 
-		for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements();)
+	/**
+	 * @return the server's {@link CertificateExpiryMonitor} bean, the supplied monitor is added as a managed bean if
+	 *         the server does not have one
+	 */
+	private static CertificateExpiryMonitor certificateExpiryMonitor(Server server,
+			Supplier<CertificateExpiryMonitor> monitor)
+	{
+		synchronized (server)
 		{
-			String alias = aliases.nextElement();
-			Certificate certificate = keyStore.getCertificate(alias);
-			if (certificate instanceof X509Certificate)
-				cc.checkServerCertificateAndScheduleWarning(trustStore, (X509Certificate) certificate);
+			CertificateExpiryMonitor existing = server.getBean(CertificateExpiryMonitor.class);
+			if (existing != null)
+				return existing;
+
+			CertificateExpiryMonitor added = monitor.get();
+			server.addBean(added);
+			return added;
 		}
 	}
 
+	private static String certificateSource(String host, int port)
+	{
+		return (host == null ? "" : host) + ":" + port;
+	}
+
 	private static void logCertificateConfig(int httpsPort, KeyStore trustStore, KeyStore keyStore)
 	{
 		if (!logger.isDebugEnabled())
@@ -142,23 +358,116 @@ public class JettyServer extends Server
 	public static Function<Server, ServerConnector> httpsConnector(HttpConfiguration httpConfiguration,
 			String httpsHost, int httpsPort, KeyStore trustStore, KeyStore keyStore, char[] keyStorePassword,
 			boolean needClientAuth)
+	{
+		return httpsConnector(httpConfiguration, httpsHost, httpsPort, trustStore, keyStore, keyStorePassword,
+				needClientAuth, null);
+	}
+
+	/**
+	 * @param httpConfiguration
+	 *            not <code>null</code>
+	 * @param httpsHost
+	 *            may be <code>null</code>
+	 * @param httpsPort
+	 *            0 for random port
+	 * @param trustStore
+	 *            not <code>null</code>
+	 * @param keyStore
+	 *            not <code>null</code>
+	 * @param keyStorePassword
+	 *            may be <code>null</code>
+	 * @param needClientAuth
+	 *            <code>true</code> if client certificates are required
+	 * @param http2Configuration
+	 *            may be <code>null</code>, if not <code>null</code> HTTP/2 and HTTP/1.1 are negotiated via ALPN
+	 * @return connector factory
+	 */
+	public static Function<Server, ServerConnector> httpsConnector(HttpConfiguration httpConfiguration,
+			String httpsHost, int httpsPort, KeyStore trustStore, KeyStore keyStore, char[] keyStorePassword,
+			boolean needClientAuth, Http2Configuration http2Configuration)
+	{
+		return httpsConnector(httpConfiguration, httpsHost, httpsPort, trustStore, keyStore, keyStorePassword,
+				needClientAuth, http2Configuration, null, null);
+	}
+
+	/**
+	 * @param httpConfiguration
+	 *            not <code>null</code>
+	 * @param httpsHost
+	 *            may be <code>null</code>
+	 * @param httpsPort
+	 *            0 for random port
+	 * @param trustStore
+	 *            not <code>null</code>
+	 * @param keyStore
+	 *            not <code>null</code>
+	 * @param keyStorePassword
+	 *            may be <code>null</code>
+	 * @param needClientAuth
+	 *            <code>true</code> if client certificates are required
+	 * @param http2Configuration
+	 *            may be <code>null</code>, if not <code>null</code> HTTP/2 and HTTP/1.1 are negotiated via ALPN
+	 * @param tlsConfiguration
+	 *            may be <code>null</code>, Jetty and JVM defaults are used if <code>null</code>
+	 * @param connectorConfiguration
+	 *            may be <code>null</code>, Jetty defaults are used if <code>null</code>
+	 * @return connector factory, an {@link SslHandshakeStatistics} bean is added to the connector's
+	 *         {@link SslConnectionFactory}, trust store and key store certificates are registered with the server's
+	 *         {@link CertificateExpiryMonitor}, a monitor with default settings is added if the server has none
+	 */
+	public static Function<Server, ServerConnector> httpsConnector(HttpConfiguration httpConfiguration,
+			String httpsHost, int httpsPort, KeyStore trustStore, KeyStore keyStore, char[] keyStorePassword,
+			boolean needClientAuth, Http2Configuration http2Configuration, TlsConfiguration tlsConfiguration,
+			ConnectorConfiguration connectorConfiguration)
 	{
 		return server ->
 		{
 			logCertificateConfig(httpsPort, trustStore, keyStore);
+			certificateExpiryMonitor(server, CertificateExpiryMonitor::new)
+					.register(certificateSource(httpsHost, httpsPort), trustStore, keyStore);
 
-			SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+			if (tlsConfiguration != null)
+				tlsConfiguration.applySystemProperties();
+
+			SslContextFactory.Server sslContextFactory = tlsConfiguration == null ? new SslContextFactory.Server()
+					: tlsConfiguration.configure(tlsConfiguration.newSslContextFactory(), keyStore);
 			sslContextFactory.setTrustStore(trustStore);
 			sslContextFactory.setKeyStore(keyStore);
 			sslContextFactory.setKeyStorePassword(String.valueOf(keyStorePassword));
 			sslContextFactory.setNeedClientAuth(needClientAuth);
 
-			SslConnectionFactory sslConnectionFactory = new SslConnectionFactory(sslContextFactory,
-					HttpVersion.HTTP_1_1.asString());
-
 			HttpConnectionFactory connectionFactory = new HttpConnectionFactory(httpConfiguration);
 
-			ServerConnector tlsConnector = new ServerConnector(server, sslConnectionFactory, connectionFactory);
+			ServerConnector tlsConnector;
+			if (http2Configuration != null)
+			{
+				sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+				sslContextFactory.setUseCipherSuitesOrder(true);
+
+				HTTP2ServerConnectionFactory http2ConnectionFactory = http2Configuration
+						.configure(new HTTP2ServerConnectionFactory(httpConfiguration));
+
+				ALPNServerConnectionFactory alpnConnectionFactory = new ALPNServerConnectionFactory();
+				alpnConnectionFactory.setDefaultProtocol(connectionFactory.getProtocol());
+
+				SslConnectionFactory sslConnectionFactory = new SslConnectionFactory(sslContextFactory,
+						alpnConnectionFactory.getProtocol());
+
+				sslConnectionFactory.addBean(new SslHandshakeStatistics());
+
+				tlsConnector = serverConnector(server, connectorConfiguration, sslConnectionFactory,
+						alpnConnectionFactory, http2ConnectionFactory, connectionFactory);
+			}
+			else
+			{
+				SslConnectionFactory sslConnectionFactory = new SslConnectionFactory(sslContextFactory,
+						HttpVersion.HTTP_1_1.asString());
+				sslConnectionFactory.addBean(new SslHandshakeStatistics());
+
+				tlsConnector = serverConnector(server, connectorConfiguration, sslConnectionFactory,
+						connectionFactory);
+			}
+
 			tlsConnector.setHost(httpsHost);
 			tlsConnector.setPort(httpsPort);
 
@@ -166,23 +475,85 @@ public class JettyServer extends Server
 		};
 	}
 
+	private static ServerConnector serverConnector(Server server, ConnectorConfiguration connectorConfiguration,
+			ConnectionFactory... factories)
+	{
+		if (connectorConfiguration == null)
+			return new ServerConnector(server, factories);
+
+		for (ConnectionFactory factory : factories)
+		{
+			if (factory instanceof SslConnectionFactory)
+				connectorConfiguration.configure((SslConnectionFactory) factory);
+		}
+
+		return connectorConfiguration.configure(new ServerConnector(server, null, null,
+				byteBufferPool(server, connectorConfiguration), connectorConfiguration.getAcceptors(),
+				connectorConfiguration.getSelectors(), factories));
+	}
+
+	/**
+	 * @return dedicated pool if configured, else <code>null</code> after registering a shared pool with the server,
+	 *         connectors use the server's pool if none is given
+	 */
+	private static ByteBufferPool byteBufferPool(Server server, ConnectorConfiguration connectorConfiguration)
+	{
+		if (connectorConfiguration.isDedicatedByteBufferPool())
+			return connectorConfiguration.newByteBufferPool();
+
+		if (server.getBean(ByteBufferPool.class) == null)
+			server.addBean(new ArrayByteBufferPool());
+
+		return null;
+	}
+
 	public static Function<Server, ServerConnector> httpConnector(HttpConfiguration httpConfiguration,
 			Properties properties)
 	{
 		String httpHost = properties.getProperty(PROPERTY_JETTY_HOST, PROPERTY_JETTY_HOST_DEFAULT);
 		int httpPort = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_PORT, PROPERTY_JETTY_PORT_HTTP_DEFAULT));
 
-		return httpConnector(httpConfiguration, httpHost, httpPort);
+		return httpConnector(httpConfiguration, httpHost, httpPort, http2Configuration(properties),
+				connectorConfiguration(properties));
 	}
 
 	public static Function<Server, ServerConnector> httpConnector(HttpConfiguration httpConfiguration, String httpHost,
 			int httpPort)
+	{
+		return httpConnector(httpConfiguration, httpHost, httpPort, null);
+	}
+
+	public static Function<Server, ServerConnector> httpConnector(HttpConfiguration httpConfiguration, String httpHost,
+			int httpPort, Http2Configuration http2Configuration)
+	{
+		return httpConnector(httpConfiguration, httpHost, httpPort, http2Configuration, null);
+	}
+
+	/**
+	 * @param httpConfiguration
+	 *            not <code>null</code>
+	 * @param httpHost
+	 *            may be <code>null</code>
+	 * @param httpPort
+	 *            0 for random port
+	 * @param http2Configuration
+	 *            may be <code>null</code>, if not <code>null</code> cleartext HTTP/2 (h2c) is supported via prior
+	 *            knowledge and HTTP/1.1 upgrade
+	 * @param connectorConfiguration
+	 *            may be <code>null</code>, Jetty defaults are used if <code>null</code>
+	 * @return connector factory
+	 */
+	public static Function<Server, ServerConnector> httpConnector(HttpConfiguration httpConfiguration, String httpHost,
+			int httpPort, Http2Configuration http2Configuration, ConnectorConfiguration connectorConfiguration)
 	{
 		return server ->
 		{
 			HttpConnectionFactory connectionFactory = new HttpConnectionFactory(httpConfiguration);
 
-			ServerConnector connector = new ServerConnector(server, connectionFactory);
+			ServerConnector connector = http2Configuration == null
+					? serverConnector(server, connectorConfiguration, connectionFactory)
+					: serverConnector(server, connectorConfiguration, connectionFactory,
+							http2Configuration.configure(new HTTP2CServerConnectionFactory(httpConfiguration)));
 			connector.setHost(httpHost);
 			connector.setPort(httpPort);
 
@@ -190,11 +561,189 @@ public class JettyServer extends Server
 		};
 	}
 
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return <code>null</code> if property <code>jetty.http2.enabled</code> is not <code>true</code>
+	 */
+	public static Http2Configuration http2Configuration(Properties properties)
+	{
+		boolean enabled = Boolean.parseBoolean(
+				properties.getProperty(PROPERTY_JETTY_HTTP2_ENABLED, PROPERTY_JETTY_HTTP2_ENABLED_DEFAULT));
+
+		if (!enabled)
+			return null;
+
+		int maxConcurrentStreams = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_HTTP2_MAX_CONCURRENT_STREAMS,
+				String.valueOf(Http2Configuration.DEFAULT_MAX_CONCURRENT_STREAMS)));
+		int initialStreamRecvWindow = Integer
+				.parseInt(properties.getProperty(PROPERTY_JETTY_HTTP2_INITIAL_STREAM_RECV_WINDOW,
+						String.valueOf(Http2Configuration.DEFAULT_INITIAL_STREAM_RECV_WINDOW)));
+		int initialSessionRecvWindow = Integer
+				.parseInt(properties.getProperty(PROPERTY_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW,
+						String.valueOf(Http2Configuration.DEFAULT_INITIAL_SESSION_RECV_WINDOW)));
+		long streamIdleTimeout = Long.parseLong(properties.getProperty(PROPERTY_JETTY_HTTP2_STREAM_IDLE_TIMEOUT,
+				String.valueOf(Http2Configuration.DEFAULT_STREAM_IDLE_TIMEOUT)));
+
+		return new Http2Configuration(maxConcurrentStreams, initialStreamRecvWindow, initialSessionRecvWindow,
+				streamIdleTimeout);
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return TLS configuration from properties <code>jetty.tls.sessioncachesize</code>,
+	 *         <code>jetty.tls.sessiontimeout</code> (seconds), <code>jetty.tls.sessiontickets</code>,
+	 *         <code>jetty.tls.protocols</code>, <code>jetty.tls.ciphersuites</code>,
+	 *         <code>jetty.tls.namedgroups</code> (comma separated lists) and <code>jetty.tls.preferecdsa</code>;
+	 *         session tickets and, before Java 20, named groups are JVM wide settings, see
+	 *         {@link TlsConfiguration#applySystemProperties()}
+	 */
+	public static TlsConfiguration tlsConfiguration(Properties properties)
+	{
+		int sessionCacheSize = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_TLS_SESSION_CACHE_SIZE, "-1"));
+		int sessionTimeout = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_TLS_SESSION_TIMEOUT, "-1"));
+		String sessionTicketsValue = properties.getProperty(PROPERTY_JETTY_TLS_SESSION_TICKETS);
+		Boolean sessionTickets = sessionTicketsValue == null || sessionTicketsValue.isBlank() ? null
+				: Boolean.valueOf(sessionTicketsValue.trim());
+		List<String> protocols = toList(properties.getProperty(PROPERTY_JETTY_TLS_PROTOCOLS));
+		List<String> cipherSuites = toList(properties.getProperty(PROPERTY_JETTY_TLS_CIPHER_SUITES));
+		List<String> namedGroups = toList(properties.getProperty(PROPERTY_JETTY_TLS_NAMED_GROUPS));
+		boolean preferEcdsa = Boolean.parseBoolean(
+				properties.getProperty(PROPERTY_JETTY_TLS_PREFER_ECDSA, PROPERTY_JETTY_TLS_PREFER_ECDSA_DEFAULT));
+
+		return new TlsConfiguration(sessionCacheSize, sessionTimeout, sessionTickets, protocols, cipherSuites,
+				namedGroups, preferEcdsa);
+	}
+
+	public static Function<Server, UnixSocketConnector> unixSocketConnector(HttpConfiguration httpConfiguration,
+			Properties properties)
+	{
+		String unixSocketPath = properties.getProperty(PROPERTY_JETTY_UNIXSOCKET_PATH);
+		if (unixSocketPath == null || unixSocketPath.isBlank())
+			throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_UNIXSOCKET_PATH + "' not found or empty");
+
+		return unixSocketConnector(httpConfiguration, Paths.get(unixSocketPath), connectorConfiguration(properties));
+	}
+
+	public static Function<Server, UnixSocketConnector> unixSocketConnector(HttpConfiguration httpConfiguration,
+			Path unixSocket)
+	{
+		return unixSocketConnector(httpConfiguration, unixSocket, null);
+	}
+
+	/**
+	 * Connector for a reverse proxy on the same host, use with {@link TrustedProxyRequestCustomizer} or
+	 * {@link ForwardedSecureRequestCustomizer} to forward client certificates.
+	 * <p>
+	 * Requires <code>org.eclipse.jetty:jetty-unixsocket</code>, an optional dependency of this library that needs to be
+	 * declared by applications using unix domain sockets.
+	 * 
+	 * @param httpConfiguration
+	 *            not <code>null</code>
+	 * @param unixSocket
+	 *            not <code>null</code>, path of the unix domain socket file
+	 * @param connectorConfiguration
+	 *            may be <code>null</code>, Jetty defaults are used if <code>null</code>, acceptor settings are
+	 *            ignored
+	 * @return connector factory
+	 */
+	public static Function<Server, UnixSocketConnector> unixSocketConnector(HttpConfiguration httpConfiguration,
+			Path unixSocket, ConnectorConfiguration connectorConfiguration)
+	{
+		Objects.requireNonNull(unixSocket, "unixSocket");
+
+		return server ->
+		{
+			HttpConnectionFactory connectionFactory = new HttpConnectionFactory(httpConfiguration);
+
+			UnixSocketConnector connector = connectorConfiguration == null
+					? new UnixSocketConnector(server, connectionFactory)
+					: connectorConfiguration.configure(new UnixSocketConnector(server, null, null,
+							byteBufferPool(server, connectorConfiguration), connectorConfiguration.getSelectors(),
+							connectionFactory));
+			connector.setUnixSocket(unixSocket.toString());
+
+			return connector;
+		};
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return connector configuration from properties <code>jetty.connector.acceptors</code>,
+	 *         <code>jetty.connector.selectors</code>, <code>jetty.connector.acceptqueuesize</code>,
+	 *         <code>jetty.connector.idletimeout</code> (ms), <code>jetty.connector.reuseaddress</code> and
+	 *         <code>jetty.connector.bytebufferpool.*</code> (<code>type</code> default|direct|heap, <code>mincapacity</code>,
+	 *         <code>factor</code>, <code>maxcapacity</code>, <code>maxbucketsize</code>, <code>maxheapmemory</code>,
+	 *         <code>maxdirectmemory</code>)
+	 */
+	public static ConnectorConfiguration connectorConfiguration(Properties properties)
+	{
+		int acceptors = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_CONNECTOR_ACCEPTORS, "-1"));
+		int selectors = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_CONNECTOR_SELECTORS, "-1"));
+		int acceptQueueSize = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_CONNECTOR_ACCEPT_QUEUE_SIZE, "0"));
+		long idleTimeout = Long.parseLong(properties.getProperty(PROPERTY_JETTY_CONNECTOR_IDLE_TIMEOUT,
+				String.valueOf(ConnectorConfiguration.DEFAULT_IDLE_TIMEOUT)));
+		boolean reuseAddress = Boolean
+				.parseBoolean(properties.getProperty(PROPERTY_JETTY_CONNECTOR_REUSE_ADDRESS, "true"));
+
+		ConnectorConfiguration.BufferType bufferType = ConnectorConfiguration.BufferType.valueOf(properties
+				.getProperty(PROPERTY_JETTY_CONNECTOR_BUFFER_TYPE, ConnectorConfiguration.BufferType.DEFAULT.name())
+				.trim().toUpperCase(Locale.ENGLISH));
+		int bufferMinCapacity = Integer
+				.parseInt(properties.getProperty(PROPERTY_JETTY_CONNECTOR_BUFFER_MIN_CAPACITY, "-1"));
+		int bufferFactor = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_CONNECTOR_BUFFER_FACTOR, "-1"));
+		int bufferMaxCapacity = Integer
+				.parseInt(properties.getProperty(PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_CAPACITY, "-1"));
+		int bufferMaxBucketSize = Integer
+				.parseInt(properties.getProperty(PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_BUCKET_SIZE, "-1"));
+		long bufferMaxHeapMemory = Long
+				.parseLong(properties.getProperty(PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_HEAP_MEMORY, "0"));
+		long bufferMaxDirectMemory = Long
+				.parseLong(properties.getProperty(PROPERTY_JETTY_CONNECTOR_BUFFER_MAX_DIRECT_MEMORY, "0"));
+
+		return new ConnectorConfiguration(acceptors, selectors, acceptQueueSize, idleTimeout, reuseAddress,
+				bufferType, bufferMinCapacity, bufferFactor, bufferMaxCapacity, bufferMaxBucketSize,
+				bufferMaxHeapMemory, bufferMaxDirectMemory);
+	}
+
 	public static HttpConfiguration httpConfiguration()
 	{
 		return httpConfiguration(null);
 	}
 
+	/**
+	 * @param properties
+	 *            not <code>null</code>, buffer and header sizes configured via
+	 *            <code>jetty.http.outputbuffersize</code>, <code>jetty.http.outputaggregationsize</code>,
+	 *            <code>jetty.http.requestheadersize</code>, <code>jetty.http.responseheadersize</code> and
+	 *            <code>jetty.http.headercachesize</code> (bytes)
+	 * @param customizer
+	 *            may be <code>null</code>
+	 * @return http configuration
+	 */
+	public static HttpConfiguration httpConfiguration(Properties properties, Customizer customizer)
+	{
+		HttpConfiguration configuration = httpConfiguration(customizer);
+
+		setIfPresent(properties, PROPERTY_JETTY_HTTP_OUTPUT_BUFFER_SIZE, configuration::setOutputBufferSize);
+		setIfPresent(properties, PROPERTY_JETTY_HTTP_OUTPUT_AGGREGATION_SIZE,
+				configuration::setOutputAggregationSize);
+		setIfPresent(properties, PROPERTY_JETTY_HTTP_REQUEST_HEADER_SIZE, configuration::setRequestHeaderSize);
+		setIfPresent(properties, PROPERTY_JETTY_HTTP_RESPONSE_HEADER_SIZE, configuration::setResponseHeaderSize);
+		setIfPresent(properties, PROPERTY_JETTY_HTTP_HEADER_CACHE_SIZE, configuration::setHeaderCacheSize);
+
+		return configuration;
+	}
+
+	private static void setIfPresent(Properties properties, String key, IntConsumer setter)
+	{
+		String value = properties.getProperty(key);
+		if (value != null && !value.isBlank())
+			setter.accept(Integer.parseInt(value.trim()));
+	}
+
 	public static HttpConfiguration httpConfiguration(Customizer customizer)
 	{
 		HttpConfiguration configuration = new HttpConfiguration();
@@ -213,11 +762,334 @@ public class JettyServer extends Server
 		return new SecureRequestCustomizer();
 	}
 
+	/**
+	 * @param properties
+	 *            not <code>null</code>, client certificate header name <code>jetty.clientcertheader</code>, parsed
+	 *            certificates cached with <code>jetty.clientcertheader.cache.size</code> and
+	 *            <code>jetty.clientcertheader.cache.ttl</code> (seconds); if <code>jetty.clientcertheader.validate</code>
+	 *            is <code>true</code> forwarded certificates are validated against <code>jetty.truststore.pem</code>,
+	 *            see {@link #clientCertificateValidator(Properties)}
+	 * @return customizer setting the forwarded client certificate as request attribute
+	 */
 	public static ForwardedSecureRequestCustomizer forwardedSecureRequestCustomizer(Properties properties)
 	{
 		String clientCertHeaderName = properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER,
 				PROPERTY_JETTY_CLIENT_CERT_HEADER_DEFAULT);
-		return new ForwardedSecureRequestCustomizer(clientCertHeaderName);
+		int cacheSize = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_SIZE,
+				PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_SIZE_DEFAULT));
+		long cacheTtlSeconds = Long.parseLong(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_TTL,
+				PROPERTY_JETTY_CLIENT_CERT_HEADER_CACHE_TTL_DEFAULT));
+
+		ClientCertificateCache cache = cacheSize > 0 && cacheTtlSeconds > 0
+				? new ClientCertificateCache(cacheSize, cacheTtlSeconds, TimeUnit.SECONDS)
+				: null;
+
+		List<String> skipPathPrefixes = toList(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_SKIP_PATHS));
+		long summaryIntervalSeconds = Long
+				.parseLong(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_SUMMARY_INTERVAL,
+						PROPERTY_JETTY_CLIENT_CERT_HEADER_SUMMARY_INTERVAL_DEFAULT));
+
+		boolean validate = Boolean.parseBoolean(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATE,
+				PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATE_DEFAULT));
+		ClientCertificateValidator validator = validate ? clientCertificateValidator(properties) : null;
+
+		return new ForwardedSecureRequestCustomizer(clientCertHeaderName, cache, validator, skipPathPrefixes,
+				summaryIntervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>, trusted proxy networks <code>jetty.trustedproxies</code> (comma separated CIDR
+	 *            notation, e.g. <code>10.0.0.0/8, fd00::/8</code>); the forwarded client certificate header is only
+	 *            evaluated if <code>jetty.trustedproxies.clientcertheader</code> is <code>true</code> (default), see
+	 *            {@link #forwardedSecureRequestCustomizer(Properties)}
+	 * @return customizer applying forwarded headers and the forwarded client certificate only for requests from
+	 *         trusted proxies
+	 */
+	public static TrustedProxyRequestCustomizer trustedProxyRequestCustomizer(Properties properties)
+	{
+		CidrMatcher trustedProxies = trustedProxies(properties);
+		if (trustedProxies.isEmpty())
+			logger.warn("Property '{}' not found or empty, forwarded headers from all peers ignored",
+					PROPERTY_JETTY_TRUSTED_PROXIES);
+
+		boolean clientCertHeader = Boolean
+				.parseBoolean(properties.getProperty(PROPERTY_JETTY_TRUSTED_PROXIES_CLIENT_CERT_HEADER,
+						PROPERTY_JETTY_TRUSTED_PROXIES_CLIENT_CERT_HEADER_DEFAULT));
+
+		return new TrustedProxyRequestCustomizer(trustedProxies,
+				clientCertHeader ? forwardedSecureRequestCustomizer(properties) : null);
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return trusted proxy networks from property <code>jetty.trustedproxies</code> (comma separated CIDR notation)
+	 */
+	public static CidrMatcher trustedProxies(Properties properties)
+	{
+		return new CidrMatcher(toList(properties.getProperty(PROPERTY_JETTY_TRUSTED_PROXIES)));
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return validator with trust anchors from <code>jetty.truststore.pem</code>, revocation checks
+	 *         <code>jetty.clientcertheader.revocation</code> (comma separated <code>ocsp</code>, <code>crl</code>,
+	 *         default none) with fetch timeout <code>jetty.clientcertheader.revocation.timeout</code> (ms), soft fail
+	 *         for unknown revocation status <code>jetty.clientcertheader.revocation.softfail</code> and result cache
+	 *         <code>jetty.clientcertheader.validation.cache.size</code> and
+	 *         <code>jetty.clientcertheader.validation.cache.ttl</code> (seconds)
+	 */
+	public static ClientCertificateValidator clientCertificateValidator(Properties properties)
+	{
+		String trustStorePem = properties.getProperty(PROPERTY_JETTY_TRUSTSTORE_PEM);
+		if (trustStorePem == null || trustStorePem.isBlank())
+			throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_TRUSTSTORE_PEM
+					+ "' not found or empty, required for client certificate validation");
+
+		List<ClientCertificateValidator.RevocationCheck> revocationChecks;
+		try
+		{
+			revocationChecks = toList(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION)).stream()
+					.map(c -> ClientCertificateValidator.RevocationCheck.valueOf(c.toUpperCase(Locale.ENGLISH)))
+					.collect(Collectors.toList());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION
+					+ "' value not a comma separated list of ocsp, crl", e);
+		}
+
+		boolean softFail = Boolean.parseBoolean(properties.getProperty(
+				PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION_SOFTFAIL,
+				PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION_SOFTFAIL_DEFAULT));
+		long timeoutMillis = Long.parseLong(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_REVOCATION_TIMEOUT,
+				String.valueOf(UrlRevocationFetcher.DEFAULT_TIMEOUT_MILLIS)));
+		int cacheSize = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATION_CACHE_SIZE,
+				String.valueOf(ClientCertificateValidator.DEFAULT_CACHE_SIZE)));
+		long cacheTtlSeconds = Long.parseLong(properties.getProperty(
+				PROPERTY_JETTY_CLIENT_CERT_HEADER_VALIDATION_CACHE_TTL,
+				String.valueOf(ClientCertificateValidator.DEFAULT_CACHE_TTL_SECONDS)));
+
+		try
+		{
+			KeyStore trustStore = CertificateReader.allFromCer(Paths.get(trustStorePem));
+
+			return new ClientCertificateValidator(trustStore, revocationChecks,
+					new UrlRevocationFetcher(timeoutMillis, TimeUnit.MILLISECONDS), softFail, cacheSize,
+					cacheTtlSeconds, TimeUnit.SECONDS);
+		}
+		catch (NoSuchAlgorithmException | CertificateException | KeyStoreException | IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return {@link QueuedThreadPool} or {@link VirtualThreadPool} depending on property
+	 *         <code>jetty.threadpool.type</code>, min/max platform threads and idle timeout (ms) configured via
+	 *         <code>jetty.threadpool.min</code>, <code>jetty.threadpool.max</code> and
+	 *         <code>jetty.threadpool.idletimeout</code>
+	 */
+	public static ThreadPool threadPool(Properties properties)
+	{
+		String type = properties.getProperty(PROPERTY_JETTY_THREADPOOL_TYPE, PROPERTY_JETTY_THREADPOOL_TYPE_QUEUED);
+		int minThreads = Integer
+				.parseInt(properties.getProperty(PROPERTY_JETTY_THREADPOOL_MIN, PROPERTY_JETTY_THREADPOOL_MIN_DEFAULT));
+		int maxThreads = Integer
+				.parseInt(properties.getProperty(PROPERTY_JETTY_THREADPOOL_MAX, PROPERTY_JETTY_THREADPOOL_MAX_DEFAULT));
+		int idleTimeout = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_THREADPOOL_IDLETIMEOUT,
+				PROPERTY_JETTY_THREADPOOL_IDLETIMEOUT_DEFAULT));
+
+		switch (type)
+		{
+			case PROPERTY_JETTY_THREADPOOL_TYPE_QUEUED:
+				return new QueuedThreadPool(maxThreads, minThreads, idleTimeout);
+
+			case PROPERTY_JETTY_THREADPOOL_TYPE_VIRTUAL:
+				return new VirtualThreadPool(maxThreads, minThreads, idleTimeout);
+
+			default:
+				throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_THREADPOOL_TYPE + "' value '" + type
+						+ "' not one of " + PROPERTY_JETTY_THREADPOOL_TYPE_QUEUED + ", "
+						+ PROPERTY_JETTY_THREADPOOL_TYPE_VIRTUAL);
+		}
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return Jetty's {@link AnnotationConfiguration} if property <code>jetty.quickstart.mode</code> is <code>off</code>
+	 *         or not set, {@link IndexedAnnotationConfiguration} instead if <code>jetty.annotations.scan.indexed</code>
+	 *         is <code>true</code>, {@link QuickStartAnnotationConfiguration} for modes <code>auto</code>,
+	 *         <code>generate</code> and <code>strict</code> with descriptor file from property
+	 *         <code>jetty.quickstart.descriptor</code>; classpath index filtering and number of scanner threads of the
+	 *         indexed and quickstart configurations via <code>jetty.annotations.scan.filter</code> and
+	 *         <code>jetty.annotations.scan.parallelism</code>
+	 * @see #setAnnotationConfiguration(AnnotationConfiguration)
+	 */
+	public static AnnotationConfiguration annotationConfiguration(Properties properties)
+	{
+		String mode = properties.getProperty(PROPERTY_JETTY_QUICKSTART_MODE, PROPERTY_JETTY_QUICKSTART_MODE_OFF).trim();
+		boolean indexed = Boolean.parseBoolean(properties.getProperty(PROPERTY_JETTY_ANNOTATIONS_SCAN_INDEXED,
+				PROPERTY_JETTY_ANNOTATIONS_SCAN_INDEXED_DEFAULT));
+		if (PROPERTY_JETTY_QUICKSTART_MODE_OFF.equalsIgnoreCase(mode) && !indexed)
+			return new AnnotationConfiguration();
+
+		boolean filter = Boolean.parseBoolean(properties.getProperty(PROPERTY_JETTY_ANNOTATIONS_SCAN_FILTER,
+				PROPERTY_JETTY_ANNOTATIONS_SCAN_FILTER_DEFAULT));
+		int parallelism = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_ANNOTATIONS_SCAN_PARALLELISM,
+				PROPERTY_JETTY_ANNOTATIONS_SCAN_PARALLELISM_DEFAULT));
+		ClassPathIndex index = filter ? ClassPathIndex.get() : null;
+
+		if (PROPERTY_JETTY_QUICKSTART_MODE_OFF.equalsIgnoreCase(mode))
+			return new IndexedAnnotationConfiguration(index, parallelism);
+
+		Path descriptor = Paths.get(properties.getProperty(PROPERTY_JETTY_QUICKSTART_DESCRIPTOR,
+				PROPERTY_JETTY_QUICKSTART_DESCRIPTOR_DEFAULT));
+
+		try
+		{
+			return new QuickStartAnnotationConfiguration(descriptor,
+					QuickStartAnnotationConfiguration.Mode.valueOf(mode.toUpperCase(Locale.ENGLISH)), index,
+					parallelism);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_QUICKSTART_MODE + "' value '" + mode
+					+ "' not one of " + PROPERTY_JETTY_QUICKSTART_MODE_OFF + ", auto, generate, strict", e);
+		}
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return <code>null</code> if property <code>jetty.metrics.enabled</code> is not <code>true</code>, else metrics
+	 *         configuration with endpoint path <code>jetty.metrics.path</code>, management connector
+	 *         <code>jetty.metrics.host</code> and <code>jetty.metrics.port</code>, endpoint also served on all other
+	 *         connectors if <code>jetty.metrics.public</code> is <code>true</code>, latency histogram buckets
+	 *         <code>jetty.metrics.buckets</code> (comma separated seconds) and maximum number of routes
+	 *         <code>jetty.metrics.maxroutes</code>
+	 * @throws IllegalArgumentException
+	 *             if neither <code>jetty.metrics.port</code> is set nor <code>jetty.metrics.public</code> is
+	 *             <code>true</code>
+	 * @see #enableMetrics(MetricsConfiguration)
+	 */
+	public static MetricsConfiguration metricsConfiguration(Properties properties)
+	{
+		boolean enabled = Boolean.parseBoolean(
+				properties.getProperty(PROPERTY_JETTY_METRICS_ENABLED, PROPERTY_JETTY_METRICS_ENABLED_DEFAULT));
+
+		if (!enabled)
+			return null;
+
+		String path = properties.getProperty(PROPERTY_JETTY_METRICS_PATH, MetricsConfiguration.DEFAULT_PATH);
+		String host = properties.getProperty(PROPERTY_JETTY_METRICS_HOST, PROPERTY_JETTY_HOST_DEFAULT);
+		String port = properties.getProperty(PROPERTY_JETTY_METRICS_PORT);
+		boolean publicEndpoint = Boolean.parseBoolean(
+				properties.getProperty(PROPERTY_JETTY_METRICS_PUBLIC, PROPERTY_JETTY_METRICS_PUBLIC_DEFAULT));
+		double[] buckets = toList(properties.getProperty(PROPERTY_JETTY_METRICS_BUCKETS)).stream()
+				.mapToDouble(Double::parseDouble).toArray();
+		int maxRoutes = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_METRICS_MAX_ROUTES,
+				String.valueOf(MetricsConfiguration.DEFAULT_MAX_ROUTES)));
+
+		if ((port == null || port.isBlank()) && !publicEndpoint)
+			throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_METRICS_PORT
+					+ "' not found or empty, set property '" + PROPERTY_JETTY_METRICS_PUBLIC
+					+ "' to true to serve metrics on all connectors");
+
+		return new MetricsConfiguration(path, host,
+				port == null || port.isBlank() ? -1 : Integer.parseInt(port.trim()), publicEndpoint, buckets,
+				maxRoutes);
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return <code>null</code> if property <code>jetty.admission.enabled</code> is not <code>true</code>, else
+	 *         admission configuration with maximum concurrent requests <code>jetty.admission.maxrequests</code> (0 for
+	 *         no context limit), route limits <code>jetty.admission.routes</code> (comma separated
+	 *         <code>prefix=limit</code> pairs), maximum queued requests <code>jetty.admission.maxqueued</code>, maximum
+	 *         wait time <code>jetty.admission.maxwait</code> (milliseconds), <code>Retry-After</code> seconds
+	 *         <code>jetty.admission.retryafter</code> and, if <code>jetty.lowresources.idletimeout</code>
+	 *         (milliseconds) is &gt;= 0, low resources monitoring with <code>jetty.lowresources.maxtime</code>,
+	 *         <code>jetty.lowresources.period</code> (milliseconds) and <code>jetty.lowresources.maxmemory</code>
+	 *         (bytes)
+	 * @see #enableAdmissionControl(AdmissionConfiguration)
+	 */
+	public static AdmissionConfiguration admissionConfiguration(Properties properties)
+	{
+		boolean enabled = Boolean.parseBoolean(
+				properties.getProperty(PROPERTY_JETTY_ADMISSION_ENABLED, PROPERTY_JETTY_ADMISSION_ENABLED_DEFAULT));
+
+		if (!enabled)
+			return null;
+
+		int maxRequests = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_ADMISSION_MAX_REQUESTS,
+				PROPERTY_JETTY_ADMISSION_MAX_REQUESTS_DEFAULT));
+		Map<String, Integer> routes = AdmissionConfiguration
+				.parseRouteLimits(properties.getProperty(PROPERTY_JETTY_ADMISSION_ROUTES));
+		int maxQueued = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_ADMISSION_MAX_QUEUED,
+				String.valueOf(AdmissionConfiguration.DEFAULT_MAX_QUEUED_REQUESTS)));
+		long maxWait = Long.parseLong(properties.getProperty(PROPERTY_JETTY_ADMISSION_MAX_WAIT,
+				String.valueOf(AdmissionConfiguration.DEFAULT_MAX_WAIT_MILLIS)));
+		int retryAfter = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_ADMISSION_RETRY_AFTER,
+				String.valueOf(AdmissionConfiguration.DEFAULT_RETRY_AFTER_SECONDS)));
+
+		int lowResourcesIdleTimeout = Integer.parseInt(properties.getProperty(
+				PROPERTY_JETTY_LOW_RESOURCES_IDLE_TIMEOUT, PROPERTY_JETTY_LOW_RESOURCES_IDLE_TIMEOUT_DEFAULT));
+		int lowResourcesMaxTime = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_LOW_RESOURCES_MAX_TIME,
+				PROPERTY_JETTY_LOW_RESOURCES_MAX_TIME_DEFAULT));
+		int lowResourcesPeriod = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_LOW_RESOURCES_PERIOD,
+				String.valueOf(AdmissionConfiguration.DEFAULT_LOW_RESOURCES_PERIOD_MILLIS)));
+		long lowResourcesMaxMemory = Long.parseLong(properties.getProperty(PROPERTY_JETTY_LOW_RESOURCES_MAX_MEMORY,
+				PROPERTY_JETTY_LOW_RESOURCES_MAX_MEMORY_DEFAULT));
+
+		return new AdmissionConfiguration(maxRequests, routes, maxQueued, maxWait, retryAfter,
+				lowResourcesIdleTimeout, lowResourcesMaxTime, lowResourcesPeriod, lowResourcesMaxMemory);
+	}
+
+	/**
+	 * @param properties
+	 *            not <code>null</code>
+	 * @return <code>null</code> if property <code>jetty.static.path</code> is not set, else static resource mount of
+	 *         directory or class path prefix (<code>classpath:/...</code>) <code>jetty.static.base</code> with content
+	 *         cache limits <code>jetty.static.cache.maxsize</code>, <code>jetty.static.cache.maxfilesize</code> (bytes,
+	 *         <code>jetty.static.cache.maxsize</code> &lt;= 0 disables the cache) and
+	 *         <code>jetty.static.cache.maxfiles</code>, memory-mapped files <code>jetty.static.mmap</code>,
+	 *         precompressed variants <code>jetty.static.precompressed</code> and <code>Cache-Control</code> header
+	 *         <code>jetty.static.cachecontrol</code> (empty to omit)
+	 * @see #addStaticResources(StaticResourceConfiguration)
+	 */
+	public static StaticResourceConfiguration staticResourceConfiguration(Properties properties)
+	{
+		String path = properties.getProperty(PROPERTY_JETTY_STATIC_PATH);
+		if (path == null || path.isBlank())
+			return null;
+
+		String base = properties.getProperty(PROPERTY_JETTY_STATIC_BASE);
+		if (base == null || base.isBlank())
+			throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_STATIC_BASE + "' not found or empty");
+
+		int maxCacheSize = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_STATIC_CACHE_MAX_SIZE,
+				String.valueOf(StaticResourceConfiguration.DEFAULT_MAX_CACHE_SIZE)));
+		int maxCachedFileSize = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_STATIC_CACHE_MAX_FILE_SIZE,
+				String.valueOf(StaticResourceConfiguration.DEFAULT_MAX_CACHED_FILE_SIZE)));
+		int maxCachedFiles = Integer.parseInt(properties.getProperty(PROPERTY_JETTY_STATIC_CACHE_MAX_FILES,
+				String.valueOf(StaticResourceConfiguration.DEFAULT_MAX_CACHED_FILES)));
+		boolean fileMappedBuffers = Boolean.parseBoolean(
+				properties.getProperty(PROPERTY_JETTY_STATIC_MMAP, PROPERTY_JETTY_STATIC_MMAP_DEFAULT));
+		boolean precompressed = Boolean.parseBoolean(properties.getProperty(PROPERTY_JETTY_STATIC_PRECOMPRESSED,
+				PROPERTY_JETTY_STATIC_PRECOMPRESSED_DEFAULT));
+		String cacheControl = properties.getProperty(PROPERTY_JETTY_STATIC_CACHE_CONTROL,
+				StaticResourceConfiguration.DEFAULT_CACHE_CONTROL);
+
+		return new StaticResourceConfiguration(path.trim(), base.trim(), maxCacheSize, maxCachedFileSize,
+				maxCachedFiles, fileMappedBuffers, precompressed,
+				cacheControl == null || cacheControl.isBlank() ? null : cacheControl.trim());
 	}
 
 	public static Stream<String> webInfJars(Predicate<String> filter)
@@ -230,9 +1102,13 @@ public class JettyServer extends Server
 		return classPathEntries().filter(e -> e.contains("classes") || e.contains("test-classes")).filter(filter);
 	}
 
+	/**
+	 * @return entries of the <code>java.class.path</code> system property, split once per JVM
+	 * @see ClassPathIndex#get()
+	 */
 	public static Stream<String> classPathEntries()
 	{
-		return Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator));
+		return ClassPathIndex.get().getEntries().stream();
 	}
 
 	public static String pathStringFromURI(String uriString)
@@ -266,38 +1142,145 @@ public class JettyServer extends Server
 
 	private final Context servletContext;
 	private final WebAppContext webAppContext;
+	private final List<WebAppContext> webAppContexts;
 
 	@SafeVarargs
-	public JettyServer(Function<Server, ServerConnector> connector, ErrorHandler errorHandler, String contextPath,
+	public JettyServer(Function<Server, ? extends Connector> connector, ErrorHandler errorHandler, String contextPath,
 			List<Class<?>> initializers, Properties initParameter, Stream<String> webInfClassesDirs,
 			Stream<String> webInfJars, Class<? extends Filter>... additionalFilters)
 	{
-		this(Collections.singletonList(connector), errorHandler, contextPath, initializers, initParameter,
+		this(null, Collections.singletonList(connector), errorHandler, contextPath, initializers, initParameter,
 				webInfClassesDirs, webInfJars, additionalFilters);
 	}
 
 	@SafeVarargs
-	public JettyServer(List<Function<Server, ServerConnector>> connectors, ErrorHandler errorHandler,
+	public JettyServer(List<? extends Function<Server, ? extends Connector>> connectors, ErrorHandler errorHandler,
 			String contextPath, List<Class<?>> initializers, Properties initParameter, Stream<String> webInfClassesDirs,
 			Stream<String> webInfJars, Class<? extends Filter>... additionalFilters)
+	{
+		this(null, connectors, errorHandler, contextPath, initializers, initParameter, webInfClassesDirs, webInfJars,
+				additionalFilters);
+	}
+
+	@SafeVarargs
+	public JettyServer(ThreadPool threadPool, Function<Server, ? extends Connector> connector,
+			ErrorHandler errorHandler, String contextPath, List<Class<?>> initializers, Properties initParameter,
+			Stream<String> webInfClassesDirs, Stream<String> webInfJars, Class<? extends Filter>... additionalFilters)
+	{
+		this(threadPool, Collections.singletonList(connector), errorHandler, contextPath, initializers, initParameter,
+				webInfClassesDirs, webInfJars, additionalFilters);
+	}
+
+	/**
+	 * @param threadPool
+	 *            may be <code>null</code>, a default {@link QueuedThreadPool} is used if <code>null</code>
+	 * @param connectors
+	 *            not <code>null</code>
+	 * @param errorHandler
+	 *            not <code>null</code>
+	 * @param contextPath
+	 *            not <code>null</code>
+	 * @param initializers
+	 *            not <code>null</code>
+	 * @param initParameter
+	 *            may be <code>null</code>
+	 * @param webInfClassesDirs
+	 *            not <code>null</code>
+	 * @param webInfJars
+	 *            not <code>null</code>
+	 * @param additionalFilters
+	 *            filters added for path <code>/*</code>
+	 */
+	@SafeVarargs
+	public JettyServer(ThreadPool threadPool, List<? extends Function<Server, ? extends Connector>> connectors,
+			ErrorHandler errorHandler, String contextPath, List<Class<?>> initializers, Properties initParameter,
+			Stream<String> webInfClassesDirs, Stream<String> webInfJars, Class<? extends Filter>... additionalFilters)
+	{
+		this(threadPool, connectors, errorHandler,
+				Collections.singletonList(webAppContextConfiguration(contextPath, initializers, initParameter,
+						webInfClassesDirs, webInfJars, additionalFilters)));
+	}
+
+	@SafeVarargs
+	private static WebAppContextConfiguration webAppContextConfiguration(String contextPath,
+			List<Class<?>> initializers, Properties initParameter, Stream<String> webInfClassesDirs,
+			Stream<String> webInfJars, Class<? extends Filter>... additionalFilters)
+	{
+		WebAppContextConfiguration.Builder builder = WebAppContextConfiguration.builder(contextPath)
+				.initializers(initializers).initParameter(initParameter).webInfClassesDirs(webInfClassesDirs)
+				.webInfJars(webInfJars);
+		// iterated instead of passed on, the array must not escape the @SafeVarargs method
+		for (Class<? extends Filter> filter : additionalFilters)
+			builder.filter(filter);
+
+		return builder.build();
+	}
+
+	/**
+	 * Hosts multiple web application contexts sharing thread pool and connectors, requests are dispatched by context
+	 * path via a {@link ContextHandlerCollection}.
+	 * 
+	 * @param threadPool
+	 *            may be <code>null</code>, a default {@link QueuedThreadPool} is used if <code>null</code>
+	 * @param connectors
+	 *            not <code>null</code>
+	 * @param errorHandler
+	 *            not <code>null</code>
+	 * @param contexts
+	 *            not <code>null</code>, not empty, context paths must be unique
+	 * @see WebAppContextConfiguration#builder(String)
+	 */
+	public JettyServer(ThreadPool threadPool, List<? extends Function<Server, ? extends Connector>> connectors,
+			ErrorHandler errorHandler, List<WebAppContextConfiguration> contexts)
+	{
+		super(threadPool);
+
+		Objects.requireNonNull(contexts, "contexts");
+		if (contexts.isEmpty())
+			throw new IllegalArgumentException("contexts empty");
+		if (contexts.stream().map(WebAppContextConfiguration::getContextPath).distinct().count() != contexts.size())
+			throw new IllegalArgumentException("context paths not unique");
+
+		webAppContexts = Collections.unmodifiableList(
+				contexts.stream().map(c -> webAppContext(c, errorHandler)).collect(Collectors.toList()));
+
+		connectors.forEach(c -> addConnector(c.apply(this)));
+
+		if (webAppContexts.size() == 1)
+			setHandler(webAppContexts.get(0));
+		else
+			setHandler(new ContextHandlerCollection(webAppContexts.toArray(new ContextHandler[0])));
+
+		setStopAtShutdown(true);
+
+		addBean(errorHandler);
+
+		servletContext = webAppContexts.get(0).getServletContext();
+		webAppContext = webAppContexts.get(0);
+	}
+
+	private static WebAppContext webAppContext(WebAppContextConfiguration configuration, ErrorHandler errorHandler)
 	{
 		WebAppContext context = new WebAppContext();
 		context.setLogUrlOnStart(true);
 		context.setThrowUnavailableOnStartupException(true);
 
-		if (initParameter != null)
+		Properties initParameter = configuration.getInitParameter();
+		if (!initParameter.isEmpty())
 		{
 			initParameter.forEach((k, v) -> context.setInitParameter(Objects.toString(k), Objects.toString(v)));
-			logger.debug("InitParams: {}", context.getInitParams());
+			logger.debug("InitParams {}: {}", configuration.getContextPath(), context.getInitParams());
 		}
 
-		context.setContextPath(contextPath);
-		context.setAttribute(AnnotationConfiguration.SERVLET_CONTAINER_INITIALIZER_ORDER,
-				initializers.stream().map(c -> c.getName()).collect(Collectors.joining(", ")) + ", *");
-		context.setConfigurations(new Configuration[] { new AnnotationConfiguration() });
+		context.setContextPath(configuration.getContextPath());
+		context.setAttribute(AnnotationConfiguration.SERVLET_CONTAINER_INITIALIZER_ORDER, configuration
+				.getInitializers().stream().map(c -> c.getName()).collect(Collectors.joining(", ")) + ", *");
+		context.setConfigurations(new Configuration[] { configuration.getAnnotationConfiguration() != null
+				? configuration.getAnnotationConfiguration()
+				: new AnnotationConfiguration() });
 		context.setAttribute(WebInfConfiguration.WEBINF_JAR_PATTERN, "");
 
-		webInfJars.map(e -> Paths.get(e)).filter(p ->
+		configuration.getWebInfJars().stream().map(e -> Paths.get(e)).filter(p ->
 		{
 			boolean readable = Files.isReadable(p);
 			if (!readable)
@@ -305,28 +1288,36 @@ public class JettyServer extends Server
 			return readable;
 		}).map(PathResource::new).forEach(r -> context.getMetaData().addWebInfJar(r));
 
-		context.getMetaData().setWebInfClassesDirs(webInfClassesDirs.map(e -> Paths.get(e)).filter(Files::isReadable)
-				.map(PathResource::new).collect(Collectors.toList()));
+		context.getMetaData().setWebInfClassesDirs(configuration.getWebInfClassesDirs().stream()
+				.map(e -> Paths.get(e)).filter(Files::isReadable).map(PathResource::new).collect(Collectors.toList()));
 
-		logger.info("Web inf classes: dirs {}", context.getMetaData().getWebInfClassesDirs());
-		logger.info("Web inf classes: jars {}", context.getMetaData().getWebInfJars());
+		logger.info("Web inf classes {}: dirs {}", configuration.getContextPath(),
+				context.getMetaData().getWebInfClassesDirs());
+		logger.info("Web inf classes {}: jars {}", configuration.getContextPath(),
+				context.getMetaData().getWebInfJars());
 
-		for (Class<? extends Filter> f : additionalFilters)
+		for (Class<? extends Filter> f : configuration.getFilters())
 		{
-			logger.info("Adding filter: {}", f.getName());
+			logger.info("Adding filter {}: {}", configuration.getContextPath(), f.getName());
 			context.addFilter(f, "/*", EnumSet.allOf(DispatcherType.class));
 		}
 
-		connectors.forEach(c -> addConnector(c.apply(this)));
+		for (StaticResourceConfiguration staticResources : configuration.getStaticResources())
+			addStaticResources(context, staticResources);
 
-		setHandler(context);
-		setStopAtShutdown(true);
-
-		addBean(errorHandler);
 		context.setErrorHandler(errorHandler);
 
-		servletContext = context.getServletContext();
-		webAppContext = context;
+		return context;
+	}
+
+	private static ServletHolder addStaticResources(ServletContextHandler context,
+			StaticResourceConfiguration configuration)
+	{
+		StaticResourceServlet servlet = new StaticResourceServlet(configuration);
+		ServletHolder holder = new ServletHolder("static:" + servlet.getPathSpec(), servlet);
+		context.addServlet(holder, servlet.getPathSpec());
+
+		return holder;
 	}
 
 	public Context getServletContext()
@@ -334,11 +1325,226 @@ public class JettyServer extends Server
 		return servletContext;
 	}
 
+	/**
+	 * @return context of the first {@link WebAppContextConfiguration} if multiple contexts are hosted
+	 */
 	public WebAppContext getWebAppContext()
 	{
 		return webAppContext;
 	}
 
+	public List<WebAppContext> getWebAppContexts()
+	{
+		return webAppContexts;
+	}
+
+	/**
+	 * @param contextPath
+	 *            not <code>null</code>
+	 * @return web application context with the given context path, <code>null</code> if not hosted by this server
+	 */
+	public WebAppContext getWebAppContext(String contextPath)
+	{
+		return webAppContexts.stream().filter(c -> contextPath.equals(c.getContextPath())).findFirst().orElse(null);
+	}
+
+	/**
+	 * Replaces the default {@link AnnotationConfiguration}, must be called before the server is started. Only supported
+	 * if a single context is hosted, use {@link WebAppContextConfiguration.Builder#annotationConfiguration} otherwise.
+	 * 
+	 * @param annotationConfiguration
+	 *            not <code>null</code>
+	 * @throws IllegalStateException
+	 *             if multiple contexts are hosted
+	 * @see #annotationConfiguration(Properties)
+	 */
+	public void setAnnotationConfiguration(AnnotationConfiguration annotationConfiguration)
+	{
+		Objects.requireNonNull(annotationConfiguration, "annotationConfiguration");
+		if (webAppContexts.size() > 1)
+			throw new IllegalStateException(
+					"Multiple contexts hosted, annotation configuration must be set per context");
+
+		webAppContext.setConfigurations(new Configuration[] { annotationConfiguration });
+	}
+
+	/**
+	 * Wraps the web application context with a {@link RequestMetricsHandler}, adds a {@link ConnectionStatistics} bean
+	 * to all connectors and, if configured, a management connector serving the Prometheus endpoint. The endpoint is
+	 * only served on other connectors if {@link MetricsConfiguration#isPublicEndpoint()}. Must be called after all
+	 * connectors are added and before the server is started.
+	 * 
+	 * @param metricsConfiguration
+	 *            not <code>null</code>
+	 * @return the metrics handler
+	 * @see #metricsConfiguration(Properties)
+	 */
+	public RequestMetricsHandler enableMetrics(MetricsConfiguration metricsConfiguration)
+	{
+		Objects.requireNonNull(metricsConfiguration, "metricsConfiguration");
+
+		for (Connector connector : getConnectors())
+		{
+			if (connector instanceof ContainerLifeCycle
+					&& ((ContainerLifeCycle) connector).getBean(ConnectionStatistics.class) == null)
+				((ContainerLifeCycle) connector).addBean(new ConnectionStatistics());
+		}
+
+		if (metricsConfiguration.hasManagementConnector())
+		{
+			ServerConnector managementConnector = new ServerConnector(this,
+					new HttpConnectionFactory(httpConfiguration()));
+			managementConnector.setName(RequestMetricsHandler.MANAGEMENT_CONNECTOR_NAME);
+			managementConnector.setHost(metricsConfiguration.getManagementHost());
+			managementConnector.setPort(metricsConfiguration.getManagementPort());
+			addConnector(managementConnector);
+
+			logger.info("Serving metrics on management connector {}:{}{}", metricsConfiguration.getManagementHost(),
+					metricsConfiguration.getManagementPort(), metricsConfiguration.getPath());
+		}
+		if (metricsConfiguration.isPublicEndpoint())
+			logger.warn("Serving metrics on path {} of all connectors", metricsConfiguration.getPath());
+
+		RequestMetricsHandler metricsHandler = new RequestMetricsHandler(metricsConfiguration);
+		metricsHandler.setHandler(getHandler());
+		setHandler(metricsHandler);
+
+		return metricsHandler;
+	}
+
+	/**
+	 * Wraps every web application context with an {@link AdmissionControlHandler} and, if configured, adds a
+	 * {@link LowResourceMonitor} reducing the idle timeout of connections while the thread pool is exhausted or the
+	 * memory limit is exceeded. The admission control handlers are inserted directly around the web application
+	 * contexts, i.e. inside a {@link RequestMetricsHandler} independent of the order of calls. If multiple contexts are
+	 * hosted, each context is limited separately. Must be called before the server is started.
+	 * 
+	 * @param admissionConfiguration
+	 *            not <code>null</code>
+	 * @return the admission control handler of the first context
+	 * @see #admissionConfiguration(Properties)
+	 * @see #enableAdmissionControl(String, AdmissionConfiguration)
+	 */
+	public AdmissionControlHandler enableAdmissionControl(AdmissionConfiguration admissionConfiguration)
+	{
+		Objects.requireNonNull(admissionConfiguration, "admissionConfiguration");
+
+		AdmissionControlHandler first = null;
+		for (WebAppContext context : webAppContexts)
+		{
+			AdmissionControlHandler admissionHandler = enableAdmissionControl(context, admissionConfiguration);
+			if (first == null)
+				first = admissionHandler;
+		}
+
+		return first;
+	}
+
+	/**
+	 * Wraps the web application context with the given context path with an {@link AdmissionControlHandler}, see
+	 * {@link #enableAdmissionControl(AdmissionConfiguration)}.
+	 * 
+	 * @param contextPath
+	 *            not <code>null</code>
+	 * @param admissionConfiguration
+	 *            not <code>null</code>
+	 * @return the admission control handler
+	 * @throws IllegalArgumentException
+	 *             if no context with the given context path is hosted
+	 */
+	public AdmissionControlHandler enableAdmissionControl(String contextPath,
+			AdmissionConfiguration admissionConfiguration)
+	{
+		Objects.requireNonNull(contextPath, "contextPath");
+		Objects.requireNonNull(admissionConfiguration, "admissionConfiguration");
+
+		WebAppContext context = getWebAppContext(contextPath);
+		if (context == null)
+			throw new IllegalArgumentException("No context with path '" + contextPath + "'");
+
+		return enableAdmissionControl(context, admissionConfiguration);
+	}
+
+	private AdmissionControlHandler enableAdmissionControl(WebAppContext context,
+			AdmissionConfiguration admissionConfiguration)
+	{
+		AdmissionControlHandler admissionHandler = new AdmissionControlHandler(admissionConfiguration);
+		if (!wrap(this, context, admissionHandler))
+			throw new IllegalStateException("Context " + context.getContextPath() + " not part of the handler tree");
+
+		if (admissionConfiguration.hasLowResourceMonitor() && getBean(LowResourceMonitor.class) == null)
+		{
+			LowResourceMonitor lowResourceMonitor = new LowResourceMonitor(this);
+			lowResourceMonitor.setMonitorThreads(true);
+			lowResourceMonitor.setLowResourcesIdleTimeout(admissionConfiguration.getLowResourcesIdleTimeoutMillis());
+			lowResourceMonitor.setMaxLowResourcesTime(admissionConfiguration.getLowResourcesMaxTimeMillis());
+			lowResourceMonitor.setPeriod(admissionConfiguration.getLowResourcesPeriodMillis());
+			lowResourceMonitor.setMaxMemory(admissionConfiguration.getLowResourcesMaxMemory());
+			addBean(lowResourceMonitor);
+
+			logger.info("Monitoring low resources every {} ms, idle timeout while low on resources {} ms",
+					admissionConfiguration.getLowResourcesPeriodMillis(),
+					admissionConfiguration.getLowResourcesIdleTimeoutMillis());
+		}
+
+		return admissionHandler;
+	}
+
+	/**
+	 * Inserts the wrapper directly around the target handler, searching handler wrappers and collections
+	 */
+	private static boolean wrap(Handler parent, Handler target, HandlerWrapper wrapper)
+	{
+		if (parent instanceof HandlerWrapper)
+		{
+			HandlerWrapper parentWrapper = (HandlerWrapper) parent;
+			if (parentWrapper.getHandler() == target)
+			{
+				wrapper.setHandler(target);
+				parentWrapper.setHandler(wrapper);
+				return true;
+			}
+
+			return parentWrapper.getHandler() != null && wrap(parentWrapper.getHandler(), target, wrapper);
+		}
+		else if (parent instanceof HandlerCollection)
+		{
+			HandlerCollection collection = (HandlerCollection) parent;
+			Handler[] handlers = collection.getHandlers();
+			for (int i = 0; handlers != null && i < handlers.length; i++)
+			{
+				if (handlers[i] == target)
+				{
+					Handler[] replaced = Arrays.copyOf(handlers, handlers.length, Handler[].class);
+					wrapper.setHandler(target);
+					replaced[i] = wrapper;
+					collection.setHandlers(replaced);
+					return true;
+				}
+				else if (wrap(handlers[i], target, wrapper))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Mounts static resources in the first web application context, must be called before the server is started.
+	 * 
+	 * @param staticResourceConfiguration
+	 *            not <code>null</code>
+	 * @return holder of the {@link StaticResourceServlet}
+	 * @see #staticResourceConfiguration(Properties)
+	 * @see WebAppContextConfiguration.Builder#staticResources(StaticResourceConfiguration)
+	 */
+	public ServletHolder addStaticResources(StaticResourceConfiguration staticResourceConfiguration)
+	{
+		Objects.requireNonNull(staticResourceConfiguration, "staticResourceConfiguration");
+
+		return addStaticResources(webAppContext, staticResourceConfiguration);
+	}
+
 	public static void start(JettyServer server)
 	{
 		try
@@ -0,0 +1,377 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.rwh.utils.crypto.io.CertificateReader;
+
+/**
+ * Watches a PEM trust store and a PKCS12 key store for changes and swaps them into an {@link SslContextFactory} via
+ * {@link SslContextFactory#reload(java.util.function.Consumer)}. New handshakes use the reloaded stores, established
+ * connections are not affected.
+ * <p>
+ * Changes are detected by comparing SHA-256 digests of both files. Parent directories are watched with a
+ * {@link WatchService} if available, files are additionally checked every poll interval, e.g. for file systems not
+ * supported by the {@link WatchService}. Stores are only swapped in if they can be read, the key store contains at
+ * least one key entry with a currently valid X.509 certificate and key and trust managers can be initialized,
+ * otherwise the current stores are kept.
+ */
+@ManagedObject("Key store and trust store reloader")
+public class KeyStoreReloader extends AbstractLifeCycle
+{
+	private static final Logger logger = LoggerFactory.getLogger(KeyStoreReloader.class);
+
+	private static final long SETTLE_MILLIS = 500;
+
+	private final SslContextFactory.Server sslContextFactory;
+	private final Path trustStorePath;
+	private final Path keyStorePath;
+	private final char[] keyStorePassword;
+	private final TlsConfiguration tlsConfiguration;
+	private final long pollIntervalMillis;
+	private final CertificateExpiryMonitor certificateExpiryMonitor;
+	private final String certificateSource;
+
+	private final LongAdder succeeded = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	private volatile long lastSuccessMillis;
+	private volatile long lastFailureMillis;
+	private volatile String lastFailure;
+
+	private byte[] digest;
+	private Thread watcher;
+
+	/**
+	 * @param sslContextFactory
+	 *            not <code>null</code>
+	 * @param trustStorePath
+	 *            not <code>null</code>
+	 * @param keyStorePath
+	 *            not <code>null</code>
+	 * @param keyStorePassword
+	 *            may be <code>null</code>
+	 * @param tlsConfiguration
+	 *            may be <code>null</code>, if not <code>null</code> applied to the reloaded key store, e.g. to select an
+	 *            EC key entry
+	 * @param pollInterval
+	 *            &gt; 0
+	 * @param unit
+	 *            not <code>null</code>
+	 * @param certificateExpiryMonitor
+	 *            may be <code>null</code>, if not <code>null</code> reloaded certificates are registered with the given
+	 *            certificateSource
+	 * @param certificateSource
+	 *            not <code>null</code> if certificateExpiryMonitor is not <code>null</code>
+	 */
+	public KeyStoreReloader(SslContextFactory.Server sslContextFactory, Path trustStorePath, Path keyStorePath,
+			char[] keyStorePassword, TlsConfiguration tlsConfiguration, long pollInterval, TimeUnit unit,
+			CertificateExpiryMonitor certificateExpiryMonitor, String certificateSource)
+	{
+		if (pollInterval <= 0)
+			throw new IllegalArgumentException("pollInterval <= 0");
+
+		this.sslContextFactory = Objects.requireNonNull(sslContextFactory, "sslContextFactory");
+		this.trustStorePath = Objects.requireNonNull(trustStorePath, "trustStorePath").toAbsolutePath();
+		this.keyStorePath = Objects.requireNonNull(keyStorePath, "keyStorePath").toAbsolutePath();
+		this.keyStorePassword = keyStorePassword;
+		this.tlsConfiguration = tlsConfiguration;
+		this.pollIntervalMillis = unit.toMillis(pollInterval);
+		this.certificateExpiryMonitor = certificateExpiryMonitor;
+		this.certificateSource = certificateExpiryMonitor == null ? certificateSource
+				: Objects.requireNonNull(certificateSource, "certificateSource");
+	}
+
+	@Override
+	protected void doStart() throws Exception
+	{
+		digest = digest();
+
+		watcher = new Thread(this::watch, "keystore-reloader");
+		watcher.setDaemon(true);
+		watcher.start();
+
+		logger.info("Watching trust store {} and key store {} for changes", trustStorePath, keyStorePath);
+	}
+
+	@Override
+	protected void doStop() throws Exception
+	{
+		Thread w = watcher;
+		watcher = null;
+
+		if (w != null)
+		{
+			w.interrupt();
+			w.join(TimeUnit.SECONDS.toMillis(5));
+		}
+	}
+
+	private void watch()
+	{
+		try (WatchService watchService = newWatchService())
+		{
+			while (!Thread.currentThread().isInterrupted())
+			{
+				if (watchService == null)
+					Thread.sleep(pollIntervalMillis);
+				else if (awaitEvents(watchService))
+					Thread.sleep(SETTLE_MILLIS);
+
+				checkForChanges();
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException e)
+		{
+			logger.warn("Error while closing watch service: {} - {}", e.getClass().getName(), e.getMessage());
+		}
+	}
+
+	private WatchService newWatchService()
+	{
+		try
+		{
+			WatchService watchService = FileSystems.getDefault().newWatchService();
+
+			List<Path> directories = new ArrayList<>();
+			for (Path file : Arrays.asList(trustStorePath, keyStorePath))
+			{
+				Path directory = file.getParent();
+				if (directory != null && !directories.contains(directory))
+				{
+					directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+					directories.add(directory);
+				}
+			}
+
+			return watchService;
+		}
+		catch (IOException | UnsupportedOperationException e)
+		{
+			logger.warn("Watch service not available, polling trust store and key store every {} ms: {} - {}",
+					pollIntervalMillis, e.getClass().getName(), e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if at least one event was received within the poll interval
+	 */
+	private boolean awaitEvents(WatchService watchService) throws InterruptedException
+	{
+		WatchKey key = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+		if (key == null)
+			return false;
+
+		do
+		{
+			key.pollEvents();
+			key.reset();
+		}
+		while ((key = watchService.poll()) != null);
+
+		return true;
+	}
+
+	private void checkForChanges()
+	{
+		byte[] current;
+		try
+		{
+			current = digest();
+		}
+		catch (IOException e)
+		{
+			// files may be missing while being replaced, changes are detected on the next check
+			logger.debug("Unable to read trust store or key store", e);
+			return;
+		}
+
+		if (!Arrays.equals(digest, current))
+		{
+			digest = current;
+			reload();
+		}
+	}
+
+	private byte[] digest() throws IOException
+	{
+		try
+		{
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			messageDigest.update(Files.readAllBytes(trustStorePath));
+			messageDigest.update(Files.readAllBytes(keyStorePath));
+			return messageDigest.digest();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads and validates the trust store and key store and swaps them into the {@link SslContextFactory}, the current
+	 * stores are kept if reading or validation fails.
+	 *
+	 * @return <code>true</code> if the stores were reloaded
+	 */
+	@ManagedOperation(value = "Reloads the trust store and key store", impact = "ACTION")
+	public synchronized boolean reload()
+	{
+		try
+		{
+			KeyStore trustStore = CertificateReader.allFromCer(trustStorePath);
+			KeyStore keyStore = CertificateReader.fromPkcs12(keyStorePath, keyStorePassword);
+
+			validate(trustStore, keyStore);
+
+			sslContextFactory.reload(f ->
+			{
+				if (tlsConfiguration != null)
+					tlsConfiguration.configure((SslContextFactory.Server) f, keyStore);
+
+				f.setTrustStore(trustStore);
+				f.setKeyStore(keyStore);
+			});
+
+			succeeded.increment();
+			lastSuccessMillis = System.currentTimeMillis();
+
+			if (certificateExpiryMonitor != null)
+				certificateExpiryMonitor.register(certificateSource, trustStore, keyStore);
+
+			logger.info("Trust store {} and key store {} reloaded, key store certificates: {}", trustStorePath,
+					keyStorePath, describe(keyStore));
+			return true;
+		}
+		catch (Exception e)
+		{
+			failed.increment();
+			lastFailureMillis = System.currentTimeMillis();
+			lastFailure = e.getClass().getName() + " - " + e.getMessage();
+
+			logger.error("Reloading trust store {} and key store {} failed, keeping current stores: {}",
+					trustStorePath, keyStorePath, lastFailure);
+			logger.debug("Reloading trust store and key store failed", e);
+			return false;
+		}
+	}
+
+	private void validate(KeyStore trustStore, KeyStore keyStore) throws GeneralSecurityException
+	{
+		if (trustStore.size() == 0)
+			throw new GeneralSecurityException("Trust store " + trustStorePath + " empty");
+
+		boolean keyEntry = false;
+		for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements();)
+		{
+			String alias = aliases.nextElement();
+			if (!keyStore.isKeyEntry(alias))
+				continue;
+
+			Certificate certificate = keyStore.getCertificate(alias);
+			if (!(certificate instanceof X509Certificate))
+				continue;
+
+			((X509Certificate) certificate).checkValidity();
+			keyEntry = true;
+		}
+
+		if (!keyEntry)
+			throw new GeneralSecurityException("Key store " + keyStorePath + " contains no key entry");
+
+		KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm()).init(keyStore, keyStorePassword);
+		TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm()).init(trustStore);
+	}
+
+	private static String describe(KeyStore keyStore) throws GeneralSecurityException
+	{
+		List<String> certificates = new ArrayList<>();
+		for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements();)
+		{
+			Certificate certificate = keyStore.getCertificate(aliases.nextElement());
+			if (certificate instanceof X509Certificate)
+			{
+				X509Certificate x509 = (X509Certificate) certificate;
+				certificates.add(x509.getSubjectX500Principal().getName() + " (not after " + x509.getNotAfter() + ")");
+			}
+		}
+
+		return certificates.toString();
+	}
+
+	@ManagedAttribute("Number of successful reloads")
+	public long getReloadsSucceeded()
+	{
+		return succeeded.sum();
+	}
+
+	@ManagedAttribute("Number of failed reloads")
+	public long getReloadsFailed()
+	{
+		return failed.sum();
+	}
+
+	@ManagedAttribute("Time of the last successful reload in milliseconds since the epoch, 0 if none")
+	public long getLastSuccessMillis()
+	{
+		return lastSuccessMillis;
+	}
+
+	@ManagedAttribute("Time of the last failed reload in milliseconds since the epoch, 0 if none")
+	public long getLastFailureMillis()
+	{
+		return lastFailureMillis;
+	}
+
+	@ManagedAttribute("Cause of the last failed reload, null if none")
+	public String getLastFailure()
+	{
+		return lastFailure;
+	}
+
+	public Path getTrustStorePath()
+	{
+		return trustStorePath;
+	}
+
+	public Path getKeyStorePath()
+	{
+		return keyStorePath;
+	}
+}
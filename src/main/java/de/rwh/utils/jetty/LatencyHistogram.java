@@ -0,0 +1,133 @@
+package de.rwh.utils.jetty;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram with constant memory and lock-free recording. Values are recorded in microseconds,
+ * each power of two range is split into {@value #SUB_BUCKETS} linear buckets, i.e. values are stored with a relative
+ * error of at most 1/{@value #SUB_BUCKETS}. Values above ~19 hours are recorded in the highest bucket.
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_MAGNITUDE = 36;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumMicros = new LongAdder();
+
+	public void record(long duration, TimeUnit unit)
+	{
+		long micros = Math.max(0, unit.toMicros(duration));
+
+		counts.incrementAndGet(index(micros));
+		count.increment();
+		sumMicros.add(micros);
+	}
+
+	private static int index(long micros)
+	{
+		if (micros < SUB_BUCKETS)
+			return (int) micros;
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+		if (magnitude > MAX_MAGNITUDE)
+			return BUCKETS - 1;
+
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (micros >>> shift) - SUB_BUCKETS;
+
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return largest value in microseconds recorded in the bucket with the given index
+	 */
+	private static long upperBound(int index)
+	{
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+
+		return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public double getSumSeconds()
+	{
+		return sumMicros.sum() / 1_000_000d;
+	}
+
+	/**
+	 * @param bounds
+	 *            ascending upper bounds in seconds
+	 * @return cumulative counts of values less than or equal to the given bounds, values are attributed to a bound if
+	 *         their bucket's upper limit is not above the bound
+	 */
+	public long[] getCumulativeCounts(double[] bounds)
+	{
+		long[] cumulative = new long[bounds.length];
+
+		int bound = 0;
+		long sum = 0;
+		for (int i = 0; i < BUCKETS && bound < bounds.length; i++)
+		{
+			long upperMicros = upperBound(i);
+			while (bound < bounds.length && upperMicros > bounds[bound] * 1_000_000d)
+				cumulative[bound++] = sum;
+
+			sum += counts.get(i);
+		}
+
+		while (bound < bounds.length)
+			cumulative[bound++] = sum;
+
+		return cumulative;
+	}
+
+	/**
+	 * @param quantile
+	 *            0 .. 1
+	 * @return upper limit of the bucket containing the given quantile in microseconds, 0 if empty
+	 */
+	public long getValueAtQuantile(double quantile)
+	{
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			total += snapshot[i] = counts.get(i);
+
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long sum = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			sum += snapshot[i];
+			if (sum >= rank)
+				return upperBound(i);
+		}
+
+		return upperBound(BUCKETS - 1);
+	}
+
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+
+		count.reset();
+		sumMicros.reset();
+	}
+}
@@ -4,15 +4,61 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.async.AsyncLoggerContext;
+import org.apache.logging.log4j.core.async.AsyncLoggerContextSelector;
 import org.apache.logging.log4j.core.config.ConfigurationSource;
 import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.jmx.RingBufferAdmin;
+import org.apache.logging.log4j.status.StatusLogger;
 
+/**
+ * Initializes Log4j from the XML config file <code>jetty.log4j.config</code>.
+ * <p>
+ * If <code>jetty.log4j.async</code> is <code>true</code>, all loggers are made asynchronous by setting Log4j's context
+ * selector before initialization: log events are handed to a background thread via a ring buffer of
+ * <code>jetty.log4j.async.ringbuffer.size</code> slots and appender I/O no longer blocks request threads. The background
+ * thread waits for events using wait strategy <code>jetty.log4j.async.waitstrategy</code> (<code>Block</code>,
+ * <code>Timeout</code>, <code>Sleep</code>, <code>Yield</code> or <code>BusySpin</code>). If the ring buffer is full,
+ * <code>jetty.log4j.async.queuefull</code> decides whether the caller waits (<code>block</code>), events at
+ * <code>jetty.log4j.async.discard.threshold</code> or less severe are dropped (<code>discard</code>) or the caller
+ * logs synchronously (<code>synchronous</code>), see {@link Log4jQueueFullPolicy}. Garbage-free logging via thread local
+ * reusable events and direct encoders (<code>jetty.log4j.garbagefree</code>, default <code>true</code> if async) is
+ * enabled by declaring the application as not a web application to Log4j, appropriate for an embedded server owning
+ * the JVM.
+ * <p>
+ * Async loggers require the LMAX Disruptor (<code>com.lmax:disruptor</code> 3.x), an optional dependency of this
+ * library that needs to be declared by applications enabling <code>jetty.log4j.async</code>; initialization fails if
+ * it is not on the classpath.
+ * <p>
+ * Log4j reads these settings once, async and garbage-free settings are only effective if Log4j was not used before
+ * initialization.
+ */
 public final class Log4jInitializer
 {
 	public static final String PROPERTY_JETTY_LOG4J_CONFIG = "jetty.log4j.config";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC = "jetty.log4j.async";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC_DEFAULT = "false";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC_RING_BUFFER_SIZE = "jetty.log4j.async.ringbuffer.size";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC_WAIT_STRATEGY = "jetty.log4j.async.waitstrategy";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC_QUEUE_FULL = "jetty.log4j.async.queuefull";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC_QUEUE_FULL_DEFAULT = "block";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC_DISCARD_THRESHOLD = "jetty.log4j.async.discard.threshold";
+	public static final String PROPERTY_JETTY_LOG4J_ASYNC_DISCARD_THRESHOLD_DEFAULT = "INFO";
+	public static final String PROPERTY_JETTY_LOG4J_GARBAGE_FREE = "jetty.log4j.garbagefree";
+
+	private static final String DISRUPTOR_CLASS = "com.lmax.disruptor.RingBuffer";
+
+	private static final List<String> WAIT_STRATEGIES = Arrays.asList("Block", "Timeout", "Sleep", "Yield",
+			"BusySpin");
+
+	private static volatile AsyncLoggerContext asyncLoggerContext;
 
 	private Log4jInitializer()
 	{
@@ -22,14 +68,104 @@ public final class Log4jInitializer
 	{
 		String configLocation = properties.getProperty(PROPERTY_JETTY_LOG4J_CONFIG);
 
+		boolean async = Boolean
+				.parseBoolean(properties.getProperty(PROPERTY_JETTY_LOG4J_ASYNC, PROPERTY_JETTY_LOG4J_ASYNC_DEFAULT));
+		boolean garbageFree = Boolean
+				.parseBoolean(properties.getProperty(PROPERTY_JETTY_LOG4J_GARBAGE_FREE, String.valueOf(async)));
+
+		if (garbageFree)
+			enableGarbageFree();
+		if (async)
+			enableAsync(properties);
+
+		LoggerContext loggerContext;
 		try
 		{
-			return initializeLog4j(configLocation);
+			loggerContext = initializeLog4j(configLocation);
 		}
 		catch (IOException e)
 		{
 			throw new RuntimeException("Error while initilizing log4j", e);
 		}
+
+		if (loggerContext instanceof AsyncLoggerContext)
+			asyncLoggerContext = (AsyncLoggerContext) loggerContext;
+		else if (async)
+			StatusLogger.getLogger().warn("Log4j initialized before {} was evaluated, async loggers not enabled",
+					PROPERTY_JETTY_LOG4J_ASYNC);
+
+		return loggerContext;
+	}
+
+	private static void enableGarbageFree()
+	{
+		// Log4j disables thread locals if the servlet API is on the class path
+		System.setProperty("log4j2.isWebapp", "false");
+		System.setProperty("log4j2.enableThreadlocals", "true");
+		System.setProperty("log4j2.enableDirectEncoders", "true");
+	}
+
+	private static void enableAsync(Properties properties)
+	{
+		requireDisruptor(Log4jInitializer.class.getClassLoader());
+
+		String ringBufferSize = properties.getProperty(PROPERTY_JETTY_LOG4J_ASYNC_RING_BUFFER_SIZE);
+		if (ringBufferSize != null && !ringBufferSize.isBlank())
+		{
+			if (Integer.parseInt(ringBufferSize.trim()) <= 0)
+				throw new IllegalArgumentException(
+						"Property '" + PROPERTY_JETTY_LOG4J_ASYNC_RING_BUFFER_SIZE + "' value not > 0");
+
+			System.setProperty("log4j2.asyncLoggerRingBufferSize", ringBufferSize.trim());
+		}
+
+		String waitStrategy = properties.getProperty(PROPERTY_JETTY_LOG4J_ASYNC_WAIT_STRATEGY);
+		if (waitStrategy != null && !waitStrategy.isBlank())
+		{
+			if (WAIT_STRATEGIES.stream().noneMatch(waitStrategy.trim()::equalsIgnoreCase))
+				throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_LOG4J_ASYNC_WAIT_STRATEGY + "' value '"
+						+ waitStrategy + "' not one of " + String.join(", ", WAIT_STRATEGIES));
+
+			System.setProperty("log4j2.asyncLoggerWaitStrategy", waitStrategy.trim());
+		}
+
+		String queueFull = properties.getProperty(PROPERTY_JETTY_LOG4J_ASYNC_QUEUE_FULL,
+				PROPERTY_JETTY_LOG4J_ASYNC_QUEUE_FULL_DEFAULT);
+		String discardThreshold = properties.getProperty(PROPERTY_JETTY_LOG4J_ASYNC_DISCARD_THRESHOLD,
+				PROPERTY_JETTY_LOG4J_ASYNC_DISCARD_THRESHOLD_DEFAULT);
+		try
+		{
+			Log4jQueueFullPolicy.configure(
+					Log4jQueueFullPolicy.Mode.valueOf(queueFull.trim().toUpperCase(Locale.ENGLISH)),
+					Level.valueOf(discardThreshold.trim()));
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Property '" + PROPERTY_JETTY_LOG4J_ASYNC_QUEUE_FULL + "' value '"
+					+ queueFull + "' not one of block, discard, synchronous or property '"
+					+ PROPERTY_JETTY_LOG4J_ASYNC_DISCARD_THRESHOLD + "' value '" + discardThreshold
+					+ "' not a log level", e);
+		}
+
+		System.setProperty("log4j2.asyncQueueFullPolicy", Log4jQueueFullPolicy.class.getName());
+		System.setProperty("log4j2.contextSelector", AsyncLoggerContextSelector.class.getName());
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the LMAX Disruptor is not available via the given class loader
+	 */
+	static void requireDisruptor(ClassLoader classLoader)
+	{
+		try
+		{
+			Class.forName(DISRUPTOR_CLASS, false, classLoader);
+		}
+		catch (ClassNotFoundException | LinkageError e)
+		{
+			throw new IllegalStateException("Property '" + PROPERTY_JETTY_LOG4J_ASYNC
+					+ "' is true, but LMAX Disruptor (com.lmax:disruptor) not found on the classpath", e);
+		}
 	}
 
 	public static LoggerContext initializeLog4j(String configLocation) throws IOException
@@ -45,4 +181,14 @@ public final class Log4jInitializer
 
 		return Configurator.initialize(null, configuration);
 	}
+
+	/**
+	 * @return ring buffer of the async logger context, <code>null</code> if async loggers are not enabled or the
+	 *         context is stopped
+	 */
+	public static RingBufferAdmin getAsyncRingBuffer()
+	{
+		AsyncLoggerContext context = asyncLoggerContext;
+		return context == null || !context.isStarted() ? null : context.createRingBufferAdmin();
+	}
 }
@@ -0,0 +1,117 @@
+package de.rwh.utils.jetty;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.async.AsyncQueueFullPolicy;
+import org.apache.logging.log4j.core.async.DefaultAsyncQueueFullPolicy;
+import org.apache.logging.log4j.core.async.EventRoute;
+
+/**
+ * Decides what happens to log events if the async logger ring buffer is full and counts events by route. Instantiated
+ * by Log4j via system property <code>log4j2.asyncQueueFullPolicy</code>, configured by the {@link Log4jInitializer}
+ * before Log4j is initialized. Events logged by the background thread itself are always logged synchronously to avoid
+ * deadlocks.
+ */
+public class Log4jQueueFullPolicy implements AsyncQueueFullPolicy
+{
+	public enum Mode
+	{
+		/**
+		 * Caller waits until the event can be enqueued
+		 */
+		BLOCK,
+
+		/**
+		 * Events at the discard threshold level or less severe are dropped, more severe events are enqueued
+		 */
+		DISCARD,
+
+		/**
+		 * Caller writes the event synchronously, bypassing the ring buffer
+		 */
+		SYNCHRONOUS
+	}
+
+	private static volatile Mode mode = Mode.BLOCK;
+	private static volatile Level discardThreshold = Level.INFO;
+
+	private static final LongAdder enqueued = new LongAdder();
+	private static final LongAdder discarded = new LongAdder();
+	private static final LongAdder synchronous = new LongAdder();
+
+	private final AsyncQueueFullPolicy defaultPolicy = new DefaultAsyncQueueFullPolicy();
+
+	/**
+	 * Must be called before Log4j creates the policy, i.e. before async loggers are initialized.
+	 *
+	 * @param mode
+	 *            not <code>null</code>
+	 * @param discardThreshold
+	 *            not <code>null</code>, only used if mode is {@link Mode#DISCARD}
+	 */
+	static void configure(Mode mode, Level discardThreshold)
+	{
+		Log4jQueueFullPolicy.mode = Objects.requireNonNull(mode, "mode");
+		Log4jQueueFullPolicy.discardThreshold = Objects.requireNonNull(discardThreshold, "discardThreshold");
+	}
+
+	public static Mode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * @return number of events enqueued after waiting for the full ring buffer
+	 */
+	public static long getEnqueued()
+	{
+		return enqueued.sum();
+	}
+
+	/**
+	 * @return number of events dropped because the ring buffer was full
+	 */
+	public static long getDiscarded()
+	{
+		return discarded.sum();
+	}
+
+	/**
+	 * @return number of events logged synchronously because the ring buffer was full
+	 */
+	public static long getSynchronous()
+	{
+		return synchronous.sum();
+	}
+
+	@Override
+	public EventRoute getRoute(long backgroundThreadId, Level level)
+	{
+		EventRoute route = defaultPolicy.getRoute(backgroundThreadId, level);
+
+		if (EventRoute.ENQUEUE.equals(route))
+		{
+			if (Mode.DISCARD.equals(mode) && level.isLessSpecificThan(discardThreshold))
+				route = EventRoute.DISCARD;
+			else if (Mode.SYNCHRONOUS.equals(mode))
+				route = EventRoute.SYNCHRONOUS;
+		}
+
+		switch (route)
+		{
+			case DISCARD:
+				discarded.increment();
+				break;
+			case SYNCHRONOUS:
+				synchronous.increment();
+				break;
+			default:
+				enqueued.increment();
+				break;
+		}
+
+		return route;
+	}
+}
@@ -1,15 +1,26 @@
 package de.rwh.utils.jetty;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -29,153 +40,633 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Only for Testing
- * 
+ * Logs request URI, method and response status on level info; parameters, headers and bodies on level debug. Request
+ * and response bodies are streamed through to the application and client, at most
+ * {@value #DEFAULT_MAX_BODY_BYTES} bytes per body are captured for logging. The maximum can be configured via filter or
+ * context init parameter <code>jetty.loggingfilter.body.maxbytes</code>. Bodies are not captured if debug logging is
+ * disabled. Readers, writers, non-blocking I/O via read and write listeners and async processing are supported, the
+ * request is logged when it completes.
+ * <p>
+ * Captured requests are formatted and emitted as text or JSON (<code>jetty.loggingfilter.format</code>) by a
+ * {@link RequestLogPipeline} on a background thread, the request thread only copies headers and parameters. Entries
+ * are dropped and counted if the pipeline's ring buffer (<code>jetty.loggingfilter.buffer.size</code>) is full,
+ * <code>jetty.loggingfilter.async=false</code> formats entries on the request thread. Requests are sampled by a
+ * {@link RequestLogSampler} at a default (<code>jetty.loggingfilter.sample.rate</code>) and per-route rate
+ * (<code>jetty.loggingfilter.sample.routes</code>, e.g. <code>/health=0,/api/=0.1</code>), only sampled requests are
+ * captured with parameters and bodies. Server errors, failed requests and requests slower than
+ * <code>jetty.loggingfilter.slow.ms</code> are always logged.
+ *
  * @author hhund
  */
 public class LoggingFilter implements Filter
 {
 	private static final Logger logger = LoggerFactory.getLogger(LoggingFilter.class);
 
-	private static final Pattern CONTROL_CHARACTERS_PATTERN = Pattern.compile("\\p{Cc}");
+	public static final String INIT_PARAMETER_MAX_BODY_BYTES = "jetty.loggingfilter.body.maxbytes";
+	public static final int DEFAULT_MAX_BODY_BYTES = 8192;
 
-	private static final class RequestWrapper extends HttpServletRequestWrapper
+	private static final String ATTRIBUTE_EXCHANGE = LoggingFilter.class.getName() + ".exchange";
+
+	public static final String INIT_PARAMETER_ASYNC = "jetty.loggingfilter.async";
+	public static final String INIT_PARAMETER_BUFFER_SIZE = "jetty.loggingfilter.buffer.size";
+	public static final String INIT_PARAMETER_FORMAT = "jetty.loggingfilter.format";
+	public static final String INIT_PARAMETER_SAMPLE_RATE = "jetty.loggingfilter.sample.rate";
+	public static final String INIT_PARAMETER_SAMPLE_ROUTES = "jetty.loggingfilter.sample.routes";
+	public static final String INIT_PARAMETER_SLOW_MILLIS = "jetty.loggingfilter.slow.ms";
+	public static final long DEFAULT_SLOW_MILLIS = 1000;
+
+	/**
+	 * Captures the first <i>maxBytes</i> bytes written, counts all bytes or characters written. Characters are encoded
+	 * with the given charset until <i>maxBytes</i> is reached.
+	 */
+	private static final class Capture
 	{
-		private byte[] body;
+		private static final int INITIAL_CAPACITY = 256;
+
+		private final int maxBytes;
 
-		public RequestWrapper(HttpServletRequest request)
+		private byte[] bytes;
+		private int size;
+		private long total;
+		private boolean characters;
+		private boolean truncated;
+
+		Capture(int maxBytes)
 		{
-			super(request);
+			this.maxBytes = maxBytes;
+			bytes = new byte[Math.min(maxBytes, INITIAL_CAPACITY)];
 		}
 
-		@Override
-		public ServletInputStream getInputStream() throws IOException
+		void write(int b)
 		{
-			return new ServletInputStream()
+			total++;
+
+			if (size < maxBytes)
 			{
-				private final InputStream in = new ByteArrayInputStream(getBody());
+				ensureCapacity(size + 1);
+				bytes[size++] = (byte) b;
+			}
+			else
+				truncated = true;
+		}
 
-				@Override
-				public int read() throws IOException
-				{
-					return in.read();
-				}
+		void write(byte[] b, int off, int len)
+		{
+			total += len;
+			append(b, off, len);
+		}
 
-				@Override
-				public boolean isFinished()
-				{
-					return false;
-				}
+		void write(CharSequence chars, Charset charset)
+		{
+			characters = true;
+			total += chars.length();
 
-				@Override
-				public boolean isReady()
-				{
-					return true;
-				}
+			int n = Math.min(chars.length(), maxBytes - size);
+			if (n > 0)
+			{
+				byte[] encoded = chars.subSequence(0, n).toString().getBytes(charset);
+				append(encoded, 0, encoded.length);
+			}
 
-				@Override
-				public void setReadListener(ReadListener readListener)
-				{
-				}
-			};
+			if (n < chars.length())
+				truncated = true;
+		}
+
+		private void append(byte[] b, int off, int len)
+		{
+			int n = Math.min(len, maxBytes - size);
+			if (n > 0)
+			{
+				ensureCapacity(size + n);
+				System.arraycopy(b, off, bytes, size, n);
+				size += n;
+			}
+
+			if (n < len)
+				truncated = true;
+		}
+
+		private void ensureCapacity(int capacity)
+		{
+			if (capacity > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.min(maxBytes, Math.max(capacity, bytes.length * 2)));
+		}
+
+		void reset()
+		{
+			size = 0;
+			total = 0;
+			truncated = false;
+		}
+
+		String toString(Charset charset)
+		{
+			String body = new String(bytes, 0, size, charset);
+			return truncated ? body + "... [truncated, " + total + (characters ? " characters]" : " bytes]") : body;
+		}
+	}
+
+	private static final class CapturingInputStream extends ServletInputStream
+	{
+		private final ServletInputStream in;
+		private final Capture capture;
+
+		CapturingInputStream(ServletInputStream in, Capture capture)
+		{
+			this.in = in;
+			this.capture = capture;
 		}
 
 		@Override
-		public BufferedReader getReader() throws IOException
+		public int read() throws IOException
 		{
-			throw new UnsupportedOperationException("Method not supported by this wrapper");
+			int b = in.read();
+			if (b != -1)
+				capture.write(b);
+
+			return b;
 		}
 
-		public byte[] getBody() throws IOException
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
 		{
-			if (body == null)
-			{
-				ServletInputStream s = super.getInputStream();
-				body = toByteArray(s);
-			}
+			int n = in.read(b, off, len);
+			if (n > 0)
+				capture.write(b, off, n);
+
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			return in.available();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+
+		@Override
+		public boolean isFinished()
+		{
+			return in.isFinished();
+		}
+
+		@Override
+		public boolean isReady()
+		{
+			return in.isReady();
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener)
+		{
+			in.setReadListener(readListener);
+		}
+	}
+
+	private static final class CapturingOutputStream extends ServletOutputStream
+	{
+		private final ServletOutputStream out;
+		private final Capture capture;
+
+		CapturingOutputStream(ServletOutputStream out, Capture capture)
+		{
+			this.out = out;
+			this.capture = capture;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			capture.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			capture.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			out.close();
+		}
+
+		@Override
+		public boolean isReady()
+		{
+			return out.isReady();
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener)
+		{
+			out.setWriteListener(writeListener);
+		}
+	}
+
+	private static final class CapturingReader extends Reader
+	{
+		private final Reader in;
+		private final Capture capture;
+		private final Charset charset;
+
+		CapturingReader(Reader in, Capture capture, Charset charset)
+		{
+			this.in = in;
+			this.capture = capture;
+			this.charset = charset;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int c = in.read();
+			if (c != -1)
+				capture.write(String.valueOf((char) c), charset);
+
+			return c;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException
+		{
+			int n = in.read(cbuf, off, len);
+			if (n > 0)
+				capture.write(CharBuffer.wrap(cbuf, off, n), charset);
+
+			return n;
+		}
+
+		@Override
+		public boolean ready() throws IOException
+		{
+			return in.ready();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	private static final class CapturingWriter extends Writer
+	{
+		private final PrintWriter out;
+		private final Capture capture;
+		private final Charset charset;
+
+		CapturingWriter(PrintWriter out, Capture capture, Charset charset)
+		{
+			this.out = out;
+			this.capture = capture;
+			this.charset = charset;
+		}
+
+		@Override
+		public void write(int c)
+		{
+			out.write(c);
+			capture.write(String.valueOf((char) c), charset);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len)
+		{
+			out.write(cbuf, off, len);
+			capture.write(CharBuffer.wrap(cbuf, off, len), charset);
+		}
+
+		@Override
+		public void write(String str, int off, int len)
+		{
+			out.write(str, off, len);
+			capture.write(CharBuffer.wrap(str, off, off + len), charset);
+		}
 
-			return body;
+		@Override
+		public void flush()
+		{
+			out.flush();
 		}
 
-		public String bodyAsString() throws IOException
+		@Override
+		public void close()
 		{
-			String body = new String(getBody());
+			out.close();
+		}
 
-			int controlCharactersCount = 0;
-			Matcher matcher = CONTROL_CHARACTERS_PATTERN.matcher(body);
-			while (matcher.find())
-				controlCharactersCount++;
+		boolean checkError()
+		{
+			return out.checkError();
+		}
+	}
 
-			if (controlCharactersCount > 0)
-				logger.warn("{} control character{} removed from body string representation", controlCharactersCount,
-						controlCharactersCount > 1 ? "s" : "");
+	private static final class RequestWrapper extends HttpServletRequestWrapper
+	{
+		private final Capture body;
+		private final ResponseWrapper response;
+		private ServletInputStream in;
+		private BufferedReader reader;
 
-			return CONTROL_CHARACTERS_PATTERN.matcher(body).replaceAll("");
+		public RequestWrapper(HttpServletRequest request, ResponseWrapper response, int maxBodyBytes)
+		{
+			super(request);
+
+			this.response = response;
+			body = new Capture(maxBodyBytes);
+		}
+
+		public ResponseWrapper getResponseWrapper()
+		{
+			return response;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException
+		{
+			if (in == null)
+				in = new CapturingInputStream(super.getInputStream(), body);
+
+			return in;
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException
+		{
+			if (reader == null)
+				reader = new BufferedReader(
+						new CapturingReader(super.getReader(), body, toCharset(getCharacterEncoding())));
+
+			return reader;
+		}
+
+		/**
+		 * Starts async processing with this request and the corresponding response wrapper, so that reads and writes
+		 * via {@link AsyncContext#getRequest()} and {@link AsyncContext#getResponse()} are captured.
+		 */
+		@Override
+		public AsyncContext startAsync() throws IllegalStateException
+		{
+			return super.startAsync(this, response);
+		}
+
+		public Supplier<String> getBody()
+		{
+			Charset charset = toCharset(getCharacterEncoding());
+			return () -> body.toString(charset);
 		}
 	}
 
 	private static final class ResponseWrapper extends HttpServletResponseWrapper
 	{
-		private ByteArrayOutputStream out = new ByteArrayOutputStream();
+		private final Capture body;
+		private ServletOutputStream out;
+		private PrintWriter writer;
 
-		public ResponseWrapper(HttpServletResponse response)
+		public ResponseWrapper(HttpServletResponse response, int maxBodyBytes)
 		{
 			super(response);
+
+			body = new Capture(maxBodyBytes);
 		}
 
 		@Override
 		public ServletOutputStream getOutputStream() throws IOException
 		{
-			return new ServletOutputStream()
+			if (out == null)
+				out = new CapturingOutputStream(super.getOutputStream(), body);
+
+			return out;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException
+		{
+			if (writer == null)
 			{
-				@Override
-				public void write(int b) throws IOException
-				{
-					out.write(b);
-					ResponseWrapper.super.getOutputStream().write(b);
-				}
+				PrintWriter delegate = super.getWriter();
+				CapturingWriter capturingWriter = new CapturingWriter(delegate, body,
+						toCharset(getCharacterEncoding()));
 
-				@Override
-				public boolean isReady()
+				writer = new PrintWriter(capturingWriter)
 				{
-					return true;
-				}
+					@Override
+					public boolean checkError()
+					{
+						return super.checkError() || capturingWriter.checkError();
+					}
+				};
+			}
 
-				@Override
-				public void setWriteListener(WriteListener writeListener)
-				{
-				}
-			};
+			return writer;
 		}
 
 		@Override
-		public PrintWriter getWriter() throws IOException
+		public void reset()
+		{
+			super.reset();
+			body.reset();
+		}
+
+		@Override
+		public void resetBuffer()
+		{
+			super.resetBuffer();
+			body.reset();
+		}
+
+		public Supplier<String> getBody()
 		{
-			throw new UnsupportedOperationException("Method not supported by this wrapper");
+			Charset charset = toCharset(getCharacterEncoding());
+			return () -> body.toString(charset);
 		}
+	}
 
-		public String getBody()
+	private static Charset toCharset(String encoding)
+	{
+		try
+		{
+			return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+		}
+		catch (IllegalArgumentException e)
 		{
-			return new String(out.toByteArray());
+			return StandardCharsets.UTF_8;
 		}
 	}
 
+	private int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+	private RequestLogSampler sampler;
+	private RequestLogPipeline pipeline;
+
 	@Override
 	public void init(FilterConfig filterConfig) throws ServletException
 	{
+		maxBodyBytes = Math.max(0,
+				getInitParameter(filterConfig, INIT_PARAMETER_MAX_BODY_BYTES, DEFAULT_MAX_BODY_BYTES, Integer::valueOf));
+
+		double sampleRate = getInitParameter(filterConfig, INIT_PARAMETER_SAMPLE_RATE, 1d, Double::valueOf);
+		Map<String, Double> routeRates = getInitParameter(filterConfig, INIT_PARAMETER_SAMPLE_ROUTES,
+				Collections.emptyMap(), RequestLogSampler::parseRouteRates);
+		long slowMillis = getInitParameter(filterConfig, INIT_PARAMETER_SLOW_MILLIS, DEFAULT_SLOW_MILLIS,
+				Long::valueOf);
+
+		try
+		{
+			sampler = new RequestLogSampler(sampleRate, routeRates, slowMillis);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new ServletException(e.getMessage(), e);
+		}
+
+		RequestLogPipeline.Format format = getInitParameter(filterConfig, INIT_PARAMETER_FORMAT,
+				RequestLogPipeline.Format.TEXT, v -> RequestLogPipeline.Format.valueOf(v.toUpperCase(Locale.ENGLISH)));
+		boolean async = getInitParameter(filterConfig, INIT_PARAMETER_ASYNC, true, Boolean::valueOf);
+		int bufferSize = getInitParameter(filterConfig, INIT_PARAMETER_BUFFER_SIZE,
+				RequestLogPipeline.DEFAULT_CAPACITY, Integer::valueOf);
+
+		pipeline = new RequestLogPipeline(logger, format, async, bufferSize);
+		pipeline.start();
+
+		if (filterConfig.getServletContext() != null)
+			filterConfig.getServletContext().setAttribute(RequestLogPipeline.class.getName(), pipeline);
 	}
 
-	private static byte[] toByteArray(ServletInputStream input) throws IOException
+	private static <T> T getInitParameter(FilterConfig filterConfig, String name, T defaultValue,
+			Function<String, T> parser) throws ServletException
 	{
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		String value = filterConfig.getInitParameter(name);
+		if (value == null && filterConfig.getServletContext() != null)
+			value = filterConfig.getServletContext().getInitParameter(name);
 
-		byte[] buffer = new byte[4096];
+		if (value == null || value.isBlank())
+			return defaultValue;
 
-		int n = 0;
-		while (-1 != (n = input.read(buffer)))
-			output.write(buffer, 0, n);
+		try
+		{
+			return parser.apply(value.trim());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new ServletException("Init parameter " + name + " value '" + value + "' not valid", e);
+		}
+	}
+
+	public RequestLogPipeline getPipeline()
+	{
+		return pipeline;
+	}
+
+	/**
+	 * Hands the captured request to the {@link RequestLogPipeline} when the request completes, either after the filter
+	 * chain returns or, if async processing was started, when the async cycle completes.
+	 */
+	private final class Exchange extends CompletionListener
+	{
+		private final HttpServletRequest request;
+		private final HttpServletResponse response;
+		private final RequestWrapper requestWrapper;
+		private final RequestLogPipeline.Entry entry;
+		private final boolean debug;
+		private final long start = System.nanoTime();
+
+		private boolean listening;
+		private boolean completed;
+
+		Exchange(HttpServletRequest request, HttpServletResponse response, RequestLogPipeline.Entry entry,
+				boolean debug)
+		{
+			this.request = request;
+			this.response = response;
+			this.requestWrapper = request instanceof RequestWrapper ? (RequestWrapper) request : null;
+			this.entry = entry;
+			this.debug = debug;
+		}
+
+		void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+				throws IOException, ServletException
+		{
+			try
+			{
+				chain.doFilter(request, response);
+			}
+			catch (IOException | ServletException | RuntimeException e)
+			{
+				entry.failure = e;
+				complete();
+				throw e;
+			}
+
+			if (this.request.isAsyncStarted())
+			{
+				if (!listening)
+				{
+					this.request.getAsyncContext().addListener(this);
+					listening = true;
+				}
+			}
+			else if (!listening)
+				complete();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException
+		{
+			complete();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) throws IOException
+		{
+			if (entry.failure == null)
+				entry.failure = event.getThrowable();
+		}
+
+		private void complete()
+		{
+			if (completed)
+				return;
+
+			completed = true;
+
+			entry.status = response.getStatus();
+			entry.durationNanos = System.nanoTime() - start;
+
+			if (!entry.sampled && !sampler.isAlwaysLogged(entry.status, entry.failure != null, entry.durationNanos))
+			{
+				pipeline.sampledOut();
+				return;
+			}
 
-		return output.toByteArray();
+			if (debug)
+			{
+				entry.requestHeaders = toHeaders(request);
+				entry.responseHeaders = toHeaders(response);
+			}
+
+			if (requestWrapper != null)
+			{
+				entry.requestBody = requestWrapper.getBody();
+				entry.responseBody = requestWrapper.getResponseWrapper().getBody();
+			}
+
+			pipeline.offer(entry);
+		}
 	}
 
 	@Override
@@ -186,20 +677,48 @@ public class LoggingFilter implements Filter
 
 		if (request instanceof HttpServletRequest && response instanceof HttpServletResponse)
 		{
-			RequestWrapper reqW = new RequestWrapper((HttpServletRequest) request);
-			ResponseWrapper repW = new ResponseWrapper((HttpServletResponse) response);
+			Exchange exchange = (Exchange) request.getAttribute(ATTRIBUTE_EXCHANGE);
+			if (exchange != null)
+			{
+				// async or error dispatch of a request already logged, continue with the capturing wrappers
+				if (DispatcherType.ASYNC.equals(request.getDispatcherType())
+						|| DispatcherType.ERROR.equals(request.getDispatcherType()))
+					exchange.doFilter(exchange.request, exchange.response, chain);
+				else
+					chain.doFilter(request, response);
+
+				return;
+			}
 
-			logger.info("Request to: " + reqW.getRequestURI());
-			logger.debug("Request parameter: " + toParameter(reqW));
-			logger.info("Request method: " + reqW.getMethod());
-			logger.debug("Request header: " + toHeaders(reqW));
-			logger.debug("Request body: " + reqW.bodyAsString());
+			if (!logger.isInfoEnabled())
+			{
+				chain.doFilter(request, response);
+				return;
+			}
+
+			HttpServletRequest req = (HttpServletRequest) request;
+			HttpServletResponse res = (HttpServletResponse) response;
+
+			boolean sampled = sampler.sample(toPath(req));
+			boolean debug = logger.isDebugEnabled();
+
+			RequestLogPipeline.Entry entry = new RequestLogPipeline.Entry(System.currentTimeMillis(), req.getMethod(),
+					req.getRequestURI(), req.getQueryString(), sampled);
 
-			chain.doFilter(reqW, repW);
+			if (sampled && debug)
+			{
+				entry.parameters = toParameters(req);
+
+				ResponseWrapper repW = new ResponseWrapper(res, maxBodyBytes);
+				RequestWrapper reqW = new RequestWrapper(req, repW, maxBodyBytes);
+
+				exchange = new Exchange(reqW, repW, entry, debug);
+			}
+			else
+				exchange = new Exchange(req, res, entry, debug);
 
-			logger.info("Response status: " + repW.getStatus());
-			logger.debug("Response header: " + toHeaders(repW));
-			logger.debug("Response body: " + repW.getBody());
+			request.setAttribute(ATTRIBUTE_EXCHANGE, exchange);
+			exchange.doFilter(exchange.request, exchange.response, chain);
 		}
 		else
 		{
@@ -209,70 +728,65 @@ public class LoggingFilter implements Filter
 		}
 	}
 
-	private String toParameter(RequestWrapper reqW)
+	private static String toPath(HttpServletRequest request)
 	{
-		StringBuilder b = new StringBuilder();
+		String uri = request.getRequestURI();
+		String contextPath = request.getContextPath();
 
-		boolean first = true;
-		for (Enumeration<String> names = reqW.getParameterNames(); names.hasMoreElements();)
-		{
-			if (first)
-				first = false;
-			else
-				b.append("; ");
+		return uri != null && contextPath != null && uri.startsWith(contextPath) ? uri.substring(contextPath.length())
+				: uri;
+	}
 
-			String paramName = names.nextElement();
-			b.append(paramName);
-			b.append("=");
-			b.append(reqW.getParameter(paramName));
+	private static String[] toParameters(HttpServletRequest request)
+	{
+		List<String> parameters = new ArrayList<>();
+		for (Map.Entry<String, String[]> parameter : request.getParameterMap().entrySet())
+		{
+			for (String value : parameter.getValue())
+			{
+				parameters.add(parameter.getKey());
+				parameters.add(value);
+			}
 		}
 
-		return b.toString();
+		return parameters.toArray(new String[parameters.size()]);
 	}
 
-	private String toHeaders(RequestWrapper reqW)
+	private static String[] toHeaders(HttpServletRequest request)
 	{
-		StringBuilder b = new StringBuilder();
-
-		boolean first = true;
-		for (Enumeration<String> names = reqW.getHeaderNames(); names.hasMoreElements();)
+		List<String> headers = new ArrayList<>();
+		for (Enumeration<String> names = request.getHeaderNames(); names.hasMoreElements();)
 		{
-			if (first)
-				first = false;
-			else
-				b.append("; ");
-
-			String headerName = names.nextElement();
-			b.append(headerName);
-			b.append(": ");
-			b.append(reqW.getHeader(headerName));
+			String name = names.nextElement();
+			for (Enumeration<String> values = request.getHeaders(name); values.hasMoreElements();)
+			{
+				headers.add(name);
+				headers.add(values.nextElement());
+			}
 		}
 
-		return b.toString();
+		return headers.toArray(new String[headers.size()]);
 	}
 
-	private String toHeaders(ResponseWrapper repW)
+	private static String[] toHeaders(HttpServletResponse response)
 	{
-		StringBuilder b = new StringBuilder();
-
-		boolean first = true;
-		for (String headerName : repW.getHeaderNames())
+		List<String> headers = new ArrayList<>();
+		for (String name : response.getHeaderNames())
 		{
-			if (first)
-				first = false;
-			else
-				b.append("; ");
-
-			b.append(headerName);
-			b.append(": ");
-			b.append(repW.getHeader(headerName));
+			for (String value : response.getHeaders(name))
+			{
+				headers.add(name);
+				headers.add(value);
+			}
 		}
 
-		return b.toString();
+		return headers.toArray(new String[headers.size()]);
 	}
 
 	@Override
 	public void destroy()
 	{
+		if (pipeline != null)
+			pipeline.stop();
 	}
 }
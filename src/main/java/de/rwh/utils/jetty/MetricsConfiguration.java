@@ -0,0 +1,94 @@
+package de.rwh.utils.jetty;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Request metrics settings: Prometheus endpoint path, management connector and / or explicitly enabled public endpoint
+ * and latency histogram buckets.
+ */
+public class MetricsConfiguration
+{
+	public static final String DEFAULT_PATH = "/metrics";
+	public static final int DEFAULT_MAX_ROUTES = 100;
+	public static final double[] DEFAULT_BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5,
+			5, 10 };
+
+	private final String path;
+	private final String managementHost;
+	private final int managementPort;
+	private final boolean publicEndpoint;
+	private final double[] buckets;
+	private final int maxRoutes;
+
+	/**
+	 * @param path
+	 *            not <code>null</code>, path of the Prometheus endpoint
+	 * @param managementHost
+	 *            may be <code>null</code>
+	 * @param managementPort
+	 *            &lt; 0 for no management connector, 0 for random port, else the endpoint is served on a separate
+	 *            management connector with the given port
+	 * @param publicEndpoint
+	 *            <code>true</code> to serve the endpoint on all connectors, must be <code>true</code> if no management
+	 *            connector is configured
+	 * @param buckets
+	 *            may be <code>null</code>, latency histogram bucket upper bounds in seconds,
+	 *            {@link #DEFAULT_BUCKETS} if <code>null</code> or empty
+	 * @param maxRoutes
+	 *            maximum number of routes with separate latency histograms, requests to further routes are recorded
+	 *            as route <code>other</code>
+	 */
+	public MetricsConfiguration(String path, String managementHost, int managementPort, boolean publicEndpoint,
+			double[] buckets, int maxRoutes)
+	{
+		if (managementPort < 0 && !publicEndpoint)
+			throw new IllegalArgumentException("managementPort < 0 and publicEndpoint not enabled");
+
+		this.path = Objects.requireNonNull(path, "path");
+		this.managementHost = managementHost;
+		this.managementPort = managementPort;
+		this.publicEndpoint = publicEndpoint;
+		this.buckets = buckets == null || buckets.length == 0 ? DEFAULT_BUCKETS.clone()
+				: Arrays.stream(buckets).sorted().distinct().toArray();
+		this.maxRoutes = maxRoutes;
+	}
+
+	public String getPath()
+	{
+		return path;
+	}
+
+	public String getManagementHost()
+	{
+		return managementHost;
+	}
+
+	public int getManagementPort()
+	{
+		return managementPort;
+	}
+
+	public boolean hasManagementConnector()
+	{
+		return managementPort >= 0;
+	}
+
+	/**
+	 * @return <code>true</code> if the endpoint is served on all connectors, not only the management connector
+	 */
+	public boolean isPublicEndpoint()
+	{
+		return publicEndpoint;
+	}
+
+	public double[] getBuckets()
+	{
+		return buckets.clone();
+	}
+
+	public int getMaxRoutes()
+	{
+		return maxRoutes;
+	}
+}
@@ -0,0 +1,46 @@
+package de.rwh.utils.jetty;
+
+/**
+ * Matches request paths against configured path prefixes on path segment boundaries, i.e. the prefix
+ * <code>/health</code> matches <code>/health</code> and <code>/health/live</code>, but not <code>/healthz</code>. A
+ * prefix ending with <code>/</code> matches all paths below it.
+ */
+final class PathPrefixes
+{
+	private PathPrefixes()
+	{
+	}
+
+	/**
+	 * @param path
+	 *            not <code>null</code>
+	 * @param prefix
+	 *            not <code>null</code>
+	 * @return <code>true</code> if the prefix matches the path up to a path segment boundary
+	 */
+	static boolean matches(String path, String prefix)
+	{
+		if (!path.startsWith(prefix))
+			return false;
+
+		return path.length() == prefix.length() || prefix.endsWith("/") || path.charAt(prefix.length()) == '/';
+	}
+
+	/**
+	 * @param path
+	 *            not <code>null</code>
+	 * @param prefixes
+	 *            not <code>null</code>
+	 * @return <code>true</code> if one of the prefixes matches the path up to a path segment boundary
+	 */
+	static boolean matchesAny(String path, String[] prefixes)
+	{
+		for (String prefix : prefixes)
+		{
+			if (matches(path, prefix))
+				return true;
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,100 @@
+package de.rwh.utils.jetty;
+
+/**
+ * Writes metrics in the Prometheus text exposition format (version 0.0.4).
+ */
+final class PrometheusTextWriter
+{
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final StringBuilder b = new StringBuilder(4096);
+
+	PrometheusTextWriter family(String name, String type, String help)
+	{
+		b.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		b.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		return this;
+	}
+
+	/**
+	 * @param labels
+	 *            label name and value pairs
+	 */
+	PrometheusTextWriter sample(String name, long value, String... labels)
+	{
+		appendName(name, labels);
+		b.append(' ').append(value).append('\n');
+		return this;
+	}
+
+	/**
+	 * @param labels
+	 *            label name and value pairs
+	 */
+	PrometheusTextWriter sample(String name, double value, String... labels)
+	{
+		appendName(name, labels);
+		b.append(' ').append(format(value)).append('\n');
+		return this;
+	}
+
+	PrometheusTextWriter append(String samples)
+	{
+		b.append(samples);
+		return this;
+	}
+
+	static String format(double value)
+	{
+		if (value == Double.POSITIVE_INFINITY)
+			return "+Inf";
+		else if (value == Double.NEGATIVE_INFINITY)
+			return "-Inf";
+		else if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			return Long.toString((long) value);
+		else
+			return Double.toString(value);
+	}
+
+	private void appendName(String name, String[] labels)
+	{
+		b.append(name);
+
+		if (labels.length > 0)
+		{
+			b.append('{');
+			for (int i = 0; i < labels.length; i += 2)
+			{
+				if (i > 0)
+					b.append(',');
+
+				b.append(labels[i]).append("=\"");
+				appendLabelValue(labels[i + 1]);
+				b.append('"');
+			}
+			b.append('}');
+		}
+	}
+
+	private void appendLabelValue(String value)
+	{
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			if (c == '\\')
+				b.append("\\\\");
+			else if (c == '"')
+				b.append("\\\"");
+			else if (c == '\n')
+				b.append("\\n");
+			else
+				b.append(c);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return b.toString();
+	}
+}
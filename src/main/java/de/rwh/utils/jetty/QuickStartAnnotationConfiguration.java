@@ -0,0 +1,394 @@
+package de.rwh.utils.jetty;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.annotation.WebServlet;
+
+import org.eclipse.jetty.annotations.AbstractDiscoverableAnnotationHandler;
+import org.eclipse.jetty.annotations.AnnotationDecorator;
+import org.eclipse.jetty.annotations.AnnotationParser.ClassInfo;
+import org.eclipse.jetty.annotations.ServletContainerInitializersStarter;
+import org.eclipse.jetty.annotations.WebFilterAnnotation;
+import org.eclipse.jetty.annotations.WebFilterAnnotationHandler;
+import org.eclipse.jetty.annotations.WebListenerAnnotation;
+import org.eclipse.jetty.annotations.WebListenerAnnotationHandler;
+import org.eclipse.jetty.annotations.WebServletAnnotation;
+import org.eclipse.jetty.annotations.WebServletAnnotationHandler;
+import org.eclipse.jetty.plus.annotation.ContainerInitializer;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.webapp.DiscoveredAnnotation;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link IndexedAnnotationConfiguration} that stores the result of the annotation scan - {@link ContainerInitializer}s
+ * with their applicable classes and classes annotated with <code>@WebServlet</code>, <code>@WebFilter</code> and
+ * <code>@WebListener</code> - in a descriptor file and restores it on later starts without scanning. The descriptor is
+ * invalidated by a hash over the web inf jars and classes directories (paths, sizes and modification times) and the
+ * initializer order and exclusion attributes of the context.
+ * <p>
+ * If a {@link ClassPathIndex} is used, it is stored next to the descriptor in a file with suffix <code>.index</code>
+ * whenever the annotations are scanned and loaded before scanning, so only jars and classes directories changed since
+ * the last scan are indexed again.
+ */
+public class QuickStartAnnotationConfiguration extends IndexedAnnotationConfiguration
+{
+	public static enum Mode
+	{
+		/**
+		 * Starts from the descriptor if it exists and matches the classpath, scans and (re)writes the descriptor
+		 * otherwise.
+		 */
+		AUTO,
+
+		/**
+		 * Always scans and (re)writes the descriptor, e.g. at build time.
+		 */
+		GENERATE,
+
+		/**
+		 * Starts from the descriptor with scanning turned off, fails if the descriptor does not exist or does not match
+		 * the classpath.
+		 */
+		STRICT
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(QuickStartAnnotationConfiguration.class);
+
+	private static final String DESCRIPTOR_HASH = "hash";
+	private static final String DESCRIPTOR_INITIALIZER_PREFIX = "initializer.";
+	private static final String DESCRIPTOR_SERVLETS = "servlets";
+	private static final String DESCRIPTOR_FILTERS = "filters";
+	private static final String DESCRIPTOR_LISTENERS = "listeners";
+
+	private static final String INDEX_FILE_SUFFIX = ".index";
+
+	private final Path descriptor;
+	private final Path indexFile;
+	private final Mode mode;
+
+	private final Set<String> servlets = new ConcurrentSkipListSet<>();
+	private final Set<String> filters = new ConcurrentSkipListSet<>();
+	private final Set<String> listeners = new ConcurrentSkipListSet<>();
+
+	private String hash;
+	private Properties quickStart;
+
+	/**
+	 * @param descriptor
+	 *            not <code>null</code>
+	 * @param mode
+	 *            not <code>null</code>
+	 */
+	public QuickStartAnnotationConfiguration(Path descriptor, Mode mode)
+	{
+		this(descriptor, mode, ClassPathIndex.get(), 0);
+	}
+
+	/**
+	 * @param descriptor
+	 *            not <code>null</code>
+	 * @param mode
+	 *            not <code>null</code>
+	 * @param index
+	 *            may be <code>null</code>, see {@link IndexedAnnotationConfiguration}
+	 * @param parallelism
+	 *            number of scanner threads, &lt;= 0 for number of available processors
+	 */
+	public QuickStartAnnotationConfiguration(Path descriptor, Mode mode, ClassPathIndex index, int parallelism)
+	{
+		super(index, parallelism);
+
+		this.descriptor = Objects.requireNonNull(descriptor, "descriptor");
+		this.indexFile = descriptor.resolveSibling(descriptor.getFileName() + INDEX_FILE_SUFFIX);
+		this.mode = Objects.requireNonNull(mode, "mode");
+	}
+
+	public Path getDescriptor()
+	{
+		return descriptor;
+	}
+
+	/**
+	 * @return file the classpath index is stored to, next to the descriptor
+	 */
+	public Path getIndexFile()
+	{
+		return indexFile;
+	}
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	@Override
+	public void preConfigure(WebAppContext context) throws Exception
+	{
+		super.preConfigure(context);
+
+		hash = hash(context);
+		quickStart = Mode.GENERATE.equals(mode) ? null : readDescriptor();
+
+		if (Mode.STRICT.equals(mode) && quickStart == null)
+			throw new IllegalStateException("Quickstart descriptor " + descriptor + " not found or not readable");
+
+		if (quickStart != null && !hash.equals(quickStart.getProperty(DESCRIPTOR_HASH)))
+		{
+			if (Mode.STRICT.equals(mode))
+				throw new IllegalStateException("Quickstart descriptor " + descriptor + " does not match classpath");
+
+			logger.info("Quickstart descriptor {} does not match classpath, scanning for annotations", descriptor);
+			quickStart = null;
+		}
+	}
+
+	@Override
+	public void configure(WebAppContext context) throws Exception
+	{
+		if (quickStart != null)
+		{
+			logger.info("Starting from quickstart descriptor {}, annotation scan disabled", descriptor);
+			configureFromDescriptor(context, quickStart);
+		}
+		else
+		{
+			if (getIndex() != null)
+				getIndex().load(indexFile);
+
+			long start = System.nanoTime();
+			super.configure(context);
+			logger.info("Annotation scan took {} ms", (System.nanoTime() - start) / 1_000_000);
+
+			writeDescriptor(context);
+			writeIndex();
+		}
+	}
+
+	@Override
+	protected void scanForAnnotations(WebAppContext context) throws Exception
+	{
+		// record discovered annotations for the descriptor
+		for (ListIterator<AbstractDiscoverableAnnotationHandler> it = _discoverableAnnotationHandlers.listIterator(); it
+				.hasNext();)
+		{
+			AbstractDiscoverableAnnotationHandler handler = it.next();
+			if (handler instanceof WebServletAnnotationHandler)
+				it.set(new WebServletAnnotationHandler(context)
+				{
+					@Override
+					public void handle(ClassInfo info, String annotationName)
+					{
+						if (WebServlet.class.getName().equals(annotationName))
+							servlets.add(info.getClassName());
+
+						super.handle(info, annotationName);
+					}
+				});
+			else if (handler instanceof WebFilterAnnotationHandler)
+				it.set(new WebFilterAnnotationHandler(context)
+				{
+					@Override
+					public void handle(ClassInfo info, String annotationName)
+					{
+						if (WebFilter.class.getName().equals(annotationName))
+							filters.add(info.getClassName());
+
+						super.handle(info, annotationName);
+					}
+				});
+			else if (handler instanceof WebListenerAnnotationHandler)
+				it.set(new WebListenerAnnotationHandler(context)
+				{
+					@Override
+					public void handle(ClassInfo info, String annotationName)
+					{
+						if (WebListener.class.getName().equals(annotationName))
+							listeners.add(info.getClassName());
+
+						super.handle(info, annotationName);
+					}
+				});
+		}
+
+		super.scanForAnnotations(context);
+	}
+
+	@Override
+	public void postConfigure(WebAppContext context) throws Exception
+	{
+		servlets.clear();
+		filters.clear();
+		listeners.clear();
+		quickStart = null;
+
+		super.postConfigure(context);
+	}
+
+	private void configureFromDescriptor(WebAppContext context, Properties quickStart)
+	{
+		context.getObjectFactory().addDecorator(new AnnotationDecorator(context));
+
+		ClassLoader classLoader = context.getClassLoader() == null ? Thread.currentThread().getContextClassLoader()
+				: context.getClassLoader();
+
+		List<ContainerInitializer> initializers = new ArrayList<>();
+		for (int i = 0; quickStart.containsKey(DESCRIPTOR_INITIALIZER_PREFIX + i); i++)
+			initializers.add(
+					new ContainerInitializer(classLoader, quickStart.getProperty(DESCRIPTOR_INITIALIZER_PREFIX + i)));
+
+		if (!initializers.isEmpty())
+		{
+			context.setAttribute(CONTAINER_INITIALIZERS, initializers);
+
+			ServletContainerInitializersStarter starter = new ServletContainerInitializersStarter(context);
+			context.setAttribute(CONTAINER_INITIALIZER_STARTER, starter);
+			context.addBean(starter, true);
+		}
+
+		List<DiscoveredAnnotation> annotations = new ArrayList<>();
+		toClassNames(quickStart.getProperty(DESCRIPTOR_SERVLETS))
+				.forEach(c -> annotations.add(new WebServletAnnotation(context, c)));
+		toClassNames(quickStart.getProperty(DESCRIPTOR_FILTERS))
+				.forEach(c -> annotations.add(new WebFilterAnnotation(context, c)));
+		toClassNames(quickStart.getProperty(DESCRIPTOR_LISTENERS))
+				.forEach(c -> annotations.add(new WebListenerAnnotation(context, c)));
+		context.getMetaData().addDiscoveredAnnotations(annotations);
+
+		logger.debug("Restored {} container initializers and {} annotated classes from {}", initializers.size(),
+				annotations.size(), descriptor);
+	}
+
+	private static Stream<String> toClassNames(String value)
+	{
+		return value == null ? Stream.empty()
+				: Stream.of(value.split(",")).map(String::trim).filter(v -> !v.isEmpty());
+	}
+
+	private Properties readDescriptor()
+	{
+		if (!Files.isReadable(descriptor))
+			return null;
+
+		try (BufferedReader reader = Files.newBufferedReader(descriptor, StandardCharsets.UTF_8))
+		{
+			Properties properties = new Properties();
+			properties.load(reader);
+			return properties;
+		}
+		catch (IOException e)
+		{
+			logger.warn("Error while reading quickstart descriptor {}: {}", descriptor, e.getMessage());
+			return null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeDescriptor(WebAppContext context)
+	{
+		Properties properties = new Properties();
+		properties.setProperty(DESCRIPTOR_HASH, hash);
+
+		List<ContainerInitializer> initializers = (List<ContainerInitializer>) context
+				.getAttribute(CONTAINER_INITIALIZERS);
+		if (initializers != null)
+		{
+			for (int i = 0; i < initializers.size(); i++)
+				properties.setProperty(DESCRIPTOR_INITIALIZER_PREFIX + i, initializers.get(i).toString());
+		}
+
+		properties.setProperty(DESCRIPTOR_SERVLETS, String.join(",", servlets));
+		properties.setProperty(DESCRIPTOR_FILTERS, String.join(",", filters));
+		properties.setProperty(DESCRIPTOR_LISTENERS, String.join(",", listeners));
+
+		try
+		{
+			Path parent = descriptor.toAbsolutePath().getParent();
+			if (parent != null)
+				Files.createDirectories(parent);
+
+			Path tmp = Files.createTempFile(parent, descriptor.getFileName().toString(), ".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+			{
+				properties.store(writer, "Jetty quickstart descriptor, generated - do not edit");
+			}
+			Files.move(tmp, descriptor, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			logger.info("Quickstart descriptor written to {}", descriptor);
+		}
+		catch (IOException e)
+		{
+			logger.warn("Error while writing quickstart descriptor {}: {}", descriptor, e.getMessage());
+		}
+	}
+
+	private void writeIndex()
+	{
+		if (getIndex() == null)
+			return;
+
+		try
+		{
+			getIndex().store(indexFile);
+			logger.info("Classpath index written to {}", indexFile);
+		}
+		catch (IOException e)
+		{
+			logger.warn("Error while writing classpath index {}: {}", indexFile, e.getMessage());
+		}
+	}
+
+	private static String hash(WebAppContext context) throws IOException, NoSuchAlgorithmException
+	{
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+		ClassPathIndex.updateHash(digest, Objects.toString(context.getAttribute(SERVLET_CONTAINER_INITIALIZER_ORDER)));
+		ClassPathIndex.updateHash(digest,
+				Objects.toString(context.getAttribute(SERVLET_CONTAINER_INITIALIZER_EXCLUSION_PATTERN)));
+
+		for (Path entry : toPaths(context.getMetaData().getWebInfJars()))
+			ClassPathIndex.updateHash(digest, entry);
+
+		for (Path entry : toPaths(context.getMetaData().getWebInfClassesDirs()))
+			ClassPathIndex.updateHash(digest, entry);
+
+		return ClassPathIndex.toHex(digest.digest());
+	}
+
+	private static List<Path> toPaths(Collection<Resource> resources) throws IOException
+	{
+		if (resources == null)
+			return Collections.emptyList();
+
+		List<Path> paths = new ArrayList<>(resources.size());
+		for (Resource resource : resources)
+		{
+			File file = resource.getFile();
+			if (file != null)
+				paths.add(file.toPath());
+		}
+		return paths;
+	}
+}
@@ -0,0 +1,478 @@
+package de.rwh.utils.jetty;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.slf4j.Logger;
+
+/**
+ * Formats and emits request log entries captured by the {@link LoggingFilter}. Entries are written to a bounded
+ * lock-free ring buffer by the request threads and formatted by a single background thread, entries are dropped and
+ * counted if the buffer is full. If not asynchronous, entries are formatted and emitted by the calling thread.
+ */
+@ManagedObject("Request log pipeline")
+public class RequestLogPipeline
+{
+	public enum Format
+	{
+		TEXT, JSON
+	}
+
+	/**
+	 * Captured request, fields not captured are <code>null</code>. Strings and bodies are formatted on the background
+	 * thread.
+	 */
+	static final class Entry
+	{
+		final long timestamp;
+		final String method;
+		final String uri;
+		final String query;
+		final boolean sampled;
+
+		String[] parameters;
+		String[] requestHeaders;
+		Supplier<String> requestBody;
+
+		int status;
+		long durationNanos;
+		Throwable failure;
+		String[] responseHeaders;
+		Supplier<String> responseBody;
+
+		Entry(long timestamp, String method, String uri, String query, boolean sampled)
+		{
+			this.timestamp = timestamp;
+			this.method = method;
+			this.uri = uri;
+			this.query = query;
+			this.sampled = sampled;
+		}
+	}
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long STOP_TIMEOUT_MILLIS = 5_000;
+
+	private final Logger output;
+	private final Format format;
+	private final boolean async;
+
+	private final int mask;
+	private final AtomicReferenceArray<Entry> entries;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private long head;
+
+	private final LongAdder logged = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder sampledOut = new LongAdder();
+	private long droppedReported;
+
+	private volatile boolean running;
+	private volatile boolean consumerParked;
+	private volatile Thread consumer;
+
+	/**
+	 * @param output
+	 *            not <code>null</code>, logger entries are emitted to
+	 * @param format
+	 *            not <code>null</code>
+	 * @param async
+	 *            <code>true</code> to format and emit entries on a background thread
+	 * @param capacity
+	 *            ring buffer capacity, rounded up to the next power of two
+	 */
+	public RequestLogPipeline(Logger output, Format format, boolean async, int capacity)
+	{
+		this.output = Objects.requireNonNull(output, "output");
+		this.format = Objects.requireNonNull(format, "format");
+		this.async = async;
+
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		mask = size - 1;
+		entries = new AtomicReferenceArray<>(size);
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+	}
+
+	public Format getFormat()
+	{
+		return format;
+	}
+
+	public boolean isAsync()
+	{
+		return async;
+	}
+
+	@ManagedAttribute("Ring buffer capacity")
+	public int getCapacity()
+	{
+		return mask + 1;
+	}
+
+	@ManagedAttribute("Number of emitted request log entries")
+	public long getLogged()
+	{
+		return logged.sum();
+	}
+
+	@ManagedAttribute("Number of request log entries dropped because the ring buffer was full")
+	public long getDropped()
+	{
+		return dropped.sum();
+	}
+
+	@ManagedAttribute("Number of requests not logged because they were not sampled")
+	public long getSampledOut()
+	{
+		return sampledOut.sum();
+	}
+
+	@ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+	public void reset()
+	{
+		logged.reset();
+		dropped.reset();
+		sampledOut.reset();
+	}
+
+	public synchronized void start()
+	{
+		if (!async || consumer != null)
+			return;
+
+		running = true;
+		consumer = new Thread(this::consume, "request-log");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Stops the background thread after emitting all buffered entries, waits at most
+	 * {@value #STOP_TIMEOUT_MILLIS} ms.
+	 */
+	public synchronized void stop()
+	{
+		Thread consumer = this.consumer;
+		if (consumer == null)
+			return;
+
+		running = false;
+		LockSupport.unpark(consumer);
+
+		try
+		{
+			consumer.join(STOP_TIMEOUT_MILLIS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		this.consumer = null;
+	}
+
+	void sampledOut()
+	{
+		sampledOut.increment();
+	}
+
+	/**
+	 * @param entry
+	 *            not <code>null</code>
+	 * @return <code>false</code> if the entry was dropped
+	 */
+	boolean offer(Entry entry)
+	{
+		if (!async || consumer == null)
+		{
+			emit(entry);
+			return true;
+		}
+
+		long position = tail.get();
+		while (true)
+		{
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+
+			if (difference == 0)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					entries.set(index, entry);
+					sequences.set(index, position + 1);
+
+					if (consumerParked)
+						LockSupport.unpark(consumer);
+
+					return true;
+				}
+			}
+			else if (difference < 0)
+			{
+				dropped.increment();
+				return false;
+			}
+
+			position = tail.get();
+		}
+	}
+
+	private Entry poll()
+	{
+		int index = (int) (head & mask);
+		if (sequences.get(index) != head + 1)
+			return null;
+
+		Entry entry = entries.get(index);
+		entries.set(index, null);
+		sequences.set(index, head + mask + 1);
+		head++;
+
+		return entry;
+	}
+
+	private void consume()
+	{
+		while (true)
+		{
+			Entry entry = poll();
+			if (entry != null)
+			{
+				emit(entry);
+				continue;
+			}
+
+			reportDropped();
+
+			if (!running)
+				return;
+
+			consumerParked = true;
+			if (sequences.get((int) (head & mask)) != head + 1 && running)
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			consumerParked = false;
+		}
+	}
+
+	private void reportDropped()
+	{
+		long dropped = this.dropped.sum();
+		if (dropped > droppedReported)
+		{
+			output.warn("{} request log entr{} dropped, ring buffer with capacity {} full", dropped - droppedReported,
+					dropped - droppedReported > 1 ? "ies" : "y", getCapacity());
+			droppedReported = dropped;
+		}
+		else if (dropped < droppedReported)
+			droppedReported = dropped;
+	}
+
+	private void emit(Entry entry)
+	{
+		try
+		{
+			if (Format.JSON.equals(format))
+				emitJson(entry);
+			else
+				emitText(entry);
+
+			logged.increment();
+		}
+		catch (RuntimeException e)
+		{
+			output.warn("Error while formatting request log entry for {}", entry.uri, e);
+		}
+	}
+
+	private void emitText(Entry entry)
+	{
+		output.info("Request to: {}", entry.uri);
+		output.info("Request method: {}", entry.method);
+
+		if (entry.parameters != null)
+			output.debug("Request parameter: {}", join(entry.parameters, "="));
+		if (entry.requestHeaders != null)
+			output.debug("Request header: {}", join(entry.requestHeaders, ": "));
+		if (entry.requestBody != null)
+			output.debug("Request body: {}", removeControlCharacters(entry.requestBody.get()));
+
+		if (entry.failure != null)
+			output.info("Request failed after {} ms: {}", TimeUnit.NANOSECONDS.toMillis(entry.durationNanos),
+					entry.failure.toString());
+		else
+			output.info("Response status: {}, duration: {} ms", entry.status,
+					TimeUnit.NANOSECONDS.toMillis(entry.durationNanos));
+
+		if (entry.responseHeaders != null)
+			output.debug("Response header: {}", join(entry.responseHeaders, ": "));
+		if (entry.responseBody != null)
+			output.debug("Response body: {}", entry.responseBody.get());
+	}
+
+	private static String join(String[] namesAndValues, String separator)
+	{
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < namesAndValues.length; i += 2)
+		{
+			if (i > 0)
+				b.append("; ");
+
+			b.append(namesAndValues[i]).append(separator).append(namesAndValues[i + 1]);
+		}
+
+		return b.toString();
+	}
+
+	/**
+	 * Removes control characters in a single pass, logs a warning with the number of removed characters.
+	 */
+	private String removeControlCharacters(String body)
+	{
+		int controlCharactersCount = 0;
+		StringBuilder b = null;
+
+		for (int i = 0; i < body.length(); i++)
+		{
+			char c = body.charAt(i);
+			if (Character.isISOControl(c))
+			{
+				if (b == null)
+					b = new StringBuilder(body.length()).append(body, 0, i);
+
+				controlCharactersCount++;
+			}
+			else if (b != null)
+				b.append(c);
+		}
+
+		if (controlCharactersCount == 0)
+			return body;
+
+		output.warn("{} control character{} removed from body string representation", controlCharactersCount,
+				controlCharactersCount > 1 ? "s" : "");
+
+		return b.toString();
+	}
+
+	private void emitJson(Entry entry)
+	{
+		StringBuilder b = new StringBuilder(256);
+		b.append('{');
+		appendField(b, "timestamp", Instant.ofEpochMilli(entry.timestamp).toString());
+		appendField(b, "method", entry.method);
+		appendField(b, "uri", entry.uri);
+		if (entry.query != null)
+			appendField(b, "query", entry.query);
+		b.append(",\"status\":").append(entry.status);
+		b.append(",\"durationMs\":").append(TimeUnit.NANOSECONDS.toMillis(entry.durationNanos));
+		b.append(",\"sampled\":").append(entry.sampled);
+		if (entry.failure != null)
+			appendField(b, "failure", entry.failure.toString());
+		if (entry.parameters != null)
+			appendObject(b, "requestParameters", entry.parameters);
+		if (entry.requestHeaders != null)
+			appendObject(b, "requestHeaders", entry.requestHeaders);
+		if (entry.requestBody != null)
+			appendField(b, "requestBody", entry.requestBody.get());
+		if (entry.responseHeaders != null)
+			appendObject(b, "responseHeaders", entry.responseHeaders);
+		if (entry.responseBody != null)
+			appendField(b, "responseBody", entry.responseBody.get());
+		b.append('}');
+
+		output.info("{}", b);
+	}
+
+	private static void appendField(StringBuilder b, String name, String value)
+	{
+		if (b.length() > 1)
+			b.append(',');
+
+		appendString(b, name);
+		b.append(':');
+		appendString(b, value);
+	}
+
+	private static void appendObject(StringBuilder b, String name, String[] namesAndValues)
+	{
+		Map<String, String> values = new LinkedHashMap<>();
+		for (int i = 0; i < namesAndValues.length; i += 2)
+			values.merge(namesAndValues[i], String.valueOf(namesAndValues[i + 1]), (v1, v2) -> v1 + ", " + v2);
+
+		b.append(',');
+		appendString(b, name);
+		b.append(":{");
+
+		boolean first = true;
+		for (Map.Entry<String, String> value : values.entrySet())
+		{
+			if (first)
+				first = false;
+			else
+				b.append(',');
+
+			appendString(b, value.getKey());
+			b.append(':');
+			appendString(b, value.getValue());
+		}
+
+		b.append('}');
+	}
+
+	private static void appendString(StringBuilder b, String value)
+	{
+		if (value == null)
+		{
+			b.append("null");
+			return;
+		}
+
+		b.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '"':
+					b.append("\\\"");
+					break;
+				case '\\':
+					b.append("\\\\");
+					break;
+				case '\n':
+					b.append("\\n");
+					break;
+				case '\r':
+					b.append("\\r");
+					break;
+				case '\t':
+					b.append("\\t");
+					break;
+				default:
+					if (c < 0x20)
+						b.append(String.format("\\u%04x", (int) c));
+					else
+						b.append(c);
+			}
+		}
+		b.append('"');
+	}
+}
@@ -0,0 +1,129 @@
+package de.rwh.utils.jetty;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which requests are logged by the {@link LoggingFilter}. Requests are sampled at a per-route rate, the rate of
+ * the longest path prefix matching on a path segment boundary is used, the default rate if no prefix matches. Server
+ * errors (status &gt;= 500), failed requests and requests taking longer than the slow threshold are always logged.
+ */
+public class RequestLogSampler
+{
+	public static final int ERROR_STATUS = 500;
+
+	private final double defaultRate;
+	private final String[] routePrefixes;
+	private final double[] routeRates;
+	private final long slowThresholdNanos;
+
+	/**
+	 * @param defaultRate
+	 *            0 .. 1, rate for requests not matching any route prefix
+	 * @param routeRates
+	 *            may be <code>null</code>, path prefix (relative to the context path) to rate 0 .. 1
+	 * @param slowThresholdMillis
+	 *            requests taking at least this long are always logged, &lt;= 0 to disable
+	 */
+	public RequestLogSampler(double defaultRate, Map<String, Double> routeRates, long slowThresholdMillis)
+	{
+		this.defaultRate = checkRate(defaultRate);
+
+		Map<String, Double> routes = routeRates == null ? Collections.emptyMap() : routeRates;
+		this.routePrefixes = routes.keySet().stream().sorted(Comparator.comparingInt(String::length).reversed())
+				.toArray(String[]::new);
+		this.routeRates = new double[routePrefixes.length];
+		for (int i = 0; i < routePrefixes.length; i++)
+			this.routeRates[i] = checkRate(routes.get(routePrefixes[i]));
+
+		this.slowThresholdNanos = slowThresholdMillis <= 0 ? Long.MAX_VALUE
+				: TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+	}
+
+	private static double checkRate(Double rate)
+	{
+		if (rate == null || rate.isNaN() || rate < 0 || rate > 1)
+			throw new IllegalArgumentException("Sample rate " + rate + " not within 0 .. 1");
+
+		return rate;
+	}
+
+	/**
+	 * @param routes
+	 *            comma separated <code>prefix=rate</code> pairs, e.g. <code>/health=0,/api/=0.1</code>, may be
+	 *            <code>null</code>
+	 * @return path prefix to rate map
+	 * @throws IllegalArgumentException
+	 *             if a pair or rate can not be parsed
+	 */
+	public static Map<String, Double> parseRouteRates(String routes)
+	{
+		Map<String, Double> rates = new LinkedHashMap<>();
+		if (routes == null || routes.isBlank())
+			return rates;
+
+		for (String route : routes.split(","))
+		{
+			if (route.isBlank())
+				continue;
+
+			int separator = route.lastIndexOf('=');
+			if (separator <= 0)
+				throw new IllegalArgumentException("Route sample rate '" + route.trim() + "' not in prefix=rate format");
+
+			try
+			{
+				rates.put(route.substring(0, separator).trim(), Double.valueOf(route.substring(separator + 1).trim()));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Route sample rate '" + route.trim() + "' not a number", e);
+			}
+		}
+
+		return rates;
+	}
+
+	public double getRate(String path)
+	{
+		if (path != null)
+		{
+			for (int i = 0; i < routePrefixes.length; i++)
+			{
+				if (PathPrefixes.matches(path, routePrefixes[i]))
+					return routeRates[i];
+			}
+		}
+
+		return defaultRate;
+	}
+
+	/**
+	 * @param path
+	 *            may be <code>null</code>
+	 * @return <code>true</code> if the request should be logged including parameters and bodies
+	 */
+	public boolean sample(String path)
+	{
+		double rate = getRate(path);
+		return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+	}
+
+	/**
+	 * @param status
+	 *            response status
+	 * @param failed
+	 *            <code>true</code> if the request failed with an exception
+	 * @param durationNanos
+	 *            request duration
+	 * @return <code>true</code> if the request should be logged regardless of sampling
+	 */
+	public boolean isAlwaysLogged(int status, boolean failed, long durationNanos)
+	{
+		return failed || status >= ERROR_STATUS || durationNanos >= slowThresholdNanos;
+	}
+}
@@ -0,0 +1,689 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.core.jmx.RingBufferAdmin;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.pathmap.MatchedResource;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LowResourceMonitor;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * {@link StatisticsHandler} recording request latencies in {@link LatencyHistogram}s per context, route (the servlet
+ * mapping of the request) and response status, as well as request counters per context; the maximum number of routes
+ * applies per context. Serves request, thread pool, connector (if a {@link ConnectionStatistics} bean
+ * is added to the connector), TLS handshake and request log metrics in Prometheus text format on the configured path of
+ * the management connector and, only if explicitly enabled, of all other connectors.
+ */
+@ManagedObject("Request metrics")
+public class RequestMetricsHandler extends StatisticsHandler
+{
+	public static final String MANAGEMENT_CONNECTOR_NAME = "management";
+	public static final String ROUTE_OTHER = "other";
+	public static final String ROUTE_UNMAPPED = "unmapped";
+	public static final String CONTEXT_NONE = "none";
+
+	private static final int MAX_STATUS = 600;
+
+	private final MetricsConfiguration configuration;
+	private final double[] buckets;
+	private final ContextMetrics none = new ContextMetrics(null);
+
+	// sorted by context path length, longest first
+	private volatile ContextMetrics[] contexts = new ContextMetrics[0];
+
+	private static final class ContextMetrics
+	{
+		final ServletContextHandler handler;
+		final String contextPath;
+		final ConcurrentMap<String, AtomicReferenceArray<LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+		final LongAdder requests = new LongAdder();
+		final LongAdder active = new LongAdder();
+		final LongAdder[] responses = new LongAdder[5];
+
+		ContextMetrics(ServletContextHandler handler)
+		{
+			this.handler = handler;
+			this.contextPath = handler == null ? CONTEXT_NONE : handler.getContextPath();
+
+			for (int i = 0; i < responses.length; i++)
+				responses[i] = new LongAdder();
+		}
+
+		boolean matches(String target)
+		{
+			return "/".equals(contextPath) || (target.startsWith(contextPath)
+					&& (target.length() == contextPath.length() || target.charAt(contextPath.length()) == '/'));
+		}
+	}
+
+	/**
+	 * @param configuration
+	 *            not <code>null</code>
+	 */
+	public RequestMetricsHandler(MetricsConfiguration configuration)
+	{
+		this.configuration = Objects.requireNonNull(configuration, "configuration");
+		this.buckets = configuration.getBuckets();
+	}
+
+	public MetricsConfiguration getConfiguration()
+	{
+		return configuration;
+	}
+
+	@Override
+	protected void doStart() throws Exception
+	{
+		Map<String, ContextMetrics> previous = new HashMap<>();
+		for (ContextMetrics context : contexts)
+			previous.put(context.contextPath, context);
+
+		contexts = Arrays.stream(getChildHandlersByClass(ServletContextHandler.class))
+				.map(h -> (ServletContextHandler) h)
+				.map(h -> previous.containsKey(h.getContextPath()) && previous.get(h.getContextPath()).handler == h
+						? previous.get(h.getContextPath())
+						: new ContextMetrics(h))
+				.sorted(Comparator.comparingInt((ContextMetrics c) -> c.contextPath.length()).reversed())
+				.toArray(ContextMetrics[]::new);
+
+		super.doStart();
+	}
+
+	/**
+	 * @param route
+	 *            not <code>null</code>
+	 * @param status
+	 *            response status
+	 * @return histogram of the context with the shortest context path, <code>null</code> if no request with the given
+	 *         route and status was recorded
+	 * @see #getHistogram(String, String, int)
+	 */
+	public LatencyHistogram getHistogram(String route, int status)
+	{
+		ContextMetrics[] contexts = this.contexts;
+		return getHistogram(contexts.length == 0 ? none : contexts[contexts.length - 1], route, status);
+	}
+
+	/**
+	 * @param contextPath
+	 *            not <code>null</code>, {@value #CONTEXT_NONE} for requests not matching any context
+	 * @param route
+	 *            not <code>null</code>
+	 * @param status
+	 *            response status
+	 * @return histogram, <code>null</code> if no request with the given context, route and status was recorded
+	 */
+	public LatencyHistogram getHistogram(String contextPath, String route, int status)
+	{
+		ContextMetrics context = getContext(contextPath);
+		return context == null ? null : getHistogram(context, route, status);
+	}
+
+	private static LatencyHistogram getHistogram(ContextMetrics context, String route, int status)
+	{
+		AtomicReferenceArray<LatencyHistogram> byStatus = context.histograms.get(route);
+		return byStatus == null || status < 0 || status >= MAX_STATUS ? null : byStatus.get(status);
+	}
+
+	private ContextMetrics getContext(String contextPath)
+	{
+		if (CONTEXT_NONE.equals(contextPath))
+			return none;
+
+		for (ContextMetrics context : contexts)
+		{
+			if (context.contextPath.equals(contextPath))
+				return context;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param contextPath
+	 *            not <code>null</code>, {@value #CONTEXT_NONE} for requests not matching any context
+	 * @return number of requests to the given context
+	 */
+	public long getContextRequests(String contextPath)
+	{
+		ContextMetrics context = getContext(contextPath);
+		return context == null ? 0 : context.requests.sum();
+	}
+
+	/**
+	 * @param contextPath
+	 *            not <code>null</code>, {@value #CONTEXT_NONE} for requests not matching any context
+	 * @return number of requests to the given context currently active
+	 */
+	public long getContextRequestsActive(String contextPath)
+	{
+		ContextMetrics context = getContext(contextPath);
+		return context == null ? 0 : context.active.sum();
+	}
+
+	@Override
+	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+			throws IOException, ServletException
+	{
+		boolean managementRequest = isManagementRequest(baseRequest);
+		if (configuration.getPath().equals(target) && (managementRequest || configuration.isPublicEndpoint()))
+		{
+			writeMetrics(baseRequest, response);
+			return;
+		}
+		else if (managementRequest)
+			return;
+
+		if (!baseRequest.getHttpChannelState().isInitial())
+		{
+			super.handle(target, baseRequest, request, response);
+			return;
+		}
+
+		long start = System.nanoTime();
+		ContextMetrics context = context(target);
+		String route = route(context, target);
+		boolean thrown = true;
+
+		context.requests.increment();
+		context.active.increment();
+
+		try
+		{
+			super.handle(target, baseRequest, request, response);
+			thrown = false;
+		}
+		finally
+		{
+			if (!thrown && request.isAsyncStarted())
+				baseRequest.getHttpChannelState().addListener(new Completion(context, route, start, response));
+			else
+				record(context, route, thrown ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+						// not handled requests are answered with 404 after the handler returns
+						: !baseRequest.isHandled() ? HttpServletResponse.SC_NOT_FOUND : response.getStatus(),
+						System.nanoTime() - start);
+		}
+	}
+
+	private boolean isManagementRequest(Request baseRequest)
+	{
+		Connector connector = baseRequest.getHttpChannel() == null ? null
+				: baseRequest.getHttpChannel().getConnector();
+		return connector != null && MANAGEMENT_CONNECTOR_NAME.equals(connector.getName());
+	}
+
+	private final class Completion extends CompletionListener
+	{
+		private final ContextMetrics context;
+		private final String route;
+		private final long start;
+		private final HttpServletResponse response;
+
+		Completion(ContextMetrics context, String route, long start, HttpServletResponse response)
+		{
+			this.context = context;
+			this.route = route;
+			this.start = start;
+			this.response = response;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException
+		{
+			record(context, route, response.getStatus(), System.nanoTime() - start);
+		}
+	}
+
+	private ContextMetrics context(String target)
+	{
+		if (target != null)
+		{
+			for (ContextMetrics context : contexts)
+			{
+				if (context.matches(target))
+					return context;
+			}
+		}
+
+		return none;
+	}
+
+	private static String route(ContextMetrics context, String target)
+	{
+		ServletContextHandler servletContextHandler = context.handler;
+		if (servletContextHandler == null || target == null)
+			return ROUTE_UNMAPPED;
+
+		String contextPath = servletContextHandler.getContextPath();
+		String pathInContext = "/".equals(contextPath) || !target.startsWith(contextPath) ? target
+				: target.substring(contextPath.length());
+
+		MatchedResource<ServletHolder> matched = servletContextHandler.getServletHandler()
+				.getMatchedServlet(pathInContext.isEmpty() ? "/" : pathInContext);
+
+		return matched == null ? ROUTE_UNMAPPED : matched.getPathSpec().getDeclaration();
+	}
+
+	private void record(ContextMetrics context, String route, int status, long durationNanos)
+	{
+		context.active.decrement();
+		if (status >= 100 && status < 600)
+			context.responses[status / 100 - 1].increment();
+
+		AtomicReferenceArray<LatencyHistogram> byStatus = context.histograms.get(route);
+		if (byStatus == null)
+		{
+			if (context.histograms.size() >= configuration.getMaxRoutes())
+				route = ROUTE_OTHER;
+
+			byStatus = context.histograms.computeIfAbsent(route, r -> new AtomicReferenceArray<>(MAX_STATUS));
+		}
+
+		int index = status < 0 || status >= MAX_STATUS ? 0 : status;
+		LatencyHistogram histogram = byStatus.get(index);
+		if (histogram == null)
+		{
+			byStatus.compareAndSet(index, null, new LatencyHistogram());
+			histogram = byStatus.get(index);
+		}
+
+		histogram.record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private void writeMetrics(Request baseRequest, HttpServletResponse response) throws IOException
+	{
+		baseRequest.setHandled(true);
+
+		if (!HttpMethod.GET.is(baseRequest.getMethod()) && !HttpMethod.HEAD.is(baseRequest.getMethod()))
+		{
+			response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+			return;
+		}
+
+		PrometheusTextWriter writer = new PrometheusTextWriter();
+		writeRequestMetrics(writer);
+		writeThreadPoolMetrics(writer, getServer());
+		writeConnectorMetrics(writer, getServer());
+		writeAdmissionMetrics(writer, getServer());
+		writeRequestLogMetrics(writer);
+		writeResponseCacheMetrics(writer);
+		writeLog4jMetrics(writer);
+
+		byte[] body = writer.toString().getBytes(StandardCharsets.UTF_8);
+
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(PrometheusTextWriter.CONTENT_TYPE);
+		response.setHeader("Cache-Control", "no-store");
+		response.setContentLength(body.length);
+
+		if (HttpMethod.GET.is(baseRequest.getMethod()))
+			response.getOutputStream().write(body);
+	}
+
+	private void writeRequestMetrics(PrometheusTextWriter writer)
+	{
+		writer.family("jetty_requests_total", "counter", "Number of requests").sample("jetty_requests_total",
+				getRequests());
+		writer.family("jetty_requests_active", "gauge", "Number of requests currently active")
+				.sample("jetty_requests_active", getRequestsActive());
+		writer.family("jetty_dispatched_active", "gauge", "Number of dispatches currently active")
+				.sample("jetty_dispatched_active", getDispatchedActive());
+		writer.family("jetty_async_requests_waiting", "gauge", "Number of suspended async requests")
+				.sample("jetty_async_requests_waiting", getAsyncRequestsWaiting());
+
+		writer.family("jetty_responses_total", "counter", "Number of responses by status class")
+				.sample("jetty_responses_total", getResponses1xx(), "code", "1xx")
+				.sample("jetty_responses_total", getResponses2xx(), "code", "2xx")
+				.sample("jetty_responses_total", getResponses3xx(), "code", "3xx")
+				.sample("jetty_responses_total", getResponses4xx(), "code", "4xx")
+				.sample("jetty_responses_total", getResponses5xx(), "code", "5xx");
+		writer.family("jetty_responses_thrown_total", "counter", "Number of requests that threw an exception")
+				.sample("jetty_responses_thrown_total", getResponsesThrown());
+		writer.family("jetty_response_bytes_total", "counter", "Number of response content bytes")
+				.sample("jetty_response_bytes_total", getResponsesBytesTotal());
+
+		ContextMetrics[] contexts = allContexts();
+
+		writer.family("jetty_context_requests_total", "counter", "Number of requests by context");
+		for (ContextMetrics context : contexts)
+			writer.sample("jetty_context_requests_total", context.requests.sum(), "context", context.contextPath);
+		writer.family("jetty_context_requests_active", "gauge", "Number of requests currently active by context");
+		for (ContextMetrics context : contexts)
+			writer.sample("jetty_context_requests_active", context.active.sum(), "context", context.contextPath);
+		writer.family("jetty_context_responses_total", "counter", "Number of responses by context and status class");
+		for (ContextMetrics context : contexts)
+		{
+			for (int i = 0; i < context.responses.length; i++)
+				writer.sample("jetty_context_responses_total", context.responses[i].sum(), "context",
+						context.contextPath, "code", (i + 1) + "xx");
+		}
+
+		writer.family("jetty_request_duration_seconds", "histogram",
+				"Request duration by context, route and status");
+
+		for (ContextMetrics context : contexts)
+		{
+			Map<String, AtomicReferenceArray<LatencyHistogram>> sorted = new TreeMap<>(context.histograms);
+			for (Map.Entry<String, AtomicReferenceArray<LatencyHistogram>> route : sorted.entrySet())
+				writeHistograms(writer, context.contextPath, route.getKey(), route.getValue());
+		}
+	}
+
+	/**
+	 * @return contexts sorted by context path followed by {@link #CONTEXT_NONE} if requests not matching any context
+	 *         were recorded
+	 */
+	private ContextMetrics[] allContexts()
+	{
+		Stream<ContextMetrics> contexts = Arrays.stream(this.contexts)
+				.sorted(Comparator.comparing(c -> c.contextPath));
+		return (none.requests.sum() > 0 ? Stream.concat(contexts, Stream.of(none)) : contexts)
+				.toArray(ContextMetrics[]::new);
+	}
+
+	private void writeHistograms(PrometheusTextWriter writer, String context, String route,
+			AtomicReferenceArray<LatencyHistogram> byStatus)
+	{
+		for (int status = 0; status < MAX_STATUS; status++)
+		{
+			LatencyHistogram histogram = byStatus.get(status);
+			if (histogram == null)
+				continue;
+
+			String statusLabel = String.valueOf(status);
+			long[] cumulative = histogram.getCumulativeCounts(buckets);
+			long count = histogram.getCount();
+
+			for (int i = 0; i < buckets.length; i++)
+				writer.sample("jetty_request_duration_seconds_bucket", Math.min(cumulative[i], count), "context",
+						context, "route", route, "status", statusLabel, "le", PrometheusTextWriter.format(buckets[i]));
+			writer.sample("jetty_request_duration_seconds_bucket", count, "context", context, "route", route,
+					"status", statusLabel, "le", "+Inf");
+			writer.sample("jetty_request_duration_seconds_sum", histogram.getSumSeconds(), "context", context,
+					"route", route, "status", statusLabel);
+			writer.sample("jetty_request_duration_seconds_count", count, "context", context, "route", route,
+					"status", statusLabel);
+		}
+	}
+
+	private static void writeThreadPoolMetrics(PrometheusTextWriter writer, Server server)
+	{
+		ThreadPool threadPool = server == null ? null : server.getThreadPool();
+		if (threadPool == null)
+			return;
+
+		writer.family("jetty_threads", "gauge", "Number of threads in the pool").sample("jetty_threads",
+				threadPool.getThreads());
+		writer.family("jetty_threads_idle", "gauge", "Number of idle threads").sample("jetty_threads_idle",
+				threadPool.getIdleThreads());
+
+		if (threadPool instanceof QueuedThreadPool)
+		{
+			QueuedThreadPool queuedThreadPool = (QueuedThreadPool) threadPool;
+
+			writer.family("jetty_threads_busy", "gauge", "Number of busy threads").sample("jetty_threads_busy",
+					queuedThreadPool.getBusyThreads());
+			writer.family("jetty_threads_max", "gauge", "Maximum number of threads").sample("jetty_threads_max",
+					queuedThreadPool.getMaxThreads());
+			writer.family("jetty_thread_pool_queue_size", "gauge", "Number of jobs waiting for a thread")
+					.sample("jetty_thread_pool_queue_size", queuedThreadPool.getQueueSize());
+		}
+
+		if (threadPool instanceof VirtualThreadPool)
+			writer.family("jetty_virtual_threads_started_total", "counter", "Number of virtual threads started")
+					.sample("jetty_virtual_threads_started_total",
+							((VirtualThreadPool) threadPool).getVirtualThreadsStarted());
+	}
+
+	private static void writeConnectorMetrics(PrometheusTextWriter writer, Server server)
+	{
+		if (server == null)
+			return;
+
+		PrometheusTextWriter open = new PrometheusTextWriter();
+		PrometheusTextWriter total = new PrometheusTextWriter();
+		PrometheusTextWriter received = new PrometheusTextWriter();
+		PrometheusTextWriter sent = new PrometheusTextWriter();
+		PrometheusTextWriter handshakes = new PrometheusTextWriter();
+		PrometheusTextWriter reloads = new PrometheusTextWriter();
+		PrometheusTextWriter lastReload = new PrometheusTextWriter();
+
+		for (Connector connector : server.getConnectors())
+		{
+			String name = connectorName(connector);
+
+			ConnectionStatistics statistics = connector.getBean(ConnectionStatistics.class);
+			if (statistics != null)
+			{
+				open.sample("jetty_connections_open", statistics.getConnections(), "connector", name);
+				total.sample("jetty_connections_total", statistics.getConnectionsTotal(), "connector", name);
+				received.sample("jetty_connection_received_bytes_total", statistics.getReceivedBytes(), "connector",
+						name);
+				sent.sample("jetty_connection_sent_bytes_total", statistics.getSentBytes(), "connector", name);
+			}
+
+			SslConnectionFactory sslConnectionFactory = connector.getConnectionFactory(SslConnectionFactory.class);
+			SslHandshakeStatistics sslStatistics = sslConnectionFactory == null ? null
+					: sslConnectionFactory.getBean(SslHandshakeStatistics.class);
+			if (sslStatistics != null)
+			{
+				handshakes.sample("jetty_tls_handshakes_total", sslStatistics.getHandshakes(), "connector", name,
+						"result", "succeeded");
+				handshakes.sample("jetty_tls_handshakes_total", sslStatistics.getHandshakesFailed(), "connector",
+						name, "result", "failed");
+			}
+
+			KeyStoreReloader reloader = sslConnectionFactory == null ? null
+					: sslConnectionFactory.getBean(KeyStoreReloader.class);
+			if (reloader != null)
+			{
+				reloads.sample("jetty_tls_keystore_reloads_total", reloader.getReloadsSucceeded(), "connector", name,
+						"result", "succeeded");
+				reloads.sample("jetty_tls_keystore_reloads_total", reloader.getReloadsFailed(), "connector", name,
+						"result", "failed");
+				lastReload.sample("jetty_tls_keystore_last_reload_timestamp_seconds",
+						reloader.getLastSuccessMillis() / 1000d, "connector", name);
+			}
+		}
+
+		append(writer, "jetty_connections_open", "gauge", "Number of open connections", open);
+		append(writer, "jetty_connections_total", "counter", "Number of connections opened", total);
+		append(writer, "jetty_connection_received_bytes_total", "counter", "Number of bytes received on closed connections", received);
+		append(writer, "jetty_connection_sent_bytes_total", "counter", "Number of bytes sent on closed connections", sent);
+		append(writer, "jetty_tls_handshakes_total", "counter", "Number of TLS handshakes by result", handshakes);
+		append(writer, "jetty_tls_keystore_reloads_total", "counter", "Number of key store and trust store reloads by result", reloads);
+		append(writer, "jetty_tls_keystore_last_reload_timestamp_seconds", "gauge", "Time of the last successful key store reload, 0 if none", lastReload);
+
+		CertificateExpiryMonitor certificateExpiryMonitor = server.getBean(CertificateExpiryMonitor.class);
+		if (certificateExpiryMonitor != null && !certificateExpiryMonitor.getCertificates().isEmpty())
+		{
+			writer.family("jetty_tls_certificate_expiry_days", "gauge",
+					"Remaining validity of server and trust certificates in days, negative if expired");
+			for (CertificateExpiryMonitor.MonitoredCertificate certificate : certificateExpiryMonitor
+					.getCertificates())
+				writer.sample("jetty_tls_certificate_expiry_days", certificate.getDaysToExpiry(), "source",
+						certificate.getSource(), "type", certificate.getType().name().toLowerCase(Locale.ROOT),
+						"subject", certificate.getSubject(), "serial", certificate.getSerialNumber());
+		}
+	}
+
+	private static void writeAdmissionMetrics(PrometheusTextWriter writer, Server server)
+	{
+		if (server == null)
+			return;
+
+		LowResourceMonitor lowResourceMonitor = server.getBean(LowResourceMonitor.class);
+		if (lowResourceMonitor != null)
+			writer.family("jetty_low_resources", "gauge", "1 if the server is low on resources, else 0")
+					.sample("jetty_low_resources", lowResourceMonitor.isLowOnResources() ? 1 : 0);
+
+		PrometheusTextWriter active = new PrometheusTextWriter();
+		PrometheusTextWriter queued = new PrometheusTextWriter();
+		PrometheusTextWriter requests = new PrometheusTextWriter();
+
+		for (Handler handler : server.getChildHandlersByClass(AdmissionControlHandler.class))
+		{
+			AdmissionControlHandler admissionHandler = (AdmissionControlHandler) handler;
+			for (AdmissionControlHandler.Limiter limiter : admissionHandler.getLimiters())
+			{
+				String context = admissionHandler.getContextPath();
+				String name = limiter.getName();
+
+				active.sample("jetty_admission_requests_active", limiter.getActive(), "context", context, "limiter",
+						name);
+				queued.sample("jetty_admission_requests_queued", limiter.getQueued(), "context", context, "limiter",
+						name);
+				requests.sample("jetty_admission_requests_total", limiter.getAdmitted(), "context", context,
+						"limiter", name, "result", "admitted")
+						.sample("jetty_admission_requests_total", limiter.getQueuedTotal(), "context", context,
+								"limiter", name, "result", "queued")
+						.sample("jetty_admission_requests_total", limiter.getRejected(), "context", context,
+								"limiter", name, "result", "rejected")
+						.sample("jetty_admission_requests_total", limiter.getTimedOut(), "context", context,
+								"limiter", name, "result", "timed_out");
+			}
+		}
+
+		append(writer, "jetty_admission_requests_active", "gauge", "Number of admitted requests in progress", active);
+		append(writer, "jetty_admission_requests_queued", "gauge", "Number of requests waiting for admission",
+				queued);
+		append(writer, "jetty_admission_requests_total", "counter",
+				"Number of requests by admission result, queued requests are also counted as admitted or timed out",
+				requests);
+	}
+
+	private static void append(PrometheusTextWriter writer, String name, String type, String help,
+			PrometheusTextWriter samples)
+	{
+		String s = samples.toString();
+		if (!s.isEmpty())
+			writer.family(name, type, help).append(s);
+	}
+
+	private static String connectorName(Connector connector)
+	{
+		if (connector.getName() != null)
+			return connector.getName();
+
+		String protocols = String.join(",", connector.getProtocols());
+		if (connector instanceof NetworkConnector)
+		{
+			NetworkConnector networkConnector = (NetworkConnector) connector;
+			int port = networkConnector.getLocalPort() > 0 ? networkConnector.getLocalPort()
+					: networkConnector.getPort();
+			return protocols + ":" + port;
+		}
+
+		return protocols;
+	}
+
+	private <T> Map<String, T> contextAttributes(Class<T> type)
+	{
+		Map<String, T> attributes = new TreeMap<>();
+		for (ContextMetrics context : contexts)
+		{
+			Object attribute = context.handler.getServletContext().getAttribute(type.getName());
+			if (type.isInstance(attribute))
+				attributes.put(context.contextPath, type.cast(attribute));
+		}
+
+		return attributes;
+	}
+
+	private void writeRequestLogMetrics(PrometheusTextWriter writer)
+	{
+		Map<String, RequestLogPipeline> pipelines = contextAttributes(RequestLogPipeline.class);
+		if (pipelines.isEmpty())
+			return;
+
+		writer.family("jetty_request_log_entries_total", "counter", "Number of request log entries by result");
+		pipelines.forEach((context, pipeline) -> writer
+				.sample("jetty_request_log_entries_total", pipeline.getLogged(), "context", context, "result",
+						"logged")
+				.sample("jetty_request_log_entries_total", pipeline.getDropped(), "context", context, "result",
+						"dropped")
+				.sample("jetty_request_log_entries_total", pipeline.getSampledOut(), "context", context, "result",
+						"sampled_out"));
+	}
+
+	private void writeResponseCacheMetrics(PrometheusTextWriter writer)
+	{
+		Map<String, ResponseCache> caches = contextAttributes(ResponseCache.class);
+		if (caches.isEmpty())
+			return;
+
+		writer.family("jetty_response_cache_requests_total", "counter", "Number of response cache lookups by result");
+		caches.forEach((context, cache) -> writer
+				.sample("jetty_response_cache_requests_total", cache.getHits(), "context", context, "result", "hit")
+				.sample("jetty_response_cache_requests_total", cache.getMisses(), "context", context, "result",
+						"miss"));
+		writer.family("jetty_response_cache_not_modified_total", "counter",
+				"Number of requests answered with status 304");
+		caches.forEach((context, cache) -> writer.sample("jetty_response_cache_not_modified_total",
+				cache.getNotModified(), "context", context));
+		writer.family("jetty_response_cache_hit_ratio", "gauge", "Ratio of hits to lookups");
+		caches.forEach((context, cache) -> writer.sample("jetty_response_cache_hit_ratio", cache.getHitRatio(),
+				"context", context));
+		writer.family("jetty_response_cache_entries", "gauge", "Number of cached responses");
+		caches.forEach(
+				(context, cache) -> writer.sample("jetty_response_cache_entries", cache.getSize(), "context", context));
+		writer.family("jetty_response_cache_bytes", "gauge", "Estimated size of all cached responses in bytes");
+		caches.forEach(
+				(context, cache) -> writer.sample("jetty_response_cache_bytes", cache.getBytes(), "context", context));
+		writer.family("jetty_response_cache_evictions_total", "counter", "Number of expired or evicted responses");
+		caches.forEach((context, cache) -> writer.sample("jetty_response_cache_evictions_total", cache.getEvictions(),
+				"context", context));
+	}
+
+	private static void writeLog4jMetrics(PrometheusTextWriter writer)
+	{
+		RingBufferAdmin ringBuffer = Log4jInitializer.getAsyncRingBuffer();
+		if (ringBuffer == null)
+			return;
+
+		writer.family("jetty_log4j_ringbuffer_size", "gauge", "Number of slots of the async logger ring buffer")
+				.sample("jetty_log4j_ringbuffer_size", ringBuffer.getBufferSize());
+		writer.family("jetty_log4j_ringbuffer_used", "gauge", "Number of occupied slots of the async logger ring buffer")
+				.sample("jetty_log4j_ringbuffer_used", ringBuffer.getBufferSize() - ringBuffer.getRemainingCapacity());
+		writer.family("jetty_log4j_queue_full_events_total", "counter",
+				"Number of log events while the async logger ring buffer was full by route")
+				.sample("jetty_log4j_queue_full_events_total", Log4jQueueFullPolicy.getEnqueued(), "route",
+						"enqueued")
+				.sample("jetty_log4j_queue_full_events_total", Log4jQueueFullPolicy.getDiscarded(), "route",
+						"discarded")
+				.sample("jetty_log4j_queue_full_events_total", Log4jQueueFullPolicy.getSynchronous(), "route",
+						"synchronous");
+	}
+}
@@ -0,0 +1,529 @@
+package de.rwh.utils.jetty;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * Bounded, concurrent cache of complete HTTP responses used by the {@link ResponseCacheFilter}. Responses are keyed by
+ * request URI including the query string, by origin, i.e. scheme, host and port of the request URL, and by the values
+ * of the request headers named in the response's <code>Vary</code> header. Responses embedding the server's base URL
+ * are therefore not served to clients using a different origin, invalidating a URI removes the responses of all
+ * origins. Entries expire after their time to live, if the cache exceeds its maximum size the least
+ * recently used entries are evicted. Entries are linked in access order, evicting an entry takes constant time.
+ * Bodies are stored on the heap or, optionally, in direct buffers outside of the heap.
+ */
+@ManagedObject("In-memory HTTP response cache")
+public class ResponseCache
+{
+	public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+	public static final int DEFAULT_MAX_ENTRY_BYTES = 1024 * 1024;
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * Estimated per entry overhead in bytes, added to body and header sizes.
+	 */
+	private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+	/**
+	 * Eviction frees space down to this fraction of the maximum size, so that not every store triggers an eviction.
+	 */
+	private static final double EVICTION_LOW_WATERMARK = 0.9;
+
+	public static final class Entry
+	{
+		private final String uri;
+		private final String variantKey;
+		private final String[] headers;
+		private final ByteBuffer body;
+		private final String etag;
+		private final long createdMillis;
+		private final long created;
+		private final long timeToLiveNanos;
+		private final long size;
+
+		// access order list, guarded by ResponseCache#lru
+		private Entry previous;
+		private Entry next;
+		private boolean linked;
+
+		private Entry(String uri, String variantKey, String[] headers, ByteBuffer body, String etag,
+				long timeToLiveNanos, long size, long now)
+		{
+			this.uri = uri;
+			this.variantKey = variantKey;
+			this.headers = headers;
+			this.body = body;
+			this.etag = etag;
+			this.createdMillis = System.currentTimeMillis();
+			this.created = now;
+			this.timeToLiveNanos = timeToLiveNanos;
+			this.size = size;
+		}
+
+		/**
+		 * @return response headers as name, value pairs
+		 */
+		public String[] getHeaders()
+		{
+			return headers;
+		}
+
+		/**
+		 * @return read-only view of the body, positioned at the start
+		 */
+		public ByteBuffer getBody()
+		{
+			return body.asReadOnlyBuffer();
+		}
+
+		public int getContentLength()
+		{
+			return body.remaining();
+		}
+
+		public String getETag()
+		{
+			return etag;
+		}
+
+		/**
+		 * @return seconds since the response was stored
+		 */
+		public long getAgeSeconds()
+		{
+			return TimeUnit.MILLISECONDS.toSeconds(Math.max(0, System.currentTimeMillis() - createdMillis));
+		}
+
+		private boolean isExpired(long now)
+		{
+			return now - created >= timeToLiveNanos;
+		}
+	}
+
+	/**
+	 * Entries of one request URI, all variants share the <code>Vary</code> header names of the most recently stored
+	 * response. Variants are only modified and linked into or unlinked from the access order list while holding the
+	 * map's lock for the URI, i.e. within
+	 * {@link ConcurrentHashMap#compute(Object, java.util.function.BiFunction)} and
+	 * {@link ConcurrentHashMap#computeIfPresent(Object, java.util.function.BiFunction)}.
+	 */
+	private static final class Variants
+	{
+		final String[] varyNames;
+		final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+		Variants(String[] varyNames)
+		{
+			this.varyNames = varyNames;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Variants> variantsByUri = new ConcurrentHashMap<>();
+
+	// least recently used entry first, lock acquired after the map's lock for a URI, never before
+	private final Object lru = new Object();
+	private Entry eldest;
+	private Entry youngest;
+	private final long maxBytes;
+	private final int maxEntryBytes;
+	private final long timeToLiveNanos;
+	private final boolean offHeap;
+
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * @param maxBytes
+	 *            &gt; 0, maximum estimated size of all entries
+	 * @param maxEntryBytes
+	 *            &gt; 0, maximum body size of a single entry
+	 * @param timeToLive
+	 *            &gt; 0, maximum time to live, responses with a shorter <code>max-age</code> expire earlier
+	 * @param unit
+	 *            not <code>null</code>
+	 * @param offHeap
+	 *            <code>true</code> to store bodies in direct buffers
+	 */
+	public ResponseCache(long maxBytes, int maxEntryBytes, long timeToLive, TimeUnit unit, boolean offHeap)
+	{
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("maxBytes <= 0");
+		if (maxEntryBytes <= 0)
+			throw new IllegalArgumentException("maxEntryBytes <= 0");
+		if (timeToLive <= 0)
+			throw new IllegalArgumentException("timeToLive <= 0");
+
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = maxEntryBytes;
+		this.timeToLiveNanos = unit.toNanos(timeToLive);
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * @param uri
+	 *            not <code>null</code>, request URI including the query string
+	 * @param origin
+	 *            not <code>null</code>, scheme, host and port of the request URL
+	 * @param requestHeaders
+	 *            not <code>null</code>, request header values by name
+	 * @return cached response, <code>null</code> if not cached or expired
+	 */
+	public Entry get(String uri, String origin, Function<String, String> requestHeaders)
+	{
+		long now = System.nanoTime();
+
+		Variants variants = variantsByUri.get(uri);
+		if (variants != null)
+		{
+			String variantKey = variantKey(origin, variants.varyNames, requestHeaders);
+			Entry entry = variants.entries.get(variantKey);
+			if (entry != null)
+			{
+				if (!entry.isExpired(now))
+				{
+					hits.increment();
+					touch(entry);
+					return entry;
+				}
+				else if (remove(uri, variantKey, entry))
+					evictions.increment();
+			}
+		}
+
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Stores a response, replacing a cached response for the same URI and variant. Responses larger than the maximum
+	 * entry size are not stored.
+	 *
+	 * @param uri
+	 *            not <code>null</code>, request URI including the query string
+	 * @param origin
+	 *            not <code>null</code>, scheme, host and port of the request URL
+	 * @param varyNames
+	 *            not <code>null</code>, lower case request header names from the response's <code>Vary</code> header
+	 * @param requestHeaders
+	 *            not <code>null</code>, request header values by name
+	 * @param headers
+	 *            not <code>null</code>, response headers as name, value pairs
+	 * @param body
+	 *            not <code>null</code>
+	 * @param length
+	 *            body length
+	 * @param etag
+	 *            not <code>null</code>
+	 * @param maxAgeSeconds
+	 *            &lt; 0 if not specified by the response, else limits the entry's time to live
+	 * @return <code>true</code> if stored
+	 */
+	public boolean put(String uri, String origin, String[] varyNames, Function<String, String> requestHeaders,
+			String[] headers, byte[] body, int length, String etag, long maxAgeSeconds)
+	{
+		Objects.requireNonNull(uri, "uri");
+		Objects.requireNonNull(origin, "origin");
+		Objects.requireNonNull(etag, "etag");
+
+		long ttl = maxAgeSeconds < 0 ? timeToLiveNanos
+				: Math.min(timeToLiveNanos, TimeUnit.SECONDS.toNanos(maxAgeSeconds));
+		if (length > maxEntryBytes || ttl <= 0)
+			return false;
+
+		long entrySize = ENTRY_OVERHEAD_BYTES + length;
+		for (String header : headers)
+			entrySize += 2L * header.length();
+
+		ByteBuffer buffer;
+		if (offHeap)
+		{
+			buffer = ByteBuffer.allocateDirect(length);
+			buffer.put(body, 0, length).flip();
+		}
+		else
+			buffer = ByteBuffer.wrap(Arrays.copyOf(body, length));
+
+		String variantKey = variantKey(origin, varyNames, requestHeaders);
+		Entry entry = new Entry(uri, variantKey, headers, buffer, etag, ttl, entrySize, System.nanoTime());
+
+		variantsByUri.compute(uri, (k, variants) ->
+		{
+			if (variants == null || !Arrays.equals(variants.varyNames, varyNames))
+			{
+				if (variants != null)
+					variants.entries.values().forEach(this::removed);
+
+				variants = new Variants(varyNames);
+			}
+
+			Entry previous = variants.entries.put(variantKey, entry);
+			if (previous != null)
+				removed(previous);
+
+			link(entry);
+			bytes.addAndGet(entry.size);
+			size.incrementAndGet();
+			return variants;
+		});
+
+		stores.increment();
+
+		if (bytes.get() > maxBytes)
+			evict();
+
+		return true;
+	}
+
+	/**
+	 * Removes all variants of all origins cached for the given URI, e.g. after an unsafe request to the URI.
+	 *
+	 * @param uri
+	 *            not <code>null</code>, request URI including the query string
+	 */
+	public void invalidate(String uri)
+	{
+		variantsByUri.computeIfPresent(uri, (k, variants) ->
+		{
+			variants.entries.values().forEach(this::removed);
+			invalidations.increment();
+			return null;
+		});
+	}
+
+	void notModified()
+	{
+		notModified.increment();
+	}
+
+	private boolean remove(String uri, String variantKey, Entry entry)
+	{
+		boolean[] removed = new boolean[1];
+		variantsByUri.computeIfPresent(uri, (k, variants) ->
+		{
+			if (variants.entries.remove(variantKey, entry))
+			{
+				removed(entry);
+				removed[0] = true;
+			}
+
+			return variants.entries.isEmpty() ? null : variants;
+		});
+
+		return removed[0];
+	}
+
+	private void removed(Entry entry)
+	{
+		unlink(entry);
+		bytes.addAndGet(-entry.size);
+		size.decrementAndGet();
+	}
+
+	private void link(Entry entry)
+	{
+		synchronized (lru)
+		{
+			append(entry);
+		}
+	}
+
+	private void unlink(Entry entry)
+	{
+		synchronized (lru)
+		{
+			detach(entry);
+		}
+	}
+
+	private void touch(Entry entry)
+	{
+		synchronized (lru)
+		{
+			if (entry.linked && entry != youngest)
+			{
+				detach(entry);
+				append(entry);
+			}
+		}
+	}
+
+	private void append(Entry entry)
+	{
+		entry.previous = youngest;
+		entry.next = null;
+		if (youngest == null)
+			eldest = entry;
+		else
+			youngest.next = entry;
+
+		youngest = entry;
+		entry.linked = true;
+	}
+
+	private void detach(Entry entry)
+	{
+		if (!entry.linked)
+			return;
+
+		if (entry.previous == null)
+			eldest = entry.next;
+		else
+			entry.previous.next = entry.next;
+
+		if (entry.next == null)
+			youngest = entry.previous;
+		else
+			entry.next.previous = entry.previous;
+
+		entry.previous = null;
+		entry.next = null;
+		entry.linked = false;
+	}
+
+	private void evict()
+	{
+		long lowWatermark = (long) (maxBytes * EVICTION_LOW_WATERMARK);
+		while (bytes.get() > lowWatermark)
+		{
+			Entry candidate;
+			synchronized (lru)
+			{
+				candidate = eldest;
+			}
+
+			if (candidate == null)
+				return;
+
+			// unlinked by remove, concurrently removed entries are unlinked by the removing thread
+			if (remove(candidate.uri, candidate.variantKey, candidate))
+				evictions.increment();
+		}
+	}
+
+	private static String variantKey(String origin, String[] varyNames, Function<String, String> requestHeaders)
+	{
+		if (varyNames.length == 0)
+			return origin;
+
+		StringBuilder key = new StringBuilder(origin).append('\n');
+		for (String name : varyNames)
+		{
+			String value = requestHeaders.apply(name);
+			key.append(value == null ? "" : value).append('\n');
+		}
+
+		return key.toString();
+	}
+
+	@ManagedOperation(value = "Removes all entries from the cache", impact = "ACTION")
+	public void clear()
+	{
+		for (String uri : variantsByUri.keySet())
+		{
+			variantsByUri.computeIfPresent(uri, (k, variants) ->
+			{
+				variants.entries.values().forEach(this::removed);
+				return null;
+			});
+		}
+	}
+
+	@ManagedAttribute("Maximum estimated size of all cached responses in bytes")
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	@ManagedAttribute("Maximum body size of a cached response in bytes")
+	public int getMaxEntryBytes()
+	{
+		return maxEntryBytes;
+	}
+
+	@ManagedAttribute("Maximum time to live of cached responses in milliseconds")
+	public long getTimeToLive()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(timeToLiveNanos);
+	}
+
+	@ManagedAttribute("True if bodies are stored outside of the heap")
+	public boolean isOffHeap()
+	{
+		return offHeap;
+	}
+
+	@ManagedAttribute("Estimated size of all cached responses in bytes")
+	public long getBytes()
+	{
+		return bytes.get();
+	}
+
+	@ManagedAttribute("Number of cached responses")
+	public int getSize()
+	{
+		return size.get();
+	}
+
+	@ManagedAttribute("Number of requests answered from the cache")
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	@ManagedAttribute("Number of cache lookups without a cached response")
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	@ManagedAttribute("Number of requests answered with status 304")
+	public long getNotModified()
+	{
+		return notModified.sum();
+	}
+
+	@ManagedAttribute("Number of stored responses")
+	public long getStores()
+	{
+		return stores.sum();
+	}
+
+	@ManagedAttribute("Number of expired or evicted responses")
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	@ManagedAttribute("Number of URIs invalidated by unsafe requests")
+	public long getInvalidations()
+	{
+		return invalidations.sum();
+	}
+
+	@ManagedAttribute("Ratio of hits to lookups, NaN if none")
+	public double getHitRatio()
+	{
+		long h = hits.sum();
+		long lookups = h + misses.sum();
+		return lookups == 0 ? Double.NaN : (double) h / lookups;
+	}
+}
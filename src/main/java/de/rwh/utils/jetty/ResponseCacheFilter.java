@@ -0,0 +1,721 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.HttpOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers <code>GET</code> and <code>HEAD</code> requests from a {@link ResponseCache} without invoking the
+ * application, intended for rarely changing resources like metadata or terminology. Register via the
+ * <code>additionalFilters</code> of the {@link JettyServer}.
+ * <p>
+ * Responses to <code>GET</code> requests are buffered up to <code>jetty.responsecache.entry.maxbytes</code> bytes,
+ * larger responses are streamed through and not cached. Buffered responses with status 200 get a strong
+ * <code>ETag</code> computed from the body if the application did not set one. Requests with a matching
+ * <code>If-None-Match</code> header are answered with status 304, for cached and freshly generated responses.
+ * Responses are cached per origin (scheme, host and port of the request URL) and are not cached if they set cookies,
+ * are marked <code>no-store</code>, <code>no-cache</code> or <code>private</code>, have <code>Vary: *</code> or were
+ * produced asynchronously. Requests that may identify a user bypass the cache: requests with an
+ * <code>Authorization</code> or <code>Cookie</code> header, a client certificate, an existing session or an
+ * authenticated user principal. Requests with <code>Cache-Control: no-cache</code> bypass the lookup but refresh the
+ * cache. Unsafe requests, e.g. <code>POST</code> or <code>PUT</code>, invalidate responses cached for their URI.
+ * <p>
+ * Configured via filter or context init parameters: maximum cache size <code>jetty.responsecache.maxbytes</code>, time
+ * to live <code>jetty.responsecache.ttl.ms</code>, bodies outside of the heap <code>jetty.responsecache.offheap</code>
+ * and cached path prefixes within the context <code>jetty.responsecache.paths</code> (comma separated, matched on path
+ * segment boundaries, default all paths). The cache is available as servlet context attribute
+ * {@link ResponseCache}<code>.class.getName()</code>.
+ */
+public class ResponseCacheFilter implements Filter
+{
+	private static final Logger logger = LoggerFactory.getLogger(ResponseCacheFilter.class);
+
+	public static final String INIT_PARAMETER_MAX_BYTES = "jetty.responsecache.maxbytes";
+	public static final String INIT_PARAMETER_MAX_ENTRY_BYTES = "jetty.responsecache.entry.maxbytes";
+	public static final String INIT_PARAMETER_TTL_MILLIS = "jetty.responsecache.ttl.ms";
+	public static final String INIT_PARAMETER_OFF_HEAP = "jetty.responsecache.offheap";
+	public static final String INIT_PARAMETER_PATHS = "jetty.responsecache.paths";
+
+	private static final Set<String> NOT_CACHED_HEADERS = Set.of("date", "age", "content-length", "transfer-encoding",
+			"connection", "keep-alive", "set-cookie", "set-cookie2");
+
+	private static final int ETAG_DIGEST_BYTES = 16;
+
+	private static final String X509_CERTIFICATE_ATTRIBUTE = "javax.servlet.request.X509Certificate";
+
+	/**
+	 * Buffers the response body up to <i>maxBytes</i> bytes, switches to streaming the body to the wrapped response if
+	 * the limit is exceeded.
+	 */
+	private static final class BufferingResponse extends HttpServletResponseWrapper
+	{
+		private final int maxBytes;
+
+		private byte[] buffer = new byte[256];
+		private int size;
+		private boolean streaming;
+
+		private ServletOutputStream out;
+		private PrintWriter writer;
+
+		BufferingResponse(HttpServletResponse response, int maxBytes)
+		{
+			super(response);
+
+			this.maxBytes = maxBytes;
+		}
+
+		private void write(byte[] b, int off, int len) throws IOException
+		{
+			if (!streaming && size + len > maxBytes)
+				stream();
+
+			if (streaming)
+				getResponse().getOutputStream().write(b, off, len);
+			else
+			{
+				if (size + len > buffer.length)
+					buffer = Arrays.copyOf(buffer, Math.min(maxBytes, Math.max(size + len, buffer.length * 2)));
+
+				System.arraycopy(b, off, buffer, size, len);
+				size += len;
+			}
+		}
+
+		/**
+		 * Writes buffered content to the wrapped response, further content is written directly.
+		 */
+		void stream() throws IOException
+		{
+			if (streaming)
+				return;
+
+			streaming = true;
+			if (size > 0)
+				getResponse().getOutputStream().write(buffer, 0, size);
+
+			buffer = null;
+			size = 0;
+		}
+
+		boolean isStreaming()
+		{
+			return streaming;
+		}
+
+		void flushWriter()
+		{
+			if (writer != null)
+				writer.flush();
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException
+		{
+			if (out == null)
+			{
+				out = new ServletOutputStream()
+				{
+					@Override
+					public void write(int b) throws IOException
+					{
+						BufferingResponse.this.write(new byte[] { (byte) b }, 0, 1);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException
+					{
+						BufferingResponse.this.write(b, off, len);
+					}
+
+					@Override
+					public void flush() throws IOException
+					{
+						if (streaming)
+							getResponse().getOutputStream().flush();
+					}
+
+					@Override
+					public boolean isReady()
+					{
+						return true;
+					}
+
+					@Override
+					public void setWriteListener(WriteListener writeListener)
+					{
+						throw new IllegalStateException("Non-blocking writes not supported while buffering");
+					}
+				};
+			}
+
+			return out;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException
+		{
+			if (writer == null)
+			{
+				// same charset selection as the container's writer
+				String contentType = getContentType();
+				String encoding = MimeTypes.getCharsetFromContentType(contentType);
+				if (encoding == null)
+					encoding = MimeTypes.getCharsetAssumedFromContentType(contentType);
+				if (encoding == null)
+				{
+					encoding = getCharacterEncoding();
+					setCharacterEncoding(encoding);
+				}
+
+				writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), toCharset(encoding)));
+			}
+
+			return writer;
+		}
+
+		@Override
+		public void flushBuffer() throws IOException
+		{
+			flushWriter();
+
+			if (streaming)
+				super.flushBuffer();
+		}
+
+		@Override
+		public void setContentLength(int len)
+		{
+			if (streaming)
+				super.setContentLength(len);
+		}
+
+		@Override
+		public void setContentLengthLong(long len)
+		{
+			if (streaming)
+				super.setContentLengthLong(len);
+		}
+
+		@Override
+		public void setHeader(String name, String value)
+		{
+			if (streaming || !HttpHeader.CONTENT_LENGTH.is(name))
+				super.setHeader(name, value);
+		}
+
+		@Override
+		public void addHeader(String name, String value)
+		{
+			if (streaming || !HttpHeader.CONTENT_LENGTH.is(name))
+				super.addHeader(name, value);
+		}
+
+		@Override
+		public void setIntHeader(String name, int value)
+		{
+			if (streaming || !HttpHeader.CONTENT_LENGTH.is(name))
+				super.setIntHeader(name, value);
+		}
+
+		@Override
+		public void addIntHeader(String name, int value)
+		{
+			if (streaming || !HttpHeader.CONTENT_LENGTH.is(name))
+				super.addIntHeader(name, value);
+		}
+
+		@Override
+		public void reset()
+		{
+			super.reset();
+			resetBuffer();
+		}
+
+		@Override
+		public void resetBuffer()
+		{
+			if (streaming)
+				super.resetBuffer();
+			else
+				size = 0;
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException
+		{
+			discard();
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException
+		{
+			discard();
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException
+		{
+			discard();
+			super.sendRedirect(location);
+		}
+
+		private void discard()
+		{
+			size = 0;
+			streaming = true;
+		}
+	}
+
+	private ResponseCache cache;
+	private String[] paths;
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException
+	{
+		long maxBytes = getInitParameter(filterConfig, INIT_PARAMETER_MAX_BYTES, ResponseCache.DEFAULT_MAX_BYTES,
+				Long::valueOf);
+		int maxEntryBytes = getInitParameter(filterConfig, INIT_PARAMETER_MAX_ENTRY_BYTES,
+				ResponseCache.DEFAULT_MAX_ENTRY_BYTES, Integer::valueOf);
+		long ttlMillis = getInitParameter(filterConfig, INIT_PARAMETER_TTL_MILLIS,
+				ResponseCache.DEFAULT_TIME_TO_LIVE_MILLIS, Long::valueOf);
+		boolean offHeap = getInitParameter(filterConfig, INIT_PARAMETER_OFF_HEAP, false, Boolean::valueOf);
+		paths = getInitParameter(filterConfig, INIT_PARAMETER_PATHS, new String[0],
+				v -> Arrays.stream(v.split(",")).map(String::trim).filter(p -> !p.isEmpty()).toArray(String[]::new));
+
+		try
+		{
+			cache = new ResponseCache(maxBytes, maxEntryBytes, ttlMillis, TimeUnit.MILLISECONDS, offHeap);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new ServletException(e.getMessage(), e);
+		}
+
+		logger.info("Caching responses{}, max {} bytes, max {} bytes per response, time to live {} ms{}",
+				paths.length == 0 ? "" : " for paths " + Arrays.toString(paths), maxBytes, maxEntryBytes, ttlMillis,
+				offHeap ? ", off-heap" : "");
+
+		if (filterConfig.getServletContext() != null)
+			filterConfig.getServletContext().setAttribute(ResponseCache.class.getName(), cache);
+	}
+
+	private static <T> T getInitParameter(FilterConfig filterConfig, String name, T defaultValue,
+			Function<String, T> parser) throws ServletException
+	{
+		String value = filterConfig.getInitParameter(name);
+		if (value == null && filterConfig.getServletContext() != null)
+			value = filterConfig.getServletContext().getInitParameter(name);
+
+		if (value == null || value.isBlank())
+			return defaultValue;
+
+		try
+		{
+			return parser.apply(value.trim());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new ServletException("Init parameter " + name + " value '" + value + "' not valid", e);
+		}
+	}
+
+	public ResponseCache getCache()
+	{
+		return cache;
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException
+	{
+		if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)
+				|| !DispatcherType.REQUEST.equals(request.getDispatcherType()))
+		{
+			chain.doFilter(request, response);
+			return;
+		}
+
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse res = (HttpServletResponse) response;
+		String uri = toUri(req);
+
+		boolean get = HttpMethod.GET.is(req.getMethod());
+		boolean head = HttpMethod.HEAD.is(req.getMethod());
+		if (!get && !head)
+		{
+			if (!HttpMethod.OPTIONS.is(req.getMethod()) && !HttpMethod.TRACE.is(req.getMethod()))
+				cache.invalidate(uri);
+
+			chain.doFilter(request, response);
+			return;
+		}
+
+		if (!isCachedPath(req) || isPersonalized(req))
+		{
+			chain.doFilter(request, response);
+			return;
+		}
+
+		String cacheControl = req.getHeader(HttpHeader.CACHE_CONTROL.asString());
+		if (hasDirective(cacheControl, "no-store"))
+		{
+			chain.doFilter(request, response);
+			return;
+		}
+
+		if (!hasDirective(cacheControl, "no-cache")
+				&& !hasDirective(req.getHeader(HttpHeader.PRAGMA.asString()), "no-cache"))
+		{
+			ResponseCache.Entry entry = cache.get(uri, toOrigin(req), req::getHeader);
+			if (entry != null)
+			{
+				serve(req, res, entry, head);
+				return;
+			}
+		}
+
+		if (head)
+		{
+			chain.doFilter(request, response);
+			return;
+		}
+
+		BufferingResponse buffering = new BufferingResponse(res, cache.getMaxEntryBytes());
+		chain.doFilter(request, buffering);
+
+		buffering.flushWriter();
+
+		if (req.isAsyncStarted())
+		{
+			// response completed later, possibly bypassing the wrapper
+			buffering.stream();
+			return;
+		}
+
+		if (buffering.isStreaming())
+			return;
+
+		complete(req, res, uri, buffering);
+	}
+
+	private boolean isCachedPath(HttpServletRequest request)
+	{
+		if (paths.length == 0)
+			return true;
+
+		return PathPrefixes.matchesAny(toPath(request), paths);
+	}
+
+	/**
+	 * @return <code>true</code> if the response may depend on the user, i.e. the request carries credentials, a client
+	 *         certificate, cookies, belongs to a session or has an authenticated principal
+	 */
+	static boolean isPersonalized(HttpServletRequest request)
+	{
+		return request.getHeader(HttpHeader.AUTHORIZATION.asString()) != null
+				|| request.getHeader(HttpHeader.COOKIE.asString()) != null
+				|| request.getAttribute(X509_CERTIFICATE_ATTRIBUTE) != null || request.getSession(false) != null
+				|| request.getUserPrincipal() != null;
+	}
+
+	private void complete(HttpServletRequest request, HttpServletResponse response, String uri,
+			BufferingResponse buffering) throws IOException
+	{
+		int status = response.getStatus();
+		String etag = response.getHeader(HttpHeader.ETAG.asString());
+		if (status == HttpServletResponse.SC_OK && etag == null)
+		{
+			etag = etag(buffering.buffer, buffering.size);
+			response.setHeader(HttpHeader.ETAG.asString(), etag);
+		}
+
+		if (status == HttpServletResponse.SC_OK && isCacheable(response))
+		{
+			String[] varyNames = varyNames(response);
+			String[] headers = headers(response);
+			long maxAge = maxAge(response.getHeader(HttpHeader.CACHE_CONTROL.asString()));
+
+			if (cache.put(uri, toOrigin(request), varyNames, request::getHeader, headers, buffering.buffer,
+					buffering.size, etag, maxAge))
+				logger.debug("Response for {} cached, {} bytes", uri, buffering.size);
+		}
+
+		if (status == HttpServletResponse.SC_OK
+				&& matches(request.getHeader(HttpHeader.IF_NONE_MATCH.asString()), etag))
+		{
+			cache.notModified();
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		if (status != HttpServletResponse.SC_NO_CONTENT && status != HttpServletResponse.SC_NOT_MODIFIED)
+			response.setContentLength(buffering.size);
+		if (buffering.size > 0)
+			response.getOutputStream().write(buffering.buffer, 0, buffering.size);
+	}
+
+	private void serve(HttpServletRequest request, HttpServletResponse response, ResponseCache.Entry entry,
+			boolean head) throws IOException
+	{
+		String[] headers = entry.getHeaders();
+		for (int i = 0; i < headers.length; i += 2)
+			response.addHeader(headers[i], headers[i + 1]);
+
+		response.setHeader(HttpHeader.AGE.asString(), String.valueOf(entry.getAgeSeconds()));
+
+		if (matches(request.getHeader(HttpHeader.IF_NONE_MATCH.asString()), entry.getETag()))
+		{
+			cache.notModified();
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentLength(entry.getContentLength());
+
+		if (head || entry.getContentLength() == 0)
+			return;
+
+		ServletOutputStream out = response.getOutputStream();
+		ByteBuffer body = entry.getBody();
+		if (out instanceof HttpOutput)
+			((HttpOutput) out).write(body);
+		else
+		{
+			byte[] chunk = new byte[Math.min(body.remaining(), 8192)];
+			while (body.hasRemaining())
+			{
+				int n = Math.min(chunk.length, body.remaining());
+				body.get(chunk, 0, n);
+				out.write(chunk, 0, n);
+			}
+		}
+	}
+
+	private static boolean isCacheable(HttpServletResponse response)
+	{
+		if (response.containsHeader("Set-Cookie") || response.containsHeader("Set-Cookie2"))
+			return false;
+
+		for (String cacheControl : response.getHeaders(HttpHeader.CACHE_CONTROL.asString()))
+		{
+			if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "no-cache")
+					|| hasDirective(cacheControl, "private"))
+				return false;
+		}
+
+		for (String vary : response.getHeaders(HttpHeader.VARY.asString()))
+		{
+			if (vary.trim().equals("*"))
+				return false;
+		}
+
+		return true;
+	}
+
+	private static String[] varyNames(HttpServletResponse response)
+	{
+		List<String> names = new ArrayList<>();
+		for (String vary : response.getHeaders(HttpHeader.VARY.asString()))
+		{
+			for (String name : vary.split(","))
+			{
+				String n = name.trim().toLowerCase(Locale.ENGLISH);
+				if (!n.isEmpty() && !names.contains(n))
+					names.add(n);
+			}
+		}
+
+		Collections.sort(names);
+		return names.toArray(new String[names.size()]);
+	}
+
+	private static String[] headers(HttpServletResponse response)
+	{
+		List<String> headers = new ArrayList<>();
+		for (String name : response.getHeaderNames())
+		{
+			if (NOT_CACHED_HEADERS.contains(name.toLowerCase(Locale.ENGLISH)))
+				continue;
+
+			for (String value : response.getHeaders(name))
+			{
+				headers.add(name);
+				headers.add(value);
+			}
+		}
+
+		return headers.toArray(new String[headers.size()]);
+	}
+
+	/**
+	 * @return value of the <code>s-maxage</code> or <code>max-age</code> directive, -1 if not present or invalid
+	 */
+	private static long maxAge(String cacheControl)
+	{
+		if (cacheControl == null)
+			return -1;
+
+		long maxAge = -1;
+		for (String directive : cacheControl.split(","))
+		{
+			String d = directive.trim().toLowerCase(Locale.ENGLISH);
+			boolean shared = d.startsWith("s-maxage=");
+			if (shared || (maxAge < 0 && d.startsWith("max-age=")))
+			{
+				try
+				{
+					maxAge = Long.parseLong(d.substring(d.indexOf('=') + 1).replace("\"", "").trim());
+				}
+				catch (NumberFormatException e)
+				{
+					continue;
+				}
+
+				if (shared)
+					return maxAge;
+			}
+		}
+
+		return maxAge;
+	}
+
+	private static boolean hasDirective(String header, String directive)
+	{
+		if (header == null)
+			return false;
+
+		for (String d : header.split(","))
+		{
+			String name = d.trim();
+			int separator = name.indexOf('=');
+			if (separator >= 0)
+				name = name.substring(0, separator).trim();
+
+			if (directive.equalsIgnoreCase(name))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Weak comparison as specified for <code>If-None-Match</code>.
+	 */
+	private static boolean matches(String ifNoneMatch, String etag)
+	{
+		if (ifNoneMatch == null || etag == null)
+			return false;
+
+		String opaque = opaque(etag);
+		for (String candidate : ifNoneMatch.split(","))
+		{
+			String c = candidate.trim();
+			if ("*".equals(c) || opaque.equals(opaque(c)))
+				return true;
+		}
+
+		return false;
+	}
+
+	private static String opaque(String etag)
+	{
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+
+	private static String etag(byte[] body, int length)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(body, 0, length);
+
+			return '"' + Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(Arrays.copyOf(digest.digest(), ETAG_DIGEST_BYTES)) + '"';
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toUri(HttpServletRequest request)
+	{
+		String query = request.getQueryString();
+		return query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+	}
+
+	/**
+	 * @return scheme, host and port of the request URL, i.e. as seen by the client after forwarded headers are applied
+	 */
+	private static String toOrigin(HttpServletRequest request)
+	{
+		return request.getScheme() + "://" + request.getServerName().toLowerCase(Locale.ENGLISH) + ":"
+				+ request.getServerPort();
+	}
+
+	private static String toPath(HttpServletRequest request)
+	{
+		String uri = request.getRequestURI();
+		String contextPath = request.getContextPath();
+
+		return uri != null && contextPath != null && uri.startsWith(contextPath) ? uri.substring(contextPath.length())
+				: uri;
+	}
+
+	private static Charset toCharset(String encoding)
+	{
+		try
+		{
+			return encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return StandardCharsets.ISO_8859_1;
+		}
+	}
+
+	@Override
+	public void destroy()
+	{
+		if (cache != null)
+			cache.clear();
+	}
+}
@@ -0,0 +1,37 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509CRL;
+
+/**
+ * Fetches revocation information for the {@link ClientCertificateValidator}, replaceable e.g. by a local file or HTTP
+ * stub.
+ *
+ * @see UrlRevocationFetcher
+ */
+public interface RevocationFetcher
+{
+	/**
+	 * @param distributionPoint
+	 *            not <code>null</code>, URI from the certificate's CRL distribution points extension
+	 * @return CRL, signature not verified, <code>null</code> if not available
+	 * @throws IOException
+	 *             if the CRL could not be fetched
+	 * @throws GeneralSecurityException
+	 *             if the CRL could not be parsed
+	 */
+	X509CRL fetchCrl(URI distributionPoint) throws IOException, GeneralSecurityException;
+
+	/**
+	 * @param responder
+	 *            not <code>null</code>, OCSP responder URI from the certificate's authority information access extension
+	 * @param request
+	 *            not <code>null</code>, DER encoded OCSP request
+	 * @return DER encoded OCSP response, signature not verified, <code>null</code> if not available
+	 * @throws IOException
+	 *             if the response could not be fetched
+	 */
+	byte[] fetchOcspResponse(URI responder, byte[] request) throws IOException;
+}
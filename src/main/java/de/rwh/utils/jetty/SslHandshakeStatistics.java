@@ -0,0 +1,50 @@
+package de.rwh.utils.jetty;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * Counts successful and failed TLS handshakes. Resumed handshakes are not counted separately, the JSSE provides no
+ * reliable signal for session resumption with TLS 1.3: resumed sessions get a new id and creation time.
+ */
+@ManagedObject("TLS handshake statistics")
+public class SslHandshakeStatistics implements SslHandshakeListener
+{
+	private final LongAdder succeeded = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	@Override
+	public void handshakeSucceeded(Event event)
+	{
+		succeeded.increment();
+	}
+
+	@Override
+	public void handshakeFailed(Event event, Throwable failure)
+	{
+		failed.increment();
+	}
+
+	@ManagedAttribute("Number of successful TLS handshakes")
+	public long getHandshakes()
+	{
+		return succeeded.sum();
+	}
+
+	@ManagedAttribute("Number of failed TLS handshakes")
+	public long getHandshakesFailed()
+	{
+		return failed.sum();
+	}
+
+	@ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+	public void reset()
+	{
+		succeeded.reset();
+		failed.reset();
+	}
+}
@@ -0,0 +1,125 @@
+package de.rwh.utils.jetty;
+
+import java.util.Objects;
+
+/**
+ * Static resource mount: URL path, resource base (directory or class path prefix) and content cache settings, see
+ * {@link StaticResourceServlet}.
+ */
+public class StaticResourceConfiguration
+{
+	public static final String CLASSPATH_PREFIX = "classpath:";
+
+	public static final int DEFAULT_MAX_CACHE_SIZE = 256 * 1024 * 1024;
+	public static final int DEFAULT_MAX_CACHED_FILE_SIZE = 16 * 1024 * 1024;
+	public static final int DEFAULT_MAX_CACHED_FILES = 2048;
+	public static final String DEFAULT_CACHE_CONTROL = "public, max-age=3600";
+
+	private final String path;
+	private final String base;
+	private final int maxCacheSize;
+	private final int maxCachedFileSize;
+	private final int maxCachedFiles;
+	private final boolean fileMappedBuffers;
+	private final boolean precompressed;
+	private final String cacheControl;
+
+	/**
+	 * @param path
+	 *            not <code>null</code>
+	 * @param base
+	 *            not <code>null</code>
+	 */
+	public StaticResourceConfiguration(String path, String base)
+	{
+		this(path, base, DEFAULT_MAX_CACHE_SIZE, DEFAULT_MAX_CACHED_FILE_SIZE, DEFAULT_MAX_CACHED_FILES, true, true,
+				DEFAULT_CACHE_CONTROL);
+	}
+
+	/**
+	 * @param path
+	 *            not <code>null</code>, URL path within the context the resources are served on, e.g.
+	 *            <code>/ui</code>, <code>/</code> to serve resources not matched by other servlets
+	 * @param base
+	 *            not <code>null</code>, directory or class path prefix starting with {@value #CLASSPATH_PREFIX}, e.g.
+	 *            <code>classpath:/ui</code>
+	 * @param maxCacheSize
+	 *            maximum size of all cached files in bytes, &lt;= 0 disables the content cache
+	 * @param maxCachedFileSize
+	 *            maximum size of a single cached file in bytes, larger files are streamed
+	 * @param maxCachedFiles
+	 *            maximum number of cached files
+	 * @param fileMappedBuffers
+	 *            <code>true</code> to cache files from a directory as memory-mapped buffers instead of heap copies
+	 * @param precompressed
+	 *            <code>true</code> to serve <code>.br</code> and <code>.gz</code> siblings if accepted by the client
+	 * @param cacheControl
+	 *            may be <code>null</code>, value of the <code>Cache-Control</code> response header
+	 */
+	public StaticResourceConfiguration(String path, String base, int maxCacheSize, int maxCachedFileSize,
+			int maxCachedFiles, boolean fileMappedBuffers, boolean precompressed, String cacheControl)
+	{
+		this.path = Objects.requireNonNull(path, "path");
+		this.base = Objects.requireNonNull(base, "base");
+		this.maxCacheSize = maxCacheSize;
+		this.maxCachedFileSize = maxCachedFileSize;
+		this.maxCachedFiles = maxCachedFiles;
+		this.fileMappedBuffers = fileMappedBuffers;
+		this.precompressed = precompressed;
+		this.cacheControl = cacheControl;
+
+		if (!path.startsWith("/"))
+			throw new IllegalArgumentException("path not starting with /");
+	}
+
+	public String getPath()
+	{
+		return path;
+	}
+
+	public String getBase()
+	{
+		return base;
+	}
+
+	public boolean isClassPathBase()
+	{
+		return base.startsWith(CLASSPATH_PREFIX);
+	}
+
+	public int getMaxCacheSize()
+	{
+		return maxCacheSize;
+	}
+
+	public int getMaxCachedFileSize()
+	{
+		return maxCachedFileSize;
+	}
+
+	public int getMaxCachedFiles()
+	{
+		return maxCachedFiles;
+	}
+
+	public boolean isFileMappedBuffers()
+	{
+		return fileMappedBuffers;
+	}
+
+	public boolean isPrecompressed()
+	{
+		return precompressed;
+	}
+
+	public String getCacheControl()
+	{
+		return cacheControl;
+	}
+
+	@Override
+	public String toString()
+	{
+		return path + " -> " + base;
+	}
+}
@@ -0,0 +1,321 @@
+package de.rwh.utils.jetty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.servlet.UnavailableException;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.ResourceService;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DefaultServlet} serving static resources from a directory or class path prefix. Files are served from Jetty's
+ * content cache, memory-mapped for files in a directory, and written to the connection from the cached buffer without
+ * copying. Precompressed <code>.br</code> and <code>.gz</code> siblings are sent if accepted by the client, directory
+ * listings are disabled.
+ * <p>
+ * Jetty's ETags, derived from last modified time and size, are sent as strong ETags: cached content is replaced if
+ * one of them changes, so the ETag identifies the exact representation like nginx's ETags. Precompressed variants get
+ * their own ETag.
+ */
+public class StaticResourceServlet extends DefaultServlet
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(StaticResourceServlet.class);
+
+	private static final class StrongETagContentFactory implements HttpContent.ContentFactory
+	{
+		private final HttpContent.ContentFactory delegate;
+
+		StrongETagContentFactory(HttpContent.ContentFactory delegate)
+		{
+			this.delegate = delegate;
+		}
+
+		@Override
+		public HttpContent getContent(String path, int maxBuffer) throws IOException
+		{
+			HttpContent content = delegate.getContent(path, maxBuffer);
+			return content == null ? null : new StrongETagContent(content);
+		}
+
+		@Override
+		public String toString()
+		{
+			return delegate.toString();
+		}
+	}
+
+	private static final class StrongETagContent implements HttpContent
+	{
+		private final HttpContent delegate;
+		private final String etagValue;
+		private final HttpField etag;
+
+		StrongETagContent(HttpContent delegate)
+		{
+			this.delegate = delegate;
+
+			String value = delegate.getETagValue();
+			etagValue = value != null && value.startsWith("W/") ? value.substring(2) : value;
+			etag = etagValue == null ? null : new HttpField(HttpHeader.ETAG, etagValue);
+		}
+
+		@Override
+		public HttpField getETag()
+		{
+			return etag;
+		}
+
+		@Override
+		public String getETagValue()
+		{
+			return etagValue;
+		}
+
+		@Override
+		public Map<CompressedContentFormat, ? extends HttpContent> getPrecompressedContents()
+		{
+			Map<CompressedContentFormat, ? extends HttpContent> contents = delegate.getPrecompressedContents();
+			if (contents == null || contents.isEmpty())
+				return contents;
+
+			Map<CompressedContentFormat, HttpContent> strong = new HashMap<>();
+			contents.forEach((format, content) -> strong.put(format, new StrongETagContent(content)));
+			return strong;
+		}
+
+		@Override
+		public HttpField getContentType()
+		{
+			return delegate.getContentType();
+		}
+
+		@Override
+		public String getContentTypeValue()
+		{
+			return delegate.getContentTypeValue();
+		}
+
+		@Override
+		public String getCharacterEncoding()
+		{
+			return delegate.getCharacterEncoding();
+		}
+
+		@Override
+		public MimeTypes.Type getMimeType()
+		{
+			return delegate.getMimeType();
+		}
+
+		@Override
+		public HttpField getContentEncoding()
+		{
+			return delegate.getContentEncoding();
+		}
+
+		@Override
+		public String getContentEncodingValue()
+		{
+			return delegate.getContentEncodingValue();
+		}
+
+		@Override
+		public HttpField getContentLength()
+		{
+			return delegate.getContentLength();
+		}
+
+		@Override
+		public long getContentLengthValue()
+		{
+			return delegate.getContentLengthValue();
+		}
+
+		@Override
+		public HttpField getLastModified()
+		{
+			return delegate.getLastModified();
+		}
+
+		@Override
+		public String getLastModifiedValue()
+		{
+			return delegate.getLastModifiedValue();
+		}
+
+		@Override
+		public ByteBuffer getIndirectBuffer()
+		{
+			return delegate.getIndirectBuffer();
+		}
+
+		@Override
+		public ByteBuffer getDirectBuffer()
+		{
+			return delegate.getDirectBuffer();
+		}
+
+		@Override
+		public Resource getResource()
+		{
+			return delegate.getResource();
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException
+		{
+			return delegate.getInputStream();
+		}
+
+		@Override
+		public ReadableByteChannel getReadableByteChannel() throws IOException
+		{
+			return delegate.getReadableByteChannel();
+		}
+
+		@Override
+		public void release()
+		{
+			delegate.release();
+		}
+
+		@Override
+		public String toString()
+		{
+			return delegate.toString();
+		}
+	}
+
+	private final StaticResourceConfiguration configuration;
+	private final ResourceService resourceService;
+
+	/**
+	 * @param configuration
+	 *            not <code>null</code>
+	 */
+	public StaticResourceServlet(StaticResourceConfiguration configuration)
+	{
+		this(configuration, new ResourceService());
+	}
+
+	private StaticResourceServlet(StaticResourceConfiguration configuration, ResourceService resourceService)
+	{
+		super(resourceService);
+
+		this.configuration = Objects.requireNonNull(configuration, "configuration");
+		this.resourceService = resourceService;
+	}
+
+	public StaticResourceConfiguration getConfiguration()
+	{
+		return configuration;
+	}
+
+	/**
+	 * @return servlet mapping for the configured path
+	 */
+	public String getPathSpec()
+	{
+		return isRootPath() ? "/" : normalizedPath() + "/*";
+	}
+
+	private boolean isRootPath()
+	{
+		return normalizedPath().isEmpty();
+	}
+
+	private String normalizedPath()
+	{
+		String path = configuration.getPath();
+		while (path.endsWith("/"))
+			path = path.substring(0, path.length() - 1);
+
+		return path;
+	}
+
+	@Override
+	public String getInitParameter(String name)
+	{
+		String value = super.getInitParameter(name);
+		if (value != null)
+			return value;
+
+		switch (name)
+		{
+			case "resourceBase":
+				return resourceBase();
+			case "pathInfoOnly":
+				return String.valueOf(!isRootPath());
+			case "dirAllowed":
+				return "false";
+			case "etags":
+				return "true";
+			case "precompressed":
+				return String.valueOf(configuration.isPrecompressed());
+			case "useFileMappedBuffer":
+				return String.valueOf(configuration.isFileMappedBuffers());
+			case "cacheControl":
+				return configuration.getCacheControl();
+			case "maxCacheSize":
+				return configuration.getMaxCacheSize() > 0 ? String.valueOf(configuration.getMaxCacheSize()) : null;
+			case "maxCachedFileSize":
+				return configuration.getMaxCacheSize() > 0 ? String.valueOf(configuration.getMaxCachedFileSize())
+						: null;
+			case "maxCachedFiles":
+				return configuration.getMaxCacheSize() > 0 ? String.valueOf(configuration.getMaxCachedFiles()) : null;
+			default:
+				return null;
+		}
+	}
+
+	private String resourceBase()
+	{
+		if (configuration.isClassPathBase())
+		{
+			String prefix = configuration.getBase().substring(StaticResourceConfiguration.CLASSPATH_PREFIX.length());
+			Resource resource = Resource.newClassPathResource(prefix.startsWith("/") ? prefix : "/" + prefix);
+			if (resource == null)
+				throw new IllegalArgumentException("Class path resource '" + prefix + "' not found");
+
+			return resource.toString();
+		}
+		else
+		{
+			Path directory = Paths.get(configuration.getBase());
+			if (!Files.isDirectory(directory))
+				throw new IllegalArgumentException("Directory '" + directory + "' not found");
+
+			return directory.toAbsolutePath().normalize().toUri().toString();
+		}
+	}
+
+	@Override
+	public void init() throws UnavailableException
+	{
+		super.init();
+
+		resourceService.setContentFactory(new StrongETagContentFactory(resourceService.getContentFactory()));
+
+		logger.info("Serving static resources {} from {}, content cache {}", getPathSpec(), resourceBase(),
+				configuration.getMaxCacheSize() > 0 ? configuration.getMaxCacheSize() + " bytes" : "disabled");
+	}
+}
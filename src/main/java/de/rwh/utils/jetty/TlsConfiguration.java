@@ -0,0 +1,272 @@
+package de.rwh.utils.jetty;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLParameters;
+
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TLS handshake settings for https connectors: session cache, session tickets, protocols, cipher suites, ECDHE named
+ * groups and ECDSA key preference.
+ * <p>
+ * Session tickets and, on runtimes before Java 20, named groups can only be configured JVM wide via system
+ * properties. These are set by {@link #applySystemProperties()} once per JVM, not per connector.
+ */
+public class TlsConfiguration
+{
+	private static final Logger logger = LoggerFactory.getLogger(TlsConfiguration.class);
+
+	private static final String SYSTEM_PROPERTY_SESSION_TICKETS = "jdk.tls.server.enableSessionTicketExtension";
+	private static final String SYSTEM_PROPERTY_NAMED_GROUPS = "jdk.tls.namedGroups";
+
+	private static final Method SET_NAMED_GROUPS = setNamedGroupsMethod();
+
+	private static final AtomicBoolean systemPropertiesApplied = new AtomicBoolean();
+
+	private static Method setNamedGroupsMethod()
+	{
+		try
+		{
+			// Java 20+
+			return SSLParameters.class.getMethod("setNamedGroups", String[].class);
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+
+	private final int sessionCacheSize;
+	private final int sessionTimeout;
+	private final Boolean sessionTickets;
+	private final List<String> protocols;
+	private final List<String> cipherSuites;
+	private final List<String> namedGroups;
+	private final boolean preferEcdsa;
+
+	public TlsConfiguration()
+	{
+		this(-1, -1, null, null, null, null, false);
+	}
+
+	/**
+	 * @param sessionCacheSize
+	 *            maximum number of cached TLS sessions, 0 for unlimited, &lt; 0 for JVM default
+	 * @param sessionTimeout
+	 *            TLS session timeout in seconds, 0 for unlimited, &lt; 0 for JVM default
+	 * @param sessionTickets
+	 *            may be <code>null</code> for JVM default, JVM wide setting applied via system property
+	 *            <code>jdk.tls.server.enableSessionTicketExtension</code>, see {@link #applySystemProperties()}
+	 * @param protocols
+	 *            may be <code>null</code>, e.g. <code>TLSv1.3</code>, Jetty defaults if <code>null</code> or empty
+	 * @param cipherSuites
+	 *            may be <code>null</code>, ordered by preference, Jetty defaults if <code>null</code> or empty
+	 * @param namedGroups
+	 *            may be <code>null</code>, ECDHE named groups ordered by preference, e.g. <code>x25519</code>,
+	 *            <code>secp256r1</code>, JVM defaults if <code>null</code> or empty; configured per connector on
+	 *            Java 20+, JVM wide via system property <code>jdk.tls.namedGroups</code> on older runtimes, see
+	 *            {@link #applySystemProperties()}
+	 * @param preferEcdsa
+	 *            if <code>true</code> and the key store contains a private key entry with an EC certificate, that
+	 *            entry is used as the server certificate
+	 */
+	public TlsConfiguration(int sessionCacheSize, int sessionTimeout, Boolean sessionTickets, List<String> protocols,
+			List<String> cipherSuites, List<String> namedGroups, boolean preferEcdsa)
+	{
+		this.sessionCacheSize = sessionCacheSize;
+		this.sessionTimeout = sessionTimeout;
+		this.sessionTickets = sessionTickets;
+		this.protocols = protocols == null ? Collections.emptyList() : Collections.unmodifiableList(protocols);
+		this.cipherSuites = cipherSuites == null ? Collections.emptyList()
+				: Collections.unmodifiableList(cipherSuites);
+		this.namedGroups = namedGroups == null ? Collections.emptyList() : Collections.unmodifiableList(namedGroups);
+		this.preferEcdsa = preferEcdsa;
+	}
+
+	public int getSessionCacheSize()
+	{
+		return sessionCacheSize;
+	}
+
+	public int getSessionTimeout()
+	{
+		return sessionTimeout;
+	}
+
+	public Boolean getSessionTickets()
+	{
+		return sessionTickets;
+	}
+
+	public List<String> getProtocols()
+	{
+		return protocols;
+	}
+
+	public List<String> getCipherSuites()
+	{
+		return cipherSuites;
+	}
+
+	public List<String> getNamedGroups()
+	{
+		return namedGroups;
+	}
+
+	public boolean isPreferEcdsa()
+	{
+		return preferEcdsa;
+	}
+
+	/**
+	 * Sets the JVM wide system properties <code>jdk.tls.server.enableSessionTicketExtension</code> and, on runtimes
+	 * before Java 20, <code>jdk.tls.namedGroups</code> if configured. Only the first call per JVM sets properties, later
+	 * calls log a warning if their settings differ; properties already set, e.g. on the command line, are not
+	 * overwritten. Affects all TLS connections of the JVM and is only effective before the first TLS connection, called
+	 * by {@link JettyServer} when an https connector is created.
+	 */
+	public void applySystemProperties()
+	{
+		String namedGroupsValue = SET_NAMED_GROUPS != null || namedGroups.isEmpty() ? null
+				: String.join(",", namedGroups);
+		String sessionTicketsValue = sessionTickets == null ? null : sessionTickets.toString();
+
+		if (systemPropertiesApplied.compareAndSet(false, true))
+		{
+			setSystemProperty(SYSTEM_PROPERTY_SESSION_TICKETS, sessionTicketsValue);
+			setSystemProperty(SYSTEM_PROPERTY_NAMED_GROUPS, namedGroupsValue);
+		}
+		else
+		{
+			warnIfDifferent(SYSTEM_PROPERTY_SESSION_TICKETS, sessionTicketsValue);
+			warnIfDifferent(SYSTEM_PROPERTY_NAMED_GROUPS, namedGroupsValue);
+		}
+	}
+
+	private static void setSystemProperty(String name, String value)
+	{
+		if (value == null)
+			return;
+
+		String current = System.getProperty(name);
+		if (current == null)
+		{
+			logger.info("Setting JVM wide system property {} to '{}'", name, value);
+			System.setProperty(name, value);
+		}
+		else
+			warnIfDifferent(name, value);
+	}
+
+	private static void warnIfDifferent(String name, String value)
+	{
+		String current = System.getProperty(name);
+		if (value != null && !Objects.equals(current, value))
+			logger.warn("JVM wide system property {} is '{}', ignoring configured value '{}'", name, current, value);
+	}
+
+	/**
+	 * @return new {@link SslContextFactory.Server} applying the configured named groups on Java 20+
+	 */
+	public SslContextFactory.Server newSslContextFactory()
+	{
+		if (namedGroups.isEmpty())
+			return new SslContextFactory.Server();
+
+		// JVM wide on older runtimes, see applySystemProperties
+		if (SET_NAMED_GROUPS == null)
+			return new SslContextFactory.Server();
+
+		String[] groups = namedGroups.toArray(new String[0]);
+		return new SslContextFactory.Server()
+		{
+			@Override
+			public SSLParameters customize(SSLParameters sslParams)
+			{
+				SSLParameters customized = super.customize(sslParams);
+
+				try
+				{
+					SET_NAMED_GROUPS.invoke(customized, (Object) groups.clone());
+				}
+				catch (IllegalAccessException | InvocationTargetException e)
+				{
+					logger.warn("Unable to set named groups", e);
+				}
+
+				return customized;
+			}
+		};
+	}
+
+	/**
+	 * @param sslContextFactory
+	 *            not <code>null</code>
+	 * @param keyStore
+	 *            not <code>null</code>
+	 * @return the given sslContextFactory
+	 */
+	public SslContextFactory.Server configure(SslContextFactory.Server sslContextFactory, KeyStore keyStore)
+	{
+		if (sessionCacheSize >= 0)
+			sslContextFactory.setSslSessionCacheSize(sessionCacheSize);
+		if (sessionTimeout >= 0)
+			sslContextFactory.setSslSessionTimeout(sessionTimeout);
+
+		if (!protocols.isEmpty())
+			sslContextFactory.setIncludeProtocols(protocols.toArray(new String[0]));
+
+		if (!cipherSuites.isEmpty())
+		{
+			sslContextFactory.setIncludeCipherSuites(cipherSuites.toArray(new String[0]));
+			sslContextFactory.setUseCipherSuitesOrder(true);
+		}
+
+		if (preferEcdsa)
+		{
+			String ecAlias = findEcKeyAlias(keyStore);
+			if (ecAlias != null)
+			{
+				logger.debug("Using EC key entry '{}' as server certificate", ecAlias);
+				sslContextFactory.setCertAlias(ecAlias);
+			}
+		}
+
+		return sslContextFactory;
+	}
+
+	private static String findEcKeyAlias(KeyStore keyStore)
+	{
+		try
+		{
+			for (Enumeration<String> aliases = keyStore.aliases(); aliases.hasMoreElements();)
+			{
+				String alias = aliases.nextElement();
+				if (!keyStore.isKeyEntry(alias))
+					continue;
+
+				Certificate certificate = keyStore.getCertificate(alias);
+				if (certificate != null && "EC".equals(certificate.getPublicKey().getAlgorithm()))
+					return alias;
+			}
+		}
+		catch (KeyStoreException e)
+		{
+			logger.warn("Error while searching KeyStore for EC key entry", e);
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,326 @@
+package de.rwh.utils.jetty;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConfiguration.Customizer;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.HostPort;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Honors <code>Forwarded</code> (RFC 7239) or, if not present, <code>X-Forwarded-For</code>,
+ * <code>X-Forwarded-Proto</code>, <code>X-Forwarded-Host</code> and <code>X-Forwarded-Port</code> headers and the
+ * forwarded client certificate header only if the connection's peer is a trusted proxy. The request's remote address,
+ * scheme, secure flag and host are rewritten to the values seen by the outermost trusted proxy: forwarded-for entries
+ * are evaluated right to left, skipping entries of trusted proxies, the first untrusted entry is the client. Proto and
+ * host are taken from the same hop.
+ * <p>
+ * Forwarded and client certificate headers sent by untrusted peers are removed from the request, so applications
+ * reading them directly can not be spoofed. Peers without IP address, i.e. reverse proxies connected via unix domain
+ * socket, are trusted.
+ */
+@ManagedObject("Applies forwarded headers from trusted proxies")
+public class TrustedProxyRequestCustomizer implements Customizer
+{
+	private static final Logger logger = LoggerFactory.getLogger(TrustedProxyRequestCustomizer.class);
+
+	private static final String[] FORWARDED_HEADERS = { HttpHeader.FORWARDED.asString(),
+			HttpHeader.X_FORWARDED_FOR.asString(), HttpHeader.X_FORWARDED_PROTO.asString(),
+			HttpHeader.X_FORWARDED_HOST.asString(), HttpHeader.X_FORWARDED_PORT.asString() };
+
+	private static final class Hop
+	{
+		String forwardedFor;
+		String proto;
+		String host;
+	}
+
+	private final CidrMatcher trustedProxies;
+	private final ForwardedSecureRequestCustomizer clientCertificateCustomizer;
+	private final String clientCertHeaderName;
+
+	private final LongAdder trusted = new LongAdder();
+	private final LongAdder untrusted = new LongAdder();
+	private final LongAdder stripped = new LongAdder();
+	private final LongAdder rewritten = new LongAdder();
+
+	/**
+	 * @param trustedProxies
+	 *            not <code>null</code>
+	 * @param clientCertificateCustomizer
+	 *            may be <code>null</code>, only applied to requests from trusted proxies
+	 */
+	public TrustedProxyRequestCustomizer(CidrMatcher trustedProxies,
+			ForwardedSecureRequestCustomizer clientCertificateCustomizer)
+	{
+		this.trustedProxies = Objects.requireNonNull(trustedProxies, "trustedProxies");
+		this.clientCertificateCustomizer = clientCertificateCustomizer;
+		this.clientCertHeaderName = clientCertificateCustomizer == null ? null
+				: clientCertificateCustomizer.getClientCertHeaderName();
+	}
+
+	public CidrMatcher getTrustedProxies()
+	{
+		return trustedProxies;
+	}
+
+	public ForwardedSecureRequestCustomizer getClientCertificateCustomizer()
+	{
+		return clientCertificateCustomizer;
+	}
+
+	@Override
+	public void customize(Connector connector, HttpConfiguration channelConfig, Request request)
+	{
+		if (!isTrusted(request.getRemoteInetSocketAddress()))
+		{
+			untrusted.increment();
+			strip(request);
+			return;
+		}
+
+		trusted.increment();
+
+		Hop hop = getHop(request.getHttpFields());
+		if (hop != null)
+			apply(request, hop);
+
+		if (clientCertificateCustomizer != null)
+			clientCertificateCustomizer.customize(connector, channelConfig, request);
+	}
+
+	private boolean isTrusted(InetSocketAddress remote)
+	{
+		if (remote == null || remote.getAddress() == null)
+			return true; // unix domain socket
+
+		return trustedProxies.contains(remote.getAddress());
+	}
+
+	private void strip(Request request)
+	{
+		HttpFields fields = request.getHttpFields();
+		boolean removed = false;
+
+		for (String header : FORWARDED_HEADERS)
+			removed |= fields.remove(header) != null;
+
+		if (clientCertHeaderName != null)
+			removed |= fields.remove(clientCertHeaderName) != null;
+
+		if (removed)
+		{
+			stripped.increment();
+			logger.debug("Forwarded headers from untrusted peer {} removed", request.getRemoteAddr());
+		}
+	}
+
+	private Hop getHop(HttpFields fields)
+	{
+		if (fields.containsKey(HttpHeader.FORWARDED.asString()))
+			return getForwardedHop(fields.getCSV(HttpHeader.FORWARDED, false));
+		else if (fields.containsKey(HttpHeader.X_FORWARDED_FOR.asString())
+				|| fields.containsKey(HttpHeader.X_FORWARDED_PROTO.asString())
+				|| fields.containsKey(HttpHeader.X_FORWARDED_HOST.asString()))
+			return getXForwardedHop(fields);
+		else
+			return null;
+	}
+
+	private Hop getForwardedHop(List<String> elements)
+	{
+		Hop hop = null;
+		for (int i = elements.size() - 1; i >= 0; i--)
+		{
+			hop = parseForwardedElement(elements.get(i));
+			if (hop.forwardedFor == null || !trustedProxies.contains(toAddress(hop.forwardedFor)))
+				break;
+		}
+
+		return hop;
+	}
+
+	private static Hop parseForwardedElement(String element)
+	{
+		Hop hop = new Hop();
+
+		for (String pair : element.split(";"))
+		{
+			int equals = pair.indexOf('=');
+			if (equals <= 0)
+				continue;
+
+			String name = pair.substring(0, equals).trim();
+			String value = unquote(pair.substring(equals + 1).trim());
+
+			if ("for".equalsIgnoreCase(name))
+				hop.forwardedFor = value;
+			else if ("proto".equalsIgnoreCase(name))
+				hop.proto = value;
+			else if ("host".equalsIgnoreCase(name))
+				hop.host = value;
+		}
+
+		return hop;
+	}
+
+	private static String unquote(String value)
+	{
+		return value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"'
+				? value.substring(1, value.length() - 1)
+				: value;
+	}
+
+	private Hop getXForwardedHop(HttpFields fields)
+	{
+		List<String> forwardedFor = fields.getCSV(HttpHeader.X_FORWARDED_FOR, false);
+
+		int index = forwardedFor.size() - 1;
+		while (index > 0 && trustedProxies.contains(toAddress(forwardedFor.get(index))))
+			index--;
+
+		// proto and host lists are usually shorter, the outermost proxy's value is counted from the right as well
+		int fromRight = index < 0 ? 0 : forwardedFor.size() - 1 - index;
+
+		Hop hop = new Hop();
+		hop.forwardedFor = index >= 0 ? forwardedFor.get(index) : null;
+		hop.proto = get(fields.getCSV(HttpHeader.X_FORWARDED_PROTO, false), fromRight);
+		hop.host = get(fields.getCSV(HttpHeader.X_FORWARDED_HOST, false), fromRight);
+
+		String port = get(fields.getCSV(HttpHeader.X_FORWARDED_PORT, false), fromRight);
+		if (hop.host != null && port != null && getPort(hop.host) <= 0)
+			hop.host = hop.host + ":" + port;
+
+		return hop;
+	}
+
+	private static String get(List<String> values, int fromRight)
+	{
+		return values.isEmpty() ? null : values.get(Math.max(values.size() - 1 - fromRight, 0));
+	}
+
+	/**
+	 * @param node
+	 *            not <code>null</code>, forwarded-for node <code>address[:port]</code> with IPv6 addresses in brackets
+	 * @return address without port and brackets, <code>null</code> if the node is obfuscated, <code>unknown</code> or
+	 *         not an address literal
+	 */
+	private static String toAddress(String node)
+	{
+		try
+		{
+			String host = new HostPort(node).getHost();
+			if (host.startsWith("[") && host.endsWith("]"))
+				host = host.substring(1, host.length() - 1);
+
+			return CidrMatcher.parseIpv4(host, 0, host.length()) >= 0 || host.indexOf(':') >= 0 ? host : null;
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+
+	private void apply(Request request, Hop hop)
+	{
+		boolean changed = false;
+
+		if (hop.forwardedFor != null)
+		{
+			String address = toAddress(hop.forwardedFor);
+			InetAddress inetAddress = address == null ? null : CidrMatcher.parseLiteral(address);
+			if (inetAddress != null)
+			{
+				int port = getPort(hop.forwardedFor);
+				request.setRemoteAddr(new InetSocketAddress(inetAddress, port > 0 ? port : request.getRemotePort()));
+				changed = true;
+			}
+			else
+				logger.debug("Forwarded for '{}' not an address literal, remote address not changed",
+						hop.forwardedFor);
+		}
+
+		if (hop.proto != null)
+		{
+			if (HttpScheme.HTTPS.is(hop.proto))
+			{
+				request.setScheme(HttpScheme.HTTPS.asString());
+				request.setSecure(true);
+				changed = true;
+			}
+			else if (HttpScheme.HTTP.is(hop.proto))
+			{
+				request.setScheme(HttpScheme.HTTP.asString());
+				request.setSecure(false);
+				changed = true;
+			}
+			else
+				logger.debug("Forwarded proto '{}' not supported", hop.proto);
+		}
+
+		if (hop.host != null && !hop.host.isEmpty())
+		{
+			try
+			{
+				HostPort hostPort = new HostPort(hop.host);
+				request.setAuthority(hostPort.getHost(), hostPort.getPort());
+				changed = true;
+			}
+			catch (IllegalArgumentException e)
+			{
+				logger.debug("Forwarded host '{}' not valid", hop.host);
+			}
+		}
+
+		if (changed)
+			rewritten.increment();
+	}
+
+	private static int getPort(String node)
+	{
+		try
+		{
+			return new HostPort(node).getPort();
+		}
+		catch (IllegalArgumentException e)
+		{
+			return -1;
+		}
+	}
+
+	@ManagedAttribute("Number of requests from trusted proxies")
+	public long getRequestsTrusted()
+	{
+		return trusted.sum();
+	}
+
+	@ManagedAttribute("Number of requests from untrusted peers")
+	public long getRequestsUntrusted()
+	{
+		return untrusted.sum();
+	}
+
+	@ManagedAttribute("Number of requests from untrusted peers with forwarded headers removed")
+	public long getRequestsStripped()
+	{
+		return stripped.sum();
+	}
+
+	@ManagedAttribute("Number of requests with remote address, scheme or host rewritten")
+	public long getRequestsRewritten()
+	{
+		return rewritten.sum();
+	}
+}
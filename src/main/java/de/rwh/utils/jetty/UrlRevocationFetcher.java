@@ -0,0 +1,115 @@
+package de.rwh.utils.jetty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches CRLs from <code>http</code>, <code>https</code> and <code>file</code> URIs and OCSP responses via HTTP
+ * <code>POST</code>, using {@link URLConnection} with connect and read timeouts. CRLs and OCSP responses larger than
+ * 16 MiB are rejected.
+ */
+public class UrlRevocationFetcher implements RevocationFetcher
+{
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5_000;
+
+	private static final int MAX_RESPONSE_BYTES = 16 * 1024 * 1024;
+
+	private final int timeoutMillis;
+
+	public UrlRevocationFetcher()
+	{
+		this(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param timeout
+	 *            &gt; 0, connect and read timeout
+	 * @param unit
+	 *            not <code>null</code>
+	 */
+	public UrlRevocationFetcher(long timeout, TimeUnit unit)
+	{
+		if (timeout <= 0)
+			throw new IllegalArgumentException("timeout <= 0");
+
+		this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, unit.toMillis(timeout));
+	}
+
+	@Override
+	public X509CRL fetchCrl(URI distributionPoint) throws IOException, GeneralSecurityException
+	{
+		URLConnection connection = open(distributionPoint);
+		checkStatus(connection, distributionPoint);
+
+		try (InputStream in = connection.getInputStream())
+		{
+			return (X509CRL) CertificateFactory.getInstance("X.509")
+					.generateCRL(new ByteArrayInputStream(read(in, "CRL", distributionPoint)));
+		}
+	}
+
+	@Override
+	public byte[] fetchOcspResponse(URI responder, byte[] request) throws IOException
+	{
+		URLConnection connection = open(responder);
+		if (!(connection instanceof HttpURLConnection))
+			throw new IOException("OCSP responder " + responder + " not a http(s) URI");
+
+		HttpURLConnection http = (HttpURLConnection) connection;
+		http.setRequestMethod("POST");
+		http.setDoOutput(true);
+		http.setRequestProperty("Content-Type", "application/ocsp-request");
+		http.setRequestProperty("Accept", "application/ocsp-response");
+		http.setFixedLengthStreamingMode(request.length);
+
+		try (OutputStream out = http.getOutputStream())
+		{
+			out.write(request);
+		}
+
+		checkStatus(http, responder);
+
+		try (InputStream in = http.getInputStream())
+		{
+			return read(in, "OCSP response", responder);
+		}
+	}
+
+	private static byte[] read(InputStream in, String what, URI uri) throws IOException
+	{
+		byte[] response = in.readNBytes(MAX_RESPONSE_BYTES + 1);
+		if (response.length > MAX_RESPONSE_BYTES)
+			throw new IOException(what + " from " + uri + " larger than " + MAX_RESPONSE_BYTES + " bytes");
+
+		return response;
+	}
+
+	private URLConnection open(URI uri) throws IOException
+	{
+		URLConnection connection = uri.toURL().openConnection();
+		connection.setConnectTimeout(timeoutMillis);
+		connection.setReadTimeout(timeoutMillis);
+		connection.setUseCaches(false);
+
+		return connection;
+	}
+
+	private static void checkStatus(URLConnection connection, URI uri) throws IOException
+	{
+		if (connection instanceof HttpURLConnection)
+		{
+			int status = ((HttpURLConnection) connection).getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK)
+				throw new IOException("Unexpected status " + status + " from " + uri);
+		}
+	}
+}
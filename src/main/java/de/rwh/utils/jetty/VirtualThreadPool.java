@@ -0,0 +1,134 @@
+package de.rwh.utils.jetty;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.eclipse.jetty.util.thread.Invocable.InvocationType;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * {@link QueuedThreadPool} running acceptors, selectors and non blocking tasks on platform threads while all other
+ * (potentially blocking) tasks, e.g. servlet request handling, are executed on virtual threads. Requires a Java 21+
+ * runtime, reserved threads are disabled so blocking tasks are always dispatched to this pool's executor.
+ * <p>
+ * Jobs run on platform threads if they are an {@link ExecutionStrategy}, a non blocking {@link Invocable}, an acceptor
+ * of an {@link AbstractConnector} or a lambda delegating to an {@link ExecutionStrategy}, e.g. the selector loop
+ * <code>strategy::produce</code> started by each <code>ManagedSelector</code>. Strategy delegates are identified by
+ * the types they capture, not by class names.
+ */
+@ManagedObject("Thread pool executing blocking tasks on virtual threads")
+public class VirtualThreadPool extends QueuedThreadPool
+{
+	private static final ClassValue<Boolean> EXECUTION_STRATEGY_DELEGATE = new ClassValue<>()
+	{
+		@Override
+		protected Boolean computeValue(Class<?> type)
+		{
+			if (!type.isSynthetic())
+				return false;
+
+			for (Field field : type.getDeclaredFields())
+			{
+				if (ExecutionStrategy.class.isAssignableFrom(field.getType()))
+					return true;
+			}
+
+			return false;
+		}
+	};
+
+	private final ThreadFactory virtualThreadFactory;
+	private final LongAdder virtualThreadsStarted = new LongAdder();
+
+	/**
+	 * @param maxThreads
+	 *            maximum number of platform threads
+	 * @param minThreads
+	 *            minimum number of platform threads
+	 * @param idleTimeout
+	 *            platform thread idle timeout in milliseconds
+	 * @throws IllegalStateException
+	 *             if the Java runtime does not support virtual threads
+	 */
+	public VirtualThreadPool(int maxThreads, int minThreads, int idleTimeout)
+	{
+		super(maxThreads, minThreads, idleTimeout);
+
+		setName("qtp-platform-" + hashCode());
+		setReservedThreads(0);
+
+		virtualThreadFactory = createVirtualThreadFactory("qtp-virtual-" + hashCode() + "-");
+	}
+
+	public static boolean isSupported()
+	{
+		try
+		{
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		}
+		catch (NoSuchMethodException e)
+		{
+			return false;
+		}
+	}
+
+	private static ThreadFactory createVirtualThreadFactory(String namePrefix)
+	{
+		try
+		{
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		}
+		catch (NoSuchMethodException | ClassNotFoundException e)
+		{
+			throw new IllegalStateException("Virtual threads not supported by Java runtime "
+					+ System.getProperty("java.version") + ", Java 21 or later required", e);
+		}
+		catch (IllegalAccessException | InvocationTargetException e)
+		{
+			throw new IllegalStateException("Unable to create virtual thread factory", e);
+		}
+	}
+
+	@Override
+	public void execute(Runnable job)
+	{
+		if (runOnPlatformThread(job))
+			super.execute(job);
+		else
+		{
+			if (!isRunning())
+				throw new RejectedExecutionException(job.toString());
+
+			virtualThreadFactory.newThread(job).start();
+			virtualThreadsStarted.increment();
+		}
+	}
+
+	private boolean runOnPlatformThread(Runnable job)
+	{
+		// selector producers, acceptors and non blocking callbacks
+		return job instanceof ExecutionStrategy
+				|| Invocable.getInvocationType(job) == InvocationType.NON_BLOCKING
+				|| job.getClass().getEnclosingClass() == AbstractConnector.class
+				|| EXECUTION_STRATEGY_DELEGATE.get(job.getClass());
+	}
+
+	@ManagedAttribute("Number of virtual threads started")
+	public long getVirtualThreadsStarted()
+	{
+		return virtualThreadsStarted.sum();
+	}
+}
@@ -0,0 +1,224 @@
+package de.rwh.utils.jetty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.servlet.Filter;
+
+import org.eclipse.jetty.annotations.AnnotationConfiguration;
+
+/**
+ * Configuration of one web application context hosted by a {@link JettyServer}: context path, servlet container
+ * initializers, init parameters, <code>WEB-INF/classes</code> directories and jars to scan, filters added for path
+ * <code>/*</code>, static resource mounts and the annotation configuration. Create instances via
+ * {@link #builder(String)}.
+ */
+public class WebAppContextConfiguration
+{
+	public static class Builder
+	{
+		private final String contextPath;
+		private final List<Class<?>> initializers = new ArrayList<>();
+		private final Properties initParameter = new Properties();
+		private final List<String> webInfClassesDirs = new ArrayList<>();
+		private final List<String> webInfJars = new ArrayList<>();
+		private final List<Class<? extends Filter>> filters = new ArrayList<>();
+		private final List<StaticResourceConfiguration> staticResources = new ArrayList<>();
+		private AnnotationConfiguration annotationConfiguration;
+
+		private Builder(String contextPath)
+		{
+			this.contextPath = Objects.requireNonNull(contextPath, "contextPath");
+		}
+
+		/**
+		 * @param initializers
+		 *            not <code>null</code>, servlet container initializers started in the given order before all
+		 *            others
+		 * @return this builder
+		 */
+		public Builder initializers(List<Class<?>> initializers)
+		{
+			this.initializers.addAll(Objects.requireNonNull(initializers, "initializers"));
+			return this;
+		}
+
+		/**
+		 * @param initParameter
+		 *            may be <code>null</code>, context init parameters
+		 * @return this builder
+		 */
+		public Builder initParameter(Properties initParameter)
+		{
+			if (initParameter != null)
+				this.initParameter.putAll(initParameter);
+			return this;
+		}
+
+		/**
+		 * @param name
+		 *            not <code>null</code>
+		 * @param value
+		 *            not <code>null</code>
+		 * @return this builder
+		 */
+		public Builder initParameter(String name, String value)
+		{
+			initParameter.setProperty(Objects.requireNonNull(name, "name"), Objects.requireNonNull(value, "value"));
+			return this;
+		}
+
+		/**
+		 * @param webInfClassesDirs
+		 *            not <code>null</code>, consumed by this method
+		 * @return this builder
+		 * @see JettyServer#webInfClassesDirs(java.util.function.Predicate)
+		 */
+		public Builder webInfClassesDirs(Stream<String> webInfClassesDirs)
+		{
+			this.webInfClassesDirs.addAll(webInfClassesDirs.collect(Collectors.toList()));
+			return this;
+		}
+
+		/**
+		 * @param webInfJars
+		 *            not <code>null</code>, consumed by this method
+		 * @return this builder
+		 * @see JettyServer#webInfJars(java.util.function.Predicate)
+		 */
+		public Builder webInfJars(Stream<String> webInfJars)
+		{
+			this.webInfJars.addAll(webInfJars.collect(Collectors.toList()));
+			return this;
+		}
+
+		/**
+		 * @param filter
+		 *            not <code>null</code>, added for path <code>/*</code> after previously added filters
+		 * @return this builder
+		 */
+		public Builder filter(Class<? extends Filter> filter)
+		{
+			filters.add(Objects.requireNonNull(filter, "filter"));
+			return this;
+		}
+
+		/**
+		 * @param staticResources
+		 *            not <code>null</code>, static resources mounted in this context
+		 * @return this builder
+		 * @see JettyServer#staticResourceConfiguration(Properties)
+		 */
+		public Builder staticResources(StaticResourceConfiguration staticResources)
+		{
+			this.staticResources.add(Objects.requireNonNull(staticResources, "staticResources"));
+			return this;
+		}
+
+		/**
+		 * @param annotationConfiguration
+		 *            may be <code>null</code>, Jetty's {@link AnnotationConfiguration} is used if <code>null</code>;
+		 *            must not be shared between contexts
+		 * @return this builder
+		 * @see JettyServer#annotationConfiguration(Properties)
+		 */
+		public Builder annotationConfiguration(AnnotationConfiguration annotationConfiguration)
+		{
+			this.annotationConfiguration = annotationConfiguration;
+			return this;
+		}
+
+		public WebAppContextConfiguration build()
+		{
+			return new WebAppContextConfiguration(contextPath, initializers, initParameter, webInfClassesDirs,
+					webInfJars, filters, staticResources, annotationConfiguration);
+		}
+	}
+
+	/**
+	 * @param contextPath
+	 *            not <code>null</code>
+	 * @return new builder
+	 */
+	public static Builder builder(String contextPath)
+	{
+		return new Builder(contextPath);
+	}
+
+	private final String contextPath;
+	private final List<Class<?>> initializers;
+	private final Properties initParameter;
+	private final List<String> webInfClassesDirs;
+	private final List<String> webInfJars;
+	private final List<Class<? extends Filter>> filters;
+	private final List<StaticResourceConfiguration> staticResources;
+	private final AnnotationConfiguration annotationConfiguration;
+
+	private WebAppContextConfiguration(String contextPath, List<Class<?>> initializers, Properties initParameter,
+			List<String> webInfClassesDirs, List<String> webInfJars, List<Class<? extends Filter>> filters,
+			List<StaticResourceConfiguration> staticResources, AnnotationConfiguration annotationConfiguration)
+	{
+		this.contextPath = contextPath;
+		this.initializers = Collections.unmodifiableList(new ArrayList<>(initializers));
+		this.initParameter = new Properties();
+		this.initParameter.putAll(initParameter);
+		this.webInfClassesDirs = Collections.unmodifiableList(new ArrayList<>(webInfClassesDirs));
+		this.webInfJars = Collections.unmodifiableList(new ArrayList<>(webInfJars));
+		this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+		this.staticResources = Collections.unmodifiableList(new ArrayList<>(staticResources));
+		this.annotationConfiguration = annotationConfiguration;
+	}
+
+	public String getContextPath()
+	{
+		return contextPath;
+	}
+
+	public List<Class<?>> getInitializers()
+	{
+		return initializers;
+	}
+
+	/**
+	 * @return copy of the init parameters
+	 */
+	public Properties getInitParameter()
+	{
+		Properties copy = new Properties();
+		copy.putAll(initParameter);
+		return copy;
+	}
+
+	public List<String> getWebInfClassesDirs()
+	{
+		return webInfClassesDirs;
+	}
+
+	public List<String> getWebInfJars()
+	{
+		return webInfJars;
+	}
+
+	public List<Class<? extends Filter>> getFilters()
+	{
+		return filters;
+	}
+
+	public List<StaticResourceConfiguration> getStaticResources()
+	{
+		return staticResources;
+	}
+
+	/**
+	 * @return may be <code>null</code>
+	 */
+	public AnnotationConfiguration getAnnotationConfiguration()
+	{
+		return annotationConfiguration;
+	}
+}
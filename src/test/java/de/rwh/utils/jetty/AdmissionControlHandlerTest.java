@@ -0,0 +1,311 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ErrorHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Test;
+
+import de.rwh.utils.jetty.AdmissionControlHandler.Limiter;
+
+public class AdmissionControlHandlerTest
+{
+	private static final class Response
+	{
+		final int status;
+		final String retryAfter;
+		final String body;
+
+		Response(int status, String retryAfter, String body)
+		{
+			this.status = status;
+			this.retryAfter = retryAfter;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * Records the order requests are handled in, blocks requests with parameter <code>block</code> until released and
+	 * completes requests with parameter <code>async</code> asynchronously once released.
+	 */
+	private static final class TestServlet extends HttpServlet
+	{
+		private static final long serialVersionUID = 1L;
+
+		final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicReference<AsyncContext> asyncContext = new AtomicReference<>();
+
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+		{
+			handled.add(req.getParameter("id"));
+
+			if (req.getParameter("async") != null)
+			{
+				asyncContext.set(req.startAsync());
+				return;
+			}
+
+			if (req.getParameter("block") != null)
+			{
+				try
+				{
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			resp.getWriter().write("ok");
+		}
+	}
+
+	private final TestServlet servlet = new TestServlet();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private Server server;
+	private AdmissionControlHandler handler;
+	private int port;
+
+	private static AdmissionConfiguration configuration(int maxConcurrentRequests, Map<String, Integer> routeLimits,
+			int maxQueuedRequests, long maxWaitMillis)
+	{
+		return new AdmissionConfiguration(maxConcurrentRequests, routeLimits, maxQueuedRequests, maxWaitMillis, 7, -1,
+				0, AdmissionConfiguration.DEFAULT_LOW_RESOURCES_PERIOD_MILLIS, 0);
+	}
+
+	private static List<String> names(List<Limiter> limiters)
+	{
+		return limiters.stream().map(Limiter::getName).collect(Collectors.toList());
+	}
+
+	private void start(AdmissionConfiguration configuration) throws Exception
+	{
+		server = new Server();
+		ServerConnector connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+
+		server.setErrorHandler(new ErrorHandler()
+		{
+			@Override
+			protected void writeErrorPage(HttpServletRequest request, Writer writer, int code, String message,
+					boolean showStacks) throws IOException
+			{
+				writer.write("error handler " + code);
+			}
+		});
+
+		ServletContextHandler context = new ServletContextHandler();
+		context.setContextPath("/");
+		context.addServlet(new ServletHolder(servlet), "/*");
+
+		handler = new AdmissionControlHandler(configuration);
+		handler.setHandler(context);
+		server.setHandler(handler);
+		server.start();
+
+		port = connector.getLocalPort();
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		servlet.release.countDown();
+		executor.shutdownNow();
+
+		if (server != null)
+			server.stop();
+	}
+
+	private Response get(String pathAndQuery) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + pathAndQuery)
+				.openConnection();
+		connection.setReadTimeout(10_000);
+
+		int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+		{
+			return new Response(status, connection.getHeaderField("Retry-After"),
+					in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private Future<Response> getAsync(String pathAndQuery)
+	{
+		return executor.submit(() -> get(pathAndQuery));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean())
+		{
+			if (System.nanoTime() - deadline > 0)
+				throw new AssertionError("condition not met within 10 s");
+
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testLimitersRouteBeforeContext() throws Exception
+	{
+		AdmissionControlHandler handler = new AdmissionControlHandler(configuration(10, Map.of("/api", 2), 10, 1000));
+
+		assertEquals(List.of("/api", AdmissionControlHandler.LIMITER_CONTEXT), names(handler.limiters("/api/foo")));
+		assertEquals(List.of(AdmissionControlHandler.LIMITER_CONTEXT), names(handler.limiters("/apix")));
+		assertEquals(List.of(AdmissionControlHandler.LIMITER_CONTEXT), names(handler.limiters("/other")));
+	}
+
+	@Test
+	public void testLimitersLongestPrefix() throws Exception
+	{
+		Map<String, Integer> routes = new LinkedHashMap<>();
+		routes.put("/api", 5);
+		routes.put("/api/search", 1);
+		AdmissionControlHandler handler = new AdmissionControlHandler(configuration(10, routes, 10, 1000));
+
+		assertEquals(List.of("/api/search", AdmissionControlHandler.LIMITER_CONTEXT),
+				names(handler.limiters("/api/search/x")));
+		assertEquals(List.of("/api", AdmissionControlHandler.LIMITER_CONTEXT),
+				names(handler.limiters("/api/searchx")));
+		assertEquals(List.of("/api", AdmissionControlHandler.LIMITER_CONTEXT), names(handler.limiters("/api")));
+	}
+
+	@Test
+	public void testLimitersWithoutContextLimit() throws Exception
+	{
+		AdmissionControlHandler handler = new AdmissionControlHandler(
+				configuration(0, Map.of("/api", 2, "/disabled", 0), 10, 1000));
+
+		assertEquals(List.of("/api"), names(handler.limiters("/api/foo")));
+		assertTrue(handler.limiters("/disabled/foo").isEmpty());
+		assertTrue(handler.limiters("/other").isEmpty());
+		assertTrue(handler.limiters(null).isEmpty());
+	}
+
+	@Test
+	public void testLimitersWithoutRouteLimits() throws Exception
+	{
+		AdmissionControlHandler handler = new AdmissionControlHandler(configuration(10, null, 10, 1000));
+
+		assertEquals(List.of(AdmissionControlHandler.LIMITER_CONTEXT), names(handler.limiters("/api/foo")));
+		assertEquals(List.of(AdmissionControlHandler.LIMITER_CONTEXT), names(handler.limiters(null)));
+	}
+
+	@Test
+	public void testQueuedRequestsAdmittedInOrderAndOverflowRejected() throws Exception
+	{
+		start(configuration(1, null, 3, 10_000));
+
+		Future<Response> blocking = getAsync("/x?id=a&block");
+		await(() -> handler.getActive() == 1);
+
+		List<Future<Response>> queued = new ArrayList<>();
+		for (String id : List.of("b", "c", "d"))
+		{
+			int expectedQueued = queued.size() + 1;
+			queued.add(getAsync("/x?id=" + id));
+			await(() -> handler.getQueued() == expectedQueued);
+		}
+
+		Response rejected = get("/x?id=e");
+		assertEquals(503, rejected.status);
+		assertEquals("7", rejected.retryAfter);
+		assertTrue(rejected.body, rejected.body.contains("error handler 503"));
+		assertEquals(1, handler.getRejected());
+
+		servlet.release.countDown();
+
+		assertEquals(200, blocking.get(10, TimeUnit.SECONDS).status);
+		for (Future<Response> response : queued)
+			assertEquals(200, response.get(10, TimeUnit.SECONDS).status);
+
+		assertEquals(List.of("a", "b", "c", "d"), servlet.handled);
+		await(() -> handler.getActive() == 0);
+		assertEquals(0, handler.getQueued());
+	}
+
+	@Test
+	public void testQueuedRequestTimesOut() throws Exception
+	{
+		start(configuration(1, null, 3, 200));
+
+		Future<Response> blocking = getAsync("/x?id=a&block");
+		await(() -> handler.getActive() == 1);
+
+		Response timedOut = get("/x?id=b");
+		assertEquals(503, timedOut.status);
+		assertEquals("7", timedOut.retryAfter);
+		assertTrue(timedOut.body, timedOut.body.contains("error handler 503"));
+		assertEquals(1, handler.getTimedOut());
+		assertEquals(0, handler.getQueued());
+
+		servlet.release.countDown();
+		assertEquals(200, blocking.get(10, TimeUnit.SECONDS).status);
+
+		assertEquals(List.of("a"), servlet.handled);
+		await(() -> handler.getActive() == 0);
+	}
+
+	@Test
+	public void testPermitReleasedAfterAsyncCompletion() throws Exception
+	{
+		start(configuration(1, null, 3, 10_000));
+
+		Future<Response> async = getAsync("/x?id=a&async");
+		await(() -> servlet.asyncContext.get() != null);
+
+		// permit held while the request is processed asynchronously
+		assertEquals(1, handler.getActive());
+
+		Future<Response> queued = getAsync("/x?id=b");
+		await(() -> handler.getQueued() == 1);
+
+		AsyncContext asyncContext = servlet.asyncContext.get();
+		asyncContext.getResponse().getWriter().write("async");
+		asyncContext.complete();
+
+		assertEquals("async", async.get(10, TimeUnit.SECONDS).body);
+		assertEquals("ok", queued.get(10, TimeUnit.SECONDS).body);
+
+		assertEquals(List.of("a", "b"), servlet.handled);
+		await(() -> handler.getActive() == 0);
+	}
+}
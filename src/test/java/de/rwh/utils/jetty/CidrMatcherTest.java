@@ -0,0 +1,148 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CidrMatcherTest
+{
+	@Test
+	public void testParseIpv4() throws Exception
+	{
+		assertEquals(0L, CidrMatcher.parseIpv4("0.0.0.0", 0, 7));
+		assertEquals(0xC0A80105L, CidrMatcher.parseIpv4("192.168.1.5", 0, 11));
+		assertEquals(0xFFFFFFFFL, CidrMatcher.parseIpv4("255.255.255.255", 0, 15));
+		assertEquals(0x0A000001L, CidrMatcher.parseIpv4("x10.0.0.1:80", 1, 9));
+	}
+
+	@Test
+	public void testParseIpv4Invalid() throws Exception
+	{
+		for (String address : Arrays.asList("", "1", "1.2.3", "1.2.3.4.5", "256.0.0.1", "1..2.3", ".1.2.3", "1.2.3.",
+				"1.2.3.a", "1.2.3.4 ", "-1.2.3.4", "localhost"))
+			assertEquals(address, -1L, CidrMatcher.parseIpv4(address, 0, address.length()));
+	}
+
+	@Test
+	public void testParseLiteral() throws Exception
+	{
+		InetAddress ipv4 = CidrMatcher.parseLiteral("10.1.2.3");
+		assertTrue(ipv4 instanceof Inet4Address);
+		assertEquals("10.1.2.3", ipv4.getHostAddress());
+
+		InetAddress ipv6 = CidrMatcher.parseLiteral("fd00::1");
+		assertTrue(ipv6 instanceof Inet6Address);
+
+		assertNull(CidrMatcher.parseLiteral(null));
+		assertNull(CidrMatcher.parseLiteral(""));
+		assertNull(CidrMatcher.parseLiteral("localhost"));
+		assertNull(CidrMatcher.parseLiteral("example.org"));
+		assertNull(CidrMatcher.parseLiteral("1.2.3.256"));
+	}
+
+	@Test
+	public void testContainsIpv4() throws Exception
+	{
+		CidrMatcher matcher = new CidrMatcher(List.of("10.0.0.0/8", "192.168.1.5", "172.16.0.0/12"));
+
+		assertTrue(matcher.contains("10.0.0.0"));
+		assertTrue(matcher.contains("10.255.255.255"));
+		assertFalse(matcher.contains("11.0.0.0"));
+		assertTrue(matcher.contains("192.168.1.5"));
+		assertFalse(matcher.contains("192.168.1.4"));
+		assertFalse(matcher.contains("192.168.1.6"));
+		assertTrue(matcher.contains("172.31.255.255"));
+		assertFalse(matcher.contains("172.32.0.0"));
+
+		assertTrue(matcher.contains(InetAddress.getByName("10.20.30.40")));
+		assertFalse(matcher.contains(InetAddress.getByName("8.8.8.8")));
+		assertFalse(matcher.contains(InetAddress.getByName("::ffff:8.8.8.8")));
+	}
+
+	@Test
+	public void testContainsIpv6() throws Exception
+	{
+		CidrMatcher matcher = new CidrMatcher(List.of("fd00::/8", "2001:db8::1"));
+
+		assertTrue(matcher.contains("fd12:3456::1"));
+		assertFalse(matcher.contains("fe80::1"));
+		assertTrue(matcher.contains("2001:db8::1"));
+		assertTrue(matcher.contains("2001:0db8:0:0:0:0:0:1"));
+		assertFalse(matcher.contains("2001:db8::2"));
+		assertFalse(matcher.contains("10.0.0.1"));
+	}
+
+	@Test
+	public void testContainsIpv4MappedNetwork() throws Exception
+	{
+		CidrMatcher matcher = new CidrMatcher(List.of("::ffff:10.0.0.0/104"));
+
+		assertTrue(matcher.contains("10.1.2.3"));
+		assertFalse(matcher.contains("11.1.2.3"));
+	}
+
+	@Test
+	public void testContainsAll() throws Exception
+	{
+		CidrMatcher matcher = new CidrMatcher(List.of("0.0.0.0/0"));
+
+		assertTrue(matcher.contains("1.2.3.4"));
+		assertTrue(matcher.contains("255.255.255.255"));
+		assertFalse(matcher.contains("::1"));
+	}
+
+	@Test
+	public void testContainsNotAnAddress() throws Exception
+	{
+		CidrMatcher matcher = new CidrMatcher(List.of("0.0.0.0/0", "::/0"));
+
+		assertFalse(matcher.contains((String) null));
+		assertFalse(matcher.contains((InetAddress) null));
+		assertFalse(matcher.contains(""));
+		assertFalse(matcher.contains("localhost"));
+		assertFalse(matcher.contains("unknown"));
+	}
+
+	@Test
+	public void testNetworks() throws Exception
+	{
+		CidrMatcher matcher = new CidrMatcher(Arrays.asList(" 10.0.0.0/8 ", null, "", "  "));
+
+		assertEquals(List.of("10.0.0.0/8"), matcher.getNetworks());
+		assertFalse(matcher.isEmpty());
+		assertEquals("10.0.0.0/8", matcher.toString());
+
+		CidrMatcher empty = new CidrMatcher(null);
+		assertNotNull(empty.getNetworks());
+		assertTrue(empty.isEmpty());
+		assertFalse(empty.contains("10.0.0.1"));
+	}
+
+	@Test
+	public void testInvalidNetworks() throws Exception
+	{
+		for (String network : Arrays.asList("localhost", "10.0.0.0/", "10.0.0.0/a", "10.0.0.0/33", "10.0.0.0/-1",
+				"fd00::/129", "256.0.0.0/8", "10.0.0/8"))
+		{
+			try
+			{
+				new CidrMatcher(List.of(network));
+				throw new AssertionError("IllegalArgumentException expected for '" + network + "'");
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassPathIndexTest
+{
+	@WebServlet("/annotated")
+	public static class AnnotatedServlet extends HttpServlet
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	public static class SubTypeOfAnnotated extends AnnotatedServlet
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	public static class NotAnnotatedServlet extends HttpServlet
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final ForkJoinPool pool = new ForkJoinPool(2);
+
+	private Path annotated;
+	private Path notAnnotated;
+	private Path classesDirectory;
+	private List<Path> entries;
+
+	@Before
+	public void before() throws Exception
+	{
+		annotated = jar("annotated.jar", AnnotatedServlet.class);
+		notAnnotated = jar("not-annotated.jar", NotAnnotatedServlet.class);
+
+		classesDirectory = folder.newFolder("classes").toPath();
+		copyClass(SubTypeOfAnnotated.class, classesDirectory);
+
+		entries = Arrays.asList(annotated, notAnnotated, classesDirectory);
+	}
+
+	@After
+	public void after()
+	{
+		pool.shutdownNow();
+	}
+
+	private Path jar(String name, Class<?> c) throws IOException
+	{
+		Path jar = folder.getRoot().toPath().resolve(name);
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar));
+				InputStream in = c.getResourceAsStream(c.getName().replaceAll(".*\\.", "") + ".class"))
+		{
+			out.putNextEntry(new ZipEntry(c.getName().replace('.', '/') + ".class"));
+			in.transferTo(out);
+			out.closeEntry();
+		}
+		return jar;
+	}
+
+	private static void copyClass(Class<?> c, Path directory) throws IOException
+	{
+		Path file = directory.resolve(c.getName().replace('.', '/') + ".class");
+		Files.createDirectories(file.getParent());
+
+		try (InputStream in = c.getResourceAsStream(c.getName().replaceAll(".*\\.", "") + ".class");
+				OutputStream out = Files.newOutputStream(file))
+		{
+			in.transferTo(out);
+		}
+	}
+
+	private Set<Path> relevantEntries(ClassPathIndex index) throws InterruptedException
+	{
+		return index.getRelevantEntries(entries, Collections.singleton(WebServlet.class.getName()),
+				Collections.emptySet(), pool);
+	}
+
+	@Test
+	public void testRelevantEntries() throws Exception
+	{
+		assertEquals(Set.of(annotated, classesDirectory), relevantEntries(new ClassPathIndex(null)));
+	}
+
+	@Test
+	public void testStoreAndLoad() throws Exception
+	{
+		ClassPathIndex index = new ClassPathIndex(null);
+		relevantEntries(index);
+
+		Path file = folder.getRoot().toPath().resolve("quickstart.properties.index");
+		index.store(file);
+
+		ClassPathIndex loaded = new ClassPathIndex(null);
+		assertEquals(3, loaded.load(file));
+		assertEquals(0, loaded.load(file));
+		assertEquals(Set.of(annotated, classesDirectory), relevantEntries(loaded));
+	}
+
+	@Test
+	public void testChangedEntriesNotLoaded() throws Exception
+	{
+		ClassPathIndex index = new ClassPathIndex(null);
+		relevantEntries(index);
+
+		Path file = folder.getRoot().toPath().resolve("quickstart.properties.index");
+		index.store(file);
+
+		Files.setLastModifiedTime(annotated,
+				FileTime.fromMillis(Files.getLastModifiedTime(annotated).toMillis() - 1000));
+		copyClass(NotAnnotatedServlet.class, classesDirectory);
+
+		assertEquals(1, new ClassPathIndex(null).load(file));
+	}
+
+	@Test
+	public void testLoadNotExistingOrInvalid() throws Exception
+	{
+		Path file = folder.getRoot().toPath().resolve("quickstart.properties.index");
+		assertEquals(0, new ClassPathIndex(null).load(file));
+
+		Files.write(file, new byte[] { 1, 2, 3 });
+		assertEquals(0, new ClassPathIndex(null).load(file));
+	}
+}
@@ -0,0 +1,194 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.rwh.utils.crypto.io.PemIo;
+
+public class ClientCertificateHeaderDecoderTest
+{
+	private static X509Certificate certificate;
+	private static String pem;
+
+	@BeforeClass
+	public static void beforeClass() throws Exception
+	{
+		// base64 body containing '+' and '/' to cover URL encoding of both
+		do
+		{
+			certificate = TestCertificates.selfSigned("client", TestCertificates.keyPair());
+			pem = TestCertificates.pem(certificate);
+		}
+		while (!pem.contains("+") || !pem.contains("/"));
+	}
+
+	/**
+	 * Decode path used before {@link ClientCertificateHeaderDecoder}.
+	 */
+	private static X509Certificate legacyDecode(String headerValue)
+	{
+		try
+		{
+			String clientCertString;
+			if (headerValue.startsWith(ClientCertificateHeaderDecoder.CERT_BEGIN))
+				clientCertString = ClientCertificateHeaderDecoder.CERT_BEGIN
+						+ headerValue.replace(ClientCertificateHeaderDecoder.CERT_BEGIN, "")
+								.replace(ClientCertificateHeaderDecoder.CERT_END, "").replaceAll(" ", "\n")
+						+ ClientCertificateHeaderDecoder.CERT_END;
+			else
+				clientCertString = URLDecoder.decode(headerValue, StandardCharsets.UTF_8).trim();
+
+			return PemIo.readX509CertificateFromPem(clientCertString);
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+
+	private static String spaceSeparated(String pem)
+	{
+		return pem.trim().replace('\n', ' ');
+	}
+
+	private static String urlEncoded(String pem)
+	{
+		return URLEncoder.encode(pem, StandardCharsets.UTF_8).replace("+", "%20");
+	}
+
+	private static void assertDecoded(String headerValue) throws Exception
+	{
+		assertEquals(certificate, ClientCertificateHeaderDecoder.decode(headerValue));
+		assertEquals(certificate, legacyDecode(headerValue));
+	}
+
+	private static void assertRejected(String headerValue)
+	{
+		try
+		{
+			ClientCertificateHeaderDecoder.decode(headerValue);
+			fail("CertificateException expected for '" + headerValue + "'");
+		}
+		catch (CertificateException e)
+		{
+			// expected
+		}
+
+		assertNull(legacyDecode(headerValue));
+	}
+
+	@Test
+	public void testSpaceSeparated() throws Exception
+	{
+		String headerValue = spaceSeparated(pem);
+		assertTrue(ClientCertificateHeaderDecoder.hasValidPrefix(headerValue));
+		assertTrue(ClientCertificateHeaderDecoder.hasValidSuffix(headerValue));
+
+		assertDecoded(headerValue);
+	}
+
+	@Test
+	public void testSpaceSeparatedKeepsPlus() throws Exception
+	{
+		// '+' is a base64 character in the space separated format
+		String headerValue = spaceSeparated(pem);
+		assertTrue(headerValue.contains("+"));
+
+		assertDecoded(headerValue);
+	}
+
+	@Test
+	public void testUrlEncoded() throws Exception
+	{
+		String headerValue = urlEncoded(pem);
+		assertTrue(headerValue.startsWith(ClientCertificateHeaderDecoder.URL_ENCODED_CERT_BEGIN));
+		assertTrue(headerValue.endsWith(ClientCertificateHeaderDecoder.URL_ENCODED_CERT_END));
+		assertTrue(headerValue.contains("%2B"));
+		assertTrue(headerValue.contains("%2F"));
+
+		assertDecoded(headerValue);
+	}
+
+	@Test
+	public void testUrlEncodedLowerCaseEscapes() throws Exception
+	{
+		String headerValue = urlEncoded(pem).replace("%2B", "%2b").replace("%2F", "%2f").replace("%3D", "%3d");
+
+		assertDecoded(headerValue);
+	}
+
+	@Test
+	public void testUrlEncodedPlusAsSpace() throws Exception
+	{
+		// '+' is an encoded space in the URL encoded format, e.g. line breaks encoded as spaces
+		String body = urlEncoded(pem).substring(ClientCertificateHeaderDecoder.URL_ENCODED_CERT_BEGIN.length(),
+				urlEncoded(pem).length() - ClientCertificateHeaderDecoder.URL_ENCODED_CERT_END.length());
+		String headerValue = ClientCertificateHeaderDecoder.URL_ENCODED_CERT_BEGIN + body.replace("%0A", "+")
+				+ ClientCertificateHeaderDecoder.URL_ENCODED_CERT_END;
+
+		assertEquals(certificate, ClientCertificateHeaderDecoder.decode(headerValue));
+	}
+
+	@Test
+	public void testMalformedEscapes() throws Exception
+	{
+		String encoded = urlEncoded(pem);
+		String end = ClientCertificateHeaderDecoder.URL_ENCODED_CERT_END;
+		String body = encoded.substring(0, encoded.length() - end.length());
+
+		for (String malformed : List.of(body + "%" + end, body + "%4" + end, body + "%zz" + end, body + "%g1" + end))
+			assertRejected(malformed);
+	}
+
+	@Test
+	public void testMalformedBase64() throws Exception
+	{
+		String headerValue = spaceSeparated(pem);
+		int body = ClientCertificateHeaderDecoder.CERT_BEGIN.length() + 1;
+
+		// invalid character, truncated body, data after padding, non ASCII character
+		for (String malformed : List.of(headerValue.substring(0, body) + "*" + headerValue.substring(body + 1),
+				headerValue.substring(0, body) + "A" + headerValue.substring(body),
+				headerValue.substring(0, body) + "AAA=A" + headerValue.substring(body),
+				headerValue.substring(0, body) + "ä" + headerValue.substring(body + 1)))
+			assertRejected(malformed);
+	}
+
+	@Test
+	public void testInvalidFrame() throws Exception
+	{
+		// checked by the caller before decoding in the old decode path
+		String headerValue = spaceSeparated(pem);
+		assertFalse(ClientCertificateHeaderDecoder.hasValidPrefix(headerValue.substring(1)));
+		assertFalse(ClientCertificateHeaderDecoder.hasValidSuffix(headerValue.substring(0, headerValue.length() - 1)));
+
+		for (String invalid : List.of(headerValue.substring(1), headerValue.substring(0, headerValue.length() - 1),
+				"-----BEGIN CERTIFICATE-----END CERTIFICATE-----", ""))
+		{
+			try
+			{
+				ClientCertificateHeaderDecoder.decode(invalid);
+				fail("CertificateException expected for '" + invalid + "'");
+			}
+			catch (CertificateException e)
+			{
+				// expected
+			}
+		}
+
+		assertRejected(ClientCertificateHeaderDecoder.CERT_BEGIN + ClientCertificateHeaderDecoder.CERT_END);
+	}
+}
@@ -0,0 +1,298 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.rwh.utils.jetty.ClientCertificateValidator.Result;
+import de.rwh.utils.jetty.ClientCertificateValidator.RevocationCheck;
+
+public class ClientCertificateValidatorTest
+{
+	private static final URI OCSP_RESPONDER = URI.create("http://ocsp.test/");
+	private static final URI CRL_DISTRIBUTION_POINT = URI.create("http://crl.test/ca.crl");
+
+	private interface OcspResponder
+	{
+		byte[] respond(byte[] request) throws IOException;
+	}
+
+	private static final class StubRevocationFetcher implements RevocationFetcher
+	{
+		final AtomicInteger crlRequests = new AtomicInteger();
+		final AtomicInteger ocspRequests = new AtomicInteger();
+
+		volatile X509CRL crl;
+		volatile OcspResponder ocsp = request -> null;
+
+		@Override
+		public X509CRL fetchCrl(URI distributionPoint)
+		{
+			assertEquals(CRL_DISTRIBUTION_POINT, distributionPoint);
+			crlRequests.incrementAndGet();
+			return crl;
+		}
+
+		@Override
+		public byte[] fetchOcspResponse(URI responder, byte[] request) throws IOException
+		{
+			assertEquals(OCSP_RESPONDER, responder);
+			ocspRequests.incrementAndGet();
+			return ocsp.respond(request);
+		}
+	}
+
+	private final KeyPair caKeyPair = TestCertificates.keyPair();
+	private final X509Certificate ca = TestCertificates.selfSigned("Test CA", caKeyPair);
+	private final StubRevocationFetcher fetcher = new StubRevocationFetcher();
+
+	private X509Certificate client(Date notAfter)
+	{
+		return TestCertificates.certificate("client", TestCertificates.keyPair(), ca, caKeyPair, false, notAfter,
+				OCSP_RESPONDER, CRL_DISTRIBUTION_POINT);
+	}
+
+	private X509Certificate client()
+	{
+		return client(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+	}
+
+	private ClientCertificateValidator validator(boolean softFail, RevocationCheck... revocationChecks)
+			throws Exception
+	{
+		KeyStore trustStore = KeyStore.getInstance("PKCS12");
+		trustStore.load(null, null);
+		trustStore.setCertificateEntry("ca", ca);
+
+		return new ClientCertificateValidator(trustStore,
+				revocationChecks.length == 0 ? null : EnumSet.of(revocationChecks[0], revocationChecks), fetcher,
+				softFail, ClientCertificateValidator.DEFAULT_CACHE_SIZE,
+				ClientCertificateValidator.DEFAULT_CACHE_TTL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testValid() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false);
+		X509Certificate client = client();
+
+		assertEquals(Result.VALID, validator.validate(client));
+		assertEquals(Result.VALID, validator.validate(client));
+		assertTrue(validator.isAccepted(Result.VALID));
+
+		assertEquals(1, validator.getMisses());
+		assertEquals(1, validator.getHits());
+		assertEquals(1, validator.getResultsValid());
+		assertEquals(0, fetcher.ocspRequests.get() + fetcher.crlRequests.get());
+	}
+
+	@Test
+	public void testUntrusted() throws Exception
+	{
+		ClientCertificateValidator validator = validator(true, RevocationCheck.OCSP);
+
+		KeyPair otherCaKeyPair = TestCertificates.keyPair();
+		X509Certificate otherCa = TestCertificates.selfSigned("Test CA", otherCaKeyPair);
+		X509Certificate signedByOtherCa = TestCertificates.certificate("client", TestCertificates.keyPair(), otherCa,
+				otherCaKeyPair, false, new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+
+		assertEquals(Result.UNTRUSTED, validator.validate(signedByOtherCa));
+		assertEquals(Result.UNTRUSTED, validator.validate(TestCertificates.selfSigned("client", caKeyPair)));
+		assertFalse(validator.isAccepted(Result.UNTRUSTED));
+
+		assertEquals(2, validator.getResultsUntrusted());
+		assertEquals(0, fetcher.ocspRequests.get());
+	}
+
+	@Test
+	public void testValidOcsp() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false, RevocationCheck.OCSP, RevocationCheck.CRL);
+		fetcher.ocsp = request -> TestCertificates.ocspResponse(request, ca, caKeyPair, false);
+
+		assertEquals(Result.VALID, validator.validate(client()));
+		assertEquals(1, fetcher.ocspRequests.get());
+		assertEquals(0, fetcher.crlRequests.get());
+	}
+
+	@Test
+	public void testRevokedOcsp() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false, RevocationCheck.OCSP, RevocationCheck.CRL);
+		fetcher.ocsp = request -> TestCertificates.ocspResponse(request, ca, caKeyPair, true);
+		X509Certificate client = client();
+
+		assertEquals(Result.REVOKED, validator.validate(client));
+		assertEquals(Result.REVOKED, validator.validate(client));
+		assertFalse(validator.isAccepted(Result.REVOKED));
+
+		assertEquals(1, fetcher.ocspRequests.get());
+		assertEquals(0, fetcher.crlRequests.get());
+		assertEquals(1, validator.getResultsRevoked());
+	}
+
+	@Test
+	public void testOcspResponseNotSignedByIssuer() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false, RevocationCheck.OCSP);
+		KeyPair otherKeyPair = TestCertificates.keyPair();
+		fetcher.ocsp = request -> TestCertificates.ocspResponse(request, ca, otherKeyPair, false);
+
+		assertEquals(Result.REVOCATION_UNKNOWN, validator.validate(client()));
+	}
+
+	@Test
+	public void testRevokedCrl() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false, RevocationCheck.CRL);
+		X509Certificate revoked = client();
+		X509Certificate notRevoked = client();
+		fetcher.crl = TestCertificates.crl(ca, caKeyPair, revoked);
+
+		assertEquals(Result.REVOKED, validator.validate(revoked));
+		assertEquals(Result.VALID, validator.validate(notRevoked));
+
+		// CRL cached until next update
+		assertEquals(1, fetcher.crlRequests.get());
+		assertEquals(0, fetcher.ocspRequests.get());
+	}
+
+	@Test
+	public void testCrlNotSignedByIssuer() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false, RevocationCheck.CRL);
+		fetcher.crl = TestCertificates.crl(ca, TestCertificates.keyPair());
+
+		assertEquals(Result.REVOCATION_UNKNOWN, validator.validate(client()));
+	}
+
+	@Test
+	public void testCrlIfOcspUnavailable() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false, RevocationCheck.OCSP, RevocationCheck.CRL);
+		X509Certificate client = client();
+		fetcher.ocsp = request ->
+		{
+			throw new IOException("responder not reachable");
+		};
+		fetcher.crl = TestCertificates.crl(ca, caKeyPair, client);
+
+		assertEquals(Result.REVOKED, validator.validate(client));
+		assertEquals(1, fetcher.ocspRequests.get());
+		assertEquals(1, fetcher.crlRequests.get());
+	}
+
+	@Test
+	public void testRevocationUnknown() throws Exception
+	{
+		fetcher.ocsp = request ->
+		{
+			throw new IOException("responder not reachable");
+		};
+		X509Certificate client = client();
+
+		ClientCertificateValidator hardFail = validator(false, RevocationCheck.OCSP, RevocationCheck.CRL);
+		assertEquals(Result.REVOCATION_UNKNOWN, hardFail.validate(client));
+		assertFalse(hardFail.isAccepted(Result.REVOCATION_UNKNOWN));
+
+		ClientCertificateValidator softFail = validator(true, RevocationCheck.OCSP, RevocationCheck.CRL);
+		assertEquals(Result.REVOCATION_UNKNOWN, softFail.validate(client));
+		assertTrue(softFail.isAccepted(Result.REVOCATION_UNKNOWN));
+		assertTrue(softFail.isAccepted(Result.VALID));
+		assertFalse(softFail.isAccepted(Result.REVOKED));
+		assertFalse(softFail.isAccepted(Result.UNTRUSTED));
+
+		assertEquals(1, softFail.getResultsRevocationUnknown());
+	}
+
+	@Test
+	public void testTimeToLiveCappedAtNotAfter() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false);
+
+		// certificate validity has second precision
+		long notAfter = (System.currentTimeMillis() / 1000 + 2) * 1000;
+		X509Certificate client = client(new Date(notAfter));
+
+		assertEquals(Result.VALID, validator.validate(client));
+		assertEquals(Result.VALID, validator.validate(client));
+		assertEquals(1, validator.getMisses());
+
+		Thread.sleep(notAfter - System.currentTimeMillis() + 1100);
+
+		assertEquals(Result.UNTRUSTED, validator.validate(client));
+		assertEquals(2, validator.getMisses());
+		assertEquals(1, validator.getEvictions());
+	}
+
+	@Test
+	public void testConcurrentValidationsCoalesced() throws Exception
+	{
+		ClientCertificateValidator validator = validator(false, RevocationCheck.OCSP);
+		X509Certificate client = client();
+
+		CountDownLatch fetching = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		fetcher.ocsp = request ->
+		{
+			fetching.countDown();
+			try
+			{
+				release.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			return TestCertificates.ocspResponse(request, ca, caKeyPair, true);
+		};
+
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<Result>> results = new ArrayList<>();
+			results.add(executor.submit(() -> validator.validate(client)));
+			assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+			for (int i = 1; i < threads; i++)
+				results.add(executor.submit(() -> validator.validate(client)));
+
+			for (int i = 0; i < 500 && validator.getCoalesced() < threads - 1; i++)
+				Thread.sleep(10);
+			release.countDown();
+
+			for (Future<Result> result : results)
+				assertEquals(Result.REVOKED, result.get(5, TimeUnit.SECONDS));
+		}
+		finally
+		{
+			release.countDown();
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, fetcher.ocspRequests.get());
+		assertEquals(1, validator.getMisses());
+		assertEquals(threads - 1, validator.getCoalesced());
+		assertEquals(1, validator.getResultsRevoked());
+	}
+}
@@ -0,0 +1,154 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ErrorHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JettyServerTest
+{
+	/**
+	 * Answers all requests with the filter name, the context's <code>name</code> init parameter and the path in
+	 * context.
+	 */
+	public abstract static class RespondingFilter implements Filter
+	{
+		@Override
+		public void init(FilterConfig filterConfig)
+		{
+		}
+
+		@Override
+		public void destroy()
+		{
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException
+		{
+			HttpServletRequest httpRequest = (HttpServletRequest) request;
+
+			response.setContentType("text/plain");
+			response.getWriter().write(getClass().getSimpleName() + " "
+					+ request.getServletContext().getInitParameter("name") + " " + httpRequest.getServletPath()
+					+ (httpRequest.getPathInfo() == null ? "" : httpRequest.getPathInfo()));
+		}
+	}
+
+	public static class FilterA extends RespondingFilter
+	{
+	}
+
+	public static class FilterB extends RespondingFilter
+	{
+	}
+
+	private JettyServer server;
+
+	@Before
+	public void before() throws Exception
+	{
+		server = new JettyServer(null,
+				Collections.singletonList(JettyServer.httpConnector(JettyServer.httpConfiguration(), "127.0.0.1", 0)),
+				new ErrorHandler(),
+				Arrays.asList(
+						WebAppContextConfiguration.builder("/a").initParameter("name", "context a")
+								.filter(FilterA.class).build(),
+						WebAppContextConfiguration.builder("/b").initParameter("name", "context b")
+								.filter(FilterB.class).build()));
+		server.enableMetrics(new MetricsConfiguration("/metrics", "127.0.0.1", 0, false, null, 10));
+		server.start();
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		if (server != null)
+			server.stop();
+	}
+
+	private int port(String name)
+	{
+		for (Connector connector : server.getConnectors())
+		{
+			if (name == null ? connector.getName() == null : name.equals(connector.getName()))
+				return ((ServerConnector) connector).getLocalPort();
+		}
+
+		throw new IllegalStateException("No connector " + name);
+	}
+
+	private static HttpURLConnection connect(int port, String path) throws IOException
+	{
+		return (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+	}
+
+	private static String get(int port, String path) throws IOException
+	{
+		HttpURLConnection connection = connect(port, path);
+		assertEquals(200, connection.getResponseCode());
+		try (InputStream in = connection.getInputStream())
+		{
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void testContexts() throws Exception
+	{
+		assertEquals(2, server.getWebAppContexts().size());
+		assertEquals("context a", server.getWebAppContext("/a").getInitParameter("name"));
+		assertEquals("context b", server.getWebAppContext("/b").getInitParameter("name"));
+		assertEquals(server.getWebAppContext("/a"), server.getWebAppContext());
+	}
+
+	@Test
+	public void testRoutedByContextPath() throws Exception
+	{
+		int port = port(null);
+
+		assertEquals("FilterA context a /x", get(port, "/a/x"));
+		assertEquals("FilterA context a /y/z", get(port, "/a/y/z"));
+		assertEquals("FilterB context b /x", get(port, "/b/x"));
+		assertEquals(404, connect(port, "/c/x").getResponseCode());
+		assertEquals(404, connect(port, "/ab/x").getResponseCode());
+	}
+
+	@Test
+	public void testRequestsCountedPerContext() throws Exception
+	{
+		int port = port(null);
+
+		get(port, "/a/x");
+		get(port, "/a/y");
+		get(port, "/b/x");
+		connect(port, "/c/x").getResponseCode();
+
+		String metrics = get(port(RequestMetricsHandler.MANAGEMENT_CONNECTOR_NAME), "/metrics");
+		assertTrue(metrics, metrics.contains("\njetty_context_requests_total{context=\"/a\"} 2\n"));
+		assertTrue(metrics, metrics.contains("\njetty_context_requests_total{context=\"/b\"} 1\n"));
+		assertTrue(metrics, metrics.contains("\njetty_context_requests_total{context=\"none\"} 1\n"));
+		assertTrue(metrics, metrics.contains("\njetty_context_responses_total{context=\"/a\",code=\"2xx\"} 2\n"));
+		assertTrue(metrics, metrics.contains("\njetty_context_responses_total{context=\"none\",code=\"4xx\"} 1\n"));
+	}
+}
@@ -0,0 +1,205 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KeyStoreReloaderTest
+{
+	private static final char[] PASSWORD = "password".toCharArray();
+
+	private static final class TrustAll implements X509TrustManager
+	{
+		@Override
+		public void checkClientTrusted(X509Certificate[] chain, String authType)
+		{
+		}
+
+		@Override
+		public void checkServerTrusted(X509Certificate[] chain, String authType)
+		{
+		}
+
+		@Override
+		public X509Certificate[] getAcceptedIssuers()
+		{
+			return new X509Certificate[0];
+		}
+	}
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final KeyPair caKeyPair = TestCertificates.keyPair();
+	private final X509Certificate ca = TestCertificates.selfSigned("Test CA", caKeyPair);
+
+	private Path trustStorePath;
+	private Path keyStorePath;
+	private Server server;
+	private ServerConnector connector;
+	private KeyStoreReloader reloader;
+
+	@Before
+	public void before() throws Exception
+	{
+		trustStorePath = folder.getRoot().toPath().resolve("ca.pem");
+		keyStorePath = folder.getRoot().toPath().resolve("server.p12");
+
+		write(trustStorePath, TestCertificates.pem(ca).getBytes(StandardCharsets.US_ASCII));
+		KeyStore keyStore = keyStore("first", new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+		write(keyStorePath, keyStore);
+
+		SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+		sslContextFactory.setKeyStore(keyStore);
+		sslContextFactory.setKeyStorePassword(new String(PASSWORD));
+
+		server = new Server();
+		connector = new ServerConnector(server, new SslConnectionFactory(sslContextFactory, "http/1.1"),
+				new HttpConnectionFactory());
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+
+		reloader = new KeyStoreReloader(sslContextFactory, trustStorePath, keyStorePath, PASSWORD, null, 100,
+				TimeUnit.MILLISECONDS, null, null);
+		server.addBean(reloader);
+
+		server.start();
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		if (server != null)
+			server.stop();
+	}
+
+	private KeyStore keyStore(String commonName, Date notAfter) throws Exception
+	{
+		KeyPair keyPair = TestCertificates.keyPair();
+		X509Certificate certificate = TestCertificates.certificate(commonName, keyPair, ca, caKeyPair, false,
+				notAfter);
+
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		keyStore.load(null, null);
+		keyStore.setKeyEntry("server", keyPair.getPrivate(), PASSWORD, new Certificate[] { certificate, ca });
+		return keyStore;
+	}
+
+	private static void write(Path file, KeyStore keyStore) throws Exception
+	{
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(tmp))
+		{
+			keyStore.store(out, PASSWORD);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void write(Path file, byte[] content) throws Exception
+	{
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(tmp, content);
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return subject of the server certificate, new TLS session for every call
+	 */
+	private String serverCertificate() throws Exception
+	{
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, new TrustManager[] { new TrustAll() }, new SecureRandom());
+
+		try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("127.0.0.1",
+				connector.getLocalPort()))
+		{
+			socket.startHandshake();
+			return ((X509Certificate) socket.getSession().getPeerCertificates()[0]).getSubjectX500Principal()
+					.getName();
+		}
+	}
+
+	private static void awaitCount(LongSupplier counter, long expected) throws InterruptedException
+	{
+		for (int i = 0; i < 200 && counter.getAsLong() < expected; i++)
+			Thread.sleep(50);
+
+		assertEquals(expected, counter.getAsLong());
+	}
+
+	@Test
+	public void testReloadedOnChange() throws Exception
+	{
+		assertEquals("CN=first", serverCertificate());
+
+		write(keyStorePath, keyStore("second", new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1))));
+		awaitCount(reloader::getReloadsSucceeded, 1);
+
+		assertEquals("CN=second", serverCertificate());
+		assertEquals(0, reloader.getReloadsFailed());
+		assertTrue(reloader.getLastSuccessMillis() > 0);
+	}
+
+	@Test
+	public void testInvalidKeyStoreRejected() throws Exception
+	{
+		write(keyStorePath, "not a key store".getBytes(StandardCharsets.US_ASCII));
+		awaitCount(reloader::getReloadsFailed, 1);
+
+		assertEquals("CN=first", serverCertificate());
+		assertNotNull(reloader.getLastFailure());
+
+		write(keyStorePath, keyStore("expired", new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1))));
+		awaitCount(reloader::getReloadsFailed, 2);
+
+		assertEquals("CN=first", serverCertificate());
+		assertEquals(0, reloader.getReloadsSucceeded());
+
+		// valid again
+		write(keyStorePath, keyStore("second", new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1))));
+		awaitCount(reloader::getReloadsSucceeded, 1);
+
+		assertEquals("CN=second", serverCertificate());
+		assertEquals(2, reloader.getReloadsFailed());
+	}
+
+	@Test
+	public void testEmptyTrustStoreRejected() throws Exception
+	{
+		write(trustStorePath, new byte[0]);
+		awaitCount(reloader::getReloadsFailed, 1);
+
+		assertEquals("CN=first", serverCertificate());
+	}
+}
@@ -0,0 +1,143 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+	@Test
+	public void testEmpty() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0d, histogram.getSumSeconds(), 0d);
+		assertEquals(0, histogram.getValueAtQuantile(0.5));
+		assertArrayEquals(new long[] { 0, 0 }, histogram.getCumulativeCounts(new double[] { 0.001, 1 }));
+	}
+
+	@Test
+	public void testExactBelowSubBuckets() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 0; micros < 16; micros++)
+			histogram.record(micros, TimeUnit.MICROSECONDS);
+
+		assertEquals(16, histogram.getCount());
+		for (int i = 1; i <= 16; i++)
+			assertEquals(i - 1, histogram.getValueAtQuantile(i / 16d));
+	}
+
+	@Test
+	public void testBucketUpperBounds() throws Exception
+	{
+		// 16 .. 31 one microsecond per bucket, 32 .. 63 two, 64 .. 127 four
+		assertEquals(16, valueOf(16));
+		assertEquals(31, valueOf(31));
+		assertEquals(33, valueOf(32));
+		assertEquals(33, valueOf(33));
+		assertEquals(35, valueOf(34));
+		assertEquals(63, valueOf(63));
+		assertEquals(67, valueOf(64));
+		assertEquals(127, valueOf(127));
+		assertEquals(1023, valueOf(1000));
+		assertEquals(1023, valueOf(1023));
+		assertEquals(1087, valueOf(1024));
+	}
+
+	@Test
+	public void testRelativeError() throws Exception
+	{
+		for (long micros = 16; micros < 10_000_000; micros = micros * 3 + 7)
+		{
+			long value = valueOf(micros);
+			assertTrue(micros + " > " + value, value >= micros);
+			assertTrue(micros + " -> " + value, value - micros <= micros / 16);
+		}
+	}
+
+	@Test
+	public void testOverflow() throws Exception
+	{
+		long max = valueOf(Long.MAX_VALUE / 2);
+		assertEquals(max, valueOf(TimeUnit.DAYS.toMicros(365)));
+		assertTrue(max >= TimeUnit.HOURS.toMicros(19));
+	}
+
+	@Test
+	public void testNegative() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5, TimeUnit.MILLISECONDS);
+
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getValueAtQuantile(1));
+		assertEquals(0d, histogram.getSumSeconds(), 0d);
+	}
+
+	@Test
+	public void testQuantiles() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++)
+			histogram.record(1, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 10; i++)
+			histogram.record(100, TimeUnit.MILLISECONDS);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(1.09d, histogram.getSumSeconds(), 1e-9);
+		assertEquals(1023, histogram.getValueAtQuantile(0));
+		assertEquals(1023, histogram.getValueAtQuantile(0.5));
+		assertEquals(1023, histogram.getValueAtQuantile(0.9));
+		assertEquals(102_399, histogram.getValueAtQuantile(0.91));
+		assertEquals(102_399, histogram.getValueAtQuantile(1));
+	}
+
+	@Test
+	public void testCumulativeCounts() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(500, TimeUnit.MICROSECONDS);
+		histogram.record(5, TimeUnit.MILLISECONDS);
+		histogram.record(50, TimeUnit.MILLISECONDS);
+		histogram.record(5, TimeUnit.SECONDS);
+
+		assertArrayEquals(new long[] { 0, 1, 2, 3, 3, 4 },
+				histogram.getCumulativeCounts(new double[] { 0.0001, 0.001, 0.01, 0.1, 1, 10 }));
+	}
+
+	@Test
+	public void testCumulativeCountsBucketNotAboveBound() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		// 1000 µs is recorded in the bucket 960 .. 1023, above a 1 ms bound
+		histogram.record(1000, TimeUnit.MICROSECONDS);
+
+		assertArrayEquals(new long[] { 0, 1 }, histogram.getCumulativeCounts(new double[] { 0.001, 0.0011 }));
+	}
+
+	@Test
+	public void testReset() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1, TimeUnit.SECONDS);
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0d, histogram.getSumSeconds(), 0d);
+		assertEquals(0, histogram.getValueAtQuantile(1));
+	}
+
+	private static long valueOf(long micros)
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(micros, TimeUnit.MICROSECONDS);
+
+		return histogram.getValueAtQuantile(1);
+	}
+}
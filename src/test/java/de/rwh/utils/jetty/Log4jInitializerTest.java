@@ -0,0 +1,24 @@
+package de.rwh.utils.jetty;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Test;
+
+public class Log4jInitializerTest
+{
+	@Test
+	public void testDisruptorAvailable() throws Exception
+	{
+		Log4jInitializer.requireDisruptor(Log4jInitializerTest.class.getClassLoader());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDisruptorMissing() throws Exception
+	{
+		try (URLClassLoader bootstrapOnly = new URLClassLoader(new URL[0], null))
+		{
+			Log4jInitializer.requireDisruptor(bootstrapOnly);
+		}
+	}
+}
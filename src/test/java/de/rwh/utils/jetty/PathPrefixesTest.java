@@ -0,0 +1,40 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PathPrefixesTest
+{
+	@Test
+	public void testMatches() throws Exception
+	{
+		assertTrue(PathPrefixes.matches("/api", "/api"));
+		assertTrue(PathPrefixes.matches("/api/", "/api"));
+		assertTrue(PathPrefixes.matches("/api/foo", "/api"));
+		assertTrue(PathPrefixes.matches("/api/foo", "/api/"));
+		assertTrue(PathPrefixes.matches("/anything", "/"));
+
+		assertFalse(PathPrefixes.matches("/apix", "/api"));
+		assertFalse(PathPrefixes.matches("/api-v2/foo", "/api"));
+		assertFalse(PathPrefixes.matches("/ap", "/api"));
+		assertFalse(PathPrefixes.matches("/api", "/api/"));
+		assertFalse(PathPrefixes.matches("/other/api", "/api"));
+	}
+
+	@Test
+	public void testMatchesAny() throws Exception
+	{
+		String[] prefixes = { "/health", "/metadata/" };
+
+		assertTrue(PathPrefixes.matchesAny("/health", prefixes));
+		assertTrue(PathPrefixes.matchesAny("/health/live", prefixes));
+		assertTrue(PathPrefixes.matchesAny("/metadata/x", prefixes));
+
+		assertFalse(PathPrefixes.matchesAny("/healthz", prefixes));
+		assertFalse(PathPrefixes.matchesAny("/health-admin", prefixes));
+		assertFalse(PathPrefixes.matchesAny("/metadata", prefixes));
+		assertFalse(PathPrefixes.matchesAny("/health", new String[0]));
+	}
+}
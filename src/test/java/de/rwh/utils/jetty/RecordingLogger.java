@@ -0,0 +1,69 @@
+package de.rwh.utils.jetty;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Records messages logged at level info, warn and debug, all levels are enabled.
+ */
+final class RecordingLogger
+{
+	private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+	private final Logger logger;
+
+	/**
+	 * @param onLog
+	 *            invoked with every recorded message on the logging thread, may be <code>null</code>
+	 */
+	RecordingLogger(Consumer<String> onLog)
+	{
+		logger = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] { Logger.class },
+				(proxy, method, args) ->
+				{
+					if (method.getReturnType() == boolean.class)
+						return true;
+					else if (method.getReturnType() == String.class)
+						return "recording";
+					else if (!List.of("info", "warn", "debug").contains(method.getName()) || args == null
+							|| !(args[0] instanceof String))
+						return null;
+
+					Object[] arguments = args.length == 2 && args[1] instanceof Object[] ? (Object[]) args[1]
+							: Arrays.copyOfRange(args, 1, args.length);
+					String message = method.getName() + " "
+							+ MessageFormatter.arrayFormat((String) args[0], arguments).getMessage();
+
+					messages.add(message);
+					if (onLog != null)
+						onLog.accept(message);
+
+					return null;
+				});
+	}
+
+	Logger getLogger()
+	{
+		return logger;
+	}
+
+	List<String> getMessages()
+	{
+		synchronized (messages)
+		{
+			return new ArrayList<>(messages);
+		}
+	}
+
+	List<String> getMessages(String prefix)
+	{
+		return getMessages().stream().filter(m -> m.startsWith(prefix)).collect(Collectors.toList());
+	}
+}
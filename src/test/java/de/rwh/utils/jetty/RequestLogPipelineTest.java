@@ -0,0 +1,194 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.rwh.utils.jetty.RequestLogPipeline.Entry;
+import de.rwh.utils.jetty.RequestLogPipeline.Format;
+
+public class RequestLogPipelineTest
+{
+	private static Entry entry(String uri)
+	{
+		Entry entry = new Entry(0, "GET", uri, null, true);
+		entry.status = 200;
+		entry.durationNanos = TimeUnit.MILLISECONDS.toNanos(12);
+		return entry;
+	}
+
+	/**
+	 * Blocks the consumer thread while it emits the first entry.
+	 */
+	private static final class BlockingOutput
+	{
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final RecordingLogger logger = new RecordingLogger(message ->
+		{
+			if (message.contains("/first") && blocked.getCount() > 0)
+			{
+				blocked.countDown();
+				try
+				{
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	@Test
+	public void testCapacityRoundedUpToPowerOfTwo() throws Exception
+	{
+		RecordingLogger logger = new RecordingLogger(null);
+
+		assertEquals(4, new RequestLogPipeline(logger.getLogger(), Format.JSON, true, 3).getCapacity());
+		assertEquals(1024, new RequestLogPipeline(logger.getLogger(), Format.JSON, true, 1000).getCapacity());
+		assertEquals(1024, new RequestLogPipeline(logger.getLogger(), Format.JSON, true, 1024).getCapacity());
+	}
+
+	@Test
+	public void testSynchronousWithoutStart() throws Exception
+	{
+		RecordingLogger logger = new RecordingLogger(null);
+		RequestLogPipeline pipeline = new RequestLogPipeline(logger.getLogger(), Format.TEXT, true, 4);
+
+		assertTrue(pipeline.offer(entry("/a")));
+
+		assertEquals(1, pipeline.getLogged());
+		assertEquals(List.of("info Request to: /a", "info Request method: GET",
+				"info Response status: 200, duration: 12 ms"), logger.getMessages());
+	}
+
+	@Test
+	public void testFullRingBufferDropsAndCounts() throws Exception
+	{
+		BlockingOutput output = new BlockingOutput();
+		RequestLogPipeline pipeline = new RequestLogPipeline(output.logger.getLogger(), Format.JSON, true, 4);
+		pipeline.start();
+		try
+		{
+			assertTrue(pipeline.offer(entry("/first")));
+			assertTrue(output.blocked.await(10, TimeUnit.SECONDS));
+
+			for (int i = 0; i < 4; i++)
+				assertTrue(pipeline.offer(entry("/buffered" + i)));
+
+			assertFalse(pipeline.offer(entry("/dropped0")));
+			assertFalse(pipeline.offer(entry("/dropped1")));
+			assertEquals(2, pipeline.getDropped());
+
+			output.release.countDown();
+		}
+		finally
+		{
+			pipeline.stop();
+		}
+
+		assertEquals(5, pipeline.getLogged());
+		assertEquals(List.of("warn 2 request log entries dropped, ring buffer with capacity 4 full"),
+				output.logger.getMessages("warn"));
+		assertTrue(output.logger.getMessages().stream().noneMatch(m -> m.contains("/dropped")));
+	}
+
+	@Test
+	public void testStopFlushesBufferedEntries() throws Exception
+	{
+		BlockingOutput output = new BlockingOutput();
+		RequestLogPipeline pipeline = new RequestLogPipeline(output.logger.getLogger(), Format.JSON, true, 16);
+		pipeline.start();
+
+		pipeline.offer(entry("/first"));
+		assertTrue(output.blocked.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 10; i++)
+			pipeline.offer(entry("/buffered" + i));
+
+		// entries are still buffered when stop is called
+		Thread releaser = new Thread(() ->
+		{
+			try
+			{
+				Thread.sleep(100);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			output.release.countDown();
+		});
+		releaser.start();
+
+		pipeline.stop();
+
+		assertEquals(11, pipeline.getLogged());
+		List<String> messages = output.logger.getMessages();
+		assertTrue(messages.get(messages.size() - 1), messages.get(messages.size() - 1).contains("/buffered9"));
+
+		// synchronous after stop
+		pipeline.offer(entry("/after"));
+		assertEquals(12, pipeline.getLogged());
+	}
+
+	@Test
+	public void testJsonEscaping() throws Exception
+	{
+		RecordingLogger logger = new RecordingLogger(null);
+		RequestLogPipeline pipeline = new RequestLogPipeline(logger.getLogger(), Format.JSON, false, 4);
+
+		Entry entry = new Entry(0, "GET", "/a\"b\\c", "x=1&y=ä", false);
+		entry.status = 500;
+		entry.durationNanos = TimeUnit.MILLISECONDS.toNanos(3);
+		entry.parameters = new String[] { "x", "1", "x", "2", "n", null };
+		entry.requestHeaders = new String[] { "Accept", "text/plain" };
+		entry.requestBody = () -> "line1\nline2\r\ttab\u0001\u001f";
+		entry.failure = new IllegalStateException("bad \"state\"");
+
+		pipeline.offer(entry);
+
+		assertEquals(List.of("info {\"timestamp\":\"1970-01-01T00:00:00Z\",\"method\":\"GET\",\"uri\":\"/a\\\"b\\\\c\","
+				+ "\"query\":\"x=1&y=ä\",\"status\":500,\"durationMs\":3,\"sampled\":false,"
+				+ "\"failure\":\"java.lang.IllegalStateException: bad \\\"state\\\"\","
+				+ "\"requestParameters\":{\"x\":\"1, 2\",\"n\":\"null\"},\"requestHeaders\":{\"Accept\":\"text/plain\"},"
+				+ "\"requestBody\":\"line1\\nline2\\r\\ttab\\u0001\\u001f\"}"), logger.getMessages());
+	}
+
+	@Test
+	public void testJsonNullBody() throws Exception
+	{
+		RecordingLogger logger = new RecordingLogger(null);
+		RequestLogPipeline pipeline = new RequestLogPipeline(logger.getLogger(), Format.JSON, false, 4);
+
+		Entry entry = entry("/a");
+		entry.responseBody = () -> null;
+		pipeline.offer(entry);
+
+		assertTrue(logger.getMessages().get(0), logger.getMessages().get(0).endsWith(",\"responseBody\":null}"));
+	}
+
+	@Test
+	public void testFormattingErrorCountedAsNotLogged() throws Exception
+	{
+		RecordingLogger logger = new RecordingLogger(null);
+		RequestLogPipeline pipeline = new RequestLogPipeline(logger.getLogger(), Format.JSON, false, 4);
+
+		Entry entry = entry("/a");
+		entry.requestBody = () ->
+		{
+			throw new IllegalStateException("body not readable");
+		};
+		pipeline.offer(entry);
+
+		assertEquals(0, pipeline.getLogged());
+		assertEquals(List.of("warn Error while formatting request log entry for /a"), logger.getMessages());
+	}
+}
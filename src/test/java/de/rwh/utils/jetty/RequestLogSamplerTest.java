@@ -0,0 +1,132 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RequestLogSamplerTest
+{
+	private static RequestLogSampler sampler()
+	{
+		Map<String, Double> rates = new LinkedHashMap<>();
+		rates.put("/api", 0.5);
+		rates.put("/api/health", 0d);
+		rates.put("/static/", 1d);
+
+		return new RequestLogSampler(0.25, rates, 1000);
+	}
+
+	@Test
+	public void testRateLongestPrefixOnSegmentBoundary() throws Exception
+	{
+		RequestLogSampler sampler = sampler();
+
+		assertEquals(0.5, sampler.getRate("/api"), 0);
+		assertEquals(0.5, sampler.getRate("/api/x"), 0);
+		assertEquals(0, sampler.getRate("/api/health"), 0);
+		assertEquals(0, sampler.getRate("/api/health/live"), 0);
+		assertEquals(0.5, sampler.getRate("/api/healthz"), 0);
+		assertEquals(1, sampler.getRate("/static/x.css"), 0);
+
+		assertEquals(0.25, sampler.getRate("/apix"), 0);
+		assertEquals(0.25, sampler.getRate("/static"), 0);
+		assertEquals(0.25, sampler.getRate("/"), 0);
+		assertEquals(0.25, sampler.getRate(null), 0);
+	}
+
+	@Test
+	public void testSample() throws Exception
+	{
+		RequestLogSampler sampler = sampler();
+
+		for (int i = 0; i < 100; i++)
+		{
+			assertFalse(sampler.sample("/api/health"));
+			assertTrue(sampler.sample("/static/x.css"));
+		}
+
+		int sampled = 0;
+		for (int i = 0; i < 10_000; i++)
+		{
+			if (sampler.sample("/api/x"))
+				sampled++;
+		}
+		assertTrue(String.valueOf(sampled), sampled > 4000 && sampled < 6000);
+	}
+
+	@Test
+	public void testAlwaysLogged() throws Exception
+	{
+		RequestLogSampler sampler = sampler();
+
+		assertTrue(sampler.isAlwaysLogged(200, true, 0));
+		assertTrue(sampler.isAlwaysLogged(500, false, 0));
+		assertTrue(sampler.isAlwaysLogged(503, false, 0));
+		assertTrue(sampler.isAlwaysLogged(200, false, TimeUnit.MILLISECONDS.toNanos(1000)));
+		assertFalse(sampler.isAlwaysLogged(404, false, TimeUnit.MILLISECONDS.toNanos(999)));
+
+		RequestLogSampler withoutSlowThreshold = new RequestLogSampler(0, null, 0);
+		assertFalse(withoutSlowThreshold.isAlwaysLogged(200, false, Long.MAX_VALUE - 1));
+	}
+
+	@Test
+	public void testParseRouteRates() throws Exception
+	{
+		Map<String, Double> rates = RequestLogSampler.parseRouteRates(" /health=0, /api/=0.1,,");
+
+		assertEquals(List.of("/health", "/api/"), List.copyOf(rates.keySet()));
+		assertEquals(0d, rates.get("/health"), 0);
+		assertEquals(0.1d, rates.get("/api/"), 0);
+
+		assertTrue(RequestLogSampler.parseRouteRates(null).isEmpty());
+		assertTrue(RequestLogSampler.parseRouteRates(" ").isEmpty());
+	}
+
+	@Test
+	public void testInvalidRates() throws Exception
+	{
+		for (String routes : List.of("/api", "=0.1", "/api=x"))
+		{
+			try
+			{
+				RequestLogSampler.parseRouteRates(routes);
+				fail("IllegalArgumentException expected for '" + routes + "'");
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+		}
+
+		for (double rate : new double[] { -0.1, 1.1, Double.NaN })
+		{
+			try
+			{
+				new RequestLogSampler(rate, null, 0);
+				fail("IllegalArgumentException expected for " + rate);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+
+			try
+			{
+				new RequestLogSampler(0, Map.of("/api", rate), 0);
+				fail("IllegalArgumentException expected for route rate " + rate);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestMetricsHandlerTest
+{
+	private static final class TestServlet extends HttpServlet
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+		{
+			if (req.getParameter("status") != null)
+				resp.sendError(Integer.parseInt(req.getParameter("status")));
+			else
+				resp.getWriter().write("hello");
+		}
+	}
+
+	private Server server;
+	private ServerConnector publicConnector;
+	private ServerConnector managementConnector;
+
+	private void start(MetricsConfiguration configuration) throws Exception
+	{
+		server = new Server();
+
+		publicConnector = new ServerConnector(server);
+		publicConnector.setHost("127.0.0.1");
+		publicConnector.setPort(0);
+		server.addConnector(publicConnector);
+
+		if (configuration.hasManagementConnector())
+		{
+			managementConnector = new ServerConnector(server);
+			managementConnector.setName(RequestMetricsHandler.MANAGEMENT_CONNECTOR_NAME);
+			managementConnector.setHost("127.0.0.1");
+			managementConnector.setPort(configuration.getManagementPort());
+			server.addConnector(managementConnector);
+		}
+
+		ServletContextHandler context = new ServletContextHandler();
+		context.setContextPath("/app");
+		context.addServlet(new ServletHolder(new TestServlet()), "/hello/*");
+
+		RequestMetricsHandler metricsHandler = new RequestMetricsHandler(configuration);
+		metricsHandler.setHandler(context);
+		server.setHandler(metricsHandler);
+		server.start();
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		if (server != null)
+			server.stop();
+	}
+
+	private static HttpURLConnection connect(ServerConnector connector, String path, String method)
+			throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + connector.getLocalPort() + path).openConnection();
+		connection.setRequestMethod(method);
+		return connection;
+	}
+
+	private static String read(HttpURLConnection connection) throws IOException
+	{
+		assertEquals(200, connection.getResponseCode());
+		try (InputStream in = connection.getInputStream())
+		{
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String get(ServerConnector connector, String path) throws IOException
+	{
+		return read(connect(connector, path, "GET"));
+	}
+
+	private static int status(ServerConnector connector, String path, String method) throws IOException
+	{
+		return connect(connector, path, method).getResponseCode();
+	}
+
+	@Test
+	public void testPrometheusOutput() throws Exception
+	{
+		start(new MetricsConfiguration("/metrics", "127.0.0.1", 0, false, new double[] { 0.5, 60 }, 10));
+
+		assertEquals("hello", get(publicConnector, "/app/hello/a"));
+		assertEquals("hello", get(publicConnector, "/app/hello/b"));
+		assertEquals(404, status(publicConnector, "/app/hello?status=404", "GET"));
+		assertEquals(404, status(publicConnector, "/other", "GET"));
+
+		HttpURLConnection connection = connect(managementConnector, "/metrics", "GET");
+		String metrics = read(connection);
+
+		assertEquals(PrometheusTextWriter.CONTENT_TYPE, connection.getContentType());
+		assertEquals("no-store", connection.getHeaderField("Cache-Control"));
+
+		assertTrue(metrics, metrics.contains("# HELP jetty_requests_total Number of requests\n"));
+		assertTrue(metrics, metrics.contains("# TYPE jetty_requests_total counter\n"));
+		assertTrue(metrics, metrics.contains("\njetty_requests_total 4\n"));
+		assertTrue(metrics, metrics.contains("\njetty_responses_total{code=\"2xx\"} 2\n"));
+		assertTrue(metrics, metrics.contains("\njetty_responses_total{code=\"4xx\"} 2\n"));
+
+		assertTrue(metrics, metrics.contains("\njetty_context_requests_total{context=\"/app\"} 3\n"));
+		assertTrue(metrics, metrics.contains("\njetty_context_requests_total{context=\"none\"} 1\n"));
+		assertTrue(metrics, metrics.contains("\njetty_context_responses_total{context=\"/app\",code=\"4xx\"} 1\n"));
+
+		assertTrue(metrics, metrics.contains("# TYPE jetty_request_duration_seconds histogram\n"));
+		assertTrue(metrics, metrics.contains("\njetty_request_duration_seconds_bucket"
+				+ "{context=\"/app\",route=\"/hello/*\",status=\"200\",le=\"60\"} 2\n"));
+		assertTrue(metrics, metrics.contains("\njetty_request_duration_seconds_bucket"
+				+ "{context=\"/app\",route=\"/hello/*\",status=\"200\",le=\"+Inf\"} 2\n"));
+		assertTrue(metrics, metrics.contains(
+				"\njetty_request_duration_seconds_count{context=\"/app\",route=\"/hello/*\",status=\"200\"} 2\n"));
+		assertTrue(metrics, metrics.contains(
+				"\njetty_request_duration_seconds_count{context=\"/app\",route=\"/hello/*\",status=\"404\"} 1\n"));
+		assertTrue(metrics, metrics.contains(
+				"\njetty_request_duration_seconds_count{context=\"none\",route=\"unmapped\",status=\"404\"} 1\n"));
+
+		assertTrue(metrics, metrics.contains("# TYPE jetty_threads gauge\n"));
+
+		// metrics requests are not recorded
+		assertTrue(get(managementConnector, "/metrics").contains("\njetty_requests_total 4\n"));
+	}
+
+	@Test
+	public void testNotServedOnPublicConnector() throws Exception
+	{
+		start(new MetricsConfiguration("/metrics", "127.0.0.1", 0, false, null, 10));
+
+		assertEquals(404, status(publicConnector, "/metrics", "GET"));
+		assertEquals(404, status(managementConnector, "/app/hello", "GET"));
+		assertEquals(405, status(managementConnector, "/metrics", "POST"));
+		assertEquals(200, status(managementConnector, "/metrics", "HEAD"));
+	}
+
+	@Test
+	public void testPublicEndpoint() throws Exception
+	{
+		start(new MetricsConfiguration("/metrics", null, -1, true, null, 10));
+
+		assertTrue(get(publicConnector, "/metrics").contains("# TYPE jetty_requests_total counter\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testManagementConnectorOrPublicEndpointRequired() throws Exception
+	{
+		new MetricsConfiguration("/metrics", null, -1, false, null, 10);
+	}
+
+	@Test
+	public void testMetricsConfigurationFromProperties() throws Exception
+	{
+		Properties properties = new Properties();
+		assertEquals(null, JettyServer.metricsConfiguration(properties));
+
+		properties.setProperty("jetty.metrics.enabled", "true");
+		try
+		{
+			JettyServer.metricsConfiguration(properties);
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("jetty.metrics.public"));
+		}
+
+		properties.setProperty("jetty.metrics.port", "9090");
+		MetricsConfiguration management = JettyServer.metricsConfiguration(properties);
+		assertEquals(9090, management.getManagementPort());
+		assertFalse(management.isPublicEndpoint());
+
+		properties.remove("jetty.metrics.port");
+		properties.setProperty("jetty.metrics.public", "true");
+		MetricsConfiguration publicEndpoint = JettyServer.metricsConfiguration(properties);
+		assertFalse(publicEndpoint.hasManagementConnector());
+		assertTrue(publicEndpoint.isPublicEndpoint());
+	}
+}
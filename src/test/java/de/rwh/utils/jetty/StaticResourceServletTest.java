@@ -0,0 +1,200 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StaticResourceServletTest
+{
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private Server server;
+	private ServerConnector connector;
+
+	private void start(StaticResourceConfiguration configuration) throws Exception
+	{
+		server = new Server();
+
+		connector = new ServerConnector(server);
+		connector.setHost("127.0.0.1");
+		connector.setPort(0);
+		server.addConnector(connector);
+
+		StaticResourceServlet servlet = new StaticResourceServlet(configuration);
+		ServletContextHandler context = new ServletContextHandler();
+		context.setContextPath("/app");
+		context.addServlet(new ServletHolder(servlet), servlet.getPathSpec());
+
+		server.setHandler(context);
+		server.start();
+	}
+
+	@After
+	public void after() throws Exception
+	{
+		if (server != null)
+			server.stop();
+	}
+
+	/**
+	 * Jetty only serves precompressed siblings smaller than the original file.
+	 */
+	private Path directory() throws IOException
+	{
+		Path directory = folder.newFolder("ui").toPath();
+		Files.write(directory.resolve("app.js"), "plain text content".getBytes(StandardCharsets.UTF_8));
+		Files.write(directory.resolve("app.js.br"), "br content".getBytes(StandardCharsets.UTF_8));
+		Files.write(directory.resolve("app.js.gz"), "gz content".getBytes(StandardCharsets.UTF_8));
+		Files.write(directory.resolve("other.js"), "other text content".getBytes(StandardCharsets.UTF_8));
+		Files.write(directory.resolve("other.js.gz"), "other gz".getBytes(StandardCharsets.UTF_8));
+		return directory;
+	}
+
+	private HttpURLConnection connect(String path, String acceptEncoding, String ifNoneMatch) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + connector.getLocalPort() + path).openConnection();
+		if (acceptEncoding != null)
+			connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+		if (ifNoneMatch != null)
+			connection.setRequestProperty("If-None-Match", ifNoneMatch);
+		return connection;
+	}
+
+	private static String read(HttpURLConnection connection) throws IOException
+	{
+		assertEquals(200, connection.getResponseCode());
+		try (InputStream in = connection.getInputStream())
+		{
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void testPrecompressed() throws Exception
+	{
+		start(new StaticResourceConfiguration("/ui", directory().toString()));
+
+		HttpURLConnection identity = connect("/app/ui/app.js", "identity", null);
+		assertEquals("plain text content", read(identity));
+		assertNull(identity.getContentEncoding());
+		assertEquals("Accept-Encoding", identity.getHeaderField("Vary"));
+
+		HttpURLConnection br = connect("/app/ui/app.js", "gzip, deflate, br", null);
+		assertEquals("br content", read(br));
+		assertEquals("br", br.getContentEncoding());
+
+		HttpURLConnection gzip = connect("/app/ui/app.js", "gzip, deflate", null);
+		assertEquals("gz content", read(gzip));
+		assertEquals("gzip", gzip.getContentEncoding());
+
+		HttpURLConnection gzipOnly = connect("/app/ui/other.js", "gzip, deflate, br", null);
+		assertEquals("other gz", read(gzipOnly));
+		assertEquals("gzip", gzipOnly.getContentEncoding());
+	}
+
+	@Test
+	public void testPrecompressedDisabled() throws Exception
+	{
+		start(new StaticResourceConfiguration("/ui", directory().toString(), 1024, 1024, 10, false, false, null));
+
+		HttpURLConnection br = connect("/app/ui/app.js", "gzip, deflate, br", null);
+		assertEquals("plain text content", read(br));
+		assertNull(br.getContentEncoding());
+	}
+
+	@Test
+	public void testStrongETag() throws Exception
+	{
+		start(new StaticResourceConfiguration("/ui", directory().toString()));
+
+		HttpURLConnection identity = connect("/app/ui/app.js", "identity", null);
+		assertEquals("plain text content", read(identity));
+		String etag = identity.getHeaderField("ETag");
+		assertNotNull(etag);
+		assertFalse(etag, etag.startsWith("W/"));
+
+		HttpURLConnection br = connect("/app/ui/app.js", "br", null);
+		assertEquals("br content", read(br));
+		String brETag = br.getHeaderField("ETag");
+		assertNotNull(brETag);
+		assertFalse(brETag, brETag.startsWith("W/"));
+		assertNotEquals(etag, brETag);
+
+		assertEquals(304, connect("/app/ui/app.js", "identity", etag).getResponseCode());
+		assertEquals(304, connect("/app/ui/app.js", "br", brETag).getResponseCode());
+		assertEquals(200, connect("/app/ui/app.js", "identity", "\"other\"").getResponseCode());
+		assertEquals(200, connect("/app/ui/app.js", "identity", "W/\"other\"").getResponseCode());
+	}
+
+	@Test
+	public void testCacheControl() throws Exception
+	{
+		start(new StaticResourceConfiguration("/ui", directory().toString()));
+
+		HttpURLConnection connection = connect("/app/ui/app.js", null, null);
+		assertEquals("plain text content", read(connection));
+		assertEquals(StaticResourceConfiguration.DEFAULT_CACHE_CONTROL, connection.getHeaderField("Cache-Control"));
+	}
+
+	@Test
+	public void testCacheControlConfigured() throws Exception
+	{
+		start(new StaticResourceConfiguration("/ui", directory().toString(), 1024, 1024, 10, false, true,
+				"no-cache"));
+
+		HttpURLConnection connection = connect("/app/ui/app.js", null, null);
+		assertEquals("plain text content", read(connection));
+		assertEquals("no-cache", connection.getHeaderField("Cache-Control"));
+	}
+
+	@Test
+	public void testDirectoryBase() throws Exception
+	{
+		start(new StaticResourceConfiguration("/ui", directory().toString()));
+
+		assertEquals("other text content", read(connect("/app/ui/other.js", null, null)));
+		assertEquals(404, connect("/app/ui/missing.js", null, null).getResponseCode());
+		assertEquals(404, connect("/app/other.js", null, null).getResponseCode());
+
+		// no directory listings
+		assertEquals(403, connect("/app/ui/", null, null).getResponseCode());
+	}
+
+	@Test
+	public void testClassPathBase() throws Exception
+	{
+		start(new StaticResourceConfiguration("/", "classpath:/static"));
+
+		HttpURLConnection connection = connect("/app/index.html", null, null);
+		assertEquals("<!DOCTYPE html>\n<title>static</title>\n", read(connection));
+		assertEquals("text/html", connection.getContentType());
+
+		String etag = connection.getHeaderField("ETag");
+		assertNotNull(etag);
+		assertFalse(etag, etag.startsWith("W/"));
+		assertEquals(304, connect("/app/index.html", null, etag).getResponseCode());
+
+		assertEquals(404, connect("/app/missing.html", null, null).getResponseCode());
+	}
+}
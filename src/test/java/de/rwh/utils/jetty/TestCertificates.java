@@ -0,0 +1,190 @@
+package de.rwh.utils.jetty;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.jcajce.JcaBasicOCSPRespBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+
+/**
+ * Generates EC key pairs and certificates for tests.
+ */
+final class TestCertificates
+{
+	private static final AtomicLong SERIAL = new AtomicLong(System.currentTimeMillis());
+
+	private TestCertificates()
+	{
+	}
+
+	static KeyPair keyPair()
+	{
+		try
+		{
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+			generator.initialize(256);
+			return generator.generateKeyPair();
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	static X509Certificate selfSigned(String commonName, KeyPair keyPair)
+	{
+		return certificate(commonName, keyPair, null, keyPair, true,
+				new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+	}
+
+	/**
+	 * @param issuer
+	 *            <code>null</code> for a self-signed certificate
+	 */
+	static X509Certificate certificate(String commonName, KeyPair keyPair, X509Certificate issuer, KeyPair issuerKeyPair,
+			boolean ca, Date notAfter)
+	{
+		return certificate(commonName, keyPair, issuer, issuerKeyPair, ca, notAfter, null, null);
+	}
+
+	/**
+	 * @param issuer
+	 *            <code>null</code> for a self-signed certificate
+	 * @param ocspResponder
+	 *            may be <code>null</code>, added to the authority information access extension
+	 * @param crlDistributionPoint
+	 *            may be <code>null</code>, added to the CRL distribution points extension
+	 */
+	static X509Certificate certificate(String commonName, KeyPair keyPair, X509Certificate issuer, KeyPair issuerKeyPair,
+			boolean ca, Date notAfter, URI ocspResponder, URI crlDistributionPoint)
+	{
+		try
+		{
+			X500Name subject = new X500Name("CN=" + commonName);
+			X500Name issuerName = issuer == null ? subject
+					: X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded());
+
+			X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(issuerName,
+					BigInteger.valueOf(SERIAL.incrementAndGet()),
+					new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)), notAfter, subject,
+					keyPair.getPublic());
+			builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+			if (ocspResponder != null)
+				builder.addExtension(Extension.authorityInfoAccess, false,
+						new AuthorityInformationAccess(AccessDescription.id_ad_ocsp,
+								new GeneralName(GeneralName.uniformResourceIdentifier, ocspResponder.toString())));
+			if (crlDistributionPoint != null)
+				builder.addExtension(Extension.cRLDistributionPoints, false,
+						new CRLDistPoint(new DistributionPoint[] { new DistributionPoint(
+								new DistributionPointName(new GeneralNames(new GeneralName(
+										GeneralName.uniformResourceIdentifier, crlDistributionPoint.toString()))),
+								null, null) }));
+
+			return new JcaX509CertificateConverter().getCertificate(
+					builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(issuerKeyPair.getPrivate())));
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return CRL valid for one day revoking the given certificates
+	 */
+	static X509CRL crl(X509Certificate issuer, KeyPair issuerKeyPair, X509Certificate... revoked)
+	{
+		try
+		{
+			Date now = new Date();
+			X509v2CRLBuilder builder = new X509v2CRLBuilder(
+					X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()), now);
+			builder.setNextUpdate(new Date(now.getTime() + TimeUnit.DAYS.toMillis(1)));
+			for (X509Certificate certificate : revoked)
+				builder.addCRLEntry(certificate.getSerialNumber(), now, CRLReason.keyCompromise);
+
+			return new JcaX509CRLConverter().getCRL(
+					builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(issuerKeyPair.getPrivate())));
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param request
+	 *            DER encoded OCSP request
+	 * @param revoked
+	 *            <code>true</code> for status revoked, <code>false</code> for status good
+	 * @return DER encoded successful OCSP response valid for one hour, signed with the given key
+	 */
+	static byte[] ocspResponse(byte[] request, X509Certificate issuer, KeyPair signerKeyPair, boolean revoked)
+	{
+		try
+		{
+			Date now = new Date();
+			JcaBasicOCSPRespBuilder builder = new JcaBasicOCSPRespBuilder(issuer.getPublicKey(),
+					new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1));
+			for (Req req : new OCSPReq(request).getRequestList())
+				builder.addResponse(req.getCertID(),
+						revoked ? new RevokedStatus(now, CRLReason.keyCompromise) : CertificateStatus.GOOD, now,
+						new Date(now.getTime() + TimeUnit.HOURS.toMillis(1)));
+
+			BasicOCSPResp response = builder.build(
+					new JcaContentSignerBuilder("SHA256withECDSA").build(signerKeyPair.getPrivate()), null, now);
+			return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, response).getEncoded();
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	static String pem(X509Certificate certificate)
+	{
+		try
+		{
+			return ClientCertificateHeaderDecoder.CERT_BEGIN + "\n"
+					+ Base64.getMimeEncoder(64, new byte[] { '\n' }).encodeToString(certificate.getEncoded()) + "\n"
+					+ ClientCertificateHeaderDecoder.CERT_END + "\n";
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package de.rwh.utils.jetty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.junit.Test;
+
+public class TrustedProxyRequestCustomizerTest
+{
+	private static final String PROXY = "10.0.0.1";
+	private static final String UNTRUSTED = "203.0.113.7";
+
+	private final TrustedProxyRequestCustomizer customizer = new TrustedProxyRequestCustomizer(
+			new CidrMatcher(List.of("10.0.0.0/8")), null);
+
+	/**
+	 * @param peer
+	 *            <code>null</code> for a peer without IP address
+	 */
+	private static Request request(String peer, String... headers)
+	{
+		HttpFields fields = new HttpFields();
+		for (int i = 0; i < headers.length; i += 2)
+			fields.add(headers[i], headers[i + 1]);
+
+		Request request = new Request(null, null);
+		request.setMetaData(
+				new MetaData.Request("GET", new HttpURI("http://backend:8080/path"), HttpVersion.HTTP_1_1, fields));
+		request.setRemoteAddr(peer == null ? InetSocketAddress.createUnresolved("localhost", 0)
+				: new InetSocketAddress(peer, 40000));
+
+		return request;
+	}
+
+	private Request customize(Request request)
+	{
+		customizer.customize(null, new HttpConfiguration(), request);
+		return request;
+	}
+
+	@Test
+	public void testXForwardedFromTrustedProxy() throws Exception
+	{
+		Request request = customize(request(PROXY, "X-Forwarded-For", "198.51.100.1", "X-Forwarded-Proto", "https",
+				"X-Forwarded-Host", "example.org"));
+
+		assertEquals("198.51.100.1", request.getRemoteAddr());
+		assertEquals("https", request.getScheme());
+		assertTrue(request.isSecure());
+		assertEquals("example.org", request.getServerName());
+		assertEquals(1, customizer.getRequestsTrusted());
+		assertEquals(1, customizer.getRequestsRewritten());
+	}
+
+	@Test
+	public void testXForwardedForSkipsTrustedHops() throws Exception
+	{
+		Request request = customize(request(PROXY, "X-Forwarded-For", "192.0.2.9, 198.51.100.1, 10.1.1.1, 10.2.2.2"));
+
+		assertEquals("198.51.100.1", request.getRemoteAddr());
+	}
+
+	@Test
+	public void testXForwardedForAllTrusted() throws Exception
+	{
+		Request request = customize(request(PROXY, "X-Forwarded-For", "10.3.3.3, 10.1.1.1"));
+
+		assertEquals("10.3.3.3", request.getRemoteAddr());
+	}
+
+	@Test
+	public void testXForwardedProtoAndHostFromSameHop() throws Exception
+	{
+		// client -> outer proxy 10.1.1.1 (https, example.org) -> inner proxy 10.0.0.1 (http, internal)
+		Request request = customize(request(PROXY, "X-Forwarded-For", "198.51.100.1, 10.1.1.1", "X-Forwarded-Proto",
+				"https, http", "X-Forwarded-Host", "example.org, internal"));
+
+		assertEquals("198.51.100.1", request.getRemoteAddr());
+		assertEquals("https", request.getScheme());
+		assertEquals("example.org", request.getServerName());
+	}
+
+	@Test
+	public void testXForwardedPort() throws Exception
+	{
+		Request request = customize(
+				request(PROXY, "X-Forwarded-Host", "example.org", "X-Forwarded-Port", "8443"));
+
+		assertEquals("example.org", request.getServerName());
+		assertEquals(8443, request.getServerPort());
+	}
+
+	@Test
+	public void testForwarded() throws Exception
+	{
+		Request request = customize(request(PROXY, "Forwarded",
+				"for=192.0.2.9, for=\"[2001:db8::1]:4711\";proto=https;host=example.org, for=10.1.1.1;proto=http"));
+
+		assertEquals(InetAddress.getByName("2001:db8::1"), request.getRemoteInetSocketAddress().getAddress());
+		assertEquals(4711, request.getRemotePort());
+		assertEquals("https", request.getScheme());
+		assertEquals("example.org", request.getServerName());
+	}
+
+	@Test
+	public void testForwardedPreferredOverXForwarded() throws Exception
+	{
+		Request request = customize(
+				request(PROXY, "Forwarded", "for=198.51.100.1", "X-Forwarded-For", "192.0.2.9"));
+
+		assertEquals("198.51.100.1", request.getRemoteAddr());
+	}
+
+	@Test
+	public void testObfuscatedForwardedForKeepsPeer() throws Exception
+	{
+		Request request = customize(request(PROXY, "Forwarded", "for=_hidden;proto=https"));
+
+		assertEquals(PROXY, request.getRemoteAddr());
+		assertEquals("https", request.getScheme());
+	}
+
+	@Test
+	public void testUntrustedPeerHeadersStripped() throws Exception
+	{
+		Request request = customize(request(UNTRUSTED, "Forwarded", "for=198.51.100.1", "X-Forwarded-For",
+				"198.51.100.1", "X-Forwarded-Proto", "https", "X-Forwarded-Host", "example.org", "X-Forwarded-Port",
+				"443", "Accept", "text/plain"));
+
+		assertEquals(UNTRUSTED, request.getRemoteAddr());
+		assertEquals("http", request.getScheme());
+		assertFalse(request.isSecure());
+		assertEquals("backend", request.getServerName());
+
+		for (HttpHeader header : List.of(HttpHeader.FORWARDED, HttpHeader.X_FORWARDED_FOR,
+				HttpHeader.X_FORWARDED_PROTO, HttpHeader.X_FORWARDED_HOST, HttpHeader.X_FORWARDED_PORT))
+			assertNull(header.asString(), request.getHeader(header.asString()));
+		assertEquals("text/plain", request.getHeader("Accept"));
+
+		assertEquals(1, customizer.getRequestsUntrusted());
+		assertEquals(1, customizer.getRequestsStripped());
+		assertEquals(0, customizer.getRequestsRewritten());
+	}
+
+	@Test
+	public void testUntrustedPeerWithoutHeadersNotCountedAsStripped() throws Exception
+	{
+		customize(request(UNTRUSTED, "Accept", "text/plain"));
+
+		assertEquals(1, customizer.getRequestsUntrusted());
+		assertEquals(0, customizer.getRequestsStripped());
+	}
+
+	@Test
+	public void testClientCertificateHeaderStrippedFromUntrustedPeer() throws Exception
+	{
+		ForwardedSecureRequestCustomizer clientCertificateCustomizer = new ForwardedSecureRequestCustomizer(
+				"X-ClientCert");
+		TrustedProxyRequestCustomizer customizer = new TrustedProxyRequestCustomizer(
+				new CidrMatcher(List.of("10.0.0.0/8")), clientCertificateCustomizer);
+
+		Request request = request(UNTRUSTED, "X-ClientCert", "not a certificate");
+		customizer.customize(null, new HttpConfiguration(), request);
+
+		assertNull(request.getHeader("X-ClientCert"));
+		assertEquals(1, customizer.getRequestsStripped());
+	}
+
+	@Test
+	public void testPeerWithoutAddressTrusted() throws Exception
+	{
+		// unix domain socket
+		Request request = customize(request(null, "X-Forwarded-For", "198.51.100.1"));
+
+		assertEquals("198.51.100.1", request.getRemoteAddr());
+		assertEquals(1, customizer.getRequestsTrusted());
+	}
+}